@@ -0,0 +1,56 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures author lookups as the number of titles per author grows, the cost of a lookup is expected to follow
+ * the size of the result rather than the size of the catalogue, and the cost of a page should not grow at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorLookupBenchmark {
+
+	private static final int AUTHORS = 16;
+	private static final int PAGE_SIZE = 100;
+
+	@Param({"1", "10", "100", "1000", "10000"})
+	int titlesPerAuthor;
+
+	private Library library;
+
+	@Setup
+	public void setUp() {
+		library = new Library(new InMemoryBookRepository(), new LibraryMetrics(true));
+		for (int author = 0; author < AUTHORS; author++) {
+			for (int title = 0; title < titlesPerAuthor; title++) {
+				library.addBook(Book.builder()
+					.isbn(author + "-" + title)
+					.title("Title " + title)
+					.author("Author " + author)
+					.publicationYear(2000)
+					.availableCopies(1)
+					.build());
+			}
+		}
+	}
+
+	@Benchmark
+	public List<Book> findBooksByAuthor() {
+		return library.findBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(AUTHORS));
+	}
+
+	@Benchmark
+	public List<Book> findFirstPageOfBooksByAuthor() {
+		return library.findBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(AUTHORS), null, PAGE_SIZE);
+	}
+}
@@ -0,0 +1,65 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookNotAvailableException;
+import com.identitye2e.lms.domain.BookResult;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures borrowing books that have no copies left, the usual answer for popular titles at peak, once with the
+ * exception thrown by borrowBook and once with the result returned by tryBorrowBook. The exceptions used to be logged
+ * with their stack trace as well, so the difference measured here is the least the result saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class BorrowOutcomeBenchmark {
+
+	private static final int BOOKS = 1024;
+
+	private Library library;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() {
+		library = new Library(new InMemoryBookRepository(), new LibraryMetrics(true));
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+			library.borrowBook(isbns[i]);
+		}
+	}
+
+	@Benchmark
+	public Object borrowUnavailableThrowing() {
+		try {
+			return library.borrowBook(randomIsbn());
+		} catch (BookNotAvailableException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public BookResult borrowUnavailableResult() {
+		return library.tryBorrowBook(randomIsbn());
+	}
+
+	private String randomIsbn() {
+		return isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+	}
+}
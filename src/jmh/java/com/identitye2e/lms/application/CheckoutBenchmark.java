@@ -0,0 +1,97 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.infrastructure.FileBookJournal;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * It checks out and back in a stack of books with the journal enabled, once book by book and once through
+ * borrowBooks and returnBooks. Book by book every change waits for its own journal write, the batch waits once for
+ * all of them, which is where the two differ with fsync ALWAYS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+
+	private static final int BOOKS = 10_000;
+
+	@Param({"20"})
+	int stackSize;
+
+	@Param({"ALWAYS", "INTERVAL"})
+	FileBookJournal.FsyncPolicy fsyncPolicy;
+
+	private Library library;
+	private FileBookJournal journal;
+	private Path directory;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() throws IOException {
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		directory = Files.createTempDirectory("checkout");
+		journal = FileBookJournal.open(directory, fsyncPolicy, 10, 0, repository);
+		library = new Library(repository, new LibraryMetrics(true));
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		journal.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public int bookByBook() {
+		int succeeded = 0;
+		List<String> stack = stack();
+		for (String isbn : stack) {
+			succeeded += library.tryBorrowBook(isbn).isOk() ? 1 : 0;
+		}
+		for (String isbn : stack) {
+			succeeded += library.tryReturnBook(isbn).isOk() ? 1 : 0;
+		}
+		return succeeded;
+	}
+
+	@Benchmark
+	public int batch() {
+		List<String> stack = stack();
+		return library.borrowBooks(stack, false).getSucceeded() + library.returnBooks(stack, false).getSucceeded();
+	}
+
+	private List<String> stack() {
+		List<String> stack = new ArrayList<>(stackSize);
+		for (int i = 0; i < stackSize; i++) {
+			stack.add(isbns[ThreadLocalRandom.current().nextInt(BOOKS)]);
+		}
+		return stack;
+	}
+}
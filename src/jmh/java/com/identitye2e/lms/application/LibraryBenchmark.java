@@ -0,0 +1,64 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures borrowing and returning through the service with every available core competing for a small set of
+ * popular books, which is where the atomic availability update is contended. Running it with and without metrics
+ * shows what the instrumentation costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class LibraryBenchmark {
+
+	@Param({"1", "16", "1024"})
+	int popularBooks;
+
+	@Param({"true", "false"})
+	boolean metricsEnabled;
+
+	private Library library;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() {
+		library = new Library(new InMemoryBookRepository(), new LibraryMetrics(metricsEnabled));
+		isbns = new String[popularBooks];
+		for (int i = 0; i < popularBooks; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+	}
+
+	@Benchmark
+	public Book borrowAndReturn() {
+		String isbn = randomIsbn();
+		library.borrowBook(isbn);
+		return library.returnBook(isbn);
+	}
+
+	@Benchmark
+	public Book findBookByISBN() {
+		return library.findBookByISBN(randomIsbn());
+	}
+
+	private String randomIsbn() {
+		return isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+	}
+}
@@ -0,0 +1,66 @@
+package com.identitye2e.lms.application;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures lending and returning a copy, and sweeping a minute of a ledger that holds a number of open loans
+ * borrowed evenly over the loan period. Neither is expected to grow with the number of loans: a sweep visits the 60
+ * ticks of the minute and the loans that fell due in them, which are returned and lent again to keep the ledger full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoanLedgerBenchmark {
+
+	private static final long PERIOD = TimeUnit.DAYS.toMillis(LoanLedger.DEFAULT_PERIOD_DAYS);
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+	private static final int BOOKS = 100_000;
+
+	@Param({"1000", "1000000", "4000000"})
+	int loans;
+
+	private long now;
+	private LoanLedger ledger;
+
+	@Setup
+	public void setUp() {
+		now = System.currentTimeMillis();
+		ledger = new LoanLedger(PERIOD, TimeUnit.DAYS.toMillis(1), () -> now);
+		long step = PERIOD / loans;
+		for (int i = 0; i < loans; i++) {
+			ledger.open(String.valueOf(i % BOOKS), "Borrower " + i);
+			now += step;
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		ledger.close();
+	}
+
+	@Benchmark
+	public Loan openAndClose() {
+		String isbn = String.valueOf(ThreadLocalRandom.current().nextInt(BOOKS));
+		ledger.open(isbn, "Benchmark");
+		return ledger.close(isbn, "Benchmark").orElse(null);
+	}
+
+	@Benchmark
+	public int sweepMinute() {
+		now += MINUTE;
+		int due = ledger.sweep(now);
+		List<Loan> overdue = ledger.findOverdue(Math.max(due, 1));
+		for (Loan loan : overdue) {
+			ledger.close(loan.getIsbn(), loan.getBorrower());
+			ledger.open(loan.getIsbn(), loan.getBorrower());
+		}
+		return due;
+	}
+}
@@ -0,0 +1,90 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures a page of a range of years, and of an author's books after a year, against the scan of the whole
+ * catalogue such queries took before the year index. The heap repository reads the index and is expected to cost
+ * the same whatever the size of the catalogue, the off-heap one keeps no year index and scans like the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookQueryBenchmark {
+
+	private static final int AUTHORS = 1000;
+	private static final int FIRST_YEAR = 1900;
+	private static final int YEARS = 125;
+	private static final int PAGE_SIZE = 100;
+
+	@Param({"100000", "1000000"})
+	int catalogueSize;
+
+	@Param({"inMemory", "offheap"})
+	String repository;
+
+	private BookRepository bookRepository;
+
+	@Setup
+	public void setUp() {
+		bookRepository = "offheap".equals(repository)
+			? new MappedBookRepository(catalogueSize, "") : new InMemoryBookRepository();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Book> batch = new ArrayList<>();
+		for (int i = 0; i < catalogueSize; i++) {
+			batch.add(Book.builder()
+				.isbn(String.valueOf(9780000000000L + i))
+				.title("Title " + i)
+				.author("Author " + random.nextInt(AUTHORS))
+				.publicationYear(FIRST_YEAR + random.nextInt(YEARS))
+				.availableCopies(random.nextInt(3))
+				.build());
+			if (batch.size() == 10_000) {
+				bookRepository.addBooks(batch);
+				batch.clear();
+			}
+		}
+		bookRepository.addBooks(batch);
+	}
+
+	@Benchmark
+	public List<Book> decade() {
+		int from = FIRST_YEAR + ThreadLocalRandom.current().nextInt(YEARS - 10);
+		return bookRepository.findBooks(BookQuery.builder().fromYear(from).toYear(from + 9).build(), PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Book> availableByAuthorAfterYear() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return bookRepository.findBooks(BookQuery.builder()
+			.author("Author " + random.nextInt(AUTHORS))
+			.fromYear(FIRST_YEAR + random.nextInt(YEARS))
+			.availableOnly(true)
+			.build(), PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Book> decadeByScan() {
+		int from = FIRST_YEAR + ThreadLocalRandom.current().nextInt(YEARS - 10);
+		BookQuery query = BookQuery.builder().fromYear(from).toYear(from + 9).build();
+		List<Book> page = new ArrayList<>();
+		bookRepository.forEachBook(book -> {
+			if (query.matches(book)) {
+				page.add(book);
+			}
+		});
+		page.sort(BookQuery.ORDER);
+		return page.size() > PAGE_SIZE ? page.subList(0, PAGE_SIZE) : page;
+	}
+}
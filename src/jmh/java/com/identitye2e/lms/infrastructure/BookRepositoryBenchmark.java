@@ -0,0 +1,136 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * It measures the repository hot paths for both implementations, so the heap and the off-heap store can be compared
+ * on the same catalogue. The heap the loaded catalogue uses is reported as the heapMegabytes secondary result of
+ * borrowAndReturn and addAndRemoveBook, and the allocation rate per operation comes from the gc profiler the
+ * benchmark profile enables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookRepositoryBenchmark {
+
+	private static final int AUTHORS = 1000;
+	private static final int COPIES = 1_000_000;
+
+	@Param({"10000", "100000", "1000000"})
+	int catalogueSize;
+
+	@Param({"inMemory", "offheap"})
+	String repository;
+
+	private BookRepository bookRepository;
+	private String[] isbns;
+	private Path file;
+	private long heapMegabytes;
+	private final AtomicInteger threads = new AtomicInteger();
+	private final AtomicInteger heapReporters = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class ThreadBook {
+
+		Book book;
+
+		@Setup
+		public void setUp(BookRepositoryBenchmark benchmark) {
+			book = book("thread-" + benchmark.threads.incrementAndGet(), "Thread", 1);
+		}
+	}
+
+	/**
+	 * The heap the catalogue uses, reported by JMH next to the throughput. Counters are summed over the threads, so
+	 * only the first thread reports it.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Heap {
+
+		public long heapMegabytes;
+
+		@Setup
+		public void setUp(BookRepositoryBenchmark benchmark) {
+			if (benchmark.heapReporters.getAndIncrement() == 0) {
+				heapMegabytes = benchmark.heapMegabytes;
+			}
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		long heapBefore = usedHeap();
+		if ("offheap".equals(repository)) {
+			file = Files.createTempFile("books", ".bin");
+			bookRepository = new MappedBookRepository(catalogueSize + 1024, file.toString());
+		} else {
+			bookRepository = new InMemoryBookRepository();
+		}
+		isbns = new String[catalogueSize];
+		for (int i = 0; i < catalogueSize; i++) {
+			isbns[i] = String.format("978%010d", i);
+			bookRepository.addBook(book(isbns[i], "Author " + (i % AUTHORS), COPIES));
+		}
+		heapMegabytes = (usedHeap() - heapBefore) / (1024 * 1024);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (file != null) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+	public Optional<Book> findBookByISBN() {
+		return bookRepository.findBookByISBN(randomIsbn());
+	}
+
+	@Benchmark
+	public Optional<Book> borrowAndReturn(Heap heap) {
+		String isbn = randomIsbn();
+		bookRepository.decrementAvailableCopies(isbn);
+		return bookRepository.incrementAvailableCopies(isbn);
+	}
+
+	@Benchmark
+	public Optional<Book> addAndRemoveBook(ThreadBook threadBook, Heap heap) {
+		bookRepository.addBook(threadBook.book);
+		return bookRepository.removeBook(threadBook.book.getIsbn());
+	}
+
+	private String randomIsbn() {
+		return isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static Book book(String isbn, String author, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author(author)
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
@@ -0,0 +1,73 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures title searches over a catalogue of generated titles whose words follow a skewed distribution, so
+ * queries mix common and rare words like real titles do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSearchBenchmark {
+
+	private static final int WORDS = 20_000;
+	private static final int WORDS_PER_TITLE = 5;
+
+	@Param({"100000", "1000000"})
+	int catalogueSize;
+
+	private InMemoryBookRepository bookRepository;
+	private String[] vocabulary;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		vocabulary = new String[WORDS];
+		for (int i = 0; i < WORDS; i++) {
+			vocabulary[i] = Integer.toString(i * 7919 + 100_000, 36);
+		}
+		bookRepository = new InMemoryBookRepository();
+		for (int i = 0; i < catalogueSize; i++) {
+			StringBuilder title = new StringBuilder();
+			for (int j = 0; j < WORDS_PER_TITLE; j++) {
+				title.append(word(random.nextDouble())).append(' ');
+			}
+			bookRepository.addBook(Book.builder()
+				.isbn(String.valueOf(i))
+				.title(title.toString())
+				.author("Author " + (i % 10_000))
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+	}
+
+	@Benchmark
+	public List<Book> searchTwoWords() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return bookRepository.searchBooks(word(random.nextDouble()) + " " + word(random.nextDouble()), 20);
+	}
+
+	@Benchmark
+	public List<Book> searchPrefix() {
+		String word = word(ThreadLocalRandom.current().nextDouble());
+		return bookRepository.searchBooks(word.substring(0, Math.min(3, word.length())), 20);
+	}
+
+	/**
+	 * It picks a word with a probability that falls with its rank, a few words are in many titles.
+	 */
+	private String word(double uniform) {
+		return vocabulary[(int) (Math.pow(uniform, 3) * WORDS)];
+	}
+}
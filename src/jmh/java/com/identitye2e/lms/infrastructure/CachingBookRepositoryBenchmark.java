@@ -0,0 +1,153 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * It looks books up by isbn and author through a repository that takes backendMicros for every read, with and
+ * without CachingBookRepository in front of it. Lookups are skewed so that a small share of the catalogue gets most
+ * of them, like popular titles do. The hits and misses secondary results count the lookups served without and with
+ * a read of the backend, hits / (hits + misses) is the hit ratio of the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class CachingBookRepositoryBenchmark {
+
+	private static final int BOOKS = 100_000;
+	private static final int AUTHORS = 1000;
+
+	@Param({"none", "lru"})
+	String cache;
+
+	@Param({"10000"})
+	int maxBooks;
+
+	@Param({"50"})
+	int backendMicros;
+
+	private BookRepository bookRepository;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() {
+		BookRepository backend = new SlowBookRepository(TimeUnit.MICROSECONDS.toNanos(backendMicros));
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.format("978%010d", i);
+			backend.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + (i % AUTHORS))
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		bookRepository = "lru".equals(cache) ? new CachingBookRepository(backend, maxBooks, AUTHORS) : backend;
+	}
+
+	@Benchmark
+	public Optional<Book> findBookByISBN(Lookups lookups) {
+		long misses = lookups.misses;
+		Optional<Book> book = bookRepository.findBookByISBN(isbns[skewedIndex(BOOKS)]);
+		lookups.count(misses);
+		return book;
+	}
+
+	@Benchmark
+	public List<Book> findBooksByAuthor(Lookups lookups) {
+		long misses = lookups.misses;
+		List<Book> books = bookRepository.findBooksByAuthor("Author " + skewedIndex(AUTHORS), null, 20);
+		lookups.count(misses);
+		return books;
+	}
+
+	/**
+	 * The lookups of a benchmark thread, reported by JMH next to the throughput. The backend counts a miss on the
+	 * Lookups of the thread that reads it, so a lookup that left misses unchanged was a hit.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Lookups {
+
+		private static final ThreadLocal<Lookups> CURRENT = new ThreadLocal<>();
+
+		public long hits;
+		public long misses;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			hits = 0;
+			misses = 0;
+			CURRENT.set(this);
+		}
+
+		private void count(long missesBefore) {
+			if (misses == missesBefore) {
+				hits++;
+			}
+		}
+
+		private static void miss() {
+			Lookups lookups = CURRENT.get();
+			if (lookups != null) {
+				lookups.misses++;
+			}
+		}
+	}
+
+	/**
+	 * It returns an index below bound where lower indexes are far more likely, about 80% of the draws fall in the
+	 * lowest 10% of the range.
+	 */
+	private static int skewedIndex(int bound) {
+		double uniform = ThreadLocalRandom.current().nextDouble();
+		return (int) (bound * Math.pow(uniform, 10));
+	}
+
+	/**
+	 * This repository waits before every read, like a remote store would.
+	 */
+	private static final class SlowBookRepository extends InMemoryBookRepository {
+
+		private final long readNanos;
+
+		private SlowBookRepository(long readNanos) {
+			this.readNanos = readNanos;
+		}
+
+		private void read() {
+			Lookups.miss();
+			LockSupport.parkNanos(readNanos);
+		}
+
+		@Override
+		public Optional<Book> findBookByISBN(String isbn) {
+			read();
+			return super.findBookByISBN(isbn);
+		}
+
+		@Override
+		public List<Book> findBooksByAuthor(String author) {
+			read();
+			return super.findBooksByAuthor(author);
+		}
+
+		@Override
+		public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+			read();
+			return super.findBooksByAuthor(author, afterIsbn, limit);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * It measures the journal write throughput under each fsync policy, where concurrent writers share a group commit,
+ * and the time it takes to recover a repository from a log.
+ */
+@Fork(1)
+public class FileBookJournalBenchmark {
+
+	private static final int BOOKS = 1024;
+
+	@State(Scope.Benchmark)
+	public static class Journaled {
+
+		@Param({"ALWAYS", "INTERVAL", "NEVER"})
+		FileBookJournal.FsyncPolicy fsyncPolicy;
+
+		InMemoryBookRepository repository;
+		FileBookJournal journal;
+		String[] isbns;
+		Path directory;
+
+		@Setup
+		public void setUp() throws IOException {
+			directory = Files.createTempDirectory("journal");
+			repository = new InMemoryBookRepository();
+			journal = FileBookJournal.open(directory, fsyncPolicy, 10, 0, repository);
+			isbns = new String[BOOKS];
+			for (int i = 0; i < BOOKS; i++) {
+				isbns[i] = String.valueOf(i);
+				repository.addBook(book(isbns[i], 1_000_000));
+			}
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			journal.close();
+			delete(directory);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Recovery {
+
+		@Param({"100000", "1000000"})
+		int records;
+
+		Path directory;
+
+		@Setup
+		public void setUp() throws IOException {
+			directory = Files.createTempDirectory("journal");
+			InMemoryBookRepository repository = new InMemoryBookRepository();
+			FileBookJournal journal = FileBookJournal.open(directory, FileBookJournal.FsyncPolicy.NEVER, 10, 0, repository);
+			for (int i = 0; i < records; i++) {
+				String isbn = String.valueOf(i % BOOKS);
+				if (i < BOOKS) {
+					repository.addBook(book(isbn, records));
+				} else {
+					repository.decrementAvailableCopies(isbn);
+				}
+			}
+			journal.close();
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			delete(directory);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	@Threads(8)
+	public Optional<Book> borrowAndReturn(Journaled journaled) {
+		String isbn = journaled.isbns[ThreadLocalRandom.current().nextInt(BOOKS)];
+		journaled.repository.decrementAvailableCopies(isbn);
+		return journaled.repository.incrementAvailableCopies(isbn);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public InMemoryBookRepository recover(Recovery recovery) throws IOException {
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal.open(recovery.directory, FileBookJournal.FsyncPolicy.NEVER, 10, 0, repository).close();
+		return repository;
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	private static Book book(String isbn, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author("Author " + isbn)
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
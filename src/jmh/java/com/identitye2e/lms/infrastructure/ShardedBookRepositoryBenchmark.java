@@ -0,0 +1,122 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * It runs a cluster of nodes shards in this JVM, each reached through a LoopbackBookRepository with a round trip of
+ * roundTripMicros and served by WORKERS threads that spend serviceMicros on every request, standing in for the CPUs
+ * of a node. Borrows and returns go to one node while lookups by author go to all of them, so the first should scale
+ * with the nodes and the second should not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class ShardedBookRepositoryBenchmark {
+
+	private static final int BOOKS = 100_000;
+	private static final int AUTHORS = 1000;
+	private static final int WORKERS = 2;
+
+	@Param({"1", "2", "4", "8"})
+	int nodes;
+
+	@Param({"100"})
+	int roundTripMicros;
+
+	@Param({"20"})
+	int serviceMicros;
+
+	private ExecutorService executor;
+	private ShardedBookRepository bookRepository;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() {
+		List<LoopbackBookRepository> shards = new ArrayList<>(nodes);
+		for (int i = 0; i < nodes; i++) {
+			shards.add(new LoopbackBookRepository("node-" + i,
+				new BusyBookRepository(TimeUnit.MICROSECONDS.toNanos(serviceMicros)), WORKERS, roundTripMicros));
+		}
+		executor = Executors.newCachedThreadPool();
+		bookRepository = new ShardedBookRepository(shards, executor);
+		isbns = new String[BOOKS];
+		List<Book> books = new ArrayList<>(BOOKS);
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.format("978%010d", i);
+			books.add(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + (i % AUTHORS))
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+		bookRepository.addBooks(books);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		bookRepository.close();
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public Optional<Book> borrowAndReturn() {
+		String isbn = isbns[ThreadLocalRandom.current().nextInt(BOOKS)];
+		BookResult borrowed = bookRepository.decrementAvailableCopies(isbn);
+		return borrowed.isOk() ? bookRepository.incrementAvailableCopies(isbn) : Optional.empty();
+	}
+
+	@Benchmark
+	public List<Book> findBooksByAuthor() {
+		return bookRepository.findBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(AUTHORS), null, 20);
+	}
+
+	/**
+	 * This repository keeps its worker thread for a while on every borrow, return and lookup by author, like the
+	 * work a node does for a request.
+	 */
+	private static final class BusyBookRepository extends InMemoryBookRepository {
+
+		private final long serviceNanos;
+
+		private BusyBookRepository(long serviceNanos) {
+			this.serviceNanos = serviceNanos;
+		}
+
+		@Override
+		public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+			LockSupport.parkNanos(serviceNanos);
+			return super.decrementAvailableCopiesAsync(isbn);
+		}
+
+		@Override
+		public CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+			LockSupport.parkNanos(serviceNanos);
+			return super.incrementAvailableCopiesAsync(isbn);
+		}
+
+		@Override
+		public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+			LockSupport.parkNanos(serviceNanos);
+			return super.findBooksByAuthor(author, afterIsbn, limit);
+		}
+	}
+}
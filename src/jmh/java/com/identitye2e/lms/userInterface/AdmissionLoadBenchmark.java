@@ -0,0 +1,155 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.LmsApplication;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * It overloads the application with many more client threads than servlet threads borrowing books, with the journal
+ * forced on every change, once without and once with admission control. Without it every request waits in Tomcat's
+ * queue, with it the requests above the concurrency limit are answered with 429 at once. The 429s are counted apart
+ * from the served requests, whose latency alone is compared between both runs, so the fast rejections do not pull it
+ * down. The rate limit is set high enough that only the concurrency limit sheds requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class AdmissionLoadBenchmark {
+
+	private static final int BOOKS = 10_000;
+
+	@Param({"false", "true"})
+	boolean admission;
+
+	@Param({"16"})
+	int servletThreads;
+
+	private ConfigurableApplicationContext context;
+	private Path directory;
+	private String baseUrl;
+	private String[] isbns;
+
+	/**
+	 * The responses of an iteration by status, reported next to the score. Event counters are added up over the
+	 * iterations, which percentiles cannot be, so the latency of the served requests is reported as its total,
+	 * servedMillis / served being the mean, and as the number of them slower than the 20 ms latency target, 100 ms
+	 * and 1 s.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Responses {
+
+		private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+		public long served;
+		public long shed;
+		public long errors;
+		public double servedMillis;
+		public long servedSlowerThan20Ms;
+		public long servedSlowerThan100Ms;
+		public long servedSlowerThan1s;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			served = 0;
+			shed = 0;
+			errors = 0;
+			servedMillis = 0;
+			servedSlowerThan20Ms = 0;
+			servedSlowerThan100Ms = 0;
+			servedSlowerThan1s = 0;
+		}
+
+		private void count(int status, long nanos) {
+			if (status == 429) {
+				shed++;
+			} else if (status < 200 || status >= 300) {
+				errors++;
+			} else {
+				served++;
+				servedMillis += nanos / (double) MILLISECOND;
+				servedSlowerThan20Ms += nanos > 20 * MILLISECOND ? 1 : 0;
+				servedSlowerThan100Ms += nanos > 100 * MILLISECOND ? 1 : 0;
+				servedSlowerThan1s += nanos > 1000 * MILLISECOND ? 1 : 0;
+			}
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		//keep a connection per client thread alive instead of the default of 5
+		System.setProperty("http.maxConnections", "1024");
+		directory = Files.createTempDirectory("lms-admission");
+		context = new SpringApplicationBuilder(LmsApplication.class).run(
+			"--server.port=0",
+			"--server.tomcat.threads.max=" + servletThreads,
+			"--lms.persistence.enabled=true",
+			"--lms.persistence.directory=" + directory,
+			"--lms.persistence.fsync=always",
+			"--lms.admission.enabled=" + admission,
+			"--lms.admission.rate-per-second=1000000",
+			"--lms.admission.burst=1000000",
+			"--lms.admission.initial-limit=" + servletThreads,
+			"--lms.admission.min-limit=1",
+			"--lms.admission.latency-target-ms=20",
+			"--logging.level.root=warn");
+		baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/book";
+
+		Library library = context.getBean(Library.class);
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		context.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public int borrow(Responses responses) throws IOException {
+		long start = System.nanoTime();
+		String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/borrow?isbn=" + isbn).openConnection();
+		connection.setRequestMethod("PUT");
+		int status = connection.getResponseCode();
+		try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[1024];
+			while (body != null && body.read(buffer) >= 0) {
+				// drain
+			}
+		}
+		responses.count(status, System.nanoTime() - start);
+		return status;
+	}
+}
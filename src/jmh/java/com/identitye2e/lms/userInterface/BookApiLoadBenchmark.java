@@ -0,0 +1,111 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.LmsApplication;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * It boots the application with a small servlet thread pool and the journal forced on every change, then borrows and
+ * returns books over HTTP from many more client threads than servlet threads, once through BookController and once
+ * through AsyncBookController. The blocking controller holds a servlet thread while each change is forced to disk,
+ * the async one releases it, which is where the two differ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class BookApiLoadBenchmark {
+
+	private static final int BOOKS = 10_000;
+
+	@Param({"book", "async/book"})
+	String api;
+
+	@Param({"always", "interval"})
+	String fsync;
+
+	@Param({"16"})
+	int servletThreads;
+
+	private ConfigurableApplicationContext context;
+	private Path directory;
+	private String baseUrl;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() throws IOException {
+		//keep a connection per client thread alive instead of the default of 5
+		System.setProperty("http.maxConnections", "1024");
+		directory = Files.createTempDirectory("lms-load");
+		context = new SpringApplicationBuilder(LmsApplication.class).run(
+			"--server.port=0",
+			"--server.tomcat.threads.max=" + servletThreads,
+			"--lms.persistence.enabled=true",
+			"--lms.persistence.directory=" + directory,
+			"--lms.persistence.fsync=" + fsync,
+			"--logging.level.root=warn");
+		baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/" + api;
+
+		Library library = context.getBean(Library.class);
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		context.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public int borrowAndReturn() throws IOException {
+		String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+		put(baseUrl + "/borrow?isbn=" + isbn);
+		return put(baseUrl + "/return?isbn=" + isbn);
+	}
+
+	/**
+	 * It sends a PUT and reads the whole response, so the connection goes back to the keep-alive cache.
+	 */
+	private static int put(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod("PUT");
+		int status = connection.getResponseCode();
+		try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[1024];
+			while (body != null && body.read(buffer) >= 0) {
+				// drain
+			}
+		}
+		return status;
+	}
+}
@@ -0,0 +1,78 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.application.LibraryMetrics;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures the controller methods without the servlet stack, so the cost of serializing the responses can be
+ * told apart from the cost of the service underneath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookControllerBenchmark {
+
+	private static final int BOOKS = 10_000;
+	private static final int AUTHORS = 100;
+
+	private BookController bookController;
+	private String[] isbns;
+
+	@Setup
+	public void setUp() {
+		Library library = new Library(new InMemoryBookRepository(), new LibraryMetrics(true));
+		bookController = new BookController(library, new ObjectMapper());
+		isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + (i % AUTHORS))
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+	}
+
+	@Benchmark
+	public ResponseEntity<?> findBookByIsbn() {
+		return bookController.findBookByIsbn(randomIsbn(), null);
+	}
+
+	@Benchmark
+	public ResponseEntity<?> findBookByIsbnWithFields() {
+		return bookController.findBookByIsbn(randomIsbn(), "isbn,availableCopies");
+	}
+
+	@Benchmark
+	public MockHttpServletResponse findBooksByAuthor() throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		bookController.findBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(AUTHORS), null, null, null, response);
+		return response;
+	}
+
+	@Benchmark
+	public ResponseEntity<?> borrowAndReturn() {
+		String isbn = randomIsbn();
+		bookController.borrowBook(isbn, null, null);
+		return bookController.returnBook(isbn, null, null);
+	}
+
+	private String randomIsbn() {
+		return isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+	}
+}
@@ -0,0 +1,91 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.application.LibraryMetrics;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures the time CatalogueLoader takes to load a catalogue file into an empty in-memory repository on one
+ * thread and on one thread per processor. Titles and authors are drawn from a vocabulary, so the words of the search
+ * index are shared by many books as in a real catalogue.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class CatalogueLoaderBenchmark {
+
+	@Param({"1000000"})
+	int books;
+
+	@Param({"1", "0"})
+	int parallelism;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private Path file;
+	private CatalogueLoader loader;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = Files.createTempFile("catalogue", ".ndjson");
+		Random random = new Random(books);
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (int i = 0; i < books; i++) {
+				StringBuilder title = new StringBuilder(word(random.nextInt(50_000)));
+				for (int words = random.nextInt(5); words > 0; words--) {
+					title.append(' ').append(word(Math.min(random.nextInt(50_000), random.nextInt(50_000))));
+				}
+				Book book = Book.builder()
+					.isbn(String.valueOf(9_780_000_000_000L + i * 7919L % 10_000_000_000L))
+					.title(title.toString())
+					.author(word(random.nextInt(20_000)) + " " + word(random.nextInt(50_000)))
+					.publicationYear(1900 + random.nextInt(125))
+					.availableCopies(random.nextInt(4))
+					.build();
+				writer.write(objectMapper.writeValueAsString(book));
+				writer.newLine();
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void newRepository() {
+		LibraryMetrics metrics = new LibraryMetrics(true);
+		loader = new CatalogueLoader(new Library(new InMemoryBookRepository(), metrics), objectMapper, metrics,
+			file.toString(), parallelism);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public long load() throws IOException {
+		return loader.load(file).getAdded();
+	}
+
+	/**
+	 * It returns a made up word for a number, different numbers giving different words.
+	 */
+	private static String word(int number) {
+		StringBuilder word = new StringBuilder();
+		do {
+			word.append((char) ('a' + number % 26));
+			number /= 26;
+		} while (number > 0);
+		return word.append("on").toString();
+	}
+}
@@ -0,0 +1,138 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.LmsApplication;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * It boots the application and keeps ten thousand clients borrowing and returning books over keep-alive connections
+ * through BookController, once with Tomcat's pool of platform threads and once with a virtual thread per request.
+ * The clients are driven by a single selector thread, and responses, errors and latencies are reported as counters.
+ * The virtual mode needs Java 21, see the jdk21 profile, and both the
+ * server and the clients need a file descriptor per connection, so raise ulimit -n above twice the connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(1)
+@Fork(1)
+public class ConnectionLoadBenchmark {
+
+	private static final int BOOKS = 10_000;
+
+	@Param({"10000"})
+	int connections;
+
+	@Param({"platform", "virtual"})
+	String threads;
+
+	@Param({"always", "interval"})
+	String fsync;
+
+	private ConfigurableApplicationContext context;
+	private Path directory;
+	private HttpLoadClient client;
+
+	/**
+	 * The responses and errors of an iteration, reported next to the score. Event counters are added up over the
+	 * iterations, which percentiles cannot be, so latency is reported as its total, latencyMillis / responses being
+	 * the mean, and as the number of responses slower than 10 ms, 100 ms and 1 s, the tail being under 10 ms at p99
+	 * when slowerThan10Ms is under 1% of responses.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Responses {
+
+		private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+		public long responses;
+		public long errors;
+		public double latencyMillis;
+		public long slowerThan10Ms;
+		public long slowerThan100Ms;
+		public long slowerThan1s;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			responses = 0;
+			errors = 0;
+			latencyMillis = 0;
+			slowerThan10Ms = 0;
+			slowerThan100Ms = 0;
+			slowerThan1s = 0;
+		}
+
+		private void latency(long nanos) {
+			latencyMillis += nanos / (double) MILLISECOND;
+			if (nanos > 10 * MILLISECOND) {
+				slowerThan10Ms++;
+				if (nanos > 100 * MILLISECOND) {
+					slowerThan100Ms++;
+					if (nanos > 1000 * MILLISECOND) {
+						slowerThan1s++;
+					}
+				}
+			}
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("lms-connections");
+		context = new SpringApplicationBuilder(LmsApplication.class).run(
+			"--server.port=0",
+			"--server.tomcat.max-connections=" + (connections * 2),
+			"--server.tomcat.accept-count=" + connections,
+			"--server.tomcat.max-keep-alive-requests=-1",
+			"--lms.threads.virtual=" + "virtual".equals(threads),
+			"--lms.persistence.enabled=true",
+			"--lms.persistence.directory=" + directory,
+			"--lms.persistence.fsync=" + fsync,
+			"--logging.level.root=warn");
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+		Library library = context.getBean(Library.class);
+		String[] isbns = new String[BOOKS];
+		for (int i = 0; i < BOOKS; i++) {
+			isbns[i] = String.valueOf(i);
+			library.addBook(Book.builder()
+				.isbn(isbns[i])
+				.title("Title " + i)
+				.author("Author " + i)
+				.publicationYear(2000)
+				.availableCopies(1_000_000)
+				.build());
+		}
+		client = new HttpLoadClient(new InetSocketAddress("localhost", port), "/book", isbns, connections);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		client.close();
+		context.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void poll(Responses counters) throws IOException {
+		counters.responses += client.poll(10);
+		counters.errors += client.takeErrors();
+		client.takeLatencies(counters::latency);
+	}
+}
@@ -0,0 +1,230 @@
+package com.identitye2e.lms.userInterface;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * This is a minimal HTTP/1.1 client that keeps many keep-alive connections open from a single thread through a
+ * Selector, so a benchmark can hold far more concurrent clients than it could with a thread per client. Every
+ * connection borrows and returns its own book in turn and sends the next request as soon as the previous response
+ * has been read. A connection the server closes is opened again.
+ */
+final class HttpLoadClient implements Closeable {
+
+	private final InetSocketAddress address;
+	private final String basePath;
+	private final Selector selector;
+
+	private long[] latencies = new long[1 << 16];
+	private int latencyCount;
+	private long errors;
+
+	/**
+	 * It opens the connections, they are established by the following polls.
+	 *
+	 * @param address is the address of the server.
+	 * @param basePath is the path the borrow and return endpoints are under, such as /book.
+	 * @param isbns are the books to borrow, the connections take them in turn.
+	 * @param connections is the number of concurrent clients.
+	 */
+	HttpLoadClient(InetSocketAddress address, String basePath, String[] isbns, int connections) throws IOException {
+		this.address = address;
+		this.basePath = basePath;
+		this.selector = Selector.open();
+		for (int i = 0; i < connections; i++) {
+			connect(new Connection(isbns[i % isbns.length]));
+		}
+	}
+
+	/**
+	 * It waits for the connections that are ready and moves each of them on by one step.
+	 *
+	 * @param timeoutMillis is the longest time to wait for a ready connection.
+	 * @return the number of responses read.
+	 */
+	int poll(long timeoutMillis) throws IOException {
+		selector.select(timeoutMillis);
+		int responses = 0;
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			Connection connection = (Connection) key.attachment();
+			try {
+				if (key.isConnectable()) {
+					((SocketChannel) key.channel()).finishConnect();
+					send(key, connection);
+				} else if (key.isWritable()) {
+					write(key, connection);
+				} else if (key.isReadable() && read(key, connection)) {
+					responses++;
+					send(key, connection);
+				}
+			} catch (IOException e) {
+				errors++;
+				key.cancel();
+				key.channel().close();
+				connect(new Connection(connection.isbn));
+			}
+		}
+		return responses;
+	}
+
+	/**
+	 * @return the number of failed connections and error responses since the previous call.
+	 */
+	long takeErrors() {
+		long taken = errors;
+		errors = 0;
+		return taken;
+	}
+
+	/**
+	 * It hands the latencies of the responses since the previous call to consumer, in nanoseconds.
+	 */
+	void takeLatencies(LongConsumer consumer) {
+		for (int i = 0; i < latencyCount; i++) {
+			consumer.accept(latencies[i]);
+		}
+		latencyCount = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+	}
+
+	private void connect(Connection connection) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.connect(address);
+		channel.register(selector, SelectionKey.OP_CONNECT, connection);
+	}
+
+	private void send(SelectionKey key, Connection connection) throws IOException {
+		String action = connection.borrow ? "borrow" : "return";
+		connection.borrow = !connection.borrow;
+		connection.out = ByteBuffer.wrap(("PUT " + basePath + "/" + action + "?isbn=" + connection.isbn + " HTTP/1.1\r\n"
+			+ "Host: " + address.getHostString() + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		connection.sentAt = System.nanoTime();
+		write(key, connection);
+	}
+
+	private void write(SelectionKey key, Connection connection) throws IOException {
+		((SocketChannel) key.channel()).write(connection.out);
+		key.interestOps(connection.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	/**
+	 * It reads what has arrived and returns true once the whole response is there.
+	 */
+	private boolean read(SelectionKey key, Connection connection) throws IOException {
+		if (!connection.in.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(connection.in.capacity() * 2);
+			connection.in.flip();
+			larger.put(connection.in);
+			connection.in = larger;
+		}
+		if (((SocketChannel) key.channel()).read(connection.in) < 0) {
+			throw new EOFException("Connection closed by the server");
+		}
+		byte[] bytes = connection.in.array();
+		if (responseEnd(bytes, connection.in.position()) < 0) {
+			return false;
+		}
+		record(System.nanoTime() - connection.sentAt);
+		//the status code follows "HTTP/1.1 "
+		if (bytes[9] != '2') {
+			errors++;
+		}
+		connection.in.clear();
+		return true;
+	}
+
+	private void record(long latency) {
+		if (latencyCount == latencies.length) {
+			latencies = Arrays.copyOf(latencies, latencies.length * 2);
+		}
+		latencies[latencyCount++] = latency;
+	}
+
+	/**
+	 * It returns the length of the response at the start of bytes, framed by Content-Length or chunked, or -1 while it
+	 * is incomplete.
+	 */
+	private static int responseEnd(byte[] bytes, int length) {
+		int headersEnd = indexOf(bytes, 0, length, "\r\n\r\n");
+		if (headersEnd < 0) {
+			return -1;
+		}
+		int body = headersEnd + 4;
+		String headers = new String(bytes, 0, headersEnd, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+		int contentLength = headers.indexOf("\r\ncontent-length:");
+		if (contentLength >= 0) {
+			int valueStart = contentLength + "\r\ncontent-length:".length();
+			int valueEnd = headers.indexOf("\r\n", valueStart);
+			int end = body + Integer.parseInt(headers.substring(valueStart, valueEnd < 0 ? headers.length() : valueEnd).trim());
+			return end <= length ? end : -1;
+		}
+		if (!headers.contains("\r\ntransfer-encoding: chunked")) {
+			return body;
+		}
+		int position = body;
+		while (true) {
+			int sizeEnd = indexOf(bytes, position, length, "\r\n");
+			if (sizeEnd < 0) {
+				return -1;
+			}
+			int size = Integer.parseInt(new String(bytes, position, sizeEnd - position, StandardCharsets.US_ASCII).trim(), 16);
+			position = sizeEnd + 2 + size + 2;
+			if (position > length) {
+				return -1;
+			}
+			if (size == 0) {
+				return position;
+			}
+		}
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to, String text) {
+		outer:
+		for (int i = from; i <= to - text.length(); i++) {
+			for (int j = 0; j < text.length(); j++) {
+				if (bytes[i + j] != text.charAt(j)) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static final class Connection {
+
+		private final String isbn;
+		private boolean borrow = true;
+		private ByteBuffer out;
+		private ByteBuffer in = ByteBuffer.allocate(1024);
+		private long sentAt;
+
+		private Connection(String isbn) {
+			this.isbn = isbn;
+		}
+	}
+}
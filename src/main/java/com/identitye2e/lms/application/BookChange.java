@@ -0,0 +1,20 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import lombok.Value;
+
+/**
+ * This is a change made to the catalogue, numbered by the BookChangeLog in the order the changes were applied
+ */
+@Value
+public class BookChange {
+
+	public enum Type { ADDED, REMOVED, BORROWED, RETURNED }
+
+	long sequence;
+	Type type;
+	String isbn;
+	//The book as the change left it, or as it was when it was removed
+	Book book;
+	long timestamp;
+}
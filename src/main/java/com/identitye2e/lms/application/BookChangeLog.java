@@ -0,0 +1,243 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This is the log of the changes made through the Library, kept in a ring of the last capacity changes so that other
+ * systems can follow the catalogue instead of polling it. A change gets its sequence number while it is applied,
+ * under the STRIPES monitor of its isbn, so the changes of a book are numbered in the order they were applied. It
+ * can only be read once the repository made it durable and every change numbered before it can be read too, so a
+ * reader never sees a change that may be lost or sees changes out of order.
+ *
+ * A change that turned out not to happen, such as a borrow of an unavailable book, leaves its number unused, so the
+ * sequence numbers of the changes read grow but may skip. The log lives in memory only and starts from 1 on restart.
+ */
+@Component
+public class BookChangeLog {
+
+	static final int DEFAULT_CAPACITY = 65536;
+	private static final int STRIPES = 256;
+
+	private final Object[] stripes = new Object[STRIPES];
+	private final AtomicReferenceArray<Slot> slots;
+	private final int mask;
+	//The last sequence number handed out, and the last one every change up to which can be read
+	private final AtomicLong reserved = new AtomicLong();
+	private final AtomicLong published = new AtomicLong();
+	//Completed, and replaced, whenever published moves
+	private final AtomicReference<CompletableFuture<Void>> signal = new AtomicReference<>(new CompletableFuture<>());
+
+	/**
+	 * @param capacity is the number of changes kept, rounded up to a power of two.
+	 */
+	public BookChangeLog(@Value("${lms.changes.capacity:65536}") int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Change log capacity must be between 1 and 2^30: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * The changes read after a sequence number.
+	 */
+	@lombok.Value
+	public static class Page {
+		List<BookChange> changes;
+		//The sequence number to read after next time
+		long last;
+		//Whether changes after the sequence number read after were dropped from the ring before they were read
+		boolean missed;
+	}
+
+	/**
+	 * It applies a change to a book and logs it with one sequence number per type, such as a return and a borrow for
+	 * a copy handed straight to a hold. The change is applied under the stripe of the isbn, so it should only start
+	 * the change and leave waiting for its durability to the returned future, whose completion makes it readable.
+	 *
+	 * @param isbn is the isbn of the book changed.
+	 * @param change applies the change.
+	 * @param changed returns the book as the change left it, or null if nothing changed.
+	 * @param types are the types of the changes to log.
+	 * @return the future of the change
+	 */
+	<T> CompletableFuture<T> record(String isbn, Supplier<CompletableFuture<T>> change, Function<T, Book> changed,
+			BookChange.Type... types) {
+		CompletableFuture<T> result;
+		long first;
+		synchronized (stripe(isbn)) {
+			result = change.get();
+			first = reserved.getAndAdd(types.length) + 1;
+		}
+		result.whenComplete((value, failure) -> {
+			Book book = failure == null ? changed.apply(value) : null;
+			long timestamp = System.currentTimeMillis();
+			for (int i = 0; i < types.length; i++) {
+				fill(new Slot(first + i, book == null ? null : new BookChange(first + i, types[i], isbn, book, timestamp)));
+			}
+			advance();
+		});
+		return result;
+	}
+
+	/**
+	 * It applies a change to many books at once, such as a bulk add, and logs a change of one type for every book it
+	 * changed. The sequence numbers are reserved before the change starts, so before any of the books is changed, and
+	 * every other change to one of the books that sees it changed is numbered after it. Unlike record the change
+	 * should be durable once it returns, its changes are readable at once.
+	 *
+	 * @param count is the number of books the change may change.
+	 * @param change applies the change.
+	 * @param changed returns the books as the change left them, at most count of them.
+	 * @param type is the type of the changes to log.
+	 * @return the result of the change
+	 */
+	<T> T recordAll(int count, Supplier<T> change, Function<T, List<Book>> changed, BookChange.Type type) {
+		long first = reserved.getAndAdd(count) + 1;
+		List<Book> books = Collections.emptyList();
+		try {
+			T result = change.get();
+			books = changed.apply(result);
+			return result;
+		} finally {
+			//The numbers of the books not changed are left unused, or all of them if the change failed
+			long timestamp = System.currentTimeMillis();
+			for (int i = 0; i < count; i++) {
+				Book book = i < books.size() ? books.get(i) : null;
+				long sequence = first + i;
+				fill(new Slot(sequence, book == null ? null : new BookChange(sequence, type, book.getIsbn(), book, timestamp)));
+			}
+			advance();
+		}
+	}
+
+	/**
+	 * It returns up to limit changes after a sequence number in the order they were applied. A reader that fell
+	 * behind by more than the capacity, or a sequence number from before a restart, gets the oldest changes kept and
+	 * is told that changes were missed.
+	 *
+	 * @param after is the sequence number of the last change read, 0 to read from the oldest change kept.
+	 * @param limit is the maximum number of changes to return.
+	 * @return the changes, the sequence number to read after next time and whether changes were missed
+	 */
+	Page read(long after, int limit) {
+		long last = published.get();
+		boolean missed = false;
+		if (after > last) {
+			after = 0;
+			missed = true;
+		}
+		long first = Math.max(after + 1, last - mask);
+		if (first > after + 1 && after > 0) {
+			missed = true;
+		}
+		if (first > last || limit < 1) {
+			return new Page(Collections.emptyList(), Math.max(after, first - 1), missed);
+		}
+		List<BookChange> changes = new ArrayList<>((int) Math.min(limit, Math.min(last - first + 1, 256)));
+		long sequence = first;
+		for (; sequence <= last && changes.size() < limit; sequence++) {
+			Slot slot = slots.get(index(sequence));
+			if (slot == null || slot.sequence != sequence) {
+				//Overwritten while it was read, or before it was made durable
+				missed = true;
+			} else if (slot.change != null) {
+				changes.add(slot.change);
+			}
+		}
+		return new Page(changes, sequence - 1, missed);
+	}
+
+	/**
+	 * It returns a future completed once a change after a sequence number can be read, so a reader that has read
+	 * everything waits for the next change without polling.
+	 *
+	 * @param after is the sequence number of the last change read.
+	 * @return the future, completed already if there is a change to read
+	 */
+	CompletableFuture<Void> whenPublishedAfter(long after) {
+		CompletableFuture<Void> next = signal.get();
+		return published.get() != after ? CompletableFuture.completedFuture(null) : next;
+	}
+
+	/**
+	 * @return the sequence number of the last change that can be read
+	 */
+	long lastSequence() {
+		return published.get();
+	}
+
+	private void fill(Slot slot) {
+		int index = index(slot.sequence);
+		while (true) {
+			Slot current = slots.get(index);
+			if (current != null && current.sequence > slot.sequence) {
+				//A change numbered a whole ring later came first, this one is dropped
+				return;
+			}
+			if (slots.compareAndSet(index, current, slot)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * It moves published over every change in sequence that has been filled, and wakes the waiting readers.
+	 */
+	private void advance() {
+		boolean advanced = false;
+		while (true) {
+			long last = published.get();
+			Slot next = slots.get(index(last + 1));
+			if (next == null || next.sequence < last + 1) {
+				break;
+			}
+			//A later sequence in the slot means this one was dropped, it is passed over
+			if (published.compareAndSet(last, last + 1)) {
+				advanced = true;
+			}
+		}
+		if (advanced) {
+			signal.getAndSet(new CompletableFuture<>()).complete(null);
+		}
+	}
+
+	private int index(long sequence) {
+		return (int) (sequence & mask);
+	}
+
+	private Object stripe(String isbn) {
+		int hash = isbn == null ? 0 : isbn.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * A place in the ring holding the change with a sequence number, or no change if none happened.
+	 */
+	private static final class Slot {
+
+		private final long sequence;
+		private final BookChange change;
+
+		private Slot(long sequence, BookChange change) {
+			this.sequence = sequence;
+			this.change = change;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.identitye2e.lms.application;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is the summary of a bulk add, it holds the number of books added and one entry per rejected book
+ */
+@Getter
+public class BulkAddResult {
+
+	private int added;
+	private final List<Rejection> rejected = new ArrayList<>();
+
+	void added(int count) {
+		added += count;
+	}
+
+	void reject(int index, String isbn, String reason) {
+		rejected.add(new Rejection(index, isbn, reason));
+	}
+
+	/**
+	 * A rejected book, identified by its position in the request and its isbn
+	 */
+	@Value
+	public static class Rejection {
+		int index;
+		String isbn;
+		String reason;
+	}
+}
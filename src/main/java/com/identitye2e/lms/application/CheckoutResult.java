@@ -0,0 +1,42 @@
+package com.identitye2e.lms.application;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is the summary of a batch borrow or return, it holds the number of books borrowed or returned and one entry
+ * per isbn of the request in the same order
+ */
+@Getter
+public class CheckoutResult {
+
+	/**
+	 * The outcome of one isbn, CANCELLED when it was not applied, or undone, because another isbn of an all-or-nothing
+	 * batch failed, FAILED when the repository failed to apply or undo it, so its copy may or may not have moved
+	 */
+	public enum Status { OK, NOT_FOUND, UNAVAILABLE, CANCELLED, FAILED }
+
+	private int succeeded;
+	private final List<Item> items = new ArrayList<>();
+
+	void add(String isbn, Status status, Integer availableCopies) {
+		items.add(new Item(items.size(), isbn, status, availableCopies));
+		if (status == Status.OK) {
+			succeeded++;
+		}
+	}
+
+	/**
+	 * The outcome for an isbn, identified by its position in the request, with the copies left after it
+	 */
+	@Value
+	public static class Item {
+		int index;
+		String isbn;
+		Status status;
+		Integer availableCopies;
+	}
+}
@@ -0,0 +1,35 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.BookResult;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A client's place in the queue for a book that had no copies left. The result completes with the borrowed book once
+ * a returned copy is handed to the hold, with not found if the book is removed, and with unavailable if the hold is
+ * cancelled or expires first.
+ */
+@Getter
+public final class Hold {
+
+	public enum Status { WAITING, FULFILLED, CANCELLED, EXPIRED }
+
+	private final long id;
+	private final String isbn;
+	//Milliseconds since the epoch after which a waiting hold is dropped and a fulfilled one is forgotten
+	private final long expiresAt;
+	private final CompletableFuture<BookResult> result = new CompletableFuture<>();
+	//Changed by HoldQueue under the stripe of the isbn, before result is completed
+	private volatile Status status = Status.WAITING;
+
+	public Hold(long id, String isbn, long expiresAt) {
+		this.id = id;
+		this.isbn = isbn;
+		this.expiresAt = expiresAt;
+	}
+
+	void setStatus(Status status) {
+		this.status = status;
+	}
+}
@@ -0,0 +1,292 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.BookResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This is the queue of holds on books that ran out of copies. Every isbn has its own FIFO queue of waiting holds, and
+ * the queues are guarded by STRIPES monitors picked by the hash of the isbn, so holds and returns of a popular book
+ * only wait for each other and for the few books sharing its stripe. A returned copy is handed to the first waiting
+ * hold instead of being put back, so a client holding the book gets it before anyone polling borrow.
+ *
+ * Holds live in memory only, they are lost on restart. A hand-off changes no book in the repository, the copy stays
+ * borrowed, so the journal writes no record of it and restores the right number of available copies without knowing
+ * which hold the copy went to.
+ * The results of the holds are completed after the stripe is released, so no caller runs under a stripe, and no
+ * stripe is held while a change waits to be durable.
+ */
+@Component
+public class HoldQueue implements Closeable {
+
+	static final long DEFAULT_EXPIRY_SECONDS = 600;
+	private static final int STRIPES = 64;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	//This map has ISBN as key and its waiting holds in arrival order as value, guarded by the stripe of the ISBN
+	private final ConcurrentHashMap<String, ArrayDeque<Hold>> queues = new ConcurrentHashMap<>();
+	//This map has the hold id as key and the hold as value, while it waits and until a fulfilled one expires
+	private final ConcurrentHashMap<Long, Hold> holds = new ConcurrentHashMap<>();
+	private final AtomicLong ids = new AtomicLong();
+	private final LongAdder waiting = new LongAdder();
+	private final long expiryMillis;
+	private ScheduledExecutorService expiry;
+
+	public HoldQueue(@Value("${lms.holds.expiry-seconds:600}") long expirySeconds) {
+		this.expiryMillis = TimeUnit.SECONDS.toMillis(expirySeconds);
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * It borrows a copy of the book, and queues a hold on it if no copy is available. The borrow is started under the
+	 * stripe of the isbn and waited for after the stripe is released, so borrow should apply the change and leave the
+	 * waiting for its durability to the returned future. A copy put back on the stripe between the borrow and the
+	 * queueing of the hold makes the hold borrow again, so it is either borrowed or handed to the new hold.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @param borrow borrows a copy of the book.
+	 * @return the hold, already completed unless it waits for a copy
+	 */
+	Hold place(String isbn, Supplier<CompletableFuture<BookResult>> borrow) {
+		Hold hold = new Hold(ids.incrementAndGet(), isbn, System.currentTimeMillis() + expiryMillis);
+		Stripe stripe = stripe(isbn);
+		BookResult result;
+		boolean queued = false;
+		do {
+			CompletableFuture<BookResult> borrowed;
+			long putBacks;
+			synchronized (stripe) {
+				borrowed = borrow.get();
+				putBacks = stripe.putBacks;
+			}
+			result = join(borrowed);
+			if (result.getStatus() == BookResult.Status.UNAVAILABLE) {
+				queued = queue(hold, stripe, putBacks);
+			}
+		} while (result.getStatus() == BookResult.Status.UNAVAILABLE && !queued);
+
+		if (queued) {
+			expiry().schedule(() -> expire(hold), expiryMillis, TimeUnit.MILLISECONDS);
+		} else {
+			hold.setStatus(result.isOk() ? Hold.Status.FULFILLED : Hold.Status.CANCELLED);
+			hold.getResult().complete(result);
+		}
+		return hold;
+	}
+
+	/**
+	 * It hands a returned copy to the first waiting hold on the book, or puts the copy back if no hold waits. The copy
+	 * is put back under the stripe of the isbn, so putBack should apply the change and leave the waiting for its
+	 * durability to the returned future.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @param putBack puts a copy of the book back.
+	 * @param find looks the book up for the hold the copy is handed to.
+	 * @return the future book the copy was returned to, or the not found result
+	 */
+	CompletableFuture<BookResult> release(String isbn, Supplier<CompletableFuture<BookResult>> putBack,
+			Supplier<BookResult> find) {
+		Stripe stripe = stripe(isbn);
+		Hold next;
+		BookResult book;
+		synchronized (stripe) {
+			ArrayDeque<Hold> queue = queues.get(isbn);
+			if (queue == null) {
+				stripe.putBacks++;
+				return putBack.get();
+			}
+			book = find.get();
+			if (!book.isOk()) {
+				return CompletableFuture.completedFuture(book);
+			}
+			next = queue.poll();
+			if (queue.isEmpty()) {
+				queues.remove(isbn);
+			}
+			next.setStatus(Hold.Status.FULFILLED);
+			waiting.decrement();
+		}
+		next.getResult().complete(book);
+		return CompletableFuture.completedFuture(book);
+	}
+
+	/**
+	 * It returns a hold that is waiting or was fulfilled and has not expired yet.
+	 *
+	 * @param id is the id of a hold.
+	 * @return the hold wrapped as an Optional<>, Optional.empty() if there is no such hold
+	 */
+	Optional<Hold> find(long id) {
+		return Optional.ofNullable(holds.get(id));
+	}
+
+	/**
+	 * It returns how many holds on the same book are ahead of a hold, counting the hold itself.
+	 *
+	 * @param hold is a hold.
+	 * @return the position of the hold from 1, or 0 once it no longer waits
+	 */
+	int position(Hold hold) {
+		synchronized (stripe(hold.getIsbn())) {
+			ArrayDeque<Hold> queue = queues.get(hold.getIsbn());
+			if (queue == null || hold.getStatus() != Hold.Status.WAITING) {
+				return 0;
+			}
+			int position = 1;
+			for (Hold queued : queue) {
+				if (queued == hold) {
+					return position;
+				}
+				position++;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * It cancels a waiting hold, a fulfilled hold is left alone as its copy has been borrowed.
+	 *
+	 * @param id is the id of a hold.
+	 * @return the hold wrapped as an Optional<>, Optional.empty() if there is no such hold
+	 */
+	Optional<Hold> cancel(long id) {
+		Hold hold = holds.get(id);
+		if (hold == null) {
+			return Optional.empty();
+		}
+		if (drop(hold, Hold.Status.CANCELLED)) {
+			hold.getResult().complete(BookResult.unavailable());
+		}
+		return Optional.of(hold);
+	}
+
+	/**
+	 * It cancels every waiting hold on a book that was removed.
+	 *
+	 * @param isbn is the isbn of a book.
+	 */
+	void cancelAll(String isbn) {
+		ArrayDeque<Hold> queue;
+		synchronized (stripe(isbn)) {
+			queue = queues.remove(isbn);
+			if (queue == null) {
+				return;
+			}
+			for (Hold hold : queue) {
+				hold.setStatus(Hold.Status.CANCELLED);
+				holds.remove(hold.getId());
+				waiting.decrement();
+			}
+		}
+		for (Hold hold : queue) {
+			hold.getResult().complete(BookResult.notFound());
+		}
+	}
+
+	/**
+	 * @return the number of holds waiting for a copy
+	 */
+	long countWaiting() {
+		return waiting.sum();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (expiry != null) {
+			expiry.shutdownNow();
+		}
+	}
+
+	private void expire(Hold hold) {
+		if (drop(hold, Hold.Status.EXPIRED)) {
+			hold.getResult().complete(BookResult.unavailable());
+		}
+		holds.remove(hold.getId());
+	}
+
+	/**
+	 * It takes a waiting hold out of its queue and gives it the new status.
+	 *
+	 * @return true if the hold was waiting
+	 */
+	private boolean drop(Hold hold, Hold.Status status) {
+		synchronized (stripe(hold.getIsbn())) {
+			if (hold.getStatus() != Hold.Status.WAITING) {
+				return false;
+			}
+			ArrayDeque<Hold> queue = queues.get(hold.getIsbn());
+			queue.remove(hold);
+			if (queue.isEmpty()) {
+				queues.remove(hold.getIsbn());
+			}
+			hold.setStatus(status);
+			holds.remove(hold.getId());
+			waiting.decrement();
+			return true;
+		}
+	}
+
+	/**
+	 * It queues a hold whose borrow found no copy, unless a copy was put back on the stripe since the borrow.
+	 *
+	 * @return false if the hold should borrow again
+	 */
+	private boolean queue(Hold hold, Stripe stripe, long putBacks) {
+		synchronized (stripe) {
+			if (stripe.putBacks != putBacks) {
+				return false;
+			}
+			queues.computeIfAbsent(hold.getIsbn(), key -> new ArrayDeque<>()).add(hold);
+			holds.put(hold.getId(), hold);
+			waiting.increment();
+			return true;
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private Stripe stripe(String isbn) {
+		int hash = isbn.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * The monitor of the queues of a share of the isbns. It counts the copies put back on the shelf, so a hold whose
+	 * borrow found no copy can tell whether one came back before the hold was queued.
+	 */
+	private static final class Stripe {
+		private long putBacks;
+	}
+
+	/**
+	 * It returns the thread expiring the holds, started with the first hold that waits.
+	 */
+	private synchronized ScheduledExecutorService expiry() {
+		if (expiry == null) {
+			expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "book-hold-expiry");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return expiry;
+	}
+}
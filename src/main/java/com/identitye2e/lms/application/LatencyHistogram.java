@@ -0,0 +1,57 @@
+package com.identitye2e.lms.application;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is a latency histogram with fixed buckets from 1 microsecond to 10 seconds, three per decade. Recording is a
+ * binary search over the bounds and two LongAdder increments, so concurrent recorders do not contend and nothing is
+ * allocated.
+ */
+class LatencyHistogram {
+
+	static final long[] BOUNDS_NANOS = {
+		1_000L, 2_500L, 5_000L,
+		10_000L, 25_000L, 50_000L,
+		100_000L, 250_000L, 500_000L,
+		1_000_000L, 2_500_000L, 5_000_000L,
+		10_000_000L, 25_000_000L, 50_000_000L,
+		100_000_000L, 250_000_000L, 500_000_000L,
+		1_000_000_000L, 2_500_000_000L, 5_000_000_000L,
+		10_000_000_000L
+	};
+
+	//The last bucket counts the latencies above the largest bound
+	private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+	private final LongAdder sumNanos = new LongAdder();
+
+	LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void record(long nanos) {
+		int bucket = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+		buckets[bucket < 0 ? -bucket - 1 : bucket].increment();
+		sumNanos.add(nanos);
+	}
+
+	/**
+	 * It returns the number of latencies at or below each bound followed by the total number of latencies, as
+	 * Prometheus expects histogram buckets.
+	 */
+	long[] cumulativeCounts() {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			total += buckets[i].sum();
+			counts[i] = total;
+		}
+		return counts;
+	}
+
+	long sumNanos() {
+		return sumNanos.sum();
+	}
+}
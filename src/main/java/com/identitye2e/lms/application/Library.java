@@ -2,19 +2,46 @@ package com.identitye2e.lms.application;
 
 import com.identitye2e.lms.domain.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class Library {
-	
+
+	static final int BULK_BATCH_SIZE = 1000;
+
 	private final BookRepository bookRepository;
+	private final LibraryMetrics metrics;
+	private final HoldQueue holds;
+	private final BookChangeLog changes;
+	private final LoanLedger loans;
+
+	public Library(BookRepository bookRepository, LibraryMetrics metrics) {
+		this(bookRepository, metrics, new HoldQueue(HoldQueue.DEFAULT_EXPIRY_SECONDS),
+			new BookChangeLog(BookChangeLog.DEFAULT_CAPACITY),
+			new LoanLedger(LoanLedger.DEFAULT_PERIOD_DAYS, LoanLedger.DEFAULT_SWEEP_SECONDS));
+	}
 
-	public Library(BookRepository bookRepository) {
+	@Autowired
+	public Library(BookRepository bookRepository, LibraryMetrics metrics, HoldQueue holds, BookChangeLog changes,
+			LoanLedger loans) {
 		this.bookRepository = bookRepository;
+		this.metrics = metrics;
+		this.holds = holds;
+		this.changes = changes;
+		this.loans = loans;
+		metrics.gauge("lms_books", "Number of books in the catalogue", bookRepository::countBooks);
+		metrics.gauge("lms_authors", "Number of authors in the author index", bookRepository::countAuthors);
+		metrics.gauge("lms_holds_waiting", "Number of holds waiting for a returned copy", holds::countWaiting);
+		metrics.gauge("lms_changes_sequence", "Sequence number of the last change that can be read", changes::lastSequence);
+		metrics.gauge("lms_loans_open", "Number of copies lent and not returned yet", loans::countOpen);
+		metrics.gauge("lms_loans_overdue", "Number of loans past their due date", loans::countOverdue);
 	}
 
 	/**
@@ -26,6 +53,29 @@ public class Library {
 	 * @throws BookAlreadyExistException if book being added exists already.
 	 */
 	public Book addBook(Book book) {
+		return metrics.time(LibraryMetrics.Operation.ADD, () -> add(book));
+	}
+
+	private Book add(Book book) {
+		checkNewBook(book);
+		return join(record(book));
+	}
+
+	/**
+	 * It adds book like addBook, the returned future completes once the book is as durable as the repository
+	 * promises and no thread waits for it meanwhile.
+	 *
+	 * @param book contains the attributes of a book.
+	 * @return the future book, failed with BookEntryInvalidException or BookAlreadyExistException like addBook
+	 */
+	public CompletableFuture<Book> addBookAsync(Book book) {
+		return metrics.timeAsync(LibraryMetrics.Operation.ADD, () -> {
+			checkNewBook(book);
+			return record(book);
+		});
+	}
+
+	private void checkNewBook(Book book) {
 		//domain validation
 		if(!validateBookEntry(book)){
 			throw new BookEntryInvalidException("Invalid book entry, please check the payload");
@@ -38,7 +88,82 @@ public class Library {
 		if (existingBook.isPresent()) {
 			throw new BookAlreadyExistException("Book already exists");
 		}
-		return bookRepository.addBook(book);
+	}
+
+	/**
+	 * It adds a stream of books to the ConcurrentHashMap via bookRepository in batches of BULK_BATCH_SIZE.
+	 * In per-item mode every valid book that does not exist yet is added and the others are reported.
+	 * In all-or-nothing mode nothing is added if any book is invalid or already exists; books added before a
+	 * conflict was detected are removed again, so other readers may briefly see them.
+	 *
+	 * @param books the books to add, a null element stands for an entry that could not be read.
+	 * @param allOrNothing whether a single rejected book rejects the whole request.
+	 * @return the number of added books and the rejected ones with their position and reason
+	 */
+	public BulkAddResult addBooks(Iterator<Book> books, boolean allOrNothing) {
+		return metrics.time(LibraryMetrics.Operation.ADD_BULK, () -> add(books, allOrNothing, 1));
+	}
+
+	/**
+	 * It adds the books of an exported catalogue like addBooks in per-item mode, except that a book may have no
+	 * available copy, as every copy of it was borrowed when it was exported. Only BULK_BATCH_SIZE books are held
+	 * at a time, so a catalogue of any size can be read from a stream.
+	 *
+	 * @param books the books to add, a null element stands for an entry that could not be read.
+	 * @return the number of added books and the rejected ones with their position and reason
+	 */
+	public BulkAddResult importBooks(Iterator<Book> books) {
+		return metrics.time(LibraryMetrics.Operation.ADD_BULK, () -> add(books, false, 0));
+	}
+
+	/**
+	 * It hands every book of the catalogue to action via bookRepository, one at a time and without copying the
+	 * catalogue. Books added or removed meanwhile may or may not be seen.
+	 *
+	 * @param action is called with every book, an exception it throws stops the export.
+	 * @return the number of books handed to action
+	 */
+	public long exportBooks(Consumer<Book> action) {
+		return metrics.time(LibraryMetrics.Operation.EXPORT, () -> {
+			long[] count = new long[1];
+			bookRepository.forEachBook(book -> {
+				action.accept(book);
+				count[0]++;
+			});
+			return count[0];
+		});
+	}
+
+	private BulkAddResult add(Iterator<Book> books, boolean allOrNothing, int minCopies) {
+		BulkAddResult result = new BulkAddResult();
+		List<Book> batch = new ArrayList<>();
+		Map<Book, Integer> positions = new IdentityHashMap<>();
+		int index = 0;
+		while (books.hasNext()) {
+			Book book = books.next();
+			if (validateBookEntry(book, minCopies)) {
+				batch.add(book);
+				positions.put(book, index);
+			} else {
+				result.reject(index, book == null ? null : book.getIsbn(), "Invalid book entry, please check the payload");
+			}
+			index++;
+			if (!allOrNothing && batch.size() == BULK_BATCH_SIZE) {
+				addBatch(batch, positions, result);
+			}
+		}
+
+		if (!allOrNothing) {
+			addBatch(batch, positions, result);
+		} else if (result.getRejected().isEmpty()) {
+			List<Book> existing = addAll(batch, true);
+			if (existing.isEmpty()) {
+				result.added(batch.size());
+			} else {
+				rejectExisting(existing, positions, result);
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -49,7 +174,28 @@ public class Library {
 	 * @throws BookNotFoundException if no book found for the given isbn.
 	 */
 	public Book removeBook(String isbn) {
-		return bookRepository.removeBook(isbn).orElseThrow(() ->new BookNotFoundException("Book not found"));
+		return tryRemoveBook(isbn).orElseThrow();
+	}
+
+	/**
+	 * It removes book from the ConcurrentHashMap via bookRepository, a missing book is returned rather than thrown.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the removed book, or the not found result
+	 */
+	public BookResult tryRemoveBook(String isbn) {
+		return metrics.timeResult(LibraryMetrics.Operation.REMOVE, () -> removed(isbn, join(remove(isbn))));
+	}
+
+	/**
+	 * It removes book like tryRemoveBook without waiting for the repository to make the removal durable.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the future removed book, or the not found result
+	 */
+	public CompletableFuture<BookResult> removeBookAsync(String isbn) {
+		return metrics.timeAsync(LibraryMetrics.Operation.REMOVE, () ->
+			remove(isbn).thenApply(book -> removed(isbn, book)));
 	}
 
 	/**
@@ -60,7 +206,17 @@ public class Library {
 	 * @throws BookNotFoundException if no book found for a given isbn.
 	 */
 	public Book findBookByISBN(String isbn) {
-		return bookRepository.findBookByISBN(isbn).orElseThrow(() ->new BookNotFoundException("Book not found"));
+		return tryFindBookByISBN(isbn).orElseThrow();
+	}
+
+	/**
+	 * It returns book from the ConcurrentHashMap via bookRepository, a missing book is returned rather than thrown.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the book, or the not found result
+	 */
+	public BookResult tryFindBookByISBN(String isbn) {
+		return metrics.timeResult(LibraryMetrics.Operation.FIND_BY_ISBN, () -> result(bookRepository.findBookByISBN(isbn)));
 	}
 
 	/**
@@ -70,11 +226,48 @@ public class Library {
 	 * @return list of books written by an author
 	 */
 	public List<Book> findBooksByAuthor(String author) {
-		return bookRepository.findBooksByAuthor(author);
+		return metrics.time(LibraryMetrics.Operation.FIND_BY_AUTHOR, () -> bookRepository.findBooksByAuthor(author));
+	}
+
+	/**
+	 * It returns one page of the books written by an author via bookRepository, ordered by isbn.
+	 *
+	 * @param author is the author of a book.
+	 * @param afterIsbn is the last isbn of the previous page, null for the first page.
+	 * @param limit is the maximum number of books to return.
+	 * @return list of books written by an author that come after afterIsbn
+	 */
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		return metrics.time(LibraryMetrics.Operation.FIND_BY_AUTHOR, () -> bookRepository.findBooksByAuthor(author, afterIsbn, limit));
+	}
+
+	/**
+	 * It returns one page of the books answering a query via bookRepository, ordered by publicationYear then isbn.
+	 *
+	 * @param query selects the years, the author and whether a copy has to be available, and the page.
+	 * @param limit is the maximum number of books to return.
+	 * @return list of books answering the query that come after its previous page
+	 */
+	public List<Book> findBooks(BookQuery query, int limit) {
+		return metrics.time(LibraryMetrics.Operation.QUERY, () -> bookRepository.findBooks(query, limit));
+	}
+
+	/**
+	 * It returns the books whose title and author contain every word of the query via bookRepository, best match
+	 * first. The last word also matches words it is the start of.
+	 *
+	 * @param query is free text such as "harry pot".
+	 * @param limit is the maximum number of books to return.
+	 * @return list of matching books
+	 */
+	public List<Book> searchBooks(String query, int limit) {
+		return metrics.time(LibraryMetrics.Operation.SEARCH, () -> bookRepository.searchBooks(query, limit));
 	}
 
 	/**
 	 * It update availability copies of a book from the ConcurrentHashMap via bookRepository when borrowing.
+	 * The availability check and the decrement happen atomically in the repository, so concurrent borrowers
+	 * can never take more copies than exist.
 	 *
 	 * @param isbn is the isbn of a book.
 	 * @return attributes of a book as book object
@@ -82,12 +275,148 @@ public class Library {
 	 * @throws BookNotAvailableException if no copies of a book available for a given isbn.
 	 */
 	public Book borrowBook(String isbn) {
-		Book book = bookRepository.findBookByISBN(isbn).orElseThrow(()->new BookNotFoundException("Book not found"));
+		return tryBorrowBook(isbn).orElseThrow();
+	}
 
-		if(book.getAvailableCopies() < 1){
-			throw new BookNotAvailableException("No available copies");
+	/**
+	 * It borrows a book like borrowBook, but a missing or unavailable book is returned rather than thrown. Borrowers
+	 * of a popular book are mostly told it is unavailable, which costs no exception this way.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the updated book, or the not found or unavailable result
+	 */
+	public BookResult tryBorrowBook(String isbn) {
+		return metrics.timeResult(LibraryMetrics.Operation.BORROW, () -> join(borrow(isbn)));
+	}
+
+	/**
+	 * It borrows a book like tryBorrowBook without waiting for the repository to make the change durable.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the future updated book, or the not found or unavailable result
+	 */
+	public CompletableFuture<BookResult> borrowBookAsync(String isbn) {
+		return metrics.timeAsync(LibraryMetrics.Operation.BORROW, () -> borrow(isbn));
+	}
+
+	/**
+	 * It borrows a book like tryBorrowBook and records the copy as lent to a borrower until the end of the loan
+	 * period, after which the loan shows up as overdue until the copy is returned.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @param borrower identifies the borrower, null to borrow without recording a loan.
+	 * @return the updated book, or the not found or unavailable result
+	 */
+	public BookResult tryBorrowBook(String isbn, String borrower) {
+		BookResult result = tryBorrowBook(isbn);
+		if (borrower != null && result.isOk()) {
+			loans.open(isbn, borrower);
+		}
+		return result;
+	}
+
+	/**
+	 * It closes the oldest loan of a book to a borrower and returns the copy like tryReturnBook.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @param borrower identifies the borrower, null to return without closing a loan.
+	 * @return the updated book, or the not found result if the borrower has no copy of the book or it was removed
+	 */
+	public BookResult tryReturnBook(String isbn, String borrower) {
+		if (borrower != null && !loans.close(isbn, borrower).isPresent()) {
+			return BookResult.notFound();
 		}
-		return bookRepository.updateBookAvailabilityCopies(book, book.getAvailableCopies() - 1);
+		return tryReturnBook(isbn);
+	}
+
+	/**
+	 * It returns the copies of a book lent to a borrower and not returned yet.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @param borrower identifies the borrower.
+	 * @return the loans, oldest first
+	 */
+	public List<Loan> findLoans(String isbn, String borrower) {
+		return loans.find(isbn, borrower);
+	}
+
+	/**
+	 * It returns loans past their due date, as of the last sweep of the loan ledger.
+	 *
+	 * @param limit is the maximum number of loans to return.
+	 * @return the overdue loans, in no particular order
+	 */
+	public List<Loan> findOverdueLoans(int limit) {
+		return loans.findOverdue(limit);
+	}
+
+	/**
+	 * It borrows a book, or queues a hold on it if no copy is available. The next copy returned is handed to the
+	 * first waiting hold rather than put back, and the hold's result completes with the borrowed book.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the hold, already completed with the borrowed book or the not found result unless it waits
+	 */
+	public Hold placeHold(String isbn) {
+		return holds.place(isbn, () -> borrowBookAsync(isbn));
+	}
+
+	/**
+	 * It returns a hold that is waiting or was fulfilled and has not expired yet.
+	 *
+	 * @param id is the id of a hold.
+	 * @return the hold wrapped as an Optional<>, Optional.empty() if there is no such hold
+	 */
+	public Optional<Hold> findHold(long id) {
+		return holds.find(id);
+	}
+
+	/**
+	 * It returns how many holds on the same book are ahead of a waiting hold, counting the hold itself.
+	 *
+	 * @param hold is a hold.
+	 * @return the position of the hold from 1, or 0 once it no longer waits
+	 */
+	public int holdPosition(Hold hold) {
+		return holds.position(hold);
+	}
+
+	/**
+	 * It cancels a waiting hold, a fulfilled hold is left alone as its copy has been borrowed.
+	 *
+	 * @param id is the id of a hold.
+	 * @return the hold wrapped as an Optional<>, Optional.empty() if there is no such hold
+	 */
+	public Optional<Hold> cancelHold(long id) {
+		return holds.cancel(id);
+	}
+
+	/**
+	 * It returns the changes made to the catalogue after a sequence number, in the order they were applied.
+	 *
+	 * @param after is the sequence number of the last change read, 0 to read from the oldest change kept.
+	 * @param limit is the maximum number of changes to return.
+	 * @return the changes, the sequence number to read after next time and whether changes were missed
+	 */
+	public BookChangeLog.Page readChanges(long after, int limit) {
+		return changes.read(after, limit);
+	}
+
+	/**
+	 * It returns a future completed once a change after a sequence number can be read.
+	 *
+	 * @param after is the sequence number of the last change read.
+	 * @return the future, completed already if there is a change to read
+	 */
+	public CompletableFuture<Void> whenChangedAfter(long after) {
+		return changes.whenPublishedAfter(after);
+	}
+
+	/**
+	 * @return the sequence number of the last change that can be read, a reader starting there only gets new changes
+	 */
+	public long lastChange() {
+		return changes.lastSequence();
 	}
 
 	/**
@@ -98,8 +427,247 @@ public class Library {
 	 * @throws BookNotFoundException if no book found for a given isbn.
 	 */
 	public Book returnBook(String isbn) {
-		Book book = bookRepository.findBookByISBN(isbn).orElseThrow(()->new BookNotFoundException("Book not found"));
-		return bookRepository.updateBookAvailabilityCopies(book, book.getAvailableCopies() + 1);
+		return tryReturnBook(isbn).orElseThrow();
+	}
+
+	/**
+	 * It returns a book like returnBook, but a missing book is returned rather than thrown. The copy goes to the
+	 * first hold waiting for the book if there is one.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the updated book, or the not found result
+	 */
+	public BookResult tryReturnBook(String isbn) {
+		return metrics.timeResult(LibraryMetrics.Operation.RETURN, () -> join(release(isbn)));
+	}
+
+	/**
+	 * It returns a book like tryReturnBook without waiting for the repository to make the change durable.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the future updated book, or the not found result
+	 */
+	public CompletableFuture<BookResult> returnBookAsync(String isbn) {
+		return metrics.timeAsync(LibraryMetrics.Operation.RETURN, () -> release(isbn));
+	}
+
+	/**
+	 * It borrows a copy of every book in the list, such as a stack of books at a checkout desk. The copies are all
+	 * taken before waiting for any of them to be durable, so the whole batch shares the journal writes.
+	 * In per-item mode every available book is borrowed and the others are reported.
+	 * In all-or-nothing mode nothing is borrowed if any book is missing or unavailable; copies taken before the
+	 * failure was known are returned again, so other borrowers may briefly miss them.
+	 * Every borrow is waited for even if one fails in the repository. A failed borrow is reported as FAILED, and in
+	 * all-or-nothing mode it cancels the batch like an unavailable book.
+	 *
+	 * @param isbns are the isbns of the books, an isbn listed twice borrows two copies.
+	 * @param allOrNothing whether a single failed isbn cancels the whole batch.
+	 * @return the number of books borrowed and the outcome of every isbn in the order of the list
+	 */
+	public CheckoutResult borrowBooks(List<String> isbns, boolean allOrNothing) {
+		List<CompletableFuture<BookResult>> borrows = new ArrayList<>(isbns.size());
+		for (String isbn : isbns) {
+			borrows.add(borrowBookAsync(isbn));
+		}
+		List<BookResult> results = joinEach(borrows);
+		if (!allOrNothing || results.stream().allMatch(result -> result != null && result.isOk())) {
+			return checkoutResult(isbns, results, false);
+		}
+		List<Integer> undone = new ArrayList<>();
+		List<CompletableFuture<BookResult>> undo = new ArrayList<>();
+		for (int i = 0; i < isbns.size(); i++) {
+			if (results.get(i) != null && results.get(i).isOk()) {
+				undone.add(i);
+				undo.add(returnBookAsync(isbns.get(i)));
+			}
+		}
+		List<BookResult> returned = joinEach(undo);
+		for (int i = 0; i < undone.size(); i++) {
+			if (returned.get(i) == null) {
+				//The copy may still be borrowed
+				results.set(undone.get(i), null);
+			}
+		}
+		return checkoutResult(isbns, results, true);
+	}
+
+	/**
+	 * It returns a copy of every book in the list, the counterpart of borrowBooks. The copies are all put back, or
+	 * handed to holds, before waiting for any of them to be durable.
+	 * In per-item mode every book that exists is returned and the others are reported.
+	 * In all-or-nothing mode nothing is returned if any book is missing. A returned copy may be handed to a hold
+	 * straight away, so the books are looked up before any is returned rather than undone afterwards, and a book
+	 * removed in between is reported as missing. A return that fails in the repository is reported as FAILED.
+	 *
+	 * @param isbns are the isbns of the books, an isbn listed twice returns two copies.
+	 * @param allOrNothing whether a single failed isbn cancels the whole batch.
+	 * @return the number of books returned and the outcome of every isbn in the order of the list
+	 */
+	public CheckoutResult returnBooks(List<String> isbns, boolean allOrNothing) {
+		if (allOrNothing) {
+			List<BookResult> found = new ArrayList<>(isbns.size());
+			for (String isbn : isbns) {
+				found.add(tryFindBookByISBN(isbn));
+			}
+			if (!found.stream().allMatch(BookResult::isOk)) {
+				return checkoutResult(isbns, found, true);
+			}
+		}
+		List<CompletableFuture<BookResult>> returns = new ArrayList<>(isbns.size());
+		for (String isbn : isbns) {
+			returns.add(returnBookAsync(isbn));
+		}
+		return checkoutResult(isbns, joinEach(returns), false);
+	}
+
+	private static CheckoutResult checkoutResult(List<String> isbns, List<BookResult> results, boolean cancelled) {
+		CheckoutResult checkout = new CheckoutResult();
+		for (int i = 0; i < isbns.size(); i++) {
+			BookResult result = results.get(i);
+			if (result == null) {
+				checkout.add(isbns.get(i), CheckoutResult.Status.FAILED, null);
+				continue;
+			}
+			switch (result.getStatus()) {
+				case OK:
+					checkout.add(isbns.get(i), cancelled ? CheckoutResult.Status.CANCELLED : CheckoutResult.Status.OK,
+						cancelled ? null : result.getBook().getAvailableCopies());
+					break;
+				case NOT_FOUND:
+					checkout.add(isbns.get(i), CheckoutResult.Status.NOT_FOUND, null);
+					break;
+				default:
+					checkout.add(isbns.get(i), CheckoutResult.Status.UNAVAILABLE, null);
+			}
+		}
+		return checkout;
+	}
+
+	/**
+	 * It waits for every future, so a failed one does not leave the others unaccounted for, and puts null in place of
+	 * the result of a failed one.
+	 */
+	private static <T> List<T> joinEach(List<CompletableFuture<T>> futures) {
+		List<T> results = new ArrayList<>(futures.size());
+		for (CompletableFuture<T> future : futures) {
+			try {
+				results.add(join(future));
+			} catch (RuntimeException e) {
+				log.error("", e);
+				results.add(null);
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * The changes below are applied through the change log, which numbers them in the order they are applied. A copy
+	 * handed to a hold is logged as returned and borrowed again.
+	 */
+	private CompletableFuture<Book> record(Book book) {
+		return changes.record(book.getIsbn(), () -> bookRepository.addBookAsync(book), added -> added, BookChange.Type.ADDED);
+	}
+
+	/**
+	 * It adds a batch of books and logs the ones added, numbered before any other change to them can see them. A
+	 * batch added all or nothing that met existing books is rolled back, and the books it added are logged as removed.
+	 *
+	 * @return the books of the batch that were not added as their isbn exists
+	 */
+	private List<Book> addAll(List<Book> batch, boolean allOrNothing) {
+		List<Book> existing = changes.recordAll(batch.size(), () -> bookRepository.addBooks(batch),
+			notAdded -> added(batch, notAdded), BookChange.Type.ADDED);
+		if (allOrNothing && !existing.isEmpty()) {
+			rollback(added(batch, existing));
+		}
+		return existing;
+	}
+
+	private static List<Book> added(List<Book> batch, List<Book> existing) {
+		if (existing.isEmpty()) {
+			return batch;
+		}
+		Set<Book> notAdded = Collections.newSetFromMap(new IdentityHashMap<>());
+		notAdded.addAll(existing);
+		List<Book> added = new ArrayList<>(batch.size() - existing.size());
+		for (Book book : batch) {
+			if (!notAdded.contains(book)) {
+				added.add(book);
+			}
+		}
+		return added;
+	}
+
+	private CompletableFuture<Optional<Book>> remove(String isbn) {
+		return changes.record(isbn, () -> bookRepository.removeBookAsync(isbn), book -> book.orElse(null),
+			BookChange.Type.REMOVED);
+	}
+
+	private CompletableFuture<BookResult> borrow(String isbn) {
+		return changes.record(isbn, () -> bookRepository.decrementAvailableCopiesAsync(isbn), Library::changed,
+			BookChange.Type.BORROWED);
+	}
+
+	private CompletableFuture<BookResult> release(String isbn) {
+		return holds.release(isbn,
+			() -> changes.record(isbn, () -> bookRepository.incrementAvailableCopiesAsync(isbn).thenApply(Library::result),
+				Library::changed, BookChange.Type.RETURNED),
+			() -> join(changes.record(isbn, () -> CompletableFuture.completedFuture(result(bookRepository.findBookByISBN(isbn))),
+				Library::changed, BookChange.Type.RETURNED, BookChange.Type.BORROWED)));
+	}
+
+	private static Book changed(BookResult result) {
+		return result.isOk() ? result.getBook() : null;
+	}
+
+	private BookResult removed(String isbn, Optional<Book> book) {
+		if (book.isPresent()) {
+			holds.cancelAll(isbn);
+		}
+		return result(book);
+	}
+
+	private static BookResult result(Optional<Book> book) {
+		return book.isPresent() ? BookResult.ok(book.get()) : BookResult.notFound();
+	}
+
+	/**
+	 * It waits for a future and throws what it failed with, rather than wrapped in a CompletionException.
+	 */
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void addBatch(List<Book> batch, Map<Book, Integer> positions, BulkAddResult result) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Book> existing = addAll(batch, false);
+		result.added(batch.size() - existing.size());
+		rejectExisting(existing, positions, result);
+		batch.clear();
+		positions.clear();
+	}
+
+	private void rejectExisting(List<Book> existing, Map<Book, Integer> positions, BulkAddResult result) {
+		for (Book book : existing) {
+			result.reject(positions.get(book), book.getIsbn(), "Book already exists");
+		}
+	}
+
+	private void rollback(List<Book> added) {
+		List<CompletableFuture<Optional<Book>>> removals = new ArrayList<>(added.size());
+		for (Book book : added) {
+			removals.add(remove(book.getIsbn()));
+		}
+		join(CompletableFuture.allOf(removals.toArray(new CompletableFuture<?>[0])));
 	}
 
 	/**
@@ -109,11 +677,15 @@ public class Library {
 	 * @return true if valid otherwise false
 	 */
 	private boolean validateBookEntry(Book book) {
+		return validateBookEntry(book, 1);
+	}
+
+	private boolean validateBookEntry(Book book, int minCopies) {
 		boolean valid = true;
 		if(book == null){
 			valid = false;
 		}else{
-			if(book.getAvailableCopies() < 1){
+			if(book.getAvailableCopies() < minCopies){
 				valid = false;
 			}
 		}
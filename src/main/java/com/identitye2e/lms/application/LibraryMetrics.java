@@ -0,0 +1,282 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.BookAlreadyExistException;
+import com.identitye2e.lms.domain.BookEntryInvalidException;
+import com.identitye2e.lms.domain.BookNotAvailableException;
+import com.identitye2e.lms.domain.BookNotFoundException;
+import com.identitye2e.lms.domain.BookResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This keeps the counters and latency histograms of the Library operations and writes them in the Prometheus text
+ * format. Each operation counts its outcomes, so rejection rates such as borrows of unavailable books can be derived,
+ * and gauges report sizes read at scrape time. Set lms.metrics.enabled=false to skip the timing altogether.
+ */
+@Component
+public class LibraryMetrics {
+
+	public enum Operation { ADD, ADD_BULK, REMOVE, FIND_BY_ISBN, FIND_BY_AUTHOR, QUERY, SEARCH, BORROW, RETURN, EXPORT }
+
+	public enum Outcome { OK, NOT_FOUND, UNAVAILABLE, INVALID, EXISTS, ERROR }
+
+	//What admission control did with a request, see AdmissionFilter
+	public enum Admission { ADMITTED, RATE_LIMITED, SHED }
+
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final Outcome[] OUTCOMES = Outcome.values();
+	private static final Admission[] ADMISSIONS = Admission.values();
+
+	private final boolean enabled;
+	private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+	private final LongAdder[][] outcomes = new LongAdder[OPERATIONS.length][OUTCOMES.length];
+	private final LongAdder[] admissions = new LongAdder[ADMISSIONS.length];
+	private final LatencyHistogram admittedLatency = new LatencyHistogram();
+	//This map has the gauge name as key and the gauge as value, sorted so the output is stable
+	private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+	public LibraryMetrics(@Value("${lms.metrics.enabled:true}") boolean enabled) {
+		this.enabled = enabled;
+		for (Operation operation : OPERATIONS) {
+			latencies[operation.ordinal()] = new LatencyHistogram();
+			for (Outcome outcome : OUTCOMES) {
+				outcomes[operation.ordinal()][outcome.ordinal()] = new LongAdder();
+			}
+		}
+		for (Admission admission : ADMISSIONS) {
+			admissions[admission.ordinal()] = new LongAdder();
+		}
+	}
+
+	/**
+	 * It runs an operation, records how long it took and classifies its outcome from the exception it threw.
+	 *
+	 * @param operation is the operation being run.
+	 * @param call runs the operation.
+	 * @return the result of the operation
+	 */
+	<T> T time(Operation operation, Supplier<T> call) {
+		if (!enabled) {
+			return call.get();
+		}
+		long started = System.nanoTime();
+		Outcome outcome = Outcome.ERROR;
+		try {
+			T result = call.get();
+			outcome = Outcome.OK;
+			return result;
+		} catch (RuntimeException e) {
+			outcome = outcomeOf(e);
+			throw e;
+		} finally {
+			record(operation, outcome, System.nanoTime() - started);
+		}
+	}
+
+	/**
+	 * It runs an operation that returns its outcome instead of throwing it, records how long it took and classifies
+	 * its outcome from the status of the result.
+	 *
+	 * @param operation is the operation being run.
+	 * @param call runs the operation.
+	 * @return the result of the operation
+	 */
+	BookResult timeResult(Operation operation, Supplier<BookResult> call) {
+		if (!enabled) {
+			return call.get();
+		}
+		long started = System.nanoTime();
+		Outcome outcome = Outcome.ERROR;
+		try {
+			BookResult result = call.get();
+			outcome = outcomeOf(result.getStatus());
+			return result;
+		} catch (RuntimeException e) {
+			outcome = outcomeOf(e);
+			throw e;
+		} finally {
+			record(operation, outcome, System.nanoTime() - started);
+		}
+	}
+
+	/**
+	 * It starts an asynchronous operation and records how long it took to complete and its outcome once it completes.
+	 * An operation that throws while starting returns a failed future instead.
+	 *
+	 * @param operation is the operation being run.
+	 * @param call starts the operation.
+	 * @return the future result of the operation
+	 */
+	<T> CompletableFuture<T> timeAsync(Operation operation, Supplier<CompletableFuture<T>> call) {
+		long started = enabled ? System.nanoTime() : 0;
+		CompletableFuture<T> future;
+		try {
+			future = call.get();
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		if (!enabled) {
+			return future;
+		}
+		return future.whenComplete((result, failure) ->
+			record(operation, outcomeOf(result, failure), System.nanoTime() - started));
+	}
+
+	void record(Operation operation, Outcome outcome, long nanos) {
+		latencies[operation.ordinal()].record(nanos);
+		outcomes[operation.ordinal()][outcome.ordinal()].increment();
+	}
+
+	/**
+	 * It counts a request that went through admission control and records how long an admitted request took to be
+	 * served, from the moment it was admitted to its response.
+	 *
+	 * @param admission is what admission control did with the request.
+	 * @param nanos is the time taken to serve an admitted request, ignored otherwise.
+	 */
+	public void recordAdmission(Admission admission, long nanos) {
+		if (!enabled) {
+			return;
+		}
+		admissions[admission.ordinal()].increment();
+		if (admission == Admission.ADMITTED) {
+			admittedLatency.record(nanos);
+		}
+	}
+
+	long count(Admission admission) {
+		return admissions[admission.ordinal()].sum();
+	}
+
+	/**
+	 * It registers a value that is read every time the metrics are written, replacing a gauge of the same name.
+	 */
+	public void gauge(String name, String help, LongSupplier value) {
+		gauges.put(name, new Gauge(help, value));
+	}
+
+	long count(Operation operation, Outcome outcome) {
+		return outcomes[operation.ordinal()][outcome.ordinal()].sum();
+	}
+
+	/**
+	 * It writes every metric in the Prometheus text exposition format.
+	 *
+	 * @param writer receives the metrics.
+	 */
+	public void writePrometheus(Writer writer) throws IOException {
+		writer.write("# HELP lms_operations_total Library operations by outcome\n");
+		writer.write("# TYPE lms_operations_total counter\n");
+		for (Operation operation : OPERATIONS) {
+			for (Outcome outcome : OUTCOMES) {
+				writer.write("lms_operations_total{operation=\"" + label(operation) + "\",outcome=\"" + label(outcome)
+					+ "\"} " + count(operation, outcome) + "\n");
+			}
+		}
+
+		writer.write("# HELP lms_operation_seconds Latency of library operations\n");
+		writer.write("# TYPE lms_operation_seconds histogram\n");
+		for (Operation operation : OPERATIONS) {
+			writeHistogram(writer, "lms_operation_seconds", "operation=\"" + label(operation) + "\"",
+				latencies[operation.ordinal()]);
+		}
+
+		writer.write("# HELP lms_admissions_total Requests to the endpoints behind admission control by admission\n");
+		writer.write("# TYPE lms_admissions_total counter\n");
+		for (Admission admission : ADMISSIONS) {
+			writer.write("lms_admissions_total{admission=\"" + label(admission) + "\"} " + count(admission) + "\n");
+		}
+
+		writer.write("# HELP lms_admitted_request_seconds Latency of the requests admitted by admission control\n");
+		writer.write("# TYPE lms_admitted_request_seconds histogram\n");
+		writeHistogram(writer, "lms_admitted_request_seconds", null, admittedLatency);
+
+		for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+			writer.write("# HELP " + gauge.getKey() + " " + gauge.getValue().help + "\n");
+			writer.write("# TYPE " + gauge.getKey() + " gauge\n");
+			writer.write(gauge.getKey() + " " + gauge.getValue().value.getAsLong() + "\n");
+		}
+	}
+
+	/**
+	 * It writes the buckets, sum and count of a histogram, labels is null for a histogram without labels.
+	 */
+	private static void writeHistogram(Writer writer, String name, String labels, LatencyHistogram histogram)
+			throws IOException {
+		long[] counts = histogram.cumulativeCounts();
+		String bucketLabels = labels == null ? "{" : "{" + labels + ",";
+		String otherLabels = labels == null ? "" : "{" + labels + "}";
+		for (int i = 0; i < LatencyHistogram.BOUNDS_NANOS.length; i++) {
+			writer.write(name + "_bucket" + bucketLabels + "le=\"" + seconds(LatencyHistogram.BOUNDS_NANOS[i]) + "\"} "
+				+ counts[i] + "\n");
+		}
+		writer.write(name + "_bucket" + bucketLabels + "le=\"+Inf\"} " + counts[counts.length - 1] + "\n");
+		writer.write(name + "_sum" + otherLabels + " " + seconds(histogram.sumNanos()) + "\n");
+		writer.write(name + "_count" + otherLabels + " " + counts[counts.length - 1] + "\n");
+	}
+
+	private static Outcome outcomeOf(BookResult.Status status) {
+		switch (status) {
+			case OK:
+				return Outcome.OK;
+			case NOT_FOUND:
+				return Outcome.NOT_FOUND;
+			default:
+				return Outcome.UNAVAILABLE;
+		}
+	}
+
+	private static Outcome outcomeOf(Object result, Throwable failure) {
+		if (failure != null) {
+			return outcomeOf(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+		}
+		return result instanceof BookResult ? outcomeOf(((BookResult) result).getStatus()) : Outcome.OK;
+	}
+
+	private static Outcome outcomeOf(Throwable e) {
+		if (e instanceof BookNotFoundException) {
+			return Outcome.NOT_FOUND;
+		}
+		if (e instanceof BookNotAvailableException) {
+			return Outcome.UNAVAILABLE;
+		}
+		if (e instanceof BookEntryInvalidException) {
+			return Outcome.INVALID;
+		}
+		if (e instanceof BookAlreadyExistException) {
+			return Outcome.EXISTS;
+		}
+		return Outcome.ERROR;
+	}
+
+	private static String label(Enum<?> value) {
+		return value.name().toLowerCase(Locale.ROOT);
+	}
+
+	private static String seconds(long nanos) {
+		return Double.toString(nanos / 1e9);
+	}
+
+	private static final class Gauge {
+
+		final String help;
+		final LongSupplier value;
+
+		Gauge(String help, LongSupplier value) {
+			this.help = help;
+			this.value = value;
+		}
+	}
+}
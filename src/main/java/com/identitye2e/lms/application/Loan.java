@@ -0,0 +1,48 @@
+package com.identitye2e.lms.application;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A copy of a book lent to a borrower, from the borrow until the return. It is on loan until it is due, overdue from
+ * then on, and returned once the copy is brought back.
+ */
+@Getter
+public final class Loan {
+
+	public enum Status { ON_LOAN, OVERDUE, RETURNED }
+
+	private final long id;
+	private final String isbn;
+	private final String borrower;
+	//Milliseconds since the epoch
+	private final long borrowedAt;
+	private final long dueAt;
+	//Changed by LoanLedger under the stripe of the loan
+	private volatile Status status = Status.ON_LOAN;
+
+	//The rest is LoanLedger's bookkeeping, guarded by the stripe of the loan: the tick the loan is due at, the list of
+	//the wheel or the overdue list it is linked into, its neighbours there, and the next copy lent to the same borrower
+	@Getter(AccessLevel.NONE)
+	long dueTick;
+	@Getter(AccessLevel.NONE)
+	int list = -1;
+	@Getter(AccessLevel.NONE)
+	Loan previous;
+	@Getter(AccessLevel.NONE)
+	Loan next;
+	@Getter(AccessLevel.NONE)
+	Loan nextCopy;
+
+	public Loan(long id, String isbn, String borrower, long borrowedAt, long dueAt) {
+		this.id = id;
+		this.isbn = isbn;
+		this.borrower = borrower;
+		this.borrowedAt = borrowedAt;
+		this.dueAt = dueAt;
+	}
+
+	void setStatus(Status status) {
+		this.status = status;
+	}
+}
@@ -0,0 +1,377 @@
+package com.identitye2e.lms.application;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This is the ledger of the copies lent to borrowers, keyed by isbn and borrower, and of when they are due back. The
+ * loans are split between STRIPES stripes by the hash of their key and each stripe is guarded by its own monitor, so
+ * lending and returning different books only wait for each other when they share a stripe.
+ *
+ * Every stripe schedules its loans on a hierarchical timing wheel of one second ticks: a first level of FIRST_SLOTS
+ * slots of one tick, then LEVELS - 1 levels of SLOTS slots each spanning a whole turn of the level below, which
+ * reaches 2^32 ticks ahead. A loan is linked into the slot of its due tick, and moved down a level whenever the
+ * wheel turns into its slot, so lending, returning and sweeping cost the same however many loans are open. The sweep
+ * runs every sweep interval and turns the wheel of every stripe up to the current tick, moving the loans that fell
+ * due to the stripe's overdue list, a batch of loans per tick.
+ *
+ * Loans live in memory only, they are lost on restart while the copies they lent are journaled.
+ */
+@Slf4j
+@Component
+public class LoanLedger implements Closeable {
+
+	static final long DEFAULT_PERIOD_DAYS = 14;
+	static final long DEFAULT_SWEEP_SECONDS = 60;
+	static final long TICK_MILLIS = 1000;
+
+	private static final int STRIPES = 64;
+	private static final int FIRST_BITS = 8;
+	private static final int BITS = 6;
+	private static final int LEVELS = 5;
+	private static final int FIRST_SLOTS = 1 << FIRST_BITS;
+	private static final int SLOTS = 1 << BITS;
+	private static final long MAX_DELAY = (1L << (FIRST_BITS + BITS * (LEVELS - 1))) - 1;
+	//The overdue list of a stripe comes after the slots of its wheel
+	private static final int OVERDUE = FIRST_SLOTS + SLOTS * (LEVELS - 1);
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final AtomicLong ids = new AtomicLong();
+	private final LongAdder open = new LongAdder();
+	private final LongAdder overdue = new LongAdder();
+	private final long periodMillis;
+	private final long sweepMillis;
+	private final LongSupplier clock;
+	private volatile ScheduledExecutorService sweeper;
+
+	@Autowired
+	public LoanLedger(@Value("${lms.loans.period-days:14}") long periodDays,
+			@Value("${lms.loans.sweep-seconds:60}") long sweepSeconds) {
+		this(TimeUnit.DAYS.toMillis(periodDays), TimeUnit.SECONDS.toMillis(sweepSeconds), System::currentTimeMillis);
+	}
+
+	/**
+	 * @param periodMillis is how long a copy is lent for.
+	 * @param sweepMillis is how often the loans that fell due are swept.
+	 * @param clock returns the milliseconds since the epoch.
+	 */
+	LoanLedger(long periodMillis, long sweepMillis, LongSupplier clock) {
+		if (periodMillis < 0 || sweepMillis < 1) {
+			throw new IllegalArgumentException("Loan period must not be negative and sweep interval must be positive");
+		}
+		this.periodMillis = periodMillis;
+		this.sweepMillis = sweepMillis;
+		this.clock = clock;
+		long tick = clock.getAsLong() / TICK_MILLIS;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe(tick);
+		}
+	}
+
+	/**
+	 * It records a copy of a book lent to a borrower, due back after the loan period. A borrower may hold several
+	 * copies of the same book, each one its own loan.
+	 *
+	 * @param isbn is the isbn of the book.
+	 * @param borrower identifies the borrower.
+	 * @return the loan
+	 */
+	Loan open(String isbn, String borrower) {
+		long now = clock.getAsLong();
+		Loan loan = new Loan(ids.incrementAndGet(), isbn, borrower, now, now + periodMillis);
+		//Rounded up, so a loan is never swept before it is due
+		loan.dueTick = (loan.getDueAt() + TICK_MILLIS - 1) / TICK_MILLIS;
+		LoanKey key = new LoanKey(isbn, borrower);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Loan first = stripe.loans.putIfAbsent(key, loan);
+			if (first != null) {
+				Loan last = first;
+				while (last.nextCopy != null) {
+					last = last.nextCopy;
+				}
+				last.nextCopy = loan;
+			}
+			stripe.schedule(loan);
+		}
+		open.increment();
+		if (sweeper == null) {
+			startSweeper();
+		}
+		return loan;
+	}
+
+	/**
+	 * It closes the oldest loan of a book to a borrower, whether it is due or not.
+	 *
+	 * @param isbn is the isbn of the book.
+	 * @param borrower identifies the borrower.
+	 * @return the returned loan wrapped as an Optional<>, Optional.empty() if the borrower has no copy of the book
+	 */
+	Optional<Loan> close(String isbn, String borrower) {
+		LoanKey key = new LoanKey(isbn, borrower);
+		Stripe stripe = stripe(key);
+		Loan loan;
+		synchronized (stripe) {
+			loan = stripe.loans.get(key);
+			if (loan == null) {
+				return Optional.empty();
+			}
+			if (loan.nextCopy == null) {
+				stripe.loans.remove(key);
+			} else {
+				stripe.loans.put(key, loan.nextCopy);
+				loan.nextCopy = null;
+			}
+			if (loan.list == OVERDUE) {
+				overdue.decrement();
+			}
+			stripe.unlink(loan);
+			loan.setStatus(Loan.Status.RETURNED);
+		}
+		open.decrement();
+		return Optional.of(loan);
+	}
+
+	/**
+	 * It returns the open loans of a book to a borrower.
+	 *
+	 * @param isbn is the isbn of the book.
+	 * @param borrower identifies the borrower.
+	 * @return the loans, oldest first, empty if there is none
+	 */
+	List<Loan> find(String isbn, String borrower) {
+		LoanKey key = new LoanKey(isbn, borrower);
+		Stripe stripe = stripe(key);
+		List<Loan> loans = new ArrayList<>(1);
+		synchronized (stripe) {
+			for (Loan loan = stripe.loans.get(key); loan != null; loan = loan.nextCopy) {
+				loans.add(loan);
+			}
+		}
+		return loans;
+	}
+
+	/**
+	 * It returns up to limit overdue loans, in no particular order.
+	 *
+	 * @param limit is the maximum number of loans to return.
+	 * @return the overdue loans
+	 */
+	List<Loan> findOverdue(int limit) {
+		List<Loan> loans = new ArrayList<>(Math.min(limit, 256));
+		for (int i = 0; i < STRIPES && loans.size() < limit; i++) {
+			synchronized (stripes[i]) {
+				for (Loan loan = stripes[i].lists[OVERDUE]; loan != null && loans.size() < limit; loan = loan.next) {
+					loans.add(loan);
+				}
+			}
+		}
+		return loans;
+	}
+
+	/**
+	 * It turns the wheel of every stripe up to now and moves the loans that fell due to the overdue lists.
+	 *
+	 * @param now is the time to sweep up to, in milliseconds since the epoch.
+	 * @return the number of loans that became overdue
+	 */
+	int sweep(long now) {
+		long tick = now / TICK_MILLIS;
+		int due = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				due += stripe.advance(tick);
+			}
+		}
+		overdue.add(due);
+		return due;
+	}
+
+	/**
+	 * @return the number of copies lent and not returned yet
+	 */
+	long countOpen() {
+		return open.sum();
+	}
+
+	/**
+	 * @return the number of loans that are overdue
+	 */
+	long countOverdue() {
+		return overdue.sum();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (sweeper != null) {
+			sweeper.shutdownNow();
+		}
+	}
+
+	private Stripe stripe(LoanKey key) {
+		int hash = key.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * It starts the thread sweeping the loans, with the first loan.
+	 */
+	private synchronized void startSweeper() {
+		if (sweeper != null) {
+			return;
+		}
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-loan-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(() -> {
+			try {
+				int due = sweep(clock.getAsLong());
+				if (due > 0) {
+					log.info("{} loans became overdue, {} overdue in total", due, countOverdue());
+				}
+			} catch (RuntimeException e) {
+				log.error("", e);
+			}
+		}, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+		sweeper = executor;
+	}
+
+	@lombok.Value
+	private static class LoanKey {
+		String isbn;
+		String borrower;
+	}
+
+	/**
+	 * The loans of a share of the keys and their wheel, guarded by the monitor of the stripe.
+	 */
+	private static final class Stripe {
+
+		//This map has the isbn and borrower as key and the oldest copy lent as value, the next copies chained to it
+		private final Map<LoanKey, Loan> loans = new HashMap<>();
+		//The heads of the doubly linked lists of the slots of the wheel, level after level, and of the overdue list
+		private final Loan[] lists = new Loan[OVERDUE + 1];
+		//The next tick to turn the wheel to, and the number of loans on the wheel
+		private long current;
+		private int scheduled;
+
+		private Stripe(long current) {
+			this.current = current;
+		}
+
+		/**
+		 * It links a loan into the slot of its due tick on the lowest level reaching it, or into the current slot if
+		 * it is due already.
+		 */
+		private void schedule(Loan loan) {
+			long delta = loan.dueTick - current;
+			int list;
+			if (delta < FIRST_SLOTS) {
+				list = (int) ((delta < 0 ? current : loan.dueTick) & (FIRST_SLOTS - 1));
+			} else {
+				long due = delta > MAX_DELAY ? current + MAX_DELAY : loan.dueTick;
+				int level = 1;
+				while (due - current >= 1L << (FIRST_BITS + BITS * level)) {
+					level++;
+				}
+				list = FIRST_SLOTS + SLOTS * (level - 1) + (int) ((due >> (FIRST_BITS + BITS * (level - 1))) & (SLOTS - 1));
+			}
+			link(loan, list);
+			scheduled++;
+		}
+
+		/**
+		 * It turns the wheel tick by tick up to a tick, moving a slot of the level above down whenever a level has
+		 * turned once, and the loans of every tick passed to the overdue list.
+		 *
+		 * @return the number of loans moved to the overdue list
+		 */
+		private int advance(long tick) {
+			int due = 0;
+			while (current <= tick) {
+				if (scheduled == 0) {
+					current = tick + 1;
+					break;
+				}
+				int index = (int) (current & (FIRST_SLOTS - 1));
+				if (index == 0) {
+					cascade();
+				}
+				Loan loan = lists[index];
+				lists[index] = null;
+				while (loan != null) {
+					Loan next = loan.next;
+					link(loan, OVERDUE);
+					loan.setStatus(Loan.Status.OVERDUE);
+					scheduled--;
+					due++;
+					loan = next;
+				}
+				current++;
+			}
+			return due;
+		}
+
+		/**
+		 * It moves the loans of the slots the current tick turns into down to the lower levels.
+		 */
+		private void cascade() {
+			for (int level = 1; level < LEVELS; level++) {
+				int index = (int) ((current >> (FIRST_BITS + BITS * (level - 1))) & (SLOTS - 1));
+				int list = FIRST_SLOTS + SLOTS * (level - 1) + index;
+				Loan loan = lists[list];
+				lists[list] = null;
+				while (loan != null) {
+					Loan next = loan.next;
+					scheduled--;
+					schedule(loan);
+					loan = next;
+				}
+				if (index != 0) {
+					return;
+				}
+			}
+		}
+
+		private void link(Loan loan, int list) {
+			loan.list = list;
+			loan.previous = null;
+			loan.next = lists[list];
+			if (loan.next != null) {
+				loan.next.previous = loan;
+			}
+			lists[list] = loan;
+		}
+
+		private void unlink(Loan loan) {
+			if (loan.list != OVERDUE) {
+				scheduled--;
+			}
+			if (loan.previous != null) {
+				loan.previous.next = loan.next;
+			} else {
+				lists[loan.list] = loan.next;
+			}
+			if (loan.next != null) {
+				loan.next.previous = loan.previous;
+			}
+			loan.previous = null;
+			loan.next = null;
+			loan.list = -1;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.identitye2e.lms.domain;
+
+/**
+ * This is the spelling rule of author names used by the author lookups, so "J. K. Rowling", "J.K. Rowling" and
+ * "j. k.  rowling" find the same books. A name is reduced to its words, runs of letters and digits, lower-cased and
+ * separated by a single space. Accents are kept, a letter with an accent and the same letter without one differ.
+ */
+public final class AuthorNames {
+
+	private AuthorNames() {
+	}
+
+	/**
+	 * It returns the key of an author name, the same for every spelling of the name.
+	 *
+	 * @param author is the name of an author as written on a book.
+	 * @return  the key, eg "j k rowling"
+	 */
+	public static String normalize(String author) {
+		StringBuilder key = new StringBuilder(author.length());
+		boolean separated = false;
+		for (int i = 0; i < author.length(); ) {
+			int c = author.codePointAt(i);
+			i += Character.charCount(c);
+			if (!Character.isLetterOrDigit(c)) {
+				separated = true;
+				continue;
+			}
+			if (separated && key.length() > 0) {
+				key.append(' ');
+			}
+			separated = false;
+			key.appendCodePoint(Character.toLowerCase(c));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * It tells whether two author names are spellings of the same name, without normalizing equal names.
+	 *
+	 * @return  true if both names have the same key
+	 */
+	public static boolean equivalent(String author, String other) {
+		return author.equals(other) || normalize(author).equals(normalize(other));
+	}
+}
@@ -1,20 +1,45 @@
 package com.identitye2e.lms.domain;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
-import lombok.Data;
 import lombok.NonNull;
+import lombok.Value;
+import lombok.With;
 
-@Builder
-@Data
+/**
+ * This is a book as it is stored and shared between threads. It never changes once built, a borrow or return
+ * replaces the book with a copy holding the new number of available copies, so a reader always sees a whole book.
+ */
+@Value
+@With
+@Builder(toBuilder = true)
 public class Book {
     @NonNull
-	private String isbn;
+	String isbn;
     @NonNull
-	private String title;
+	String title;
     @NonNull
-	private String author;
-    @NonNull
-	private Integer publicationYear;
-    @NonNull
-	private Integer availableCopies;
+	String author;
+	int publicationYear;
+	int availableCopies;
+
+	/**
+	 * It creates a book from JSON, where every attribute is mandatory as before the numbers became primitives.
+	 *
+	 * @return  the book
+	 * @throws NullPointerException if an attribute is missing or null
+	 */
+	@JsonCreator
+	static Book fromJson(@JsonProperty("isbn") String isbn, @JsonProperty("title") String title,
+			@JsonProperty("author") String author, @JsonProperty("publicationYear") Integer publicationYear,
+			@JsonProperty("availableCopies") Integer availableCopies) {
+		if (publicationYear == null) {
+			throw new NullPointerException("publicationYear is marked non-null but is null");
+		}
+		if (availableCopies == null) {
+			throw new NullPointerException("availableCopies is marked non-null but is null");
+		}
+		return new Book(isbn, title, author, publicationYear, availableCopies);
+	}
 }
@@ -0,0 +1,61 @@
+package com.identitye2e.lms.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Comparator;
+
+/**
+ * This is a query for the books published between two years, optionally of a single author and with a copy
+ * available. The books are returned in publicationYear then isbn order, one page at a time, and a page starts after
+ * the last book of the previous page, see after.
+ */
+@Value
+@Builder(toBuilder = true)
+public class BookQuery {
+
+	//The order books are returned in
+	public static final Comparator<Book> ORDER = Comparator.comparingInt(Book::getPublicationYear).thenComparing(Book::getIsbn);
+
+	//null for any author, any spelling of the name, see AuthorNames
+	String author;
+	//Both years are included
+	@Builder.Default
+	int fromYear = Integer.MIN_VALUE;
+	@Builder.Default
+	int toYear = Integer.MAX_VALUE;
+	boolean availableOnly;
+	//The publicationYear and isbn of the last book of the previous page, afterIsbn is null for the first page
+	int afterYear;
+	String afterIsbn;
+
+	/**
+	 * It returns the same query for the page that follows a book.
+	 *
+	 * @param book is the last book of a page.
+	 * @return  the query
+	 */
+	public BookQuery after(Book book) {
+		return toBuilder().afterYear(book.getPublicationYear()).afterIsbn(book.getIsbn()).build();
+	}
+
+	/**
+	 * It tells whether a book is an answer to the query and comes after the previous page.
+	 *
+	 * @param book is a book.
+	 * @return  true if the book is on this or a following page
+	 */
+	public boolean matches(Book book) {
+		int year = book.getPublicationYear();
+		if (year < fromYear || year > toYear) {
+			return false;
+		}
+		if (author != null && !AuthorNames.equivalent(author, book.getAuthor())) {
+			return false;
+		}
+		if (availableOnly && book.getAvailableCopies() < 1) {
+			return false;
+		}
+		return afterIsbn == null || year > afterYear || year == afterYear && book.getIsbn().compareTo(afterIsbn) > 0;
+	}
+}
@@ -1,13 +1,56 @@
 package com.identitye2e.lms.domain;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface BookRepository {
 	
 	public Book addBook(Book book);
+	public List<Book> addBooks(Collection<Book> books);
 	public Optional<Book> removeBook(String isbn) ;
 	public Optional<Book> findBookByISBN(String isbn);
 	public List<Book> findBooksByAuthor(String author) ;
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit);
+	public List<Book> searchBooks(String query, int limit);
+
+	/*
+	 * It returns one page of the books answering a query, in BookQuery.ORDER, reading as few books as the indexes of
+	 * the repository allow and stopping as soon as the page is full. The next page is asked with query.after(last).
+	 */
+	public List<Book> findBooks(BookQuery query, int limit);
     public Book updateBookAvailabilityCopies(Book book, int count);
+	public BookResult decrementAvailableCopies(String isbn);
+	public Optional<Book> incrementAvailableCopies(String isbn);
+	public long countBooks();
+	public long countAuthors();
+
+	/*
+	 * It hands every book to action one at a time without copying the catalogue, so the whole of it can be streamed
+	 * out in constant memory. Books added or removed while it runs may or may not be seen.
+	 */
+	public void forEachBook(Consumer<Book> action);
+
+	/*
+	 * The asynchronous mutations return once the change is applied and complete once it is as durable as the
+	 * repository promises, so no thread waits for a disk. Repositories that never wait complete them straight away,
+	 * failing them instead of throwing.
+	 */
+	public default CompletableFuture<Book> addBookAsync(Book book) {
+		return CompletableFuture.supplyAsync(() -> addBook(book), Runnable::run);
+	}
+
+	public default CompletableFuture<Optional<Book>> removeBookAsync(String isbn) {
+		return CompletableFuture.supplyAsync(() -> removeBook(isbn), Runnable::run);
+	}
+
+	public default CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+		return CompletableFuture.supplyAsync(() -> decrementAvailableCopies(isbn), Runnable::run);
+	}
+
+	public default CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+		return CompletableFuture.supplyAsync(() -> incrementAvailableCopies(isbn), Runnable::run);
+	}
 }
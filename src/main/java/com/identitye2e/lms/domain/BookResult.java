@@ -0,0 +1,60 @@
+package com.identitye2e.lms.domain;
+
+import lombok.Getter;
+
+/**
+ * This is the outcome of an operation on a single book. A missing or unavailable book is an expected answer rather
+ * than a fault, so it is returned as a status instead of being thrown, and the shared not found and unavailable
+ * results cost no allocation.
+ */
+@Getter
+public final class BookResult {
+
+	public enum Status { OK, NOT_FOUND, UNAVAILABLE }
+
+	private static final BookResult NOT_FOUND = new BookResult(Status.NOT_FOUND, null);
+	private static final BookResult UNAVAILABLE = new BookResult(Status.UNAVAILABLE, null);
+
+	private final Status status;
+	//The book is only set when the status is OK
+	private final Book book;
+
+	private BookResult(Status status, Book book) {
+		this.status = status;
+		this.book = book;
+	}
+
+	public static BookResult ok(Book book) {
+		return new BookResult(Status.OK, book);
+	}
+
+	public static BookResult notFound() {
+		return NOT_FOUND;
+	}
+
+	public static BookResult unavailable() {
+		return UNAVAILABLE;
+	}
+
+	public boolean isOk() {
+		return status == Status.OK;
+	}
+
+	/**
+	 * It returns the book, for callers that treat a missing or unavailable book as an error.
+	 *
+	 * @return the book
+	 * @throws BookNotFoundException if no book was found.
+	 * @throws BookNotAvailableException if no copies of the book were available.
+	 */
+	public Book orElseThrow() {
+		switch (status) {
+			case OK:
+				return book;
+			case NOT_FOUND:
+				throw new BookNotFoundException("Book not found");
+			default:
+				throw new BookNotAvailableException("No available copies");
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.AuthorNames;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This dictionary gives every author an int id, shared by all the spellings of their name, see AuthorNames, and
+ * counts the books of every author so an author is dropped with their last book. Ids are never given twice, so an id
+ * read before its author was dropped can not find the books of another author.
+ *
+ * It also interns the spellings of every author: books read from JSON or a file each carry their own copy of the
+ * author's name, and a repository that stores the dictionary's instance instead keeps one copy per spelling, however
+ * many books the author has. Up to MAX_SPELLINGS spellings are kept per author, further ones are not interned.
+ */
+class AuthorDictionary {
+
+	static final int MAX_SPELLINGS = 8;
+
+	//This map has the key of the author's name as key and the author as value, eg "j k rowling", Author(7)
+	private final ConcurrentHashMap<String, Author> authors = new ConcurrentHashMap<>();
+	private final AtomicInteger ids = new AtomicInteger();
+
+	/**
+	 * It counts one more book of an author, adding the author if it is their first book.
+	 *
+	 * @param spelling is the name of the author as written on the book.
+	 * @return  the author
+	 */
+	Author acquire(String spelling) {
+		return authors.compute(AuthorNames.normalize(spelling), (key, author) -> {
+			Author result = author == null ? new Author(ids.getAndIncrement(), key) : author;
+			result.books++;
+			result.addSpelling(spelling);
+			return result;
+		});
+	}
+
+	/**
+	 * It counts one book less of an author and drops the author with their last book.
+	 *
+	 * @param author is the author returned by acquire or find for the book.
+	 */
+	void release(Author author) {
+		authors.computeIfPresent(author.key, (key, current) -> current != author || --current.books > 0 ? current : null);
+	}
+
+	/**
+	 * It returns the author of any spelling of a name.
+	 *
+	 * @param spelling is the name of an author.
+	 * @return  the author, null if no book of theirs is known
+	 */
+	Author find(String spelling) {
+		return authors.get(AuthorNames.normalize(spelling));
+	}
+
+	/**
+	 * It returns the number of authors, an estimate while it is being changed.
+	 */
+	long size() {
+		return authors.mappingCount();
+	}
+
+	void clear() {
+		authors.clear();
+	}
+
+	static final class Author {
+
+		final int id;
+		final String key;
+		//Guarded by the map entry of the author
+		private int books;
+		private volatile String[] spellings = new String[0];
+
+		private Author(int id, String key) {
+			this.id = id;
+			this.key = key;
+		}
+
+		/**
+		 * It returns the instance of a spelling the dictionary keeps, or the spelling itself if it is not kept.
+		 */
+		String intern(String spelling) {
+			for (String known : spellings) {
+				if (known.equals(spelling)) {
+					return known;
+				}
+			}
+			return spelling;
+		}
+
+		private void addSpelling(String spelling) {
+			String[] current = spellings;
+			for (String known : current) {
+				if (known.equals(spelling)) {
+					return;
+				}
+			}
+			if (current.length == MAX_SPELLINGS) {
+				return;
+			}
+			String[] added = Arrays.copyOf(current, current.length + 1);
+			added[current.length] = spelling;
+			spellings = added;
+		}
+	}
+}
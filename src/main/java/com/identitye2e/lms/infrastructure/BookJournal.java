@@ -0,0 +1,58 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * This is the hook InMemoryBookRepository uses to record its mutations. Every mutation runs through mutate, and the
+ * record methods are called from inside the ConcurrentHashMap update of the affected isbn, so records of the same
+ * isbn are journaled in the order they were applied.
+ */
+public interface BookJournal {
+
+	/**
+	 * The journal used when persistence is disabled, it records nothing.
+	 */
+	BookJournal NONE = new BookJournal() {
+		@Override
+		public <T> T mutate(Supplier<T> mutation) {
+			return mutation.get();
+		}
+
+		@Override
+		public <T> CompletableFuture<T> mutateAsync(Supplier<T> mutation) {
+			return CompletableFuture.completedFuture(mutation.get());
+		}
+
+		@Override
+		public void bookAdded(Book book) {
+		}
+
+		@Override
+		public void bookRemoved(String isbn) {
+		}
+
+		@Override
+		public void copiesChanged(String isbn, int availableCopies) {
+		}
+	};
+
+	/**
+	 * It runs a repository mutation and returns once its records are as durable as the journal promises.
+	 */
+	<T> T mutate(Supplier<T> mutation);
+
+	/**
+	 * It runs a repository mutation and returns a future completed once its records are as durable as the journal
+	 * promises, so the caller does not block while the log is forced.
+	 */
+	<T> CompletableFuture<T> mutateAsync(Supplier<T> mutation);
+
+	void bookAdded(Book book);
+
+	void bookRemoved(String isbn);
+
+	void copiesChanged(String isbn, int availableCopies);
+}
@@ -0,0 +1,181 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * This is an inverted index from the words of titles and authors to the isbns of the books containing them. The
+ * repositories update it together with their own maps, so a search sees the same books as findBookByISBN.
+ *
+ * Words are lower-cased and stripped of accents. A query matches the books that contain all of its words, the last
+ * word also matching as a prefix so results can be shown while typing. Every match contains the same leading words,
+ * so matches are ranked by how rare the word completing the last one is, and ties are broken by isbn. Each word
+ * keeps its isbns sorted, which lets a search stop as soon as it has enough matches.
+ */
+class BookSearchIndex {
+
+	private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+	private static final Pattern ACCENT = Pattern.compile("\\p{M}+");
+
+	//This map has a word as key and the sorted isbns of the books containing it as value eg "potter", {"123123","456789"}
+	private final ConcurrentNavigableMap<String, Postings> postings = new ConcurrentSkipListMap<>();
+
+	/**
+	 * It adds the words of a book, the caller makes sure the same isbn is not indexed concurrently.
+	 */
+	void index(Book book) {
+		for (String word : words(book)) {
+			postings.compute(word, (key, current) -> {
+				Postings result = current == null ? new Postings() : current;
+				if (result.isbns.add(book.getIsbn())) {
+					result.size++;
+				}
+				return result;
+			});
+		}
+	}
+
+	/**
+	 * It removes the words of a book and drops the words no book contains anymore.
+	 */
+	void unindex(Book book) {
+		for (String word : words(book)) {
+			postings.computeIfPresent(word, (key, current) -> {
+				if (current.isbns.remove(book.getIsbn())) {
+					current.size--;
+				}
+				return current.size == 0 ? null : current;
+			});
+		}
+	}
+
+	/**
+	 * It moves a book from its previous words to its current ones if its title or author changed.
+	 */
+	void reindex(Book previous, Book current) {
+		if (previous == null) {
+			index(current);
+		} else if (!previous.getTitle().equals(current.getTitle()) || !previous.getAuthor().equals(current.getAuthor())) {
+			unindex(previous);
+			index(current);
+		}
+	}
+
+	void clear() {
+		postings.clear();
+	}
+
+	/**
+	 * It returns the isbns of the best matching books, best first. Every completion of the last word is a candidate,
+	 * they are visited from the rarest to the most common and each one only until enough matches are found in isbn
+	 * order, so a query on common words stops after a few postings instead of visiting every book containing them.
+	 *
+	 * @param query is free text, punctuation between words is ignored.
+	 * @param limit is the maximum number of isbns to return.
+	 * @return the isbns of the matching books, empty if the query has no words
+	 */
+	List<String> search(String query, int limit) {
+		List<String> words = tokenize(query);
+		if (words.isEmpty() || limit < 1) {
+			return Collections.emptyList();
+		}
+
+		List<Postings> required = new ArrayList<>();
+		for (String word : words.subList(0, words.size() - 1)) {
+			Postings isbns = postings.get(word);
+			if (isbns == null) {
+				return Collections.emptyList();
+			}
+			required.add(isbns);
+		}
+		required.sort(Postings.BY_SIZE);
+		String prefix = words.get(words.size() - 1);
+		//every completion is kept, the ones after enough matches are found are sorted but never walked
+		List<Postings> completions = new ArrayList<>(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+		completions.sort(Postings.BY_SIZE);
+
+		//completions of the same size weigh the same, their matches are ranked together by isbn
+		List<String> results = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		int i = 0;
+		while (i < completions.size() && results.size() < limit) {
+			int size = completions.get(i).size;
+			int needed = limit - results.size();
+			TreeSet<String> group = new TreeSet<>();
+			for (; i < completions.size() && completions.get(i).size == size; i++) {
+				collect(completions.get(i), required, seen, needed, group);
+			}
+			for (String isbn : group) {
+				if (results.size() == limit) {
+					break;
+				}
+				results.add(isbn);
+				seen.add(isbn);
+			}
+		}
+		return results;
+	}
+
+	static List<String> tokenize(String text) {
+		String folded = ACCENT.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+		List<String> words = new ArrayList<>();
+		for (String word : SEPARATOR.split(folded.toLowerCase(Locale.ROOT))) {
+			if (!word.isEmpty()) {
+				words.add(word);
+			}
+		}
+		return words;
+	}
+
+	private static Set<String> words(Book book) {
+		Set<String> words = new HashSet<>(tokenize(book.getTitle()));
+		words.addAll(tokenize(book.getAuthor()));
+		return words;
+	}
+
+	/**
+	 * It adds to matches the first isbns in isbn order that are in the completion and in every required set and
+	 * have not been returned yet, walking whichever of the completion and the rarest required set is smaller.
+	 */
+	private static void collect(Postings completion, List<Postings> required, Set<String> seen, int needed,
+			Set<String> matches) {
+		Postings walked = required.isEmpty() || completion.size <= required.get(0).size ? completion : required.get(0);
+		int found = 0;
+		for (String isbn : walked.isbns) {
+			if (found == needed) {
+				return;
+			}
+			if (!seen.contains(isbn) && completion.isbns.contains(isbn) && containsAll(required, isbn)) {
+				matches.add(isbn);
+				found++;
+			}
+		}
+	}
+
+	private static boolean containsAll(List<Postings> required, String isbn) {
+		for (Postings isbns : required) {
+			if (!isbns.isbns.contains(isbn)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * These are the sorted isbns of the books containing a word. The size is kept alongside because counting a
+	 * ConcurrentSkipListSet walks it, it is only changed inside the compute of the word.
+	 */
+	private static final class Postings {
+
+		static final Comparator<Postings> BY_SIZE = Comparator.comparingInt(postings -> postings.size);
+
+		final NavigableSet<String> isbns = new ConcurrentSkipListSet<>();
+		volatile int size;
+	}
+}
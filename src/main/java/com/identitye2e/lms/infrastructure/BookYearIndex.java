@@ -0,0 +1,138 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * This index keeps the books sorted by publicationYear then isbn, once for the whole catalogue and once per author,
+ * so a BookQuery reads only the range of years it asks for. The repositories update it together with their own
+ * maps, like BookSearchIndex.
+ *
+ * A query with an author reads the author's index, which never holds more books than the same years of the whole
+ * catalogue, and a query without one reads the catalogue's. Available copies change with every borrow and return,
+ * so they are not indexed and the caller filters them while reading.
+ */
+class BookYearIndex {
+
+	//The id of a book whose author is not indexed, and of a query for any author
+	static final int NO_AUTHOR = -1;
+
+	//The publicationYear and isbn of every book
+	private final NavigableSet<Entry> byYear = new ConcurrentSkipListSet<>();
+	//This map has the id of an Author, see AuthorDictionary, as key and the publicationYear and isbn of their books as value
+	private final ConcurrentHashMap<Integer, NavigableSet<Entry>> byAuthorAndYear = new ConcurrentHashMap<>();
+
+	/**
+	 * It adds a book of an author, the caller makes sure the same isbn is not indexed concurrently.
+	 */
+	void index(int author, Book book) {
+		Entry entry = new Entry(book.getPublicationYear(), book.getIsbn());
+		byYear.add(entry);
+		if (author == NO_AUTHOR) {
+			return;
+		}
+		byAuthorAndYear.compute(author, (key, entries) -> {
+			NavigableSet<Entry> result = entries == null ? new ConcurrentSkipListSet<>() : entries;
+			result.add(entry);
+			return result;
+		});
+	}
+
+	/**
+	 * It removes a book of an author and drops the author once no book of theirs is left.
+	 */
+	void unindex(int author, Book book) {
+		Entry entry = new Entry(book.getPublicationYear(), book.getIsbn());
+		byYear.remove(entry);
+		if (author == NO_AUTHOR) {
+			return;
+		}
+		byAuthorAndYear.computeIfPresent(author, (key, entries) -> {
+			entries.remove(entry);
+			return entries.isEmpty() ? null : entries;
+		});
+	}
+
+	void clear() {
+		byYear.clear();
+		byAuthorAndYear.clear();
+	}
+
+	/**
+	 * It returns one page of the books answering a query. The entries are read in order straight from the index,
+	 * starting at the first year of the query or after its previous page, and stop once the page is full or the last
+	 * year is passed. A book is only taken from the entry of its current year, and if it still answers the query, so
+	 * a book changed while the index is read is neither returned twice nor returned out of its years.
+	 *
+	 * @param query selects the books and the page.
+	 * @param author is the id of the author of the query, NO_AUTHOR for any author.
+	 * @param limit is the maximum number of books to return.
+	 * @param books returns the current book of an isbn, null if it was removed.
+	 * @return  the list of books in BookQuery.ORDER
+	 */
+	List<Book> find(BookQuery query, int author, int limit, Function<String, Book> books) {
+		NavigableSet<Entry> entries = author == NO_AUTHOR ? byYear : byAuthorAndYear.get(author);
+		if (entries == null || limit < 1 || query.getFromYear() > query.getToYear()) {
+			return Collections.emptyList();
+		}
+		//The empty isbn comes before every other one
+		Entry from = new Entry(query.getFromYear(), "");
+		boolean inclusive = true;
+		if (query.getAfterIsbn() != null) {
+			Entry after = new Entry(query.getAfterYear(), query.getAfterIsbn());
+			if (after.compareTo(from) >= 0) {
+				from = after;
+				inclusive = false;
+			}
+		}
+		List<Book> results = new ArrayList<>(Math.min(limit, 64));
+		for (Entry entry : entries.tailSet(from, inclusive)) {
+			if (entry.year > query.getToYear()) {
+				break;
+			}
+			Book book = books.apply(entry.isbn);
+			if (book != null && book.getPublicationYear() == entry.year && query.matches(book)) {
+				results.add(book);
+				if (results.size() == limit) {
+					break;
+				}
+			}
+		}
+		return results;
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+
+		private final int year;
+		private final String isbn;
+
+		private Entry(int year, String isbn) {
+			this.year = year;
+			this.isbn = isbn;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int order = Integer.compare(year, other.year);
+			return order != 0 ? order : isbn.compareTo(other.isbn);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Entry && compareTo((Entry) other) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * year + isbn.hashCode();
+		}
+	}
+}
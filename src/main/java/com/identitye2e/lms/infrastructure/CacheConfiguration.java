@@ -0,0 +1,31 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.application.LibraryMetrics;
+import com.identitye2e.lms.domain.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * This configuration puts a CachingBookRepository in front of the repository of the active profile when
+ * lms.cache.enabled is true, and reports its statistics with the library metrics.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lms.cache.enabled", havingValue = "true")
+public class CacheConfiguration {
+
+	@Bean
+	@Primary
+	public CachingBookRepository cachingBookRepository(BookRepository repository, LibraryMetrics metrics,
+			@Value("${lms.cache.max-books:100000}") int maxBooks,
+			@Value("${lms.cache.max-authors:10000}") int maxAuthors) {
+		CachingBookRepository cache = new CachingBookRepository(repository, maxBooks, maxAuthors);
+		metrics.gauge("lms_cache_hits", "Lookups answered by the repository cache", () -> cache.stats().getHits());
+		metrics.gauge("lms_cache_misses", "Lookups the repository cache passed on", () -> cache.stats().getMisses());
+		metrics.gauge("lms_cache_evictions", "Entries evicted from the repository cache", () -> cache.stats().getEvictions());
+		metrics.gauge("lms_cache_size", "Books and authors held by the repository cache", () -> cache.stats().getSize());
+		return cache;
+	}
+}
@@ -0,0 +1,455 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.AuthorNames;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
+import lombok.Value;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This repository keeps the books and author listings last read from another repository in memory, so repeated
+ * lookups of popular books are answered without going to the repository behind it. Both caches are split into
+ * segments, each a LinkedHashMap in access order evicting its least recently used entry once it is full, so lookups
+ * of different books rarely wait for each other. An isbn the repository does not know is cached as missing, and an
+ * author is cached as the sorted isbns of their books, which are looked up through the book cache, once for all the
+ * spellings of their name, see AuthorNames.
+ *
+ * Every mutation goes through this repository and invalidates the entries it changes after the repository behind it
+ * has changed. A lookup that started before the invalidation does not store what it read, so an entry is never older
+ * than the last mutation made through this repository.
+ */
+public class CachingBookRepository implements BookRepository {
+
+	private static final int MAX_SEGMENTS = 64;
+	//Cached in place of a book for an isbn the repository does not know
+	private static final Object MISSING = new Object();
+
+	private final BookRepository repository;
+	private final Segment<Object>[] books;
+	private final Segment<String[]>[] authors;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param repository is the repository whose reads are cached.
+	 * @param maxBooks is the maximum number of isbns cached, books and missing ones alike.
+	 * @param maxAuthors is the maximum number of authors whose isbns are cached.
+	 */
+	public CachingBookRepository(BookRepository repository, int maxBooks, int maxAuthors) {
+		this.repository = repository;
+		this.books = segments(maxBooks);
+		this.authors = segments(maxAuthors);
+	}
+
+	/**
+	 * Cache statistics since the repository was created.
+	 */
+	@Value
+	public static class Stats {
+		long hits;
+		long misses;
+		long evictions;
+		long size;
+
+		/**
+		 * @return the share of lookups answered from memory, 0 before the first lookup
+		 */
+		public double hitRatio() {
+			long lookups = hits + misses;
+			return lookups == 0 ? 0 : (double) hits / lookups;
+		}
+	}
+
+	/**
+	 * It returns the statistics of the book and author caches together.
+	 *
+	 * @return the hits, misses, evictions and number of cached entries
+	 */
+	public Stats stats() {
+		return new Stats(hits.sum(), misses.sum(), evictions.sum(), size(books) + size(authors));
+	}
+
+	/**
+	 * It adds book to the repository and forgets what was cached for its isbn and author.
+	 *
+	 * @param book contains the attributes of a book.
+	 * @return  the book
+	 */
+	@Override
+	public Book addBook(Book book) {
+		Book added = repository.addBook(book);
+		invalidateBook(book.getIsbn());
+		invalidateAuthor(book.getAuthor());
+		return added;
+	}
+
+	@Override
+	public CompletableFuture<Book> addBookAsync(Book book) {
+		CompletableFuture<Book> added = repository.addBookAsync(book);
+		invalidateBook(book.getIsbn());
+		invalidateAuthor(book.getAuthor());
+		return added;
+	}
+
+	@Override
+	public List<Book> addBooks(Collection<Book> newBooks) {
+		List<Book> existing = repository.addBooks(newBooks);
+		for (Book book : newBooks) {
+			invalidateBook(book.getIsbn());
+			invalidateAuthor(book.getAuthor());
+		}
+		return existing;
+	}
+
+	@Override
+	public Optional<Book> removeBook(String isbn) {
+		Optional<Book> removed = repository.removeBook(isbn);
+		invalidateBook(isbn);
+		removed.ifPresent(book -> invalidateAuthor(book.getAuthor()));
+		return removed;
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> removeBookAsync(String isbn) {
+		CompletableFuture<Optional<Book>> removed = repository.removeBookAsync(isbn);
+		invalidateBook(isbn);
+		return removed.thenApply(book -> {
+			book.ifPresent(value -> invalidateAuthor(value.getAuthor()));
+			return book;
+		});
+	}
+
+	/**
+	 * It returns book from the cache, reading it from the repository only if its isbn is not cached yet.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
+	 */
+	@Override
+	public Optional<Book> findBookByISBN(String isbn) {
+		Object book = cachedBook(isbn);
+		return book == MISSING ? Optional.empty() : Optional.of((Book) book);
+	}
+
+	/**
+	 * It returns list of books of the author, whose isbns are read from the repository only if the author is not
+	 * cached yet.
+	 *
+	 * @param author is the author of a book.
+	 * @return  the list of books in isbn order, if a book with given author exists otherwise empty list
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author) {
+		return findBooksByAuthor(author, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * It returns one page of an author's books in isbn order from the cached isbns of the author.
+	 *
+	 * @param author is the author of a book.
+	 * @param afterIsbn is the last isbn of the previous page, null for the first page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		if (author == null) {
+			return repository.findBooksByAuthor(author, afterIsbn, limit);
+		}
+		if (limit < 1) {
+			return Collections.emptyList();
+		}
+		AuthorLoad[] load = new AuthorLoad[1];
+		String[] isbns = get(authors, AuthorNames.normalize(author), key -> {
+			load[0] = new AuthorLoad(author);
+			return load[0].isbns;
+		});
+		int start = 0;
+		if (afterIsbn != null) {
+			int index = Arrays.binarySearch(isbns, afterIsbn);
+			start = index >= 0 ? index + 1 : -index - 1;
+		}
+		List<Book> results = new ArrayList<>(Math.min(limit, Math.min(isbns.length - start, 64)));
+		for (int i = start; i < isbns.length && results.size() < limit; i++) {
+			Object book = load[0] == null ? cachedBook(isbns[i]) : load[0].book(isbns[i]);
+			if (book != MISSING) {
+				results.add((Book) book);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public List<Book> searchBooks(String query, int limit) {
+		return repository.searchBooks(query, limit);
+	}
+
+	/**
+	 * It asks the repository behind, a range of years has too many forms to be cached like an author.
+	 */
+	@Override
+	public List<Book> findBooks(BookQuery query, int limit) {
+		return repository.findBooks(query, limit);
+	}
+
+	@Override
+	public Book updateBookAvailabilityCopies(Book book, int count) {
+		Book updated = repository.updateBookAvailabilityCopies(book, count);
+		invalidateBook(book.getIsbn());
+		invalidateAuthor(book.getAuthor());
+		return updated;
+	}
+
+	/**
+	 * It takes one copy of a book. A book cached as missing or without copies is reported straight away, since the
+	 * repository has not changed since it was cached, a book that is not cached is left to the repository.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book, or the not found or unavailable result
+	 */
+	@Override
+	public BookResult decrementAvailableCopies(String isbn) {
+		BookResult miss = miss(isbn);
+		if (miss != null) {
+			return miss;
+		}
+		BookResult result = repository.decrementAvailableCopies(isbn);
+		if (result.isOk()) {
+			invalidateBook(isbn);
+		}
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+		BookResult miss = miss(isbn);
+		if (miss != null) {
+			return CompletableFuture.completedFuture(miss);
+		}
+		CompletableFuture<BookResult> result = repository.decrementAvailableCopiesAsync(isbn);
+		invalidateBook(isbn);
+		return result;
+	}
+
+	@Override
+	public Optional<Book> incrementAvailableCopies(String isbn) {
+		Optional<Book> result = repository.incrementAvailableCopies(isbn);
+		invalidateBook(isbn);
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+		CompletableFuture<Optional<Book>> result = repository.incrementAvailableCopiesAsync(isbn);
+		invalidateBook(isbn);
+		return result;
+	}
+
+	@Override
+	public long countBooks() {
+		return repository.countBooks();
+	}
+
+	@Override
+	public long countAuthors() {
+		return repository.countAuthors();
+	}
+
+	@Override
+	public void forEachBook(Consumer<Book> action) {
+		repository.forEachBook(action);
+	}
+
+	private Object cachedBook(String isbn) {
+		if (isbn == null) {
+			return repository.findBookByISBN(isbn).map(Object.class::cast).orElse(MISSING);
+		}
+		return get(books, isbn, key -> repository.findBookByISBN(key).map(Object.class::cast).orElse(MISSING));
+	}
+
+	/**
+	 * It returns the result of a borrow that can be told from the cache without the repository, or null.
+	 */
+	private BookResult miss(String isbn) {
+		if (isbn == null) {
+			return null;
+		}
+		Segment<Object> segment = segment(books, isbn);
+		Object book;
+		synchronized (segment) {
+			book = segment.get(isbn);
+		}
+		if (book == MISSING) {
+			return BookResult.notFound();
+		}
+		return book != null && ((Book) book).getAvailableCopies() < 1 ? BookResult.unavailable() : null;
+	}
+
+	/**
+	 * It forgets an isbn, and the author listing of the book cached for it, as the book may have changed author.
+	 */
+	private void invalidateBook(String isbn) {
+		if (isbn == null) {
+			return;
+		}
+		Object previous = invalidate(books, isbn);
+		if (previous instanceof Book) {
+			invalidateAuthor(((Book) previous).getAuthor());
+		}
+	}
+
+	/**
+	 * It forgets the listing of an author, cached once for all the spellings of their name.
+	 */
+	private void invalidateAuthor(String author) {
+		invalidate(authors, AuthorNames.normalize(author));
+	}
+
+	/**
+	 * It returns the cached value of key, loading and caching it on a miss unless the segment was invalidated while
+	 * the value was loaded.
+	 */
+	private <V> V get(Segment<V>[] segments, String key, Function<String, V> loader) {
+		Segment<V> segment = segment(segments, key);
+		long invalidations;
+		synchronized (segment) {
+			V cached = segment.get(key);
+			if (cached != null) {
+				hits.increment();
+				return cached;
+			}
+			invalidations = segment.invalidations;
+		}
+		misses.increment();
+		V loaded = loader.apply(key);
+		synchronized (segment) {
+			if (segment.invalidations == invalidations) {
+				segment.put(key, loaded);
+			}
+		}
+		return loaded;
+	}
+
+	private static <V> V invalidate(Segment<V>[] segments, String key) {
+		if (key == null) {
+			return null;
+		}
+		Segment<V> segment = segment(segments, key);
+		synchronized (segment) {
+			segment.invalidations++;
+			return segment.remove(key);
+		}
+	}
+
+	private static <V> Segment<V> segment(Segment<V>[] segments, String key) {
+		return segments[index(segments, key)];
+	}
+
+	private static int index(Segment<?>[] segments, String key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (segments.length - 1);
+	}
+
+	/**
+	 * It creates a power of two number of segments, at most MAX_SEGMENTS and few enough that each one holds a dozen
+	 * entries or more, sharing the capacity between them.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private <V> Segment<V>[] segments(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+		}
+		int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, capacity / 16)));
+		Segment<V>[] segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment<>(capacity / count + (i < capacity % count ? 1 : 0), evictions);
+		}
+		return segments;
+	}
+
+	private static long size(Segment<?>[] segments) {
+		long size = 0;
+		for (Segment<?> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * The books of an author read from the repository for an author listing that was not cached. The books of the
+	 * page served from it are cached as they are handed out, so the page costs no read of its isbns, unless their
+	 * segment was invalidated since the books were read.
+	 */
+	private final class AuthorLoad {
+
+		private final long[] invalidations = new long[books.length];
+		private final Map<String, Book> loaded = new HashMap<>();
+		private final String[] isbns;
+
+		private AuthorLoad(String author) {
+			for (int i = 0; i < books.length; i++) {
+				synchronized (books[i]) {
+					invalidations[i] = books[i].invalidations;
+				}
+			}
+			List<Book> authorBooks = repository.findBooksByAuthor(author);
+			isbns = new String[authorBooks.size()];
+			for (int i = 0; i < isbns.length; i++) {
+				Book book = authorBooks.get(i);
+				isbns[i] = book.getIsbn();
+				loaded.put(isbns[i], book);
+			}
+			Arrays.sort(isbns);
+		}
+
+		private Object book(String isbn) {
+			Book book = loaded.get(isbn);
+			int index = index(books, isbn);
+			Segment<Object> segment = books[index];
+			synchronized (segment) {
+				if (segment.invalidations == invalidations[index]) {
+					segment.putIfAbsent(isbn, book);
+				}
+			}
+			return book;
+		}
+	}
+
+	/**
+	 * A part of a cache, guarded by its own monitor. It counts its invalidations so that a value loaded while the
+	 * segment was invalidated is not cached.
+	 */
+	private static final class Segment<V> extends LinkedHashMap<String, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		private final LongAdder evictions;
+		private long invalidations;
+
+		private Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+			if (size() <= capacity) {
+				return false;
+			}
+			evictions.increment();
+			return true;
+		}
+	}
+}
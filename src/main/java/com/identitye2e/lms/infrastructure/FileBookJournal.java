@@ -0,0 +1,683 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This is a write-ahead log for InMemoryBookRepository. Mutations are appended to an in-memory buffer and a writer
+ * thread writes the buffer to the current log segment through a FileChannel, so many mutations share one write and
+ * one fsync (group commit). Every record holds the resulting state of a book rather than a delta, which makes replay
+ * idempotent.
+ *
+ * A checkpoint rolls the log over to a new segment and then writes a binary snapshot of the repository next to it.
+ * The snapshot is taken while mutations continue, which is safe because every mutation it might miss or see twice is
+ * replayed from the new segment. Recovery loads the newest snapshot and replays the segments from its number onwards,
+ * stopping at the first torn record.
+ *
+ * Once a write fails the writer stops and every later mutation is rejected before it changes the repository, so the
+ * repository never runs ahead of a log nobody writes. Only the mutations whose records were in the failed write are
+ * visible without being durable, under ALWAYS their callers are told they failed.
+ */
+@Slf4j
+public class FileBookJournal implements BookJournal, Closeable {
+
+	/**
+	 * When the log is forced to disk: before every mutation returns, every fsync interval, or never.
+	 */
+	public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+	private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+	private static final int SNAPSHOT_MAGIC = 0x4c4d5331;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final byte ADD = 1;
+	private static final byte REMOVE = 2;
+	private static final byte COPIES = 3;
+
+	private final Path directory;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncIntervalMillis;
+	private final InMemoryBookRepository repository;
+
+	//Mutations hold the read lock while they update the map and append, a log roll over holds the write lock
+	private final ReentrantReadWriteLock rollOverLock = new ReentrantReadWriteLock();
+	//Guards active, appended and wakes the writer, lock order is channelLock before appendLock
+	private final Object appendLock = new Object();
+	//Guards channel, segment and the buffer being written
+	private final Object channelLock = new Object();
+	//Guards durable and waiters, a lock rather than a monitor so a virtual thread in awaitDurable unmounts from its carrier
+	private final ReentrantLock durableLock = new ReentrantLock();
+	private final Condition durableChanged = durableLock.newCondition();
+	private final Object checkpointLock = new Object();
+
+	//Futures of mutateAsync waiting for the log to be forced, the first one waits for the fewest records, guarded by durableLock
+	private final PriorityQueue<DurableWaiter> waiters = new PriorityQueue<>(Comparator.comparingLong(waiter -> waiter.target));
+
+	private RecordBuffer active = new RecordBuffer();
+	private RecordBuffer writing = new RecordBuffer();
+	private volatile long appended;
+	private volatile long durable;
+	private volatile IOException failure;
+	private volatile boolean running = true;
+	private long lastForce = System.nanoTime();
+	private boolean unforced;
+
+	private FileChannel channel;
+	private long segment;
+
+	private final Thread writer;
+	private final ScheduledExecutorService snapshotScheduler;
+
+	private FileBookJournal(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+			long snapshotIntervalSeconds, InMemoryBookRepository repository) throws IOException {
+		this.directory = directory;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalMillis = Math.max(1, fsyncIntervalMillis);
+		this.repository = repository;
+
+		Files.createDirectories(directory);
+		this.segment = recover();
+		this.channel = openSegment(segment);
+		repository.setJournal(this);
+
+		this.writer = new Thread(this::writeLoop, "book-journal-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+
+		this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-journal-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (snapshotIntervalSeconds > 0) {
+			snapshotScheduler.scheduleWithFixedDelay(this::scheduledCheckpoint,
+				snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * It restores the repository from the journal in the given directory and starts journaling its mutations.
+	 *
+	 * @param directory holds the log segments and snapshots, it is created if missing.
+	 * @param fsyncPolicy decides when the log is forced to disk.
+	 * @param fsyncIntervalMillis is how often the writer flushes when the policy is not ALWAYS.
+	 * @param snapshotIntervalSeconds is the delay between checkpoints, 0 disables periodic checkpoints.
+	 * @param repository is the empty repository to restore and journal.
+	 * @return the open journal
+	 */
+	public static FileBookJournal open(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+			long snapshotIntervalSeconds, InMemoryBookRepository repository) throws IOException {
+		return new FileBookJournal(directory, fsyncPolicy, fsyncIntervalMillis, snapshotIntervalSeconds, repository);
+	}
+
+	/**
+	 * It rejects the mutation without running it once the log can no longer be written.
+	 *
+	 * @throws UncheckedIOException if the log failed.
+	 */
+	@Override
+	public <T> T mutate(Supplier<T> mutation) {
+		T result;
+		rollOverLock.readLock().lock();
+		try {
+			if (failure != null) {
+				throw unavailable();
+			}
+			result = mutation.get();
+		} finally {
+			rollOverLock.readLock().unlock();
+		}
+		if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+			awaitDurable(appended);
+		}
+		return result;
+	}
+
+	/**
+	 * It rejects the mutation without running it once the log can no longer be written, returning a failed future.
+	 */
+	@Override
+	public <T> CompletableFuture<T> mutateAsync(Supplier<T> mutation) {
+		T result;
+		rollOverLock.readLock().lock();
+		try {
+			if (failure != null) {
+				CompletableFuture<T> rejected = new CompletableFuture<>();
+				rejected.completeExceptionally(unavailable());
+				return rejected;
+			}
+			result = mutation.get();
+		} finally {
+			rollOverLock.readLock().unlock();
+		}
+		if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+			return CompletableFuture.completedFuture(result);
+		}
+		return whenDurable(appended).thenApply(durable -> result);
+	}
+
+	@Override
+	public void bookAdded(Book book) {
+		synchronized (appendLock) {
+			DataOutputStream out = active.beginRecord();
+			try {
+				out.writeByte(ADD);
+				writeBook(out, book);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			endRecord();
+		}
+	}
+
+	@Override
+	public void bookRemoved(String isbn) {
+		synchronized (appendLock) {
+			DataOutputStream out = active.beginRecord();
+			try {
+				out.writeByte(REMOVE);
+				out.writeUTF(isbn);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			endRecord();
+		}
+	}
+
+	@Override
+	public void copiesChanged(String isbn, int availableCopies) {
+		synchronized (appendLock) {
+			DataOutputStream out = active.beginRecord();
+			try {
+				out.writeByte(COPIES);
+				out.writeUTF(isbn);
+				out.writeInt(availableCopies);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			endRecord();
+		}
+	}
+
+	/**
+	 * It rolls the log over to a new segment, writes a snapshot of the repository and deletes the segments and
+	 * snapshots the new snapshot replaces.
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (checkpointLock) {
+			long started = System.nanoTime();
+			long snapshotSegment;
+			rollOverLock.writeLock().lock();
+			try {
+				snapshotSegment = rollOver();
+			} finally {
+				rollOverLock.writeLock().unlock();
+			}
+			completeWaiters();
+			long count = writeSnapshot(snapshotSegment);
+			deleteObsoleteFiles(snapshotSegment);
+			log.info("Wrote snapshot of {} books in {} ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		}
+	}
+
+	/**
+	 * It flushes and forces everything appended so far and closes the current segment.
+	 */
+	@Override
+	public void close() throws IOException {
+		snapshotScheduler.shutdown();
+		running = false;
+		synchronized (appendLock) {
+			appendLock.notifyAll();
+		}
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (channelLock) {
+			if (channel.isOpen()) {
+				flush(true);
+				channel.close();
+			}
+		}
+		completeWaiters();
+	}
+
+	private void endRecord() {
+		active.endRecord();
+		appended++;
+		if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+			appendLock.notifyAll();
+		}
+	}
+
+	private void awaitDurable(long target) {
+		durableLock.lock();
+		try {
+			while (durable < target && failure == null) {
+				durableChanged.await();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the book journal", e);
+		} finally {
+			durableLock.unlock();
+		}
+		if (failure != null && durable < target) {
+			throw unavailable();
+		}
+	}
+
+	/**
+	 * It returns a future completed by the writer once target records are durable, or failed once the log can no
+	 * longer be written.
+	 */
+	private CompletableFuture<Void> whenDurable(long target) {
+		DurableWaiter waiter = new DurableWaiter(target);
+		durableLock.lock();
+		try {
+			if (durable < target && failure == null) {
+				waiters.add(waiter);
+				return waiter.future;
+			}
+		} finally {
+			durableLock.unlock();
+		}
+		completeWaiter(waiter);
+		return waiter.future;
+	}
+
+	/**
+	 * It completes the waiters whose records are durable, or all of them once the log failed. It is called without
+	 * holding any lock of the journal, so the callbacks of the futures can not hold up or deadlock the writer.
+	 */
+	private void completeWaiters() {
+		List<DurableWaiter> ready = new ArrayList<>();
+		durableLock.lock();
+		try {
+			while (!waiters.isEmpty() && (waiters.peek().target <= durable || failure != null)) {
+				ready.add(waiters.poll());
+			}
+		} finally {
+			durableLock.unlock();
+		}
+		for (DurableWaiter waiter : ready) {
+			completeWaiter(waiter);
+		}
+	}
+
+	private void completeWaiter(DurableWaiter waiter) {
+		if (durable >= waiter.target) {
+			waiter.future.complete(null);
+		} else {
+			waiter.future.completeExceptionally(unavailable());
+		}
+	}
+
+	private UncheckedIOException unavailable() {
+		return new UncheckedIOException("Book journal is unavailable", failure);
+	}
+
+	private void writeLoop() {
+		while (running) {
+			try {
+				synchronized (appendLock) {
+					if (running && active.size() == 0) {
+						appendLock.wait(fsyncPolicy == FsyncPolicy.ALWAYS ? 1000 : fsyncIntervalMillis);
+					}
+				}
+				synchronized (channelLock) {
+					boolean force = fsyncPolicy == FsyncPolicy.ALWAYS || (fsyncPolicy == FsyncPolicy.INTERVAL
+						&& System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis));
+					flush(force);
+				}
+				completeWaiters();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (IOException e) {
+				log.error("Book journal write failed, mutations can no longer be made durable", e);
+				fail(e);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * It stops the journal after a write failed: the mutations waiting for the log fail, and the mutations that have
+	 * not started yet are rejected before they change the repository. Setting the failure under the write lock makes
+	 * sure no mutation is halfway between the check and its records.
+	 */
+	void fail(IOException e) {
+		rollOverLock.writeLock().lock();
+		try {
+			failure = e;
+		} finally {
+			rollOverLock.writeLock().unlock();
+		}
+		durableLock.lock();
+		try {
+			durableChanged.signalAll();
+		} finally {
+			durableLock.unlock();
+		}
+		completeWaiters();
+	}
+
+	/**
+	 * It writes the active buffer to the current segment. The caller holds channelLock.
+	 */
+	private void flush(boolean force) throws IOException {
+		long upTo;
+		RecordBuffer pending;
+		synchronized (appendLock) {
+			pending = active;
+			active = writing;
+			writing = pending;
+			upTo = appended;
+		}
+		if (pending.size() > 0) {
+			pending.writeTo(channel);
+			pending.reset();
+			unforced = true;
+		}
+		if (force && unforced) {
+			channel.force(false);
+			lastForce = System.nanoTime();
+			unforced = false;
+		}
+		if (force || fsyncPolicy == FsyncPolicy.NEVER) {
+			durableLock.lock();
+			try {
+				durable = upTo;
+				durableChanged.signalAll();
+			} finally {
+				durableLock.unlock();
+			}
+		}
+	}
+
+	private long rollOver() throws IOException {
+		synchronized (channelLock) {
+			flush(true);
+			channel.close();
+			segment++;
+			channel = openSegment(segment);
+			return segment;
+		}
+	}
+
+	private FileChannel openSegment(long number) throws IOException {
+		return FileChannel.open(directory.resolve(segmentName(number)),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private void scheduledCheckpoint() {
+		try {
+			checkpoint();
+		} catch (Exception e) {
+			log.error("Book journal checkpoint failed", e);
+		}
+	}
+
+	private long writeSnapshot(long snapshotSegment) throws IOException {
+		Path target = directory.resolve(snapshotName(snapshotSegment));
+		Path temporary = directory.resolve(snapshotName(snapshotSegment) + ".tmp");
+		long count = 0;
+		try (FileChannel snapshotChannel = FileChannel.open(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			CheckedOutputStream checked = new CheckedOutputStream(
+				new BufferedOutputStream(Channels.newOutputStream(snapshotChannel), 1 << 16), new CRC32());
+			DataOutputStream out = new DataOutputStream(checked);
+			out.writeInt(SNAPSHOT_MAGIC);
+			for (Book book : repository.books.values()) {
+				out.writeBoolean(true);
+				writeBook(out, book);
+				count++;
+			}
+			out.writeBoolean(false);
+			out.writeLong(checked.getChecksum().getValue());
+			out.flush();
+			snapshotChannel.force(true);
+		}
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return count;
+	}
+
+	private void deleteObsoleteFiles(long snapshotSegment) throws IOException {
+		for (Path file : list(SEGMENT_NAME)) {
+			if (number(file, SEGMENT_NAME) < snapshotSegment) {
+				Files.deleteIfExists(file);
+			}
+		}
+		for (Path file : list(SNAPSHOT_NAME)) {
+			if (number(file, SNAPSHOT_NAME) < snapshotSegment) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * It loads the newest readable snapshot, replays the log segments written after it and returns the number of
+	 * the segment new records go to.
+	 */
+	private long recover() throws IOException {
+		long started = System.nanoTime();
+		long snapshotSegment = 0;
+		List<Path> snapshots = list(SNAPSHOT_NAME);
+		for (int i = snapshots.size() - 1; i >= 0; i--) {
+			Path snapshot = snapshots.get(i);
+			try {
+				readSnapshot(snapshot);
+				snapshotSegment = number(snapshot, SNAPSHOT_NAME);
+				break;
+			} catch (IOException e) {
+				log.warn("Ignoring unreadable snapshot {}", snapshot, e);
+				repository.clear();
+			}
+		}
+
+		long lastSegment = snapshotSegment;
+		long records = 0;
+		for (Path file : list(SEGMENT_NAME)) {
+			long number = number(file, SEGMENT_NAME);
+			if (number >= snapshotSegment) {
+				records += replay(file);
+			}
+			lastSegment = Math.max(lastSegment, number);
+		}
+		log.info("Recovered {} books from {} (snapshot {}, {} log records) in {} ms", repository.books.size(),
+			directory, snapshotSegment, records, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		return lastSegment + 1;
+	}
+
+	private void readSnapshot(Path snapshot) throws IOException {
+		try (InputStream stream = Channels.newInputStream(FileChannel.open(snapshot, StandardOpenOption.READ))) {
+			CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, 1 << 16), new CRC32());
+			DataInputStream in = new DataInputStream(checked);
+			if (in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a book snapshot");
+			}
+			while (in.readBoolean()) {
+				repository.addBook(readBook(in));
+			}
+			long expected = checked.getChecksum().getValue();
+			if (in.readLong() != expected) {
+				throw new IOException("Snapshot checksum mismatch");
+			}
+		}
+	}
+
+	private long replay(Path file) throws IOException {
+		long records = 0;
+		try (InputStream stream = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+			byte[] header = new byte[RECORD_HEADER_SIZE];
+			CRC32 crc = new CRC32();
+			while (readFully(in, header)) {
+				int length = ByteBuffer.wrap(header).getInt();
+				int checksum = ByteBuffer.wrap(header).getInt(4);
+				byte[] payload = new byte[Math.max(0, length)];
+				if (length <= 0 || !readFully(in, payload)) {
+					log.warn("Ignoring torn record at the end of {}", file);
+					break;
+				}
+				crc.reset();
+				crc.update(payload, 0, payload.length);
+				if ((int) crc.getValue() != checksum) {
+					log.warn("Ignoring corrupt record at the end of {}", file);
+					break;
+				}
+				apply(new DataInputStream(new ByteArrayInputStream(payload)));
+				records++;
+			}
+		}
+		return records;
+	}
+
+	private void apply(DataInputStream in) throws IOException {
+		byte op = in.readByte();
+		switch (op) {
+			case ADD:
+				repository.addBook(readBook(in));
+				break;
+			case REMOVE:
+				repository.removeBook(in.readUTF());
+				break;
+			case COPIES:
+				String isbn = in.readUTF();
+				int copies = in.readInt();
+				repository.findBookByISBN(isbn).ifPresent(book -> repository.updateBookAvailabilityCopies(book, copies));
+				break;
+			default:
+				throw new IOException("Unknown journal record " + op);
+		}
+	}
+
+	private static boolean readFully(DataInputStream in, byte[] bytes) throws IOException {
+		int read = 0;
+		while (read < bytes.length) {
+			int n = in.read(bytes, read, bytes.length - read);
+			if (n < 0) {
+				return false;
+			}
+			read += n;
+		}
+		return true;
+	}
+
+	private static void writeBook(DataOutputStream out, Book book) throws IOException {
+		out.writeUTF(book.getIsbn());
+		out.writeUTF(book.getTitle());
+		out.writeUTF(book.getAuthor());
+		out.writeInt(book.getPublicationYear());
+		out.writeInt(book.getAvailableCopies());
+	}
+
+	private static Book readBook(DataInputStream in) throws IOException {
+		return Book.builder()
+			.isbn(in.readUTF())
+			.title(in.readUTF())
+			.author(in.readUTF())
+			.publicationYear(in.readInt())
+			.availableCopies(in.readInt())
+			.build();
+	}
+
+	private List<Path> list(Pattern pattern) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> stream = Files.list(directory)) {
+			stream.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).forEach(files::add);
+		}
+		files.sort((a, b) -> Long.compare(number(a, pattern), number(b, pattern)));
+		return files;
+	}
+
+	private static long number(Path file, Pattern pattern) {
+		Matcher matcher = pattern.matcher(file.getFileName().toString());
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException(file.toString());
+		}
+		return Long.parseLong(matcher.group(1));
+	}
+
+	private static String segmentName(long number) {
+		return String.format("journal-%016d.log", number);
+	}
+
+	private static String snapshotName(long number) {
+		return String.format("snapshot-%016d.bin", number);
+	}
+
+	private static final class DurableWaiter {
+
+		final long target;
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		DurableWaiter(long target) {
+			this.target = target;
+		}
+	}
+
+	/**
+	 * A growable byte buffer that frames each record with its length and CRC32.
+	 */
+	private static final class RecordBuffer extends ByteArrayOutputStream {
+
+		private final DataOutputStream out = new DataOutputStream(this);
+		private int recordStart;
+
+		RecordBuffer() {
+			super(1 << 16);
+		}
+
+		DataOutputStream beginRecord() {
+			recordStart = count;
+			for (int i = 0; i < RECORD_HEADER_SIZE; i++) {
+				write(0);
+			}
+			return out;
+		}
+
+		void endRecord() {
+			int payloadStart = recordStart + RECORD_HEADER_SIZE;
+			CRC32 crc = new CRC32();
+			crc.update(buf, payloadStart, count - payloadStart);
+			ByteBuffer header = ByteBuffer.wrap(buf, recordStart, RECORD_HEADER_SIZE);
+			header.putInt(count - payloadStart);
+			header.putInt((int) crc.getValue());
+		}
+
+		void writeTo(FileChannel channel) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+}
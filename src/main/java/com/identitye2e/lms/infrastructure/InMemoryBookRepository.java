@@ -1,10 +1,16 @@
 package com.identitye2e.lms.infrastructure;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
 
 
 import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookResult;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import com.identitye2e.lms.domain.BookRepository;
@@ -13,54 +19,108 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Component
+@Profile("!offheap & !sharded")
 public class InMemoryBookRepository implements BookRepository {
 
 	//This map has ISBN as key and Book as value , eg "123123", new Book()
 	final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
-	//This map has Author as key and list of their Book's ISBN as value eg "J. K. Rowling", ["123123","456789" ]
-	final ConcurrentHashMap<String, List<String>> booksByAuthorCache = new ConcurrentHashMap<>();
+	//This dictionary gives every Author an id shared by all the spellings of their name and interns the spellings
+	final AuthorDictionary authors = new AuthorDictionary();
+	//This map has the id of an Author as key and a concurrent set of their Book's ISBN sorted by ISBN as value eg 7, {"123123","456789"}
+	final ConcurrentHashMap<Integer, NavigableSet<String>> booksByAuthorCache = new ConcurrentHashMap<>();
+	//This index has the words of titles and authors as keys and the ISBNs of the Books containing them as values
+	final BookSearchIndex searchIndex = new BookSearchIndex();
+	//This index has the books sorted by publicationYear and isbn, for the whole catalogue and for every author
+	final BookYearIndex yearIndex = new BookYearIndex();
+	//Records every mutation when persistence is enabled, see FileBookJournal
+	private volatile BookJournal journal = BookJournal.NONE;
 
 	/**
-	 * It adds book to the ConcurrentHashMap and update booksByAuthorCache map
+	 * It sets the journal that records the mutations of this repository from now on.
+	 */
+	void setJournal(BookJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * It removes every book, it is used when recovery has to start over.
+	 */
+	void clear() {
+		books.clear();
+		booksByAuthorCache.clear();
+		authors.clear();
+		searchIndex.clear();
+		yearIndex.clear();
+	}
+
+	/**
+	 * It adds book to the ConcurrentHashMap and update booksByAuthorCache map and searchIndex
 	 *
 	 * @param book contains the attributes of a book.
 	 * @return  the book
 	 */
 	@Override
 	public Book addBook(Book book) {
-		books.put(book.getIsbn(), book);
-
-		if (booksByAuthorCache.containsKey(book.getAuthor())) {
-			booksByAuthorCache.get(book.getAuthor()).add(book.getIsbn());
-		} else {
-			List<String> isbnList =new ArrayList<>();
-			isbnList.add(book.getIsbn());
-			booksByAuthorCache.put(book.getAuthor(),  isbnList);
-		}
+		return journal.mutate(() -> put(book));
+	}
 
-		return book;
+	/**
+	 * It adds book like addBook without waiting for the journal.
+	 *
+	 * @param book contains the attributes of a book.
+	 * @return  the book, once its record is durable
+	 */
+	@Override
+	public CompletableFuture<Book> addBookAsync(Book book) {
+		return journal.mutateAsync(() -> put(book));
+	}
+
+	/**
+	 * It adds a batch of books to the ConcurrentHashMap and update booksByAuthorCache map and searchIndex. Books whose isbn is
+	 * already present, including an earlier entry of the same batch, are left out.
+	 *
+	 * @param newBooks contains the books to add.
+	 * @return  the books that were not added because a book with the same isbn exists
+	 */
+	@Override
+	public List<Book> addBooks(Collection<Book> newBooks) {
+		return journal.mutate(() -> {
+			List<Book> existing = new ArrayList<>();
+			for (Book book : newBooks) {
+				boolean[] added = new boolean[1];
+				books.computeIfAbsent(book.getIsbn(), isbn -> {
+					journal.bookAdded(book);
+					added[0] = true;
+					return index(null, book);
+				});
+				if (!added[0]) {
+					existing.add(book);
+				}
+			}
+			return existing;
+		});
 	}
 
 	/**
-	 * It removes book from the ConcurrentHashMap and update booksByAuthorCache map
+	 * It removes book from the ConcurrentHashMap and update booksByAuthorCache map and searchIndex
 	 *
 	 * @param isbn is the isbn of a book.
 	 * @return  the book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
 	 */
 	@Override
 	public Optional<Book> removeBook(String isbn) {
-		Optional<Book> result;
-		if (!books.containsKey(isbn)) {
-			result = Optional.empty();
-		} else {
-			Optional<Book> book = findBookByISBN(isbn);
-			if (booksByAuthorCache.containsKey(book.get().getAuthor())) {
-				booksByAuthorCache.get(book.get().getAuthor()).remove(isbn);
-			}
-			books.remove(isbn);
-			result = book;
-		}
-		return result;
+		return journal.mutate(() -> remove(isbn));
+	}
+
+	/**
+	 * It removes book like removeBook without waiting for the journal.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the book wrapped as an Optional<>, once its removal is durable
+	 */
+	@Override
+	public CompletableFuture<Optional<Book>> removeBookAsync(String isbn) {
+		return journal.mutateAsync(() -> remove(isbn));
 	}
 
 	/**
@@ -78,27 +138,99 @@ public class InMemoryBookRepository implements BookRepository {
 	}
 
 	/**
-	 * It returns list of books from the ConcurrentHashMap
+	 * It returns list of books from the ConcurrentHashMap. The author's ISBN set is iterated in place, it is never
+	 * locked or copied, and books removed while iterating are skipped.
 	 *
 	 * @param author is the author of a book.
 	 * @return  the list of books, if a book with given author exists otherwise empty list
 	 */
 	@Override
 	public List<Book> findBooksByAuthor(String author) {
-		if (!booksByAuthorCache.containsKey(author)) {
+		NavigableSet<String> allISBNs = isbnsOf(author);
+		if (allISBNs == null) {
 			return Collections.emptyList();
 		}
 
-		List<String> allISBNs = booksByAuthorCache.get(author);
 		List<Book> results = new ArrayList<>();
-		for (String isbn: allISBNs)
-			results.add(books.get(isbn));
+		for (String isbn: allISBNs) {
+			Book book = books.get(isbn);
+			if (book != null) {
+				results.add(book);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * It returns one page of an author's books in isbn order. The page starts after the given isbn in the author's
+	 * sorted ISBN set, so a page costs the same however many books the author has and pages stay stable while
+	 * books are added or removed.
+	 *
+	 * @param author is the author of a book.
+	 * @param afterIsbn is the last isbn of the previous page, null for the first page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		NavigableSet<String> allISBNs = isbnsOf(author);
+		if (allISBNs == null || limit < 1) {
+			return Collections.emptyList();
+		}
 
+		List<Book> results = new ArrayList<>(Math.min(limit, 64));
+		for (String isbn : afterIsbn == null ? allISBNs : allISBNs.tailSet(afterIsbn, false)) {
+			if (results.size() == limit) {
+				break;
+			}
+			Book book = books.get(isbn);
+			if (book != null) {
+				results.add(book);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * It returns the books whose title and author contain every word of the query, the last word may be the start
+	 * of a word, ranked by searchIndex with the best match first.
+	 *
+	 * @param query is free text such as "harry pot".
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty if nothing matches
+	 */
+	@Override
+	public List<Book> searchBooks(String query, int limit) {
+		List<Book> results = new ArrayList<>();
+		for (String isbn : searchIndex.search(query, limit)) {
+			Book book = books.get(isbn);
+			if (book != null) {
+				results.add(book);
+			}
+		}
 		return results;
 	}
 
 	/**
-	 * It returns book after updating available copies of the book
+	 * It returns one page of the books answering a query, read in order from yearIndex: from the author's books if
+	 * the query has an author, from the whole catalogue otherwise, and only for the years asked for. Available copies
+	 * are checked on the books as they are read.
+	 *
+	 * @param query selects the books and the page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooks(BookQuery query, int limit) {
+		if (query.getAuthor() == null) {
+			return yearIndex.find(query, BookYearIndex.NO_AUTHOR, limit, books::get);
+		}
+		AuthorDictionary.Author author = authors.find(query.getAuthor());
+		return author == null ? Collections.emptyList() : yearIndex.find(query, author.id, limit, books::get);
+	}
+
+	/**
+	 * It returns a copy of book with the available copies updated, which replaces the stored book
 	 *
 	 * @param book contains the attributes of a book.
 	 * @param newCount is the current available copies of a book.
@@ -106,8 +238,230 @@ public class InMemoryBookRepository implements BookRepository {
 	 */
 	@Override
 	public Book updateBookAvailabilityCopies(Book book, int newCount) {
-		book.setAvailableCopies(newCount);
-		books.put(book.getIsbn(), book);
+		Book updated = book.withAvailableCopies(newCount);
+		return journal.mutate(() -> books.compute(updated.getIsbn(), (isbn, current) -> {
+			if (current == null) {
+				journal.bookAdded(updated);
+			} else {
+				journal.copiesChanged(isbn, newCount);
+			}
+			return index(current, updated);
+		}));
+	}
+
+	/**
+	 * It atomically takes one copy of a book if any copy is available. The check and the update run inside
+	 * ConcurrentHashMap.computeIfPresent, so concurrent borrowers of the same isbn can never oversell a book while
+	 * borrowers of other isbns are not blocked. A book seen without copies is reported as unavailable straight away,
+	 * without locking its bin or going through the journal.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book, or the not found or unavailable result
+	 */
+	@Override
+	public BookResult decrementAvailableCopies(String isbn) {
+		BookResult miss = miss(isbn);
+		return miss != null ? miss : journal.mutate(() -> decrement(isbn));
+	}
+
+	/**
+	 * It takes one copy of a book like decrementAvailableCopies without waiting for the journal.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book once its record is durable, or the not found or unavailable result
+	 */
+	@Override
+	public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+		BookResult miss = miss(isbn);
+		return miss != null ? CompletableFuture.completedFuture(miss) : journal.mutateAsync(() -> decrement(isbn));
+	}
+
+	/**
+	 * It atomically puts one copy of a book back.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
+	 */
+	@Override
+	public Optional<Book> incrementAvailableCopies(String isbn) {
+		return journal.mutate(() -> increment(isbn));
+	}
+
+	/**
+	 * It puts one copy of a book back like incrementAvailableCopies without waiting for the journal.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book wrapped as an Optional<>, once its record is durable
+	 */
+	@Override
+	public CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+		return journal.mutateAsync(() -> increment(isbn));
+	}
+
+	/**
+	 * It returns the number of books in the ConcurrentHashMap, an estimate while it is being changed.
+	 *
+	 * @return  the number of books
+	 */
+	@Override
+	public long countBooks() {
+		return books.mappingCount();
+	}
+
+	/**
+	 * It returns the number of authors in the dictionary, the spellings of a name counting once, an estimate while it
+	 * is being changed.
+	 *
+	 * @return  the number of authors
+	 */
+	@Override
+	public long countAuthors() {
+		return authors.size();
+	}
+
+	/**
+	 * It hands every book to action in no particular order, straight from books without copying them.
+	 *
+	 * @param action is called with every book.
+	 */
+	@Override
+	public void forEachBook(Consumer<Book> action) {
+		books.values().forEach(action);
+	}
+
+	private Book put(Book book) {
+		books.compute(book.getIsbn(), (isbn, previous) -> {
+			journal.bookAdded(book);
+			return index(previous, book);
+		});
 		return book;
 	}
+
+	private Optional<Book> remove(String isbn) {
+		Book[] removed = new Book[1];
+		books.computeIfPresent(isbn, (key, book) -> {
+			journal.bookRemoved(key);
+			unindex(book);
+			removed[0] = book;
+			return null;
+		});
+		return Optional.ofNullable(removed[0]);
+	}
+
+	/**
+	 * It reports a book that is missing or has no copies without locking its bin or going through the journal, and
+	 * returns null if the book may be borrowed.
+	 */
+	private BookResult miss(String isbn) {
+		Book seen = books.get(isbn);
+		if (seen == null) {
+			return BookResult.notFound();
+		}
+		return seen.getAvailableCopies() < 1 ? BookResult.unavailable() : null;
+	}
+
+	private BookResult decrement(String isbn) {
+		BookResult[] result = {BookResult.notFound()};
+		books.computeIfPresent(isbn, (key, book) -> {
+			if (book.getAvailableCopies() < 1) {
+				result[0] = BookResult.unavailable();
+				return book;
+			}
+			journal.copiesChanged(key, book.getAvailableCopies() - 1);
+			Book borrowed = book.withAvailableCopies(book.getAvailableCopies() - 1);
+			result[0] = BookResult.ok(borrowed);
+			return borrowed;
+		});
+		return result[0];
+	}
+
+	private Optional<Book> increment(String isbn) {
+		return Optional.ofNullable(books.computeIfPresent(isbn, (key, book) -> {
+			journal.copiesChanged(key, book.getAvailableCopies() + 1);
+			return book.withAvailableCopies(book.getAvailableCopies() + 1);
+		}));
+	}
+
+	/**
+	 * It returns the ISBN set of any spelling of an author's name, null if no book of theirs is known.
+	 */
+	private NavigableSet<String> isbnsOf(String author) {
+		AuthorDictionary.Author known = authors.find(author);
+		return known == null ? null : booksByAuthorCache.get(known.id);
+	}
+
+	/**
+	 * It indexes a book in place of the previous book with its isbn, null if there is none, and returns the book to
+	 * store: the same book holding the dictionary's instance of its author's name. It is called inside the compute of
+	 * the isbn, so the same isbn is never indexed concurrently. A book keeping the author of the previous one, as on
+	 * every change of copies, keeps its instance of the name and leaves the author indexes alone.
+	 */
+	private Book index(Book previous, Book book) {
+		if (previous != null && previous.getAuthor().equals(book.getAuthor())) {
+			Book stored = previous.getAuthor() == book.getAuthor() ? book : book.withAuthor(previous.getAuthor());
+			searchIndex.reindex(previous, stored);
+			if (previous.getPublicationYear() != stored.getPublicationYear()) {
+				AuthorDictionary.Author author = authors.find(stored.getAuthor());
+				int id = author == null ? BookYearIndex.NO_AUTHOR : author.id;
+				yearIndex.unindex(id, previous);
+				yearIndex.index(id, stored);
+			}
+			return stored;
+		}
+		AuthorDictionary.Author author = authors.acquire(book.getAuthor());
+		String name = author.intern(book.getAuthor());
+		Book stored = name == book.getAuthor() ? book : book.withAuthor(name);
+		indexAuthor(author.id, stored.getIsbn());
+		if (previous != null) {
+			AuthorDictionary.Author previousAuthor = authors.find(previous.getAuthor());
+			int previousId = previousAuthor == null ? BookYearIndex.NO_AUTHOR : previousAuthor.id;
+			if (previousAuthor != null && previousAuthor.id != author.id) {
+				unindexAuthor(previousAuthor.id, previous.getIsbn());
+			}
+			yearIndex.unindex(previousId, previous);
+			if (previousAuthor != null) {
+				authors.release(previousAuthor);
+			}
+		}
+		searchIndex.reindex(previous, stored);
+		yearIndex.index(author.id, stored);
+		return stored;
+	}
+
+	/**
+	 * It removes a book from every index and counts one book less of its author.
+	 */
+	private void unindex(Book book) {
+		AuthorDictionary.Author author = authors.find(book.getAuthor());
+		searchIndex.unindex(book);
+		if (author == null) {
+			yearIndex.unindex(BookYearIndex.NO_AUTHOR, book);
+			return;
+		}
+		unindexAuthor(author.id, book.getIsbn());
+		yearIndex.unindex(author.id, book);
+		authors.release(author);
+	}
+
+	/**
+	 * It adds an isbn to the author's set in booksByAuthorCache. The set is created inside compute so that a
+	 * concurrent removal of the author's last book can not drop the new isbn.
+	 */
+	private void indexAuthor(int author, String isbn) {
+		booksByAuthorCache.compute(author, (key, isbns) -> {
+			NavigableSet<String> result = isbns == null ? new ConcurrentSkipListSet<>() : isbns;
+			result.add(isbn);
+			return result;
+		});
+	}
+
+	/**
+	 * It removes an isbn from the author's set in booksByAuthorCache and drops the author once no book is left.
+	 */
+	private void unindexAuthor(int author, String isbn) {
+		booksByAuthorCache.computeIfPresent(author, (key, isbns) -> {
+			isbns.remove(isbn);
+			return isbns.isEmpty() ? null : isbns;
+		});
+	}
 }
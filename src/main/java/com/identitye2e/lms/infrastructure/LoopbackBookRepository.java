@@ -0,0 +1,240 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This repository stands in for a repository on another node, reached over a network. Every call is handed to the
+ * node's own worker threads, which stand in for its CPUs, and the books sent and received are written to JSON and
+ * read back, so the node and its callers never share a book. A round trip can be given a latency, spent by the
+ * caller before the request is handed over and by the worker after the answer is ready.
+ *
+ * It is meant for running a cluster of shards in one JVM, see ShardedBookRepository.
+ */
+public class LoopbackBookRepository implements BookRepository, Closeable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final TypeReference<List<Book>> BOOKS = new TypeReference<List<Book>>() {
+	};
+
+	private final BookRepository repository;
+	private final ExecutorService workers;
+	private final long hopNanos;
+
+	/**
+	 * @param name names the worker threads of the node.
+	 * @param repository is the repository of the node.
+	 * @param workers is the number of requests the node serves at a time.
+	 * @param roundTripMicros is the network latency of a call, 0 for none.
+	 */
+	public LoopbackBookRepository(String name, BookRepository repository, int workers, long roundTripMicros) {
+		this.repository = repository;
+		this.hopNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros) / 2;
+		this.workers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + "-" + ++count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public Book addBook(Book book) {
+		return join(addBookAsync(book));
+	}
+
+	@Override
+	public CompletableFuture<Book> addBookAsync(Book book) {
+		return send(node -> node.addBookAsync(copy(book)), LoopbackBookRepository::copy);
+	}
+
+	@Override
+	public List<Book> addBooks(Collection<Book> books) {
+		List<Book> sent = copy(new ArrayList<>(books));
+		return join(send(node -> CompletableFuture.completedFuture(node.addBooks(sent)), LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public Optional<Book> removeBook(String isbn) {
+		return join(removeBookAsync(isbn));
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> removeBookAsync(String isbn) {
+		return send(node -> node.removeBookAsync(isbn), LoopbackBookRepository::copy);
+	}
+
+	@Override
+	public Optional<Book> findBookByISBN(String isbn) {
+		return join(send(node -> CompletableFuture.completedFuture(node.findBookByISBN(isbn)), LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public List<Book> findBooksByAuthor(String author) {
+		return join(send(node -> CompletableFuture.completedFuture(node.findBooksByAuthor(author)), LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		return join(send(node -> CompletableFuture.completedFuture(node.findBooksByAuthor(author, afterIsbn, limit)),
+			LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public List<Book> searchBooks(String query, int limit) {
+		return join(send(node -> CompletableFuture.completedFuture(node.searchBooks(query, limit)), LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public List<Book> findBooks(BookQuery query, int limit) {
+		return join(send(node -> CompletableFuture.completedFuture(node.findBooks(query, limit)), LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public Book updateBookAvailabilityCopies(Book book, int count) {
+		Book sent = copy(book);
+		return join(send(node -> CompletableFuture.completedFuture(node.updateBookAvailabilityCopies(sent, count)),
+			LoopbackBookRepository::copy));
+	}
+
+	@Override
+	public BookResult decrementAvailableCopies(String isbn) {
+		return join(decrementAvailableCopiesAsync(isbn));
+	}
+
+	@Override
+	public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+		return send(node -> node.decrementAvailableCopiesAsync(isbn), LoopbackBookRepository::copy);
+	}
+
+	@Override
+	public Optional<Book> incrementAvailableCopies(String isbn) {
+		return join(incrementAvailableCopiesAsync(isbn));
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+		return send(node -> node.incrementAvailableCopiesAsync(isbn), LoopbackBookRepository::copy);
+	}
+
+	@Override
+	public long countBooks() {
+		return join(send(node -> CompletableFuture.completedFuture(node.countBooks()), Function.identity()));
+	}
+
+	@Override
+	public long countAuthors() {
+		return join(send(node -> CompletableFuture.completedFuture(node.countAuthors()), Function.identity()));
+	}
+
+	/**
+	 * The node sends its books as it reads them, each one copied, and action runs on the worker of the node, so a
+	 * slow action holds one of its workers.
+	 */
+	@Override
+	public void forEachBook(Consumer<Book> action) {
+		join(send(node -> {
+			node.forEachBook(book -> action.accept(copy(book)));
+			return CompletableFuture.completedFuture(null);
+		}, Function.identity()));
+	}
+
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * It hands a request to the node and returns its answer as the caller receives it. A request the node rejects,
+	 * or a node that is closed, fails the returned future.
+	 */
+	private <T> CompletableFuture<T> send(Function<BookRepository, CompletableFuture<T>> request, Function<T, T> receive) {
+		delay();
+		CompletableFuture<T> answer = new CompletableFuture<>();
+		try {
+			workers.execute(() -> {
+				try {
+					request.apply(repository).whenComplete((value, failure) -> {
+						if (failure != null) {
+							answer.completeExceptionally(failure);
+							return;
+						}
+						try {
+							T received = receive.apply(value);
+							delay();
+							answer.complete(received);
+						} catch (RuntimeException e) {
+							answer.completeExceptionally(e);
+						}
+					});
+				} catch (RuntimeException e) {
+					answer.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			answer.completeExceptionally(new IllegalStateException("The node is closed", e));
+		}
+		return answer;
+	}
+
+	private void delay() {
+		if (hopNanos > 0) {
+			LockSupport.parkNanos(hopNanos);
+		}
+	}
+
+	/**
+	 * It waits for an answer and throws what the node threw.
+	 */
+	private static <T> T join(CompletableFuture<T> answer) {
+		try {
+			return answer.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static Book copy(Book book) {
+		try {
+			return MAPPER.readValue(MAPPER.writeValueAsBytes(book), Book.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static List<Book> copy(List<Book> books) {
+		try {
+			return MAPPER.readValue(MAPPER.writeValueAsBytes(books), BOOKS);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Optional<Book> copy(Optional<Book> book) {
+		return book.map(LoopbackBookRepository::copy);
+	}
+
+	private static BookResult copy(BookResult result) {
+		return result.isOk() ? BookResult.ok(copy(result.getBook())) : result;
+	}
+}
@@ -0,0 +1,841 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.AuthorNames;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookEntryInvalidException;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * This is a BookRepository that keeps books outside the Java heap, selected with the "offheap" Spring profile.
+ *
+ * Books are fixed-size records in an open-addressing hash table keyed by isbn, with linear probing and backward
+ * shift deletion, stored in memory-mapped file segments or direct buffers. Copy counts are primitive ints updated
+ * in place. The only heap structures are the isbns of every author's books, sorted so a page of an author's books
+ * starts with a seek, and the word index used by searchBooks.
+ *
+ * In direct buffers the table starts small and doubles while it fills up, to the capacity for lms.offheap.max-books,
+ * so direct memory is only reserved for the books stored. A memory-mapped file is sized for that capacity at startup
+ * instead, which costs no memory until its pages are written. The store starts empty, it is not a persistence
+ * mechanism.
+ */
+@Slf4j
+@Component
+@Profile("offheap")
+public class MappedBookRepository implements BookRepository {
+
+	static final int RECORD_SIZE = 512;
+	static final int MAX_ISBN_BYTES = 32;
+	static final int MAX_AUTHOR_BYTES = 128;
+	static final int MAX_TITLE_BYTES = 336;
+
+	private static final int STATE = 0;
+	private static final int ISBN_LENGTH = 1;
+	private static final int TITLE_LENGTH = 2;
+	private static final int AUTHOR_LENGTH = 4;
+	private static final int PUBLICATION_YEAR = 8;
+	private static final int AVAILABLE_COPIES = 12;
+	private static final int ISBN = 16;
+	private static final int AUTHOR = ISBN + MAX_ISBN_BYTES;
+	private static final int TITLE = AUTHOR + MAX_AUTHOR_BYTES;
+
+	private static final byte FREE = 0;
+	private static final byte USED = 1;
+	private static final int NONE = -1;
+
+	//The first bytes of a store file, a file that does not start with them is never overwritten
+	private static final long FILE_MAGIC = 0x4c4d534f48454150L;
+	private static final int FILE_HEADER_SIZE = Long.BYTES;
+	private static final int MAX_SEGMENT_SLOTS = 1 << 20;
+	private static final int INITIAL_SLOTS = 1024;
+	private static final int STRIPES = 1024;
+	private static final int SCAN_SLOTS = 1024;
+	private static final double MAX_LOAD = 0.75;
+
+	//The table, replaced by a table twice as large when it grows, under the write lock
+	private ByteBuffer[] segments;
+	private int segmentShift;
+	private int segmentMask;
+	private int slotMask;
+	private int maxSize;
+	private final int maxSlots;
+
+	//Adding and removing books changes the table and the author books and takes the write lock, everything else
+	//takes the read lock and updates copy counts under the stripe lock of the slot
+	private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+	private final Object[] stripes = new Object[STRIPES];
+	//This map has the key of an Author's name, see AuthorNames, as key and the isbns of their books as value, so the
+	//books of every spelling of the name are found together
+	private final ConcurrentHashMap<String, AuthorBooks> authorBooks = new ConcurrentHashMap<>();
+	//This index has the words of titles and authors as keys and the ISBNs of the Books containing them as values
+	private final BookSearchIndex searchIndex = new BookSearchIndex();
+	private int size;
+
+	public MappedBookRepository(@Value("${lms.offheap.max-books:1000000}") int maxBooks,
+			@Value("${lms.offheap.file:}") String file) {
+		this.maxSlots = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 30, (long) (maxBooks / MAX_LOAD) + 1)) - 1) << 1;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+
+		if (file == null || file.isEmpty()) {
+			resize(Math.min(maxSlots, INITIAL_SLOTS));
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = allocate(segmentMask + 1);
+			}
+			log.info("Off-heap book store with up to {} slots ({} MB) in direct buffers", maxSlots,
+				(long) maxSlots * RECORD_SIZE >> 20);
+		} else {
+			resize(maxSlots);
+			mapFile(Paths.get(file), (long) (segmentMask + 1) * RECORD_SIZE);
+			log.info("Off-heap book store with {} slots ({} MB) in {}", maxSlots, (long) maxSlots * RECORD_SIZE >> 20, file);
+		}
+	}
+
+	/**
+	 * It sets up an empty segments array for a table of slots slots.
+	 */
+	private void resize(int slots) {
+		int segmentSlots = Math.min(slots, MAX_SEGMENT_SLOTS);
+		this.segments = new ByteBuffer[slots / segmentSlots];
+		this.segmentShift = Integer.numberOfTrailingZeros(segmentSlots);
+		this.segmentMask = segmentSlots - 1;
+		this.slotMask = slots - 1;
+		this.maxSize = (int) (slots * MAX_LOAD);
+	}
+
+	private static ByteBuffer allocate(int slots) {
+		try {
+			return ByteBuffer.allocateDirect(slots * RECORD_SIZE);
+		} catch (OutOfMemoryError e) {
+			throw new IllegalStateException("Off-heap book store is out of direct memory, raise -XX:MaxDirectMemorySize, "
+				+ "lower lms.offheap.max-books or set lms.offheap.file", e);
+		}
+	}
+
+	/**
+	 * It moves every book to direct buffers twice as large, rehashing them into their new slots. The caller holds
+	 * the write lock, and the author books hold isbns rather than slots so they do not change.
+	 */
+	private void grow() {
+		ByteBuffer[] previous = segments;
+		int previousShift = segmentShift;
+		int previousMask = segmentMask;
+		int previousSlots = slotMask + 1;
+		resize(previousSlots * 2);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = allocate(segmentMask + 1);
+		}
+		for (int slot = 0; slot < previousSlots; slot++) {
+			ByteBuffer source = previous[slot >>> previousShift];
+			int sourceOffset = (slot & previousMask) * RECORD_SIZE;
+			if (source.get(sourceOffset + STATE) != USED) {
+				continue;
+			}
+			byte[] isbn = new byte[source.get(sourceOffset + ISBN_LENGTH)];
+			for (int i = 0; i < isbn.length; i++) {
+				isbn[i] = source.get(sourceOffset + ISBN + i);
+			}
+			int target = hash(isbn) & slotMask;
+			while (buffer(target).get(offset(target) + STATE) != FREE) {
+				target = (target + 1) & slotMask;
+			}
+			copy(source, sourceOffset, buffer(target), offset(target));
+		}
+		log.debug("Off-heap book store grew to {} slots", slotMask + 1);
+	}
+
+	/**
+	 * It maps the table from a new file. An empty file or the file of a previous run, recognized by its header, is
+	 * replaced as the store starts empty, any other existing file is refused rather than overwritten.
+	 *
+	 * @throws IllegalArgumentException if the file exists and is not a book store.
+	 */
+	private void mapFile(Path path, long bytesPerSegment) {
+		try {
+			if (Files.exists(path) && Files.size(path) > 0 && !isStoreFile(path)) {
+				throw new IllegalArgumentException("Refusing to overwrite " + path
+					+ ", it is not an off-heap book store, choose another lms.offheap.file");
+			}
+			Files.deleteIfExists(path);
+			try (FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putLong(0, FILE_MAGIC);
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				for (int i = 0; i < segments.length; i++) {
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, FILE_HEADER_SIZE + i * bytesPerSegment,
+						bytesPerSegment);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not map book store " + path, e);
+		}
+	}
+
+	private static boolean isStoreFile(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// read the whole header
+			}
+			return !header.hasRemaining() && header.getLong(0) == FILE_MAGIC;
+		}
+	}
+
+	/**
+	 * It adds book to the off-heap table and to its author's books, replacing a book with the same isbn.
+	 *
+	 * @param book contains the attributes of a book.
+	 * @return  the book
+	 * @throws BookEntryInvalidException if a text attribute does not fit into its fixed-size field.
+	 */
+	@Override
+	public Book addBook(Book book) {
+		Encoded encoded = encode(book);
+		structureLock.writeLock().lock();
+		try {
+			put(encoded, true);
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+		return book;
+	}
+
+	/**
+	 * It adds a batch of books under a single acquisition of the structure lock. Books whose isbn is already
+	 * present, including an earlier entry of the same batch, are left out.
+	 *
+	 * @param newBooks contains the books to add.
+	 * @return  the books that were not added because a book with the same isbn exists
+	 */
+	@Override
+	public List<Book> addBooks(Collection<Book> newBooks) {
+		List<Encoded> encoded = new ArrayList<>(newBooks.size());
+		for (Book book : newBooks) {
+			encoded.add(encode(book));
+		}
+		List<Book> existing = new ArrayList<>();
+		structureLock.writeLock().lock();
+		try {
+			for (Encoded book : encoded) {
+				if (!put(book, false)) {
+					existing.add(book.book);
+				}
+			}
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+		return existing;
+	}
+
+	/**
+	 * It removes book from the off-heap table and from its author's books.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
+	 */
+	@Override
+	public Optional<Book> removeBook(String isbn) {
+		byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+		structureLock.writeLock().lock();
+		try {
+			int slot = find(key);
+			if (slot == NONE) {
+				return Optional.empty();
+			}
+			Book book = read(slot);
+			unlink(book);
+			searchIndex.unindex(book);
+			delete(slot);
+			size--;
+			return Optional.of(book);
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns book from the off-heap table
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
+	 */
+	@Override
+	public Optional<Book> findBookByISBN(String isbn) {
+		byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+		structureLock.readLock().lock();
+		try {
+			int slot = find(key);
+			return slot == NONE ? Optional.empty() : Optional.of(read(slot));
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns list of books of an author in isbn order, looked up in the off-heap table by their isbns
+	 *
+	 * @param author is the author of a book.
+	 * @return  the list of books, if a book with given author exists otherwise empty list
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author) {
+		structureLock.readLock().lock();
+		try {
+			AuthorBooks books = authorBooks.get(AuthorNames.normalize(author));
+			if (books == null) {
+				return Collections.emptyList();
+			}
+			List<Book> results = new ArrayList<>(books.isbns.size());
+			for (String isbn : books.isbns) {
+				results.add(read(find(isbn.getBytes(StandardCharsets.UTF_8))));
+			}
+			return results;
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns one page of an author's books in isbn order. The page starts with a seek to afterIsbn in the
+	 * author's sorted isbns, so only the books of the page are read whatever page it is.
+	 *
+	 * @param author is the author of a book.
+	 * @param afterIsbn is the last isbn of the previous page, null for the first page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		structureLock.readLock().lock();
+		try {
+			AuthorBooks books = authorBooks.get(AuthorNames.normalize(author));
+			if (books == null || limit < 1) {
+				return Collections.emptyList();
+			}
+			List<Book> results = new ArrayList<>(Math.min(limit, books.isbns.size()));
+			for (String isbn : afterIsbn == null ? books.isbns : books.isbns.tailSet(afterIsbn, false)) {
+				if (results.size() == limit) {
+					break;
+				}
+				results.add(read(find(isbn.getBytes(StandardCharsets.UTF_8))));
+			}
+			return results;
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns the books whose title and author contain every word of the query, the last word may be the start
+	 * of a word, ranked by searchIndex with the best match first.
+	 *
+	 * @param query is free text such as "harry pot".
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty if nothing matches
+	 */
+	@Override
+	public List<Book> searchBooks(String query, int limit) {
+		structureLock.readLock().lock();
+		try {
+			List<Book> results = new ArrayList<>();
+			for (String isbn : searchIndex.search(query, limit)) {
+				int slot = find(isbn.getBytes(StandardCharsets.UTF_8));
+				if (slot != NONE) {
+					results.add(read(slot));
+				}
+			}
+			return results;
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns one page of the books answering a query. Only authors are indexed, so a query with an author seeks
+	 * to the start of the page in the author's books sorted by year and reads on until the page is full, and one
+	 * without reads the whole table, SCAN_SLOTS slots at a time under the read lock, keeping only the limit first
+	 * books in BookQuery.ORDER. Either way the year and copies are read in place so books outside the query or after
+	 * the page are never decoded.
+	 *
+	 * @param query selects the books and the page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooks(BookQuery query, int limit) {
+		if (limit < 1 || query.getFromYear() > query.getToYear()) {
+			return Collections.emptyList();
+		}
+		if (query.getAuthor() != null) {
+			return findBooksOfAuthor(query, limit);
+		}
+		TreeSet<Book> page = new TreeSet<>(BookQuery.ORDER);
+		for (int start = 0; ; start += SCAN_SLOTS) {
+			structureLock.readLock().lock();
+			try {
+				if (start > slotMask) {
+					break;
+				}
+				for (int slot = start; slot <= slotMask && slot < start + SCAN_SLOTS; slot++) {
+					if (buffer(slot).get(offset(slot) + STATE) == USED) {
+						offer(page, query, limit, slot);
+					}
+				}
+			} finally {
+				structureLock.readLock().unlock();
+			}
+		}
+		return new ArrayList<>(page);
+	}
+
+	/**
+	 * It returns a copy of book with the available copies updated in place in the mapped file
+	 *
+	 * @param book contains the attributes of a book.
+	 * @param newCount is the current available copies of a book.
+	 * @return  the updated book
+	 */
+	@Override
+	public Book updateBookAvailabilityCopies(Book book, int newCount) {
+		Book updated = book.withAvailableCopies(newCount);
+		byte[] key = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+		structureLock.readLock().lock();
+		try {
+			int slot = find(key);
+			if (slot != NONE) {
+				synchronized (stripe(slot)) {
+					buffer(slot).putInt(offset(slot) + AVAILABLE_COPIES, newCount);
+				}
+				return updated;
+			}
+		} finally {
+			structureLock.readLock().unlock();
+		}
+		return addBook(updated);
+	}
+
+	/**
+	 * It atomically takes one copy of a book if any copy is available, the count is changed in place under the
+	 * stripe lock of the book's slot.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book, or the not found or unavailable result
+	 */
+	@Override
+	public BookResult decrementAvailableCopies(String isbn) {
+		return addCopies(isbn, -1);
+	}
+
+	/**
+	 * It atomically puts one copy of a book back.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return  the updated book wrapped as an Optional<>, if a book with given isbn exists otherwise Optional.empty()
+	 */
+	@Override
+	public Optional<Book> incrementAvailableCopies(String isbn) {
+		BookResult result = addCopies(isbn, 1);
+		return result.isOk() ? Optional.of(result.getBook()) : Optional.empty();
+	}
+
+	/**
+	 * It returns the number of books in the off-heap table
+	 *
+	 * @return  the number of books
+	 */
+	@Override
+	public long countBooks() {
+		structureLock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It returns the number of authors, the spellings of a name counting once
+	 *
+	 * @return  the number of authors
+	 */
+	@Override
+	public long countAuthors() {
+		return authorBooks.size();
+	}
+
+	/**
+	 * It hands every book to action in slot order, reading SCAN_SLOTS slots at a time under the read lock and
+	 * calling action without it, so a slow action does not hold up adds and removes. A removal moves the books
+	 * after it back into the freed slot, and the table growing moves every book, so a book moved while the scan
+	 * passes by may be missed or seen twice.
+	 *
+	 * @param action is called with every book.
+	 */
+	@Override
+	public void forEachBook(Consumer<Book> action) {
+		List<Book> scanned = new ArrayList<>();
+		for (int start = 0; ; start += SCAN_SLOTS) {
+			structureLock.readLock().lock();
+			try {
+				if (start > slotMask) {
+					break;
+				}
+				for (int slot = start; slot <= slotMask && slot < start + SCAN_SLOTS; slot++) {
+					if (buffer(slot).get(offset(slot) + STATE) == USED) {
+						scanned.add(read(slot));
+					}
+				}
+			} finally {
+				structureLock.readLock().unlock();
+			}
+			scanned.forEach(action);
+			scanned.clear();
+		}
+	}
+
+	private List<Book> findBooksOfAuthor(BookQuery query, int limit) {
+		structureLock.readLock().lock();
+		try {
+			AuthorBooks books = authorBooks.get(AuthorNames.normalize(query.getAuthor()));
+			if (books == null) {
+				return Collections.emptyList();
+			}
+			YearIsbn from = new YearIsbn(query.getFromYear(), "");
+			NavigableSet<YearIsbn> keys = books.byYear.tailSet(from, true);
+			if (query.getAfterIsbn() != null) {
+				YearIsbn after = new YearIsbn(query.getAfterYear(), query.getAfterIsbn());
+				if (after.compareTo(from) >= 0) {
+					keys = books.byYear.tailSet(after, false);
+				}
+			}
+			List<Book> page = new ArrayList<>();
+			for (YearIsbn key : keys) {
+				if (key.year > query.getToYear() || page.size() == limit) {
+					break;
+				}
+				int slot = find(key.isbn.getBytes(StandardCharsets.UTF_8));
+				if (query.isAvailableOnly() && buffer(slot).getInt(offset(slot) + AVAILABLE_COPIES) < 1) {
+					continue;
+				}
+				Book book = read(slot);
+				if (query.matches(book)) {
+					page.add(book);
+				}
+			}
+			return page;
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It adds the book of a slot to a page if it answers the query and comes before the last book of a full page.
+	 */
+	private void offer(TreeSet<Book> page, BookQuery query, int limit, int slot) {
+		ByteBuffer buffer = buffer(slot);
+		int year = buffer.getInt(offset(slot) + PUBLICATION_YEAR);
+		if (year < query.getFromYear() || year > query.getToYear()
+				|| query.isAvailableOnly() && buffer.getInt(offset(slot) + AVAILABLE_COPIES) < 1
+				|| page.size() == limit && year > page.last().getPublicationYear()) {
+			return;
+		}
+		Book book = read(slot);
+		if (!query.matches(book)) {
+			return;
+		}
+		page.add(book);
+		if (page.size() > limit) {
+			page.pollLast();
+		}
+	}
+
+	private BookResult addCopies(String isbn, int delta) {
+		byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+		structureLock.readLock().lock();
+		try {
+			int slot = find(key);
+			if (slot == NONE) {
+				return BookResult.notFound();
+			}
+			ByteBuffer buffer = buffer(slot);
+			int copies = offset(slot) + AVAILABLE_COPIES;
+			synchronized (stripe(slot)) {
+				int current = buffer.getInt(copies);
+				if (current + delta < 0) {
+					return BookResult.unavailable();
+				}
+				buffer.putInt(copies, current + delta);
+				return BookResult.ok(read(slot));
+			}
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * It stores a book, the caller holds the write lock.
+	 *
+	 * @return true if the book was stored, false if the isbn exists and replace is false
+	 */
+	private boolean put(Encoded book, boolean replace) {
+		for (int slot = hash(book.isbn) & slotMask; ; slot = (slot + 1) & slotMask) {
+			ByteBuffer buffer = buffer(slot);
+			int offset = offset(slot);
+			if (buffer.get(offset + STATE) == FREE) {
+				if (size >= maxSize) {
+					if (slotMask + 1 == maxSlots) {
+						throw new IllegalStateException("Off-heap book store is full, raise lms.offheap.max-books");
+					}
+					grow();
+					return put(book, replace);
+				}
+				write(slot, book);
+				link(book.book);
+				searchIndex.index(book.book);
+				size++;
+				return true;
+			}
+			if (isbnEquals(buffer, offset, book.isbn)) {
+				if (!replace) {
+					return false;
+				}
+				Book previous = read(slot);
+				unlink(previous);
+				write(slot, book);
+				link(book.book);
+				searchIndex.reindex(previous, book.book);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * It frees a slot and moves later books of the same probe sequence back, so lookups never need tombstones.
+	 * The caller holds the write lock.
+	 */
+	private void delete(int slot) {
+		int free = slot;
+		for (int next = (free + 1) & slotMask; buffer(next).get(offset(next) + STATE) != FREE; next = (next + 1) & slotMask) {
+			int home = hash(readIsbn(next)) & slotMask;
+			boolean staysBehindFree = free <= next ? (free < home && home <= next) : (free < home || home <= next);
+			if (!staysBehindFree) {
+				move(next, free);
+				free = next;
+			}
+		}
+		buffer(free).put(offset(free) + STATE, FREE);
+	}
+
+	/**
+	 * It copies a record to another slot, the author books hold isbns rather than slots so nothing points at it.
+	 */
+	private void move(int from, int to) {
+		copy(buffer(from), offset(from), buffer(to), offset(to));
+	}
+
+	private static void copy(ByteBuffer source, int sourceOffset, ByteBuffer target, int targetOffset) {
+		for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+			target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+		}
+	}
+
+	private int find(byte[] isbn) {
+		for (int slot = hash(isbn) & slotMask; ; slot = (slot + 1) & slotMask) {
+			ByteBuffer buffer = buffer(slot);
+			int offset = offset(slot);
+			if (buffer.get(offset + STATE) == FREE) {
+				return NONE;
+			}
+			if (isbnEquals(buffer, offset, isbn)) {
+				return slot;
+			}
+		}
+	}
+
+	private byte[] readIsbn(int slot) {
+		ByteBuffer buffer = buffer(slot);
+		int offset = offset(slot);
+		byte[] isbn = new byte[buffer.get(offset + ISBN_LENGTH)];
+		for (int i = 0; i < isbn.length; i++) {
+			isbn[i] = buffer.get(offset + ISBN + i);
+		}
+		return isbn;
+	}
+
+	private void write(int slot, Encoded book) {
+		ByteBuffer buffer = buffer(slot);
+		int offset = offset(slot);
+		buffer.put(offset + ISBN_LENGTH, (byte) book.isbn.length);
+		buffer.putShort(offset + TITLE_LENGTH, (short) book.title.length);
+		buffer.putShort(offset + AUTHOR_LENGTH, (short) book.author.length);
+		buffer.putInt(offset + PUBLICATION_YEAR, book.book.getPublicationYear());
+		putBytes(buffer, offset + ISBN, book.isbn);
+		putBytes(buffer, offset + AUTHOR, book.author);
+		putBytes(buffer, offset + TITLE, book.title);
+		synchronized (stripe(slot)) {
+			buffer.putInt(offset + AVAILABLE_COPIES, book.book.getAvailableCopies());
+		}
+		buffer.put(offset + STATE, USED);
+	}
+
+	private Book read(int slot) {
+		ByteBuffer buffer = buffer(slot);
+		int offset = offset(slot);
+		int copies;
+		synchronized (stripe(slot)) {
+			copies = buffer.getInt(offset + AVAILABLE_COPIES);
+		}
+		return Book.builder()
+			.isbn(readString(buffer, offset + ISBN, buffer.get(offset + ISBN_LENGTH)))
+			.title(readString(buffer, offset + TITLE, buffer.getShort(offset + TITLE_LENGTH)))
+			.author(readString(buffer, offset + AUTHOR, buffer.getShort(offset + AUTHOR_LENGTH)))
+			.publicationYear(buffer.getInt(offset + PUBLICATION_YEAR))
+			.availableCopies(copies)
+			.build();
+	}
+
+	/**
+	 * It adds a book to its author's books, the caller holds the write lock.
+	 */
+	private void link(Book book) {
+		AuthorBooks books = authorBooks.computeIfAbsent(AuthorNames.normalize(book.getAuthor()), key -> new AuthorBooks());
+		books.isbns.add(book.getIsbn());
+		books.byYear.add(new YearIsbn(book.getPublicationYear(), book.getIsbn()));
+	}
+
+	/**
+	 * It takes a book out of its author's books, the caller holds the write lock.
+	 */
+	private void unlink(Book book) {
+		String key = AuthorNames.normalize(book.getAuthor());
+		AuthorBooks books = authorBooks.get(key);
+		books.isbns.remove(book.getIsbn());
+		books.byYear.remove(new YearIsbn(book.getPublicationYear(), book.getIsbn()));
+		if (books.isbns.isEmpty()) {
+			authorBooks.remove(key);
+		}
+	}
+
+	private ByteBuffer buffer(int slot) {
+		return segments[slot >>> segmentShift];
+	}
+
+	private int offset(int slot) {
+		return (slot & segmentMask) * RECORD_SIZE;
+	}
+
+	private Object stripe(int slot) {
+		return stripes[slot & (STRIPES - 1)];
+	}
+
+	private static int hash(byte[] isbn) {
+		int h = Arrays.hashCode(isbn);
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean isbnEquals(ByteBuffer buffer, int offset, byte[] isbn) {
+		if (buffer.get(offset + ISBN_LENGTH) != isbn.length) {
+			return false;
+		}
+		for (int i = 0; i < isbn.length; i++) {
+			if (buffer.get(offset + ISBN + i) != isbn[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void putBytes(ByteBuffer buffer, int offset, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			buffer.put(offset + i, bytes[i]);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Encoded encode(Book book) {
+		Encoded encoded = new Encoded(book);
+		if (encoded.isbn.length > MAX_ISBN_BYTES || encoded.author.length > MAX_AUTHOR_BYTES
+				|| encoded.title.length > MAX_TITLE_BYTES) {
+			throw new BookEntryInvalidException("Invalid book entry, please check the payload");
+		}
+		return encoded;
+	}
+
+	/**
+	 * These are the isbns of an author's books in isbn order and in publicationYear then isbn order, changed under
+	 * the write lock and read under the read lock.
+	 */
+	private static final class AuthorBooks {
+		final NavigableSet<String> isbns = new TreeSet<>();
+		final NavigableSet<YearIsbn> byYear = new TreeSet<>();
+	}
+
+	/**
+	 * The position of a book in BookQuery.ORDER.
+	 */
+	private static final class YearIsbn implements Comparable<YearIsbn> {
+		final int year;
+		final String isbn;
+
+		YearIsbn(int year, String isbn) {
+			this.year = year;
+			this.isbn = isbn;
+		}
+
+		@Override
+		public int compareTo(YearIsbn other) {
+			int byYear = Integer.compare(year, other.year);
+			return byYear != 0 ? byYear : isbn.compareTo(other.isbn);
+		}
+	}
+
+	/**
+	 * A book with its text attributes encoded as UTF-8, prepared before the write lock is taken
+	 */
+	private static final class Encoded {
+		final Book book;
+		final byte[] isbn;
+		final byte[] title;
+		final byte[] author;
+
+		Encoded(Book book) {
+			this.book = book;
+			this.isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+			this.title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+			this.author = book.getAuthor().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.identitye2e.lms.infrastructure;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * This configuration makes InMemoryBookRepository durable when lms.persistence.enabled is true. The repository is
+ * restored from the journal directory before the application starts serving requests.
+ */
+@Configuration
+@Profile("!offheap & !sharded")
+@ConditionalOnProperty(name = "lms.persistence.enabled", havingValue = "true")
+public class PersistenceConfiguration {
+
+	@Bean(destroyMethod = "close")
+	public FileBookJournal bookJournal(InMemoryBookRepository repository,
+			@Value("${lms.persistence.directory:data}") String directory,
+			@Value("${lms.persistence.fsync:interval}") String fsync,
+			@Value("${lms.persistence.fsync-interval-ms:10}") long fsyncIntervalMillis,
+			@Value("${lms.persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) throws IOException {
+		return FileBookJournal.open(Paths.get(directory), FileBookJournal.FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT)),
+			fsyncIntervalMillis, snapshotIntervalSeconds, repository);
+	}
+}
@@ -0,0 +1,42 @@
+package com.identitye2e.lms.infrastructure;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This configuration runs a cluster of lms.shards.count in-memory shards in this JVM when the sharded profile is
+ * active, each reached through a LoopbackBookRepository in place of a network and served by lms.shards.workers
+ * threads. The shards are not journaled, lms.persistence.enabled only applies to the single in-memory repository.
+ */
+@Configuration
+@Profile("sharded")
+public class ShardConfiguration {
+
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService shardExecutor() {
+		return Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "book-shard-gather");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Bean(destroyMethod = "close")
+	public ShardedBookRepository shardedBookRepository(ExecutorService shardExecutor,
+			@Value("${lms.shards.count:4}") int count,
+			@Value("${lms.shards.workers:2}") int workers,
+			@Value("${lms.shards.round-trip-micros:0}") long roundTripMicros) {
+		List<LoopbackBookRepository> shards = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			shards.add(new LoopbackBookRepository("book-shard-" + i, new InMemoryBookRepository(), workers, roundTripMicros));
+		}
+		return new ShardedBookRepository(shards, shardExecutor);
+	}
+}
@@ -0,0 +1,329 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This repository partitions the books between several repositories, the shards, by the isbn. Every shard owns
+ * VIRTUAL_NODES points on a hash ring and an isbn belongs to the shard owning the first point at or after its hash,
+ * so adding a shard to a ring of n moves about 1/(n+1) of the books and leaves the rest where they are. A book and
+ * every change to it stay on one shard, so borrows and returns of different books run on different shards and only
+ * lookups by author and searches ask every shard, in parallel on the given executor, and merge the answers.
+ *
+ * The shards are fixed when the repository is created, moving books to a new shard is left to whoever adds it.
+ */
+public class ShardedBookRepository implements BookRepository, Closeable {
+
+	static final int VIRTUAL_NODES = 128;
+
+	private final BookRepository[] shards;
+	private final Executor executor;
+	//The sorted points of the ring, and the shard owning each of them
+	private final int[] points;
+	private final int[] owners;
+
+	/**
+	 * @param shards are the repositories sharing the books, a shard keeps its place on the ring by its index.
+	 * @param executor runs the lookups sent to every shard.
+	 */
+	public ShardedBookRepository(List<? extends BookRepository> shards, Executor executor) {
+		if (shards.isEmpty()) {
+			throw new IllegalArgumentException("At least one shard is expected");
+		}
+		this.shards = shards.toArray(new BookRepository[0]);
+		this.executor = executor;
+		long[] ring = new long[this.shards.length * VIRTUAL_NODES];
+		for (int shard = 0; shard < this.shards.length; shard++) {
+			for (int node = 0; node < VIRTUAL_NODES; node++) {
+				int point = hash(("shard-" + shard + "#" + node).hashCode());
+				ring[shard * VIRTUAL_NODES + node] = ((long) point << 32) | shard;
+			}
+		}
+		Arrays.sort(ring);
+		this.points = new int[ring.length];
+		this.owners = new int[ring.length];
+		for (int i = 0; i < ring.length; i++) {
+			points[i] = (int) (ring[i] >> 32);
+			owners[i] = (int) ring[i];
+		}
+	}
+
+	/**
+	 * It returns the index of the shard owning an isbn, the first shard takes the null isbn.
+	 *
+	 * @param isbn is the isbn of a book.
+	 * @return the index of the shard in the list the repository was created with
+	 */
+	public int shardOf(String isbn) {
+		if (isbn == null) {
+			return 0;
+		}
+		int index = Arrays.binarySearch(points, hash(isbn.hashCode()));
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return owners[index == points.length ? 0 : index];
+	}
+
+	/**
+	 * @return the number of shards
+	 */
+	public int countShards() {
+		return shards.length;
+	}
+
+	@Override
+	public Book addBook(Book book) {
+		return shard(book.getIsbn()).addBook(book);
+	}
+
+	@Override
+	public CompletableFuture<Book> addBookAsync(Book book) {
+		return shard(book.getIsbn()).addBookAsync(book);
+	}
+
+	/**
+	 * It splits a batch of books by shard and adds each part to its shard in parallel.
+	 *
+	 * @param newBooks contains the books to add.
+	 * @return  the books that were not added because a book with the same isbn exists
+	 */
+	@Override
+	public List<Book> addBooks(Collection<Book> newBooks) {
+		List<List<Book>> parts = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			parts.add(new ArrayList<>());
+		}
+		for (Book book : newBooks) {
+			parts.get(shardOf(book.getIsbn())).add(book);
+		}
+		List<Book> existing = new ArrayList<>();
+		for (List<Book> part : gather(shard -> parts.get(shard).isEmpty()
+				? Collections.<Book>emptyList() : shards[shard].addBooks(parts.get(shard)))) {
+			existing.addAll(part);
+		}
+		return existing;
+	}
+
+	@Override
+	public Optional<Book> removeBook(String isbn) {
+		return shard(isbn).removeBook(isbn);
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> removeBookAsync(String isbn) {
+		return shard(isbn).removeBookAsync(isbn);
+	}
+
+	@Override
+	public Optional<Book> findBookByISBN(String isbn) {
+		return shard(isbn).findBookByISBN(isbn);
+	}
+
+	/**
+	 * It returns the books of the author from every shard in isbn order.
+	 *
+	 * @param author is the author of a book.
+	 * @return  the list of books, if a book with given author exists otherwise empty list
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author) {
+		return findBooksByAuthor(author, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * It asks every shard for its page of the author's books and merges them in isbn order, a page of the whole
+	 * repository is made of the first books of the shards' pages.
+	 *
+	 * @param author is the author of a book.
+	 * @param afterIsbn is the last isbn of the previous page, null for the first page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooksByAuthor(String author, String afterIsbn, int limit) {
+		if (limit < 1) {
+			return Collections.emptyList();
+		}
+		List<Book> results = new ArrayList<>();
+		for (List<Book> page : gather(shard -> shards[shard].findBooksByAuthor(author, afterIsbn, limit))) {
+			results.addAll(page);
+		}
+		results.sort(Comparator.comparing(Book::getIsbn));
+		return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+	}
+
+	/**
+	 * It asks every shard for its best matches and takes them in turns, the best match of every shard first, as the
+	 * ranks of different shards cannot be compared.
+	 *
+	 * @param query is free text such as "harry pot".
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty if nothing matches
+	 */
+	@Override
+	public List<Book> searchBooks(String query, int limit) {
+		List<List<Book>> matches = gather(shard -> shards[shard].searchBooks(query, limit));
+		List<Book> results = new ArrayList<>();
+		for (int rank = 0; results.size() < limit; rank++) {
+			boolean more = false;
+			for (List<Book> shardMatches : matches) {
+				if (rank < shardMatches.size() && results.size() < limit) {
+					results.add(shardMatches.get(rank));
+					more = true;
+				}
+			}
+			if (!more) {
+				break;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * It asks every shard for its page of the query and merges them in BookQuery.ORDER, like findBooksByAuthor.
+	 *
+	 * @param query selects the books and the page.
+	 * @param limit is the maximum number of books to return.
+	 * @return  the list of books, empty once there are no more books
+	 */
+	@Override
+	public List<Book> findBooks(BookQuery query, int limit) {
+		if (limit < 1) {
+			return Collections.emptyList();
+		}
+		List<Book> results = new ArrayList<>();
+		for (List<Book> page : gather(shard -> shards[shard].findBooks(query, limit))) {
+			results.addAll(page);
+		}
+		results.sort(BookQuery.ORDER);
+		return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+	}
+
+	@Override
+	public Book updateBookAvailabilityCopies(Book book, int count) {
+		return shard(book.getIsbn()).updateBookAvailabilityCopies(book, count);
+	}
+
+	@Override
+	public BookResult decrementAvailableCopies(String isbn) {
+		return shard(isbn).decrementAvailableCopies(isbn);
+	}
+
+	@Override
+	public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+		return shard(isbn).decrementAvailableCopiesAsync(isbn);
+	}
+
+	@Override
+	public Optional<Book> incrementAvailableCopies(String isbn) {
+		return shard(isbn).incrementAvailableCopies(isbn);
+	}
+
+	@Override
+	public CompletableFuture<Optional<Book>> incrementAvailableCopiesAsync(String isbn) {
+		return shard(isbn).incrementAvailableCopiesAsync(isbn);
+	}
+
+	@Override
+	public long countBooks() {
+		long count = 0;
+		for (BookRepository shard : shards) {
+			count += shard.countBooks();
+		}
+		return count;
+	}
+
+	/**
+	 * It returns the sum of the authors of every shard, an author whose books are on several shards is counted
+	 * once per shard.
+	 *
+	 * @return  the number of authors
+	 */
+	@Override
+	public long countAuthors() {
+		long count = 0;
+		for (BookRepository shard : shards) {
+			count += shard.countAuthors();
+		}
+		return count;
+	}
+
+	/**
+	 * It hands every book to action one shard after the other, on the calling thread.
+	 *
+	 * @param action is called with every book.
+	 */
+	@Override
+	public void forEachBook(Consumer<Book> action) {
+		for (BookRepository shard : shards) {
+			shard.forEachBook(action);
+		}
+	}
+
+	/**
+	 * It closes the shards that can be closed, such as the connections to remote ones.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (BookRepository shard : shards) {
+			if (shard instanceof Closeable) {
+				((Closeable) shard).close();
+			}
+		}
+	}
+
+	private BookRepository shard(String isbn) {
+		return shards[shardOf(isbn)];
+	}
+
+	/**
+	 * It runs a request on every shard in parallel and returns the answers in shard order, the first shard's
+	 * request runs on the calling thread.
+	 */
+	private <T> List<T> gather(Function<Integer, T> request) {
+		if (shards.length == 1) {
+			return Collections.singletonList(request.apply(0));
+		}
+		List<CompletableFuture<T>> answers = new ArrayList<>(shards.length);
+		for (int shard = 1; shard < shards.length; shard++) {
+			int index = shard;
+			answers.add(CompletableFuture.supplyAsync(() -> request.apply(index), executor));
+		}
+		List<T> results = new ArrayList<>(shards.length);
+		results.add(request.apply(0));
+		try {
+			for (CompletableFuture<T> answer : answers) {
+				results.add(answer.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+		return results;
+	}
+
+	/**
+	 * It spreads the bits of a String hash code, the isbns and the names of the points differ in few characters.
+	 */
+	private static int hash(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,44 @@
+package com.identitye2e.lms.infrastructure;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This configuration runs every Tomcat request on its own virtual thread when lms.threads.virtual is true, so a
+ * request waiting on the journal parks a virtual thread instead of holding one of the few platform threads of the
+ * pool. Virtual threads need Java 21, the executor is looked up at runtime so the code still builds for Java 8, and
+ * the application refuses to start if the property is set on an older JDK.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lms.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+		ExecutorService executor = newVirtualThreadPerTaskExecutor();
+		return protocolHandler -> protocolHandler.setExecutor(executor);
+	}
+
+	/**
+	 * It returns Executors.newVirtualThreadPerTaskExecutor() of the running JDK.
+	 *
+	 * @return an executor starting a virtual thread per task
+	 * @throws IllegalStateException if the JDK has no virtual threads.
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("lms.threads.virtual needs Java 21 or later, this is Java "
+				+ System.getProperty("java.version"), e);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Virtual threads could not be enabled", e);
+		}
+	}
+}
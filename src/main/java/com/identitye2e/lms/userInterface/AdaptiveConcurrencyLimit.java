@@ -0,0 +1,116 @@
+package com.identitye2e.lms.userInterface;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This limits the number of requests served at once and adapts the limit to the latency it sees, by additive
+ * increase and multiplicative decrease: a request served within the latency target while the limit is in use raises
+ * the limit by 1 / limit, so by one per limit requests, and a slower or failed request multiplies it by backoffRatio.
+ * Only a request that started after the last decrease decreases the limit again, as the requests that were in
+ * flight then saw the same overload, so the limit is cut once per round of requests like a TCP window.
+ *
+ * The limit and the requests in flight are only changed by compare and set, no request waits for another.
+ */
+class AdaptiveConcurrencyLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTargetNanos;
+	private final double backoffRatio;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	//The limit as the bits of a double, whose fraction adds up the increases
+	private final AtomicLong limit;
+	//System.nanoTime of the last decrease
+	private final AtomicLong decreasedAt;
+
+	/**
+	 * @throws IllegalArgumentException if the limits are not ordered or the backoff ratio is not between 0 and 1.
+	 */
+	AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos, double backoffRatio) {
+		if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("The concurrency limits should be positive and min <= initial <= max");
+		}
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("The backoff ratio should be between 0 and 1");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTargetNanos = latencyTargetNanos;
+		this.backoffRatio = backoffRatio;
+		this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+		this.decreasedAt = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * It admits a request if fewer requests than the limit are in flight, an admitted request has to be released.
+	 *
+	 * @return true if the request is admitted
+	 */
+	boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if (current >= getLimit()) {
+				return false;
+			}
+		} while (!inFlight.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	/**
+	 * It releases an admitted request and adapts the limit to how it went.
+	 *
+	 * @param started is System.nanoTime when the request was admitted.
+	 * @param now is System.nanoTime when the request was served.
+	 * @param failed whether the request failed, which is taken as a sign of overload.
+	 */
+	void release(long started, long now, boolean failed) {
+		int served = inFlight.getAndDecrement();
+		if (failed || now - started > latencyTargetNanos) {
+			decrease(started, now);
+		} else {
+			increase(served);
+		}
+	}
+
+	int getLimit() {
+		return (int) Double.longBitsToDouble(limit.get());
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * It raises the limit if the requests in flight used at least half of it, an idle server learns nothing about
+	 * how many requests it can serve.
+	 */
+	private void increase(int inFlight) {
+		while (true) {
+			long bits = limit.get();
+			double current = Double.longBitsToDouble(bits);
+			if (inFlight * 2 < current || current >= maxLimit) {
+				return;
+			}
+			double next = Math.min(maxLimit, current + 1 / current);
+			if (limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+				return;
+			}
+		}
+	}
+
+	private void decrease(long started, long now) {
+		long last = decreasedAt.get();
+		if (started - last < 0 || !decreasedAt.compareAndSet(last, now)) {
+			return;
+		}
+		while (true) {
+			long bits = limit.get();
+			double next = Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio);
+			if (limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.LibraryMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This configuration puts AdmissionFilter in front of the book endpoints when lms.admission.enabled is true. The
+ * filter runs before every other filter, so a rejected request costs as little as possible.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lms.admission.enabled", havingValue = "true")
+public class AdmissionConfiguration {
+
+	@Bean
+	public FilterRegistrationBean<AdmissionFilter> admissionFilter(LibraryMetrics metrics,
+			@Value("${lms.admission.paths}") String[] paths,
+			@Value("${lms.admission.client-header:}") String clientHeader,
+			@Value("${lms.admission.rate-per-second:50}") double ratePerSecond,
+			@Value("${lms.admission.burst:100}") int burst,
+			@Value("${lms.admission.max-clients:100000}") int maxClients,
+			@Value("${lms.admission.initial-limit:64}") int initialLimit,
+			@Value("${lms.admission.min-limit:8}") int minLimit,
+			@Value("${lms.admission.max-limit:512}") int maxLimit,
+			@Value("${lms.admission.latency-target-ms:100}") long latencyTargetMillis,
+			@Value("${lms.admission.backoff-ratio:0.9}") double backoffRatio) {
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(ratePerSecond, burst, maxClients);
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit,
+			TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis), backoffRatio);
+		metrics.gauge("lms_admission_limit", "Number of requests admission control lets be served at once",
+			concurrencyLimit::getLimit);
+		metrics.gauge("lms_admission_in_flight", "Number of admitted requests being served", concurrencyLimit::getInFlight);
+		metrics.gauge("lms_admission_clients", "Number of client and endpoint pairs with a rate limit bucket",
+			rateLimiter::size);
+
+		FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+			new AdmissionFilter(Arrays.asList(paths), clientHeader, rateLimiter, concurrencyLimit, metrics));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+}
@@ -0,0 +1,164 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.LibraryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This filter admits the requests to the book endpoints before they reach a controller, and answers the others at
+ * once with 429 Too Many Requests and a Retry-After header, so an overloaded LMS keeps serving the requests it admits
+ * quickly instead of serving every request slowly.
+ *
+ * A request is first taken from the token bucket of its client and endpoint, the client being the value of a header
+ * set by a proxy or else the remote address, then admitted if fewer requests than the adaptive concurrency limit are
+ * being served. An async request is served until its async processing completes.
+ *
+ * A request that may be served for as long as a client reads or waits would hold a slot of the concurrency limit and
+ * always be slower than the latency target, cutting the limit for every other client. So the finds by author that
+ * stream every book of an author, in newline delimited JSON or without a limit, are never admitted, and long polls
+ * and streams such as /book/hold, /book/changes and /book/export should not be listed in paths.
+ */
+@Slf4j
+public class AdmissionFilter extends OncePerRequestFilter {
+
+	private final List<String> paths;
+	private final String clientHeader;
+	private final ClientRateLimiter rateLimiter;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final LibraryMetrics metrics;
+
+	/**
+	 * @param paths are the endpoints behind admission control, a path also covers the paths below it.
+	 * @param clientHeader is the header identifying the client, empty to use the remote address.
+	 */
+	AdmissionFilter(List<String> paths, String clientHeader, ClientRateLimiter rateLimiter,
+			AdaptiveConcurrencyLimit concurrencyLimit, LibraryMetrics metrics) {
+		this.paths = paths;
+		this.clientHeader = clientHeader;
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimit = concurrencyLimit;
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return endpoint(request) == null;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		long started = System.nanoTime();
+		long waitNanos = rateLimiter.tryAcquire(client(request) + ' ' + endpoint(request), started);
+		if (waitNanos > 0) {
+			metrics.recordAdmission(LibraryMetrics.Admission.RATE_LIMITED, 0);
+			reject(response, (waitNanos + 999_999_999) / 1_000_000_000, "Too many requests, slow down");
+			return;
+		}
+		if (!concurrencyLimit.tryAcquire()) {
+			metrics.recordAdmission(LibraryMetrics.Admission.SHED, 0);
+			reject(response, 1, "Too many requests are being served, retry later");
+			return;
+		}
+		boolean served = false;
+		try {
+			chain.doFilter(request, response);
+			served = true;
+		} finally {
+			if (served && request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new Release(started, response));
+			} else {
+				release(started, !served || response.getStatus() >= 500);
+			}
+		}
+	}
+
+	/**
+	 * It returns the listed path the request is for, null if it is not behind admission control.
+	 */
+	private String endpoint(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		if (isStream(path, request)) {
+			return null;
+		}
+		for (String endpoint : paths) {
+			if (path.startsWith(endpoint) && (path.length() == endpoint.length() || path.charAt(endpoint.length()) == '/')) {
+				return endpoint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * It tells if the request is a find by author answered with a stream of every book of the author.
+	 */
+	private static boolean isStream(String path, HttpServletRequest request) {
+		if (!path.endsWith("/book/find") || request.getParameter("author") == null) {
+			return false;
+		}
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		return request.getParameter("limit") == null || (accept != null && accept.contains(BookController.NDJSON_VALUE));
+	}
+
+	private String client(HttpServletRequest request) {
+		String client = clientHeader.isEmpty() ? null : request.getHeader(clientHeader);
+		return client == null ? request.getRemoteAddr() : client;
+	}
+
+	private void release(long started, boolean failed) {
+		long now = System.nanoTime();
+		concurrencyLimit.release(started, now, failed);
+		metrics.recordAdmission(LibraryMetrics.Admission.ADMITTED, now - started);
+	}
+
+	private static void reject(HttpServletResponse response, long retryAfterSeconds, String message) throws IOException {
+		log.debug("Rejected request: {}", message);
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.getWriter().write(message);
+	}
+
+	/**
+	 * It releases an async request once it completes, which it does after a timeout or an error too.
+	 */
+	private final class Release implements AsyncListener {
+
+		private final long started;
+		private final HttpServletResponse response;
+
+		private Release(long started, HttpServletResponse response) {
+			this.started = started;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release(started, response.getStatus() >= 500);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This is the non-blocking variant of BookController under /async. Mutations return a future that completes once the
+ * library has made the change durable, so the servlet thread is released while the journal is forced, and books by
+ * author are streamed through a WriteListener that only reads the next book once the client can take it. The
+ * responses are the same as those of BookController.
+ * @author V.Pirabaharan
+ */
+@Slf4j
+@RestController
+@RequestMapping("/async")
+public class AsyncBookController {
+
+	private final Library library;
+	private final ObjectWriter bookWriter;
+
+	public AsyncBookController(Library library, ObjectMapper objectMapper) {
+		this.library = library;
+		this.bookWriter = objectMapper.writerFor(BookResponse.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * This is an endpoint that is responsible for adding book
+	 * @param book contains the attributes of a book.
+	 * @return the future ResponseEntity with the added book as JSON
+	 */
+	@PostMapping("/book/add")
+	public CompletableFuture<ResponseEntity<?>> addBook(@RequestBody Book book) {
+		return library.addBookAsync(book).handle((savedBook, failure) -> {
+			if (failure == null) {
+				return ResponseEntity.ok(BookResponse.of(savedBook, null));
+			}
+			Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+			if (cause instanceof BookEntryInvalidException) {
+				log.debug("Rejected add: {}", cause.getMessage());
+				return ResponseEntity.badRequest().body("Invalid book entry, please check the payload");
+			}
+			if (cause instanceof BookAlreadyExistException) {
+				log.debug("Rejected add: {}", cause.getMessage());
+				return ResponseEntity.badRequest().body("Book already exists");
+			}
+			log.error("", cause);
+			return ResponseEntity.internalServerError().body("Unexpected error occurred");
+		});
+	}
+
+	/**
+	 * This is an endpoint that is responsible for removing book
+	 * @param isbn is the isbn of a book.
+	 * @return the future ResponseEntity with the removed book as JSON
+	 */
+	@DeleteMapping("/book/remove")
+	public CompletableFuture<ResponseEntity<?>> removeBook(@RequestParam String isbn) {
+		return respond(library.removeBookAsync(isbn), null, "Book not found");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for finding book by isbn, a lookup never waits so it is answered
+	 * straight away.
+	 * @param isbn is the isbn of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return ResponseEntity with the book as JSON
+	 */
+	@GetMapping(value = "/book/find", params = {"isbn", "!author"})
+	public ResponseEntity<?> findBookByIsbn(@RequestParam String isbn, @RequestParam(required = false) String fields) {
+		try {
+			Set<String> selected = BookResponse.fields(fields);
+			return BookController.bookResponse(library.tryFindBookByISBN(isbn), selected, "Book not found");
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected find: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+
+	/**
+	 * This is an endpoint that is responsible for streaming books by author as a JSON array ordered by isbn. With
+	 * limit only one page is returned, and the Next-Cursor header carries the cursor of the following page.
+	 * @param author is the author of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @param cursor is the Next-Cursor of the previous page, absent for the first page.
+	 * @param limit is the maximum number of books to return, absent to return all of them.
+	 * @param request is put in asynchronous mode while the books are written.
+	 * @param response receives the JSON array of books.
+	 */
+	@GetMapping(value = "/book/find", params = {"author", "!isbn"})
+	public void findBooksByAuthor(@RequestParam String author, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		streamBooksByAuthor(author, fields, cursor, limit, false, request, response);
+	}
+
+	/**
+	 * This is an endpoint that is responsible for streaming books by author as newline delimited JSON, one book per
+	 * line, when application/x-ndjson is accepted.
+	 * @param author is the author of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @param cursor is the Next-Cursor of the previous page, absent for the first page.
+	 * @param limit is the maximum number of books to return, absent to return all of them.
+	 * @param request is put in asynchronous mode while the books are written.
+	 * @param response receives one JSON book per line.
+	 */
+	@GetMapping(value = "/book/find", params = {"author", "!isbn"}, produces = BookController.NDJSON_VALUE)
+	public void streamBooksByAuthor(@RequestParam String author, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		streamBooksByAuthor(author, fields, cursor, limit, true, request, response);
+	}
+
+	/**
+	 * This is an endpoint that answers find requests with neither or both of isbn and author
+	 * @param isbn is the isbn of a book.
+	 * @param author is the author of a book.
+	 * @return ResponseEntity<String>
+	 */
+	@GetMapping("/book/find")
+	public ResponseEntity<String> findBook(@RequestParam(required = false) String isbn, @RequestParam(required = false) String author) {
+		if (isbn == null && author == null) {
+			return ResponseEntity.badRequest()
+				.body("Either isbn or author should be provided.");
+		}
+		return ResponseEntity.badRequest()
+			.body("You could only provide one. Not both.");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for borrowing book
+	 * @param isbn is the isbn of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return the future ResponseEntity with the book as JSON
+	 */
+	@PutMapping("/book/borrow")
+	public CompletableFuture<ResponseEntity<?>> borrowBook(@RequestParam String isbn, @RequestParam(required = false) String fields) {
+		Set<String> selected;
+		try {
+			selected = BookResponse.fields(fields);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected borrow: {}", e.getMessage());
+			return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+		}
+		return respond(library.borrowBookAsync(isbn), selected, "Book does't exist");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for returning book
+	 * @param isbn is the isbn of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return the future ResponseEntity with the book as JSON
+	 */
+	@PutMapping("/book/return")
+	public CompletableFuture<ResponseEntity<?>> returnBook(@RequestParam String isbn, @RequestParam(required = false) String fields) {
+		Set<String> selected;
+		try {
+			selected = BookResponse.fields(fields);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected return: {}", e.getMessage());
+			return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+		}
+		return respond(library.returnBookAsync(isbn), selected, "Book does't exist");
+	}
+
+	private void streamBooksByAuthor(String author, String fields, String cursor, Integer limit, boolean ndjson,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Set<String> selected;
+		Iterator<Book> books;
+		try {
+			selected = BookResponse.fields(fields);
+			books = BookController.booksByAuthor(library, author, cursor, limit, response);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected find: {}", e.getMessage());
+			BookController.writeBadRequest(response, e.getMessage());
+			return;
+		}
+		response.setContentType(ndjson ? BookController.NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+		AsyncContext asyncContext = request.startAsync();
+		//a large stream to a slow client may take longer than any fixed timeout, a client that stops reading is
+		//dropped by the write timeout of the connector instead
+		asyncContext.setTimeout(0);
+		ServletOutputStream out = response.getOutputStream();
+		out.setWriteListener(new BookStreamWriteListener(out, books, bookWriter, selected, ndjson, asyncContext::complete));
+	}
+
+	private static CompletableFuture<ResponseEntity<?>> respond(CompletableFuture<BookResult> result, Set<String> selected,
+			String notFound) {
+		return result.handle((bookResult, failure) -> {
+			if (failure == null) {
+				return BookController.bookResponse(bookResult, selected, notFound);
+			}
+			log.error("", failure);
+			return ResponseEntity.internalServerError().body("Unexpected error occurred");
+		});
+	}
+}
@@ -0,0 +1,52 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator walks the books of an author in isbn order by fetching one page at a time from the library, so an
+ * author with any number of books is streamed with a single page in memory.
+ */
+class AuthorBookIterator implements Iterator<Book> {
+
+	private final Library library;
+	private final String author;
+	private final int pageSize;
+	private List<Book> page = Collections.emptyList();
+	private int position;
+	private String afterIsbn;
+	private boolean last;
+
+	AuthorBookIterator(Library library, String author, String afterIsbn, int pageSize) {
+		this.library = library;
+		this.author = author;
+		this.afterIsbn = afterIsbn;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position == page.size() && !last) {
+			page = library.findBooksByAuthor(author, afterIsbn, pageSize);
+			position = 0;
+			last = page.size() < pageSize;
+			if (!page.isEmpty()) {
+				afterIsbn = page.get(page.size() - 1).getIsbn();
+			}
+		}
+		return position < page.size();
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.get(position++);
+	}
+}
@@ -0,0 +1,182 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator reads books one block at a time from the binary catalogue format written by BinaryCatalogueWriter.
+ * The books of a block share the author strings of the block, so an imported catalogue keeps one string per author.
+ * A stream that is not in the format, is corrupt or ends before the end of the catalogue fails with
+ * UncheckedIOException.
+ */
+class BinaryCatalogueReader implements Iterator<Book> {
+
+	static final int MAX_BLOCK_BYTES = 64 << 20;
+
+	private final ReadableByteChannel channel;
+	private final List<String> authors = new ArrayList<>();
+	private final String[] isbns = new String[BinaryCatalogueWriter.BLOCK_ROWS];
+	private final String[] titles = new String[BinaryCatalogueWriter.BLOCK_ROWS];
+	private final int[] authorNumbers = new int[BinaryCatalogueWriter.BLOCK_ROWS];
+	private final int[] years = new int[BinaryCatalogueWriter.BLOCK_ROWS];
+	private final Book[] rows = new Book[BinaryCatalogueWriter.BLOCK_ROWS];
+	private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+	private int count;
+	private int next;
+	private boolean ended;
+
+	BinaryCatalogueReader(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		read(BinaryCatalogueWriter.MAGIC.length + 1);
+		byte[] magic = new byte[BinaryCatalogueWriter.MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, BinaryCatalogueWriter.MAGIC)) {
+			throw new IOException("Not a binary catalogue");
+		}
+		byte version = buffer.get();
+		if (version != BinaryCatalogueWriter.VERSION) {
+			throw new IOException("Unsupported binary catalogue version " + version);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			while (next == count && !ended) {
+				readBlock();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return next < count;
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Book book = rows[next];
+		rows[next++] = null;
+		return book;
+	}
+
+	private void readBlock() throws IOException {
+		next = 0;
+		count = 0;
+		read(4);
+		int length = buffer.getInt();
+		if (length == 0) {
+			ended = true;
+			return;
+		}
+		if (length < 0 || length > MAX_BLOCK_BYTES) {
+			throw new IOException("Corrupt binary catalogue, a block of " + length + " bytes");
+		}
+		read(length);
+		try {
+			decode();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Corrupt binary catalogue block", e);
+		}
+		if (buffer.hasRemaining()) {
+			throw new IOException("Corrupt binary catalogue block, " + buffer.remaining() + " bytes left over");
+		}
+	}
+
+	private void decode() {
+		int rowCount = getVarint();
+		if (rowCount < 1 || rowCount > BinaryCatalogueWriter.BLOCK_ROWS) {
+			throw new IllegalArgumentException("A block of " + rowCount + " books");
+		}
+		if ((buffer.get() & BinaryCatalogueWriter.RESET) != 0) {
+			authors.clear();
+		}
+		int newAuthors = getVarint();
+		if (newAuthors < 0 || authors.size() + newAuthors > BinaryCatalogueWriter.MAX_AUTHORS) {
+			throw new IllegalArgumentException("Too many authors");
+		}
+		for (int i = 0; i < newAuthors; i++) {
+			authors.add(getString());
+		}
+		for (int i = 0; i < rowCount; i++) {
+			isbns[i] = getString();
+		}
+		for (int i = 0; i < rowCount; i++) {
+			titles[i] = getString();
+		}
+		for (int i = 0; i < rowCount; i++) {
+			authorNumbers[i] = getVarint();
+		}
+		int year = 0;
+		for (int i = 0; i < rowCount; i++) {
+			year += unzigzag(getVarint());
+			years[i] = year;
+		}
+		for (int i = 0; i < rowCount; i++) {
+			rows[i] = Book.builder()
+				.isbn(isbns[i])
+				.title(titles[i])
+				.author(authors.get(authorNumbers[i]))
+				.publicationYear(years[i])
+				.availableCopies(unzigzag(getVarint()))
+				.build();
+		}
+		count = rowCount;
+	}
+
+	/**
+	 * It reads exactly bytes bytes from the channel into buffer and flips it for reading.
+	 */
+	private void read(int bytes) throws IOException {
+		if (buffer.capacity() < bytes) {
+			buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+		}
+		buffer.clear();
+		buffer.limit(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("The binary catalogue ends before its end block");
+			}
+		}
+		buffer.flip();
+	}
+
+	private String getString() {
+		int length = getVarint();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("A string of " + length + " bytes");
+		}
+		int position = buffer.position();
+		buffer.position(position + length);
+		return new String(buffer.array(), position, length, StandardCharsets.UTF_8);
+	}
+
+	private int getVarint() {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("A varint longer than 5 bytes");
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
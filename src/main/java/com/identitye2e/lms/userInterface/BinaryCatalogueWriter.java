@@ -0,0 +1,169 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This writes books in the binary catalogue format, a header followed by blocks of up to BLOCK_ROWS books stored
+ * column after column, so that values of the same kind sit next to each other:
+ *
+ * <pre>
+ * header:  "LMSC" VERSION
+ * block:   length:int32 rows:varint flags:byte
+ *          authors:varint (author:string)*      authors first seen in this block, numbered on from the last one
+ *          (isbn:string)* (title:string)*
+ *          (author number:varint)* (publication year change:zigzag)* (available copies:zigzag)*
+ * end:     0:int32
+ * string:  length:varint UTF-8 bytes
+ * </pre>
+ *
+ * An author is written once and referred to by its number afterwards. Once MAX_AUTHORS authors are numbered the next
+ * block starts over with the RESET flag, so neither side ever holds more than one block and MAX_AUTHORS authors.
+ */
+class BinaryCatalogueWriter implements CatalogueWriter {
+
+	static final byte[] MAGIC = {'L', 'M', 'S', 'C'};
+	static final byte VERSION = 1;
+	static final int BLOCK_ROWS = 4096;
+	static final int MAX_AUTHORS = 1 << 16;
+	static final byte RESET = 1;
+
+	private final WritableByteChannel channel;
+	private final Book[] rows = new Book[BLOCK_ROWS];
+	private final int[] authorNumbers = new int[BLOCK_ROWS];
+	//This map has Author as key and its number as value
+	private final Map<String, Integer> authors = new HashMap<>();
+	private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+	private int count;
+
+	BinaryCatalogueWriter(WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.put(MAGIC).put(VERSION);
+		buffer.flip();
+		writeBuffer();
+	}
+
+	@Override
+	public void write(Book book) throws IOException {
+		rows[count++] = book;
+		if (count == BLOCK_ROWS) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (count > 0) {
+			writeBlock();
+		}
+		buffer.clear();
+		buffer.putInt(0);
+		buffer.flip();
+		writeBuffer();
+	}
+
+	private void writeBlock() throws IOException {
+		byte flags = 0;
+		if (authors.size() > MAX_AUTHORS - count) {
+			authors.clear();
+			flags = RESET;
+		}
+		buffer.clear();
+		buffer.position(4);
+		putVarint(count);
+		buffer.put(flags);
+		int known = authors.size();
+		for (int i = 0; i < count; i++) {
+			Integer number = authors.putIfAbsent(rows[i].getAuthor(), authors.size());
+			authorNumbers[i] = number == null ? authors.size() - 1 : number;
+		}
+		putVarint(authors.size() - known);
+		for (int i = 0; i < count; i++) {
+			if (authorNumbers[i] >= known) {
+				known++;
+				putString(rows[i].getAuthor());
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			putString(rows[i].getIsbn());
+		}
+		for (int i = 0; i < count; i++) {
+			putString(rows[i].getTitle());
+		}
+		ensure(count * 15);
+		for (int i = 0; i < count; i++) {
+			putVarint(authorNumbers[i]);
+		}
+		int year = 0;
+		for (int i = 0; i < count; i++) {
+			putVarint(zigzag(rows[i].getPublicationYear() - year));
+			year = rows[i].getPublicationYear();
+		}
+		for (int i = 0; i < count; i++) {
+			putVarint(zigzag(rows[i].getAvailableCopies()));
+			rows[i] = null;
+		}
+		count = 0;
+		buffer.putInt(0, buffer.position() - 4);
+		buffer.flip();
+		writeBuffer();
+	}
+
+	private void writeBuffer() throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * It writes a string, ASCII strings, the usual case, are copied without encoding them first.
+	 */
+	private void putString(String value) {
+		int length = value.length();
+		ensure(5 + 3 * length);
+		int ascii = 0;
+		while (ascii < length && value.charAt(ascii) < 0x80) {
+			ascii++;
+		}
+		if (ascii < length) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putVarint(bytes.length);
+			buffer.put(bytes);
+			return;
+		}
+		putVarint(length);
+		byte[] array = buffer.array();
+		int position = buffer.position();
+		for (int i = 0; i < length; i++) {
+			array[position + i] = (byte) value.charAt(i);
+		}
+		buffer.position(position + length);
+	}
+
+	private void putVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+}
@@ -1,12 +1,30 @@
 package com.identitye2e.lms.userInterface;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.identitye2e.lms.application.BulkAddResult;
+import com.identitye2e.lms.application.CheckoutResult;
 import com.identitye2e.lms.application.Library;
 import com.identitye2e.lms.domain.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This is a rest controller responsible for functionalities of Concurrent Library Management System (LMS)
@@ -16,22 +34,33 @@ import java.util.List;
 @RestController
 public class BookController {
 
+	static final String NDJSON_VALUE = "application/x-ndjson";
+	static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+	static final int AUTHOR_PAGE_SIZE = 256;
+	static final int MAX_LIMIT = 1000;
+	static final int MAX_CHECKOUT = 1000;
+	static final int MAX_BORROWER_LENGTH = 128;
+
 	private final Library library;
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter bookWriter;
 
-	public BookController(Library library) {
+	public BookController(Library library, ObjectMapper objectMapper) {
 		this.library = library;
+		this.objectMapper = objectMapper;
+		this.bookWriter = objectMapper.writerFor(BookResponse.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 	}
 
 	/**
 	 * This is an endpoint that is responsible for adding book
 	 * @param book contains the attributes of a book.
-	 * @return ResponseEntity<String>
+	 * @return ResponseEntity with the added book as JSON
 	 */
 	@PostMapping("/book/add")
-	public ResponseEntity<String> addBook(@RequestBody Book book) {
+	public ResponseEntity<?> addBook(@RequestBody Book book) {
 		try {
 			Book savedBook = library.addBook(book);
-			return ResponseEntity.ok(savedBook.toString());
+			return ResponseEntity.ok(BookResponse.of(savedBook, null));
 		}catch (BookEntryInvalidException e) {
 			log.error("", e);
 			return ResponseEntity.badRequest().body("Invalid book entry, please check the payload");
@@ -44,19 +73,64 @@ public class BookController {
 		return ResponseEntity.internalServerError().body("Unexpected error occurred");
 	}
 
+	/**
+	 * This is an endpoint that is responsible for adding many books from a JSON array. The array is read and
+	 * stored in batches while it is streamed in, unless atomic is set, in which case the whole payload is checked
+	 * before any book is kept. A payload that turns unreadable part way is answered with 400 and the summary of
+	 * what was read before, the unreadable element being the last rejected one, as without atomic the books before
+	 * it are kept.
+	 * @param payload is a JSON array of books.
+	 * @param atomic rejects every book if one of them is rejected.
+	 * @return ResponseEntity with the number of added books and the rejected ones
+	 */
+	@PostMapping("/book/add/bulk")
+	public ResponseEntity<?> addBooks(InputStream payload, @RequestParam(defaultValue = "false") boolean atomic) {
+		try {
+			BookJsonArrayIterator books = new BookJsonArrayIterator(objectMapper, payload);
+			BulkAddResult result = library.addBooks(books, atomic);
+			if (books.failure() != null) {
+				log.debug("Unreadable bulk payload: {}", books.failure().getMessage());
+				return ResponseEntity.badRequest().body(result);
+			}
+			return ResponseEntity.ok(result);
+		}catch (IOException | UncheckedIOException e) {
+			log.error("", e);
+			return ResponseEntity.badRequest().body("Invalid payload, a JSON array of books is expected");
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
 	/**
 	 * This is an endpoint that is responsible for removing book
 	 * @param isbn is the isbn of a book.
-	 * @return ResponseEntity<String>
+	 * @return ResponseEntity with the removed book as JSON
 	 */
 	@DeleteMapping("/book/remove")
-	public ResponseEntity<String> removeBook(@RequestParam String isbn) {
+	public ResponseEntity<?> removeBook(@RequestParam String isbn) {
 		try{
-			Book returnedBook = library.removeBook(isbn);
-			return ResponseEntity.ok(returnedBook.toString());
-		}catch (BookNotFoundException e) {
+			return bookResponse(library.tryRemoveBook(isbn), null, "Book not found");
+		}catch (Exception e) {
 			log.error("", e);
-			return ResponseEntity.badRequest().body("Book not found");
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for finding book by isbn
+	 * @param isbn is the isbn of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return ResponseEntity with the book as JSON
+	 */
+	@GetMapping(value = "/book/find", params = {"isbn", "!author"})
+	public ResponseEntity<?> findBookByIsbn(@RequestParam String isbn, @RequestParam(required = false) String fields) {
+		try {
+			Set<String> selected = BookResponse.fields(fields);
+			return bookResponse(library.tryFindBookByISBN(isbn), selected, "Book not found");
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected find: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
 		}catch (Exception e) {
 			log.error("", e);
 		}
@@ -64,7 +138,148 @@ public class BookController {
 	}
 
 	/**
-	 * This is an endpoint that is responsible for finding book
+	 * This is an endpoint that is responsible for finding books by author as a JSON array ordered by isbn. The books
+	 * are read from the author index a page at a time and serialized to the response as they are read. With limit
+	 * only one page is returned, and the Next-Cursor header carries the cursor of the following page if there is one.
+	 * @param author is the author of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @param cursor is the Next-Cursor of the previous page, absent for the first page.
+	 * @param limit is the maximum number of books to return, absent to return all of them.
+	 * @param response receives the JSON array of books.
+	 */
+	@GetMapping(value = "/book/find", params = {"author", "!isbn"})
+	public void findBooksByAuthor(@RequestParam String author, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit,
+			HttpServletResponse response) throws IOException {
+		Set<String> selected;
+		Iterator<Book> books;
+		try {
+			selected = BookResponse.fields(fields);
+			books = booksByAuthor(library, author, cursor, limit, response);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected find: {}", e.getMessage());
+			writeBadRequest(response, e.getMessage());
+			return;
+		}
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		try (SequenceWriter writer = bookWriter.writeValuesAsArray(response.getOutputStream())) {
+			while (books.hasNext()) {
+				writer.write(BookResponse.of(books.next(), selected));
+			}
+		}
+	}
+
+	/**
+	 * This is an endpoint that is responsible for streaming books by author as newline delimited JSON, one book per
+	 * line, when application/x-ndjson is accepted. The response is flushed after every page so clients can process
+	 * books while the rest are still being read.
+	 * @param author is the author of a book.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @param cursor is the Next-Cursor of the previous page, absent for the first page.
+	 * @param limit is the maximum number of books to return, absent to return all of them.
+	 * @param response receives one JSON book per line.
+	 */
+	@GetMapping(value = "/book/find", params = {"author", "!isbn"}, produces = NDJSON_VALUE)
+	public void streamBooksByAuthor(@RequestParam String author, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit,
+			HttpServletResponse response) throws IOException {
+		Set<String> selected;
+		Iterator<Book> books;
+		try {
+			selected = BookResponse.fields(fields);
+			books = booksByAuthor(library, author, cursor, limit, response);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected find: {}", e.getMessage());
+			writeBadRequest(response, e.getMessage());
+			return;
+		}
+		response.setContentType(NDJSON_VALUE);
+		OutputStream out = response.getOutputStream();
+		int written = 0;
+		while (books.hasNext()) {
+			out.write(bookWriter.writeValueAsBytes(BookResponse.of(books.next(), selected)));
+			out.write('\n');
+			if (++written % AUTHOR_PAGE_SIZE == 0) {
+				out.flush();
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * This is an endpoint that is responsible for finding books published between two years, optionally by one author
+	 * and with a copy available, as a JSON array ordered by publication year then isbn. The books are read from the
+	 * year index of the repository a page at a time and serialized to the response as they are read. With limit only
+	 * one page is returned, and the Next-Cursor header carries the cursor of the following page if there is one.
+	 * @param fromYear is the first publication year, absent for no lower bound.
+	 * @param toYear is the last publication year, absent for no upper bound.
+	 * @param author is the author of the books, absent for any author.
+	 * @param available is whether only books with a copy available are returned.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @param cursor is the Next-Cursor of the previous page, absent for the first page.
+	 * @param limit is the maximum number of books to return, absent to return all of them.
+	 * @param response receives the JSON array of books.
+	 */
+	@GetMapping("/book/query")
+	public void findBooks(@RequestParam(required = false) Integer fromYear, @RequestParam(required = false) Integer toYear,
+			@RequestParam(required = false) String author, @RequestParam(defaultValue = "false") boolean available,
+			@RequestParam(required = false) String fields, @RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+		Set<String> selected;
+		Iterator<Book> books;
+		try {
+			selected = BookResponse.fields(fields);
+			BookQuery query = BookQuery.builder()
+				.author(author)
+				.fromYear(fromYear == null ? Integer.MIN_VALUE : fromYear)
+				.toYear(toYear == null ? Integer.MAX_VALUE : toYear)
+				.availableOnly(available)
+				.build();
+			books = booksByQuery(library, query, cursor, limit, response);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected query: {}", e.getMessage());
+			writeBadRequest(response, e.getMessage());
+			return;
+		}
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		try (SequenceWriter writer = bookWriter.writeValuesAsArray(response.getOutputStream())) {
+			while (books.hasNext()) {
+				writer.write(BookResponse.of(books.next(), selected));
+			}
+		}
+	}
+
+	/**
+	 * This is an endpoint that is responsible for searching books by the words of their title and author
+	 * @param q is free text, every word has to match and the last one may be the start of a word.
+	 * @param limit is the maximum number of books to return, the best matches come first.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return ResponseEntity with the matching books as JSON
+	 */
+	@GetMapping("/book/search")
+	public ResponseEntity<?> searchBooks(@RequestParam String q, @RequestParam(defaultValue = "20") int limit,
+			@RequestParam(required = false) String fields) {
+		try {
+			Set<String> selected = BookResponse.fields(fields);
+			if (limit < 1 || limit > MAX_LIMIT) {
+				throw new IllegalArgumentException("limit should be between 1 and " + MAX_LIMIT);
+			}
+			List<BookResponse> books = new ArrayList<>();
+			for (Book book : library.searchBooks(q, limit)) {
+				books.add(BookResponse.of(book, selected));
+			}
+			return ResponseEntity.ok(books);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected search: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	/**
+	 * This is an endpoint that answers find requests with neither or both of isbn and author
 	 * @param isbn is the isbn of a book.
 	 * @param author is the author of a book.
 	 * @return ResponseEntity<String>
@@ -75,48 +290,30 @@ public class BookController {
 			return ResponseEntity.badRequest()
 				.body("Either isbn or author should be provided.");
 		}
-		
-		if (isbn != null && author != null) {
-			return ResponseEntity.badRequest()
-				.body("You could only provide one. Not both.");
-		}
-		
-		if (isbn != null) {
-			try {
-				Book book = library.findBookByISBN(isbn);
-				return ResponseEntity.ok(book.toString());
-			}catch (BookNotFoundException e) {
-				log.error("", e);
-				return ResponseEntity.badRequest().body("Book not found");
-			}catch (Exception e) {
-				log.error("", e);
-			}
-			return ResponseEntity.internalServerError().body("Unexpected error occurred");
-		} else {
-			List<Book> books = library.findBooksByAuthor(author);
-			return ResponseEntity.ok().body(books.toString());
-		}
+		return ResponseEntity.badRequest()
+			.body("You could only provide one. Not both.");
 	}
 
 	/**
 	 * This is an endpoint that is responsible for borrowing book
 	 * @param isbn is the isbn of a book.
-	 * @return ResponseEntity<String>
+	 * @param borrower optionally identifies the borrower, the copy is then recorded as lent to them until it is due.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return ResponseEntity with the book as JSON
 	 */
 	@PutMapping("/book/borrow")
-	public ResponseEntity<String> borrowBook(@RequestParam String isbn) {
+	public ResponseEntity<?> borrowBook(@RequestParam String isbn, @RequestParam(required = false) String borrower,
+			@RequestParam(required = false) String fields) {
 		
 		try {
-			Book book = library.borrowBook(isbn);
-			return ResponseEntity.ok(book.toString());
-		} 
-		catch (BookNotFoundException e) {
-			log.error("", e);
-			return ResponseEntity.badRequest().body("Book does't exist");
+			Set<String> selected = BookResponse.fields(fields);
+			checkBorrower(borrower);
+			BookResult result = borrower == null ? library.tryBorrowBook(isbn) : library.tryBorrowBook(isbn, borrower);
+			return bookResponse(result, selected, "Book does't exist");
 		}
-		catch (BookNotAvailableException e) {
-			log.error("", e);
-			return ResponseEntity.unprocessableEntity().body("Book isn't available");
+		catch (IllegalArgumentException e) {
+			log.debug("Rejected borrow: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
 		}
 		catch (Exception e) {
 			log.error("", e);
@@ -127,27 +324,184 @@ public class BookController {
 	/**
 	 * This is an endpoint that is responsible for returning book
 	 * @param isbn is the isbn of a book.
-	 * @return ResponseEntity<String>
+	 * @param borrower optionally identifies the borrower, whose oldest loan of the book is then closed.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return ResponseEntity with the book as JSON
 	 */
 	@PutMapping("/book/return")
-	public ResponseEntity<String> returnBook(@RequestParam String isbn) {
+	public ResponseEntity<?> returnBook(@RequestParam String isbn, @RequestParam(required = false) String borrower,
+			@RequestParam(required = false) String fields) {
 		try {
-			Book book = library.returnBook(isbn);
-			return ResponseEntity.ok(book.toString());
+			Set<String> selected = BookResponse.fields(fields);
+			checkBorrower(borrower);
+			if (borrower == null) {
+				return bookResponse(library.tryReturnBook(isbn), selected, "Book does't exist");
+			}
+			return bookResponse(library.tryReturnBook(isbn, borrower), selected, "No copy of the book is lent to the borrower");
 		}
-		catch (BookNotFoundException e) {
-			log.error("", e);
-			return ResponseEntity.badRequest().body("Book does't exist");
+		catch (IllegalArgumentException e) {
+			log.debug("Rejected return: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
 		}
-		catch (BookNotAvailableException e) {
+		catch (Exception e) {
 			log.error("", e);
-			return ResponseEntity.unprocessableEntity().body("Book isn't available");
+
 		}
-		catch (Exception e) {
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for borrowing a copy of every book in the list at once
+	 * @param isbns is a JSON array of the isbns of the books, eg ["123","456"].
+	 * @param atomic is whether a single missing or unavailable book cancels the whole batch.
+	 * @return ResponseEntity with the number of books borrowed and the outcome of every isbn as JSON
+	 */
+	@PutMapping("/book/borrow/batch")
+	public ResponseEntity<?> borrowBooks(@RequestBody List<String> isbns, @RequestParam(defaultValue = "false") boolean atomic) {
+		try {
+			checkCheckout(isbns);
+			CheckoutResult result = library.borrowBooks(isbns, atomic);
+			return ResponseEntity.ok(result);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected borrow: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
 			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
 
+	/**
+	 * This is an endpoint that is responsible for returning a copy of every book in the list at once
+	 * @param isbns is a JSON array of the isbns of the books, eg ["123","456"].
+	 * @param atomic is whether a single missing book cancels the whole batch.
+	 * @return ResponseEntity with the number of books returned and the outcome of every isbn as JSON
+	 */
+	@PutMapping("/book/return/batch")
+	public ResponseEntity<?> returnBooks(@RequestBody List<String> isbns, @RequestParam(defaultValue = "false") boolean atomic) {
+		try {
+			checkCheckout(isbns);
+			CheckoutResult result = library.returnBooks(isbns, atomic);
+			return ResponseEntity.ok(result);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected return: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
+			log.error("", e);
 		}
 		return ResponseEntity.internalServerError().body("Unexpected error occurred");
 	}
 
+	/**
+	 * It answers with the book of a result. A missing or unavailable book is a normal answer, not a fault, so it is
+	 * only logged at debug level and without a stack trace.
+	 */
+	static ResponseEntity<?> bookResponse(BookResult result, Set<String> selected, String notFound) {
+		switch (result.getStatus()) {
+			case OK:
+				return ResponseEntity.ok(BookResponse.of(result.getBook(), selected));
+			case NOT_FOUND:
+				log.debug(notFound);
+				return ResponseEntity.badRequest().body(notFound);
+			default:
+				log.debug("Book isn't available");
+				return ResponseEntity.unprocessableEntity().body("Book isn't available");
+		}
+	}
+
+	/**
+	 * It returns the books of an author after the cursor. With a limit the page is read at once, so the cursor of the
+	 * following page can be set as a header before the body is written.
+	 * @throws IllegalArgumentException if the cursor or the limit is invalid.
+	 */
+	static Iterator<Book> booksByAuthor(Library library, String author, String cursor, Integer limit,
+			HttpServletResponse response) {
+		String afterIsbn = decodeCursor(cursor);
+		if (limit == null) {
+			return new AuthorBookIterator(library, author, afterIsbn, AUTHOR_PAGE_SIZE);
+		}
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new IllegalArgumentException("limit should be between 1 and " + MAX_LIMIT);
+		}
+		List<Book> page = library.findBooksByAuthor(author, afterIsbn, limit + 1);
+		if (page.size() > limit) {
+			page = page.subList(0, limit);
+			response.setHeader(NEXT_CURSOR_HEADER, encodeCursor(page.get(limit - 1).getIsbn()));
+		}
+		return page.iterator();
+	}
+
+	/**
+	 * It returns the books answering a query after the cursor, paged like booksByAuthor.
+	 * @throws IllegalArgumentException if the years, the cursor or the limit is invalid.
+	 */
+	static Iterator<Book> booksByQuery(Library library, BookQuery query, String cursor, Integer limit,
+			HttpServletResponse response) {
+		if (query.getFromYear() > query.getToYear()) {
+			throw new IllegalArgumentException("fromYear should not be after toYear");
+		}
+		String after = decodeCursor(cursor);
+		if (after != null) {
+			//The cursor of a query is the publication year and the isbn of the last book, eg "1997,123"
+			int comma = after.indexOf(',');
+			try {
+				query = query.toBuilder()
+					.afterYear(Integer.parseInt(after.substring(0, Math.max(comma, 0))))
+					.afterIsbn(after.substring(comma + 1))
+					.build();
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid cursor", e);
+			}
+		}
+		if (limit == null) {
+			return new QueryBookIterator(library, query, AUTHOR_PAGE_SIZE);
+		}
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new IllegalArgumentException("limit should be between 1 and " + MAX_LIMIT);
+		}
+		List<Book> page = library.findBooks(query, limit + 1);
+		if (page.size() > limit) {
+			page = page.subList(0, limit);
+			Book last = page.get(limit - 1);
+			response.setHeader(NEXT_CURSOR_HEADER, encodeCursor(last.getPublicationYear() + "," + last.getIsbn()));
+		}
+		return page.iterator();
+	}
+
+	static String encodeCursor(String isbn) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(isbn.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String decodeCursor(String cursor) {
+		if (cursor == null) {
+			return null;
+		}
+		try {
+			return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+	}
+
+	private static void checkCheckout(List<String> isbns) {
+		if (isbns == null || isbns.isEmpty() || isbns.size() > MAX_CHECKOUT) {
+			throw new IllegalArgumentException("Between 1 and " + MAX_CHECKOUT + " isbns are expected");
+		}
+		if (isbns.contains(null)) {
+			throw new IllegalArgumentException("An isbn is missing");
+		}
+	}
+
+	static void checkBorrower(String borrower) {
+		if (borrower != null && (borrower.trim().isEmpty() || borrower.length() > MAX_BORROWER_LENGTH)) {
+			throw new IllegalArgumentException("borrower should have between 1 and " + MAX_BORROWER_LENGTH + " characters");
+		}
+	}
+
+	static void writeBadRequest(HttpServletResponse response, String message) throws IOException {
+		response.setStatus(HttpStatus.BAD_REQUEST.value());
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.getWriter().write(message);
+	}
+
 }
@@ -0,0 +1,89 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator reads books one at a time from a JSON array, so a bulk payload is never held in memory as a whole.
+ * An element that is not a valid book is returned as null, a payload that is not a JSON array fails with
+ * UncheckedIOException. A payload that breaks off or turns malformed within the array ends it, the element that could
+ * not be read is returned as null and failure tells why, so the books read before it are still handed over.
+ */
+class BookJsonArrayIterator implements Iterator<Book> {
+
+	private final ObjectMapper objectMapper;
+	private final JsonParser parser;
+	private JsonToken next;
+	private IOException failure;
+
+	BookJsonArrayIterator(ObjectMapper objectMapper, InputStream payload) throws IOException {
+		this.objectMapper = objectMapper;
+		this.parser = objectMapper.getFactory().createParser(payload);
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException(parser, "A JSON array of books is expected");
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && failure == null) {
+			try {
+				next = parser.nextToken();
+				if (next == null) {
+					fail(new IOException("Unterminated JSON array"));
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+		return next != JsonToken.END_ARRAY;
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (failure != null) {
+			next = JsonToken.END_ARRAY;
+			return null;
+		}
+		next = null;
+		try {
+			JsonNode node = parser.readValueAsTree();
+			try {
+				return objectMapper.treeToValue(node, Book.class);
+			} catch (JsonProcessingException | IllegalArgumentException e) {
+				return null;
+			}
+		} catch (IOException e) {
+			failure = e;
+			next = JsonToken.END_ARRAY;
+			return null;
+		}
+	}
+
+	/**
+	 * It returns why the array ended before its end was read, null if it was read to its end or is still being read.
+	 */
+	IOException failure() {
+		return failure;
+	}
+
+	//An element that could not be read is still returned, as null, before the array ends
+	private void fail(IOException e) {
+		failure = e;
+		next = JsonToken.VALUE_NULL;
+	}
+}
@@ -0,0 +1,74 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.identitye2e.lms.domain.Book;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This is the JSON representation of a book returned by BookController. Attributes left out by a fields filter
+ * are null and are not written at all.
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookResponse {
+
+	static final List<String> FIELDS = Collections.unmodifiableList(
+		Arrays.asList("isbn", "title", "author", "publicationYear", "availableCopies"));
+
+	String isbn;
+	String title;
+	String author;
+	Integer publicationYear;
+	Integer availableCopies;
+
+	/**
+	 * It copies the selected attributes of a book.
+	 *
+	 * @param book is the book to represent.
+	 * @param fields are the selected attribute names, null selects all of them.
+	 * @return the representation of the book
+	 */
+	static BookResponse of(Book book, Set<String> fields) {
+		return BookResponse.builder()
+			.isbn(selected(fields, "isbn") ? book.getIsbn() : null)
+			.title(selected(fields, "title") ? book.getTitle() : null)
+			.author(selected(fields, "author") ? book.getAuthor() : null)
+			.publicationYear(selected(fields, "publicationYear") ? book.getPublicationYear() : null)
+			.availableCopies(selected(fields, "availableCopies") ? book.getAvailableCopies() : null)
+			.build();
+	}
+
+	/**
+	 * It parses a comma separated list of attribute names such as isbn,availableCopies.
+	 *
+	 * @param fields is the value of the fields request parameter, it may be null.
+	 * @return the selected attribute names, or null when every attribute is selected
+	 * @throws IllegalArgumentException if a name is not an attribute of a book.
+	 */
+	static Set<String> fields(String fields) {
+		if (fields == null || fields.trim().isEmpty()) {
+			return null;
+		}
+		Set<String> selected = new LinkedHashSet<>();
+		for (String field : fields.split(",")) {
+			String name = field.trim();
+			if (!FIELDS.contains(name)) {
+				throw new IllegalArgumentException("Unknown field " + name + ", the fields are " + String.join(",", FIELDS));
+			}
+			selected.add(name);
+		}
+		return selected;
+	}
+
+	private static boolean selected(Set<String> fields, String field) {
+		return fields == null || fields.contains(field);
+	}
+}
@@ -0,0 +1,98 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.identitye2e.lms.domain.Book;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * This writes books to a non-blocking servlet output stream as a JSON array or as newline delimited JSON. A book is
+ * only read and serialized once the stream is ready for it, so a slow client holds back the reading of books without
+ * holding a thread, and the container calls onWritePossible again once the client catches up.
+ */
+@Slf4j
+class BookStreamWriteListener implements WriteListener {
+
+	private static final byte[] EMPTY_ARRAY = {'[', ']'};
+	private static final byte[] END_ARRAY = {']'};
+
+	private final ServletOutputStream out;
+	private final Iterator<Book> books;
+	private final ObjectWriter bookWriter;
+	private final Set<String> fields;
+	private final boolean ndjson;
+	private final Runnable completion;
+	private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(256);
+	private long written;
+	private boolean ended;
+
+	/**
+	 * @param out is the output stream the listener is set on.
+	 * @param books are the books to write.
+	 * @param bookWriter serializes a BookResponse.
+	 * @param fields are the selected attribute names, null selects all of them.
+	 * @param ndjson writes one book per line instead of a JSON array.
+	 * @param completion completes the response once every book is written or writing failed.
+	 */
+	BookStreamWriteListener(ServletOutputStream out, Iterator<Book> books, ObjectWriter bookWriter, Set<String> fields,
+			boolean ndjson, Runnable completion) {
+		this.out = out;
+		this.books = books;
+		this.bookWriter = bookWriter;
+		this.fields = fields;
+		this.ndjson = ndjson;
+		this.completion = completion;
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		while (out.isReady()) {
+			byte[] next = next();
+			if (next == null) {
+				completion.run();
+				return;
+			}
+			out.write(next);
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		//the client going away is the usual cause, it is not a fault of the service
+		log.debug("Streaming books stopped after {} books", written, t);
+		completion.run();
+	}
+
+	/**
+	 * It returns the bytes of the next book with its separator, the end of the array, or null once everything is
+	 * written.
+	 */
+	private byte[] next() throws IOException {
+		if (ended) {
+			return null;
+		}
+		if (!books.hasNext()) {
+			ended = true;
+			if (ndjson) {
+				return null;
+			}
+			return written == 0 ? EMPTY_ARRAY : END_ARRAY;
+		}
+		chunk.reset();
+		if (!ndjson) {
+			chunk.write(written == 0 ? '[' : ',');
+		}
+		bookWriter.writeValue(chunk, BookResponse.of(books.next(), fields));
+		if (ndjson) {
+			chunk.write('\n');
+		}
+		written++;
+		return chunk.toByteArray();
+	}
+}
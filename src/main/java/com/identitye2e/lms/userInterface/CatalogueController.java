@@ -0,0 +1,105 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.application.BulkAddResult;
+import com.identitye2e.lms.application.Library;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+
+/**
+ * This is a rest controller for moving the whole catalogue in and out of the LMS, to snapshot it or to migrate it to
+ * another instance. Books are streamed through channels one at a time in either direction, in the binary format of
+ * BinaryCatalogueWriter, as CSV or as newline delimited JSON.
+ * @author V.Pirabaharan
+ */
+@Slf4j
+@RestController
+public class CatalogueController {
+
+	private final Library library;
+	private final ObjectMapper objectMapper;
+
+	public CatalogueController(Library library, ObjectMapper objectMapper) {
+		this.library = library;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * This is an endpoint that is responsible for exporting every book of the catalogue. The books are written as
+	 * they are read, so an export that fails halfway cannot change the status any more and ends the response early;
+	 * only the binary format has an end block that tells a cut export from a complete one.
+	 * @param format is binary, csv or ndjson.
+	 * @param response receives the books.
+	 */
+	@GetMapping("/book/export")
+	public void exportBooks(@RequestParam(defaultValue = "binary") String format, HttpServletResponse response)
+			throws IOException {
+		CatalogueFormat catalogueFormat;
+		try {
+			catalogueFormat = CatalogueFormat.of(format);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected export: {}", e.getMessage());
+			BookController.writeBadRequest(response, e.getMessage());
+			return;
+		}
+		response.setContentType(catalogueFormat.contentType());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalogue." + catalogueFormat.extension() + "\"");
+		CatalogueWriter writer = catalogueFormat.writer(objectMapper, Channels.newChannel(response.getOutputStream()));
+		try {
+			long exported = library.exportBooks(book -> {
+				try {
+					writer.write(book);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			writer.finish();
+			log.debug("Exported {} books as {}", exported, catalogueFormat);
+		}catch (UncheckedIOException e) {
+			log.debug("Export stopped: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * This is an endpoint that is responsible for importing an exported catalogue. Books whose isbn exists already
+	 * are rejected, the others are added in batches as they are read, so the books read before an unreadable part
+	 * of the payload stay added when the import is rejected.
+	 * @param payload is the catalogue, sent as application/octet-stream.
+	 * @param format is binary, csv or ndjson.
+	 * @return ResponseEntity with the number of added books and the rejected ones
+	 */
+	@PostMapping("/book/import")
+	public ResponseEntity<?> importBooks(InputStream payload, @RequestParam(defaultValue = "binary") String format) {
+		try {
+			CatalogueFormat catalogueFormat = CatalogueFormat.of(format);
+			BulkAddResult result = library.importBooks(catalogueFormat.reader(objectMapper, Channels.newChannel(payload)));
+			return ResponseEntity.ok(result);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected import: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (UncheckedIOException e) {
+			return invalidPayload(e.getCause());
+		}catch (IOException e) {
+			return invalidPayload(e);
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	private static ResponseEntity<?> invalidPayload(IOException e) {
+		log.debug("Rejected import: {}", e.toString());
+		return ResponseEntity.badRequest().body("Invalid payload: " + e.getMessage());
+	}
+}
@@ -0,0 +1,89 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * These are the encodings a whole catalogue is exported in and imported from. Every one of them is written and read
+ * one book at a time, so the memory used does not grow with the catalogue.
+ */
+enum CatalogueFormat {
+
+	BINARY("application/vnd.lms.catalogue", "lmsc") {
+		@Override
+		CatalogueWriter writer(ObjectMapper objectMapper, WritableByteChannel channel) throws IOException {
+			return new BinaryCatalogueWriter(channel);
+		}
+
+		@Override
+		Iterator<Book> reader(ObjectMapper objectMapper, ReadableByteChannel channel) throws IOException {
+			return new BinaryCatalogueReader(channel);
+		}
+	},
+	CSV("text/csv;charset=UTF-8", "csv") {
+		@Override
+		CatalogueWriter writer(ObjectMapper objectMapper, WritableByteChannel channel) throws IOException {
+			return new CsvCatalogueWriter(channel);
+		}
+
+		@Override
+		Iterator<Book> reader(ObjectMapper objectMapper, ReadableByteChannel channel) throws IOException {
+			return new CsvCatalogueReader(channel);
+		}
+	},
+	NDJSON(BookController.NDJSON_VALUE, "ndjson") {
+		@Override
+		CatalogueWriter writer(ObjectMapper objectMapper, WritableByteChannel channel) throws IOException {
+			return new NdjsonCatalogueWriter(objectMapper, channel);
+		}
+
+		@Override
+		Iterator<Book> reader(ObjectMapper objectMapper, ReadableByteChannel channel) throws IOException {
+			return new NdjsonCatalogueReader(objectMapper, channel);
+		}
+	};
+
+	private final String contentType;
+	private final String extension;
+
+	CatalogueFormat(String contentType, String extension) {
+		this.contentType = contentType;
+		this.extension = extension;
+	}
+
+	String contentType() {
+		return contentType;
+	}
+
+	String extension() {
+		return extension;
+	}
+
+	abstract CatalogueWriter writer(ObjectMapper objectMapper, WritableByteChannel channel) throws IOException;
+
+	/**
+	 * @return an iterator over the books of the channel, a null element stands for an entry that could not be read
+	 * @throws IOException if the channel does not start like the format.
+	 */
+	abstract Iterator<Book> reader(ObjectMapper objectMapper, ReadableByteChannel channel) throws IOException;
+
+	/**
+	 * @param name is the name of a format in any case, such as csv.
+	 * @return the format
+	 * @throws IllegalArgumentException if there is no format with the name.
+	 */
+	static CatalogueFormat of(String name) {
+		for (CatalogueFormat format : values()) {
+			if (format.name().equals(name.toUpperCase(Locale.ROOT))) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("format should be one of binary, csv or ndjson");
+	}
+}
@@ -0,0 +1,263 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.identitye2e.lms.application.BulkAddResult;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.application.LibraryMetrics;
+import com.identitye2e.lms.domain.Book;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This runner loads a catalogue file when the application starts, so a new instance serves its books without having
+ * them replayed through the API. The file is newline delimited JSON, as exported by /book/export?format=ndjson, and
+ * books whose isbn exists already, such as the books recovered from the journal, are left out.
+ *
+ * JSON escapes the line breaks inside values, so every line break ends a book and the file can be split anywhere
+ * at one. The file is split into chunks of about CHUNK_BYTES on a fork-join pool, every chunk is memory-mapped on
+ * its own and its books are parsed and added through Library.importBooks by the worker that split it off, so the
+ * isbn map and the author index are built by every worker at once.
+ *
+ * Spring Boot reports the application ready to accept traffic only once every runner has returned, so /ready
+ * answers 503 until the catalogue is loaded.
+ */
+@Slf4j
+@Component
+public class CatalogueLoader implements ApplicationRunner {
+
+	static final long CHUNK_BYTES = 16 << 20;
+	//A longer line is rejected, as is any line of the chunk after it
+	static final int MAX_LINE_BYTES = 1 << 20;
+
+	private final Library library;
+	private final ObjectReader bookReader;
+	private final String file;
+	private final int parallelism;
+	private final long chunkBytes;
+	private final LongAdder loaded = new LongAdder();
+	private volatile long loadMillis;
+
+	@Autowired
+	public CatalogueLoader(Library library, ObjectMapper objectMapper, LibraryMetrics metrics,
+			@Value("${lms.catalogue.file:}") String file,
+			@Value("${lms.catalogue.parallelism:0}") int parallelism) {
+		this(library, objectMapper, metrics, file, parallelism, CHUNK_BYTES);
+	}
+
+	CatalogueLoader(Library library, ObjectMapper objectMapper, LibraryMetrics metrics, String file, int parallelism,
+			long chunkBytes) {
+		this.library = library;
+		this.bookReader = objectMapper.readerFor(Book.class);
+		this.file = file;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.chunkBytes = chunkBytes;
+		metrics.gauge("lms_catalogue_loaded_books", "Number of books added from lms.catalogue.file at startup", loaded::sum);
+		metrics.gauge("lms_catalogue_load_milliseconds", "Time taken to load lms.catalogue.file at startup", () -> loadMillis);
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws IOException {
+		if (file.isEmpty()) {
+			return;
+		}
+		Path path = Paths.get(file);
+		log.info("Loading the catalogue {} on {} threads", path, parallelism);
+		Loaded result = load(path);
+		log.info("Loaded {} books from {} in {} ms, {} rejected", result.getAdded(), path, result.getMillis(),
+			result.getRejected());
+	}
+
+	/**
+	 * It adds the books of a catalogue file.
+	 *
+	 * @param path is a newline delimited JSON file.
+	 * @return the number of added books and of lines that were not added
+	 * @throws IOException if the file can not be read.
+	 */
+	Loaded load(Path path) throws IOException {
+		long started = System.nanoTime();
+		LongAdder added = new LongAdder();
+		LongAdder rejected = new LongAdder();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			pool.invoke(new Chunk(channel, channel.size(), 0, channel.size(), added, rejected));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		loaded.add(added.sum());
+		loadMillis = (System.nanoTime() - started) / 1_000_000;
+		return new Loaded(added.sum(), rejected.sum(), loadMillis);
+	}
+
+	/**
+	 * This is the outcome of loading a catalogue file
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static class Loaded {
+		private final long added;
+		private final long rejected;
+		private final long millis;
+	}
+
+	/**
+	 * A part of the file, the books starting in it are its books even if they end after it.
+	 */
+	private final class Chunk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long size;
+		private final long start;
+		private final long end;
+		private final LongAdder added;
+		private final LongAdder rejected;
+
+		private Chunk(FileChannel channel, long size, long start, long end, LongAdder added, LongAdder rejected) {
+			this.channel = channel;
+			this.size = size;
+			this.start = start;
+			this.end = end;
+			this.added = added;
+			this.rejected = rejected;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > chunkBytes) {
+				long middle = start + (end - start) / 2;
+				invokeAll(new Chunk(channel, size, start, middle, added, rejected),
+					new Chunk(channel, size, middle, end, added, rejected));
+				return;
+			}
+			//The byte before the chunk tells whether a book starts right at it
+			long from = start == 0 ? 0 : start - 1;
+			long to = Math.min(size, end + MAX_LINE_BYTES);
+			MappedByteBuffer buffer;
+			try {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			LineReader lines = new LineReader(buffer, start == 0, (int) (end - from), to == size);
+			BulkAddResult result = library.importBooks(lines);
+			added.add(result.getAdded());
+			rejected.add(result.getRejected().size());
+		}
+	}
+
+	/**
+	 * This iterator parses the lines of a chunk, a line that is not a valid book is returned as null and blank lines
+	 * are skipped.
+	 */
+	private final class LineReader implements Iterator<Book> {
+
+		private final MappedByteBuffer buffer;
+		//Lines starting before last belong to the chunk
+		private final int last;
+		//The buffer ends with the file, the last line may have no line break
+		private final boolean endOfFile;
+		private byte[] line = new byte[256];
+		private int position;
+		private int length = -1;
+
+		private LineReader(MappedByteBuffer buffer, boolean startOfFile, int last, boolean endOfFile) {
+			this.buffer = buffer;
+			this.last = last;
+			this.endOfFile = endOfFile;
+			if (!startOfFile) {
+				position = lineEnd(0) + 1;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (length < 0 && position < last && position < buffer.limit()) {
+				int lineEnd = lineEnd(position);
+				if (lineEnd == buffer.limit() && !endOfFile) {
+					//The line does not end within MAX_LINE_BYTES, nor can the next one be found
+					position = buffer.limit();
+					length = 0;
+					return true;
+				}
+				length = lineEnd - position;
+				if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+					length--;
+				}
+				if (length > line.length) {
+					line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+				}
+				//Through Buffer, as MappedByteBuffer.position(int) only exists from Java 9 on
+				((Buffer) buffer).position(position);
+				buffer.get(line, 0, length);
+				position = lineEnd + 1;
+				if (isBlank()) {
+					length = -1;
+				}
+			}
+			return length >= 0;
+		}
+
+		@Override
+		public Book next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int read = length;
+			length = -1;
+			if (read == 0) {
+				return null;
+			}
+			try {
+				return bookReader.readValue(line, 0, read);
+			} catch (IOException | IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * It returns the index of the first line break from index, the limit of the buffer if there is none.
+		 */
+		private int lineEnd(int index) {
+			int limit = buffer.limit();
+			while (index < limit && buffer.get(index) != '\n') {
+				index++;
+			}
+			return index;
+		}
+
+		private boolean isBlank() {
+			for (int i = 0; i < length; i++) {
+				if (line[i] != ' ' && line[i] != '\t') {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
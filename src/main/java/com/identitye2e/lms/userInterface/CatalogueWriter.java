@@ -0,0 +1,18 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+
+/**
+ * This writes the books of a catalogue export one at a time in one of the CatalogueFormat encodings.
+ */
+interface CatalogueWriter {
+
+	void write(Book book) throws IOException;
+
+	/**
+	 * It writes what is left of the export and its end, the channel written to is left open.
+	 */
+	void finish() throws IOException;
+}
@@ -0,0 +1,170 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.BookChange;
+import com.identitye2e.lms.application.BookChangeLog;
+import com.identitye2e.lms.application.Library;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a rest controller for the changes made to the catalogue, so that other systems follow them instead of
+ * polling the books. A change is sent as a Server-Sent Event named after its type with its sequence number as id,
+ * and a client that reconnects with the Last-Event-ID header resumes after the last change it received. Changes are
+ * sent by a thread of the controller, which waits for the next change without holding a thread meanwhile.
+ * @author V.Pirabaharan
+ */
+@Slf4j
+@RestController
+public class ChangeController implements Closeable {
+
+	static final long STREAM_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	static final int SEND_BATCH = 256;
+
+	private final Library library;
+	private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "book-change-sender");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public ChangeController(Library library) {
+		this.library = library;
+	}
+
+	/**
+	 * This is an endpoint that is responsible for streaming the changes of the catalogue as they are applied
+	 * @param lastEventId is the sequence number of the last change received, sent by clients that reconnect.
+	 * @param after is the sequence number to start after, 0 for the oldest change kept, by default only new changes
+	 * are sent.
+	 * @return the stream of changes, with an event named missed whenever changes were dropped before they were sent,
+	 * or 400 without a body for a negative sequence number
+	 */
+	@GetMapping(value = "/book/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+			@RequestParam(required = false) Long after) {
+		try {
+			long from = lastEventId != null ? lastEventId : after != null ? after : library.lastChange();
+			checkSequence(from);
+			SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+			ChangeStream stream = new ChangeStream(emitter, from);
+			emitter.onCompletion(stream::close);
+			emitter.onTimeout(emitter::complete);
+			emitter.onError(failure -> stream.close());
+			senders.execute(stream::send);
+			return ResponseEntity.ok(emitter);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected changes: {}", e.getMessage());
+			return ResponseEntity.badRequest().build();
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().build();
+	}
+
+	/**
+	 * This is an endpoint that is responsible for returning a page of the changes of the catalogue, for clients that
+	 * cannot keep a stream open
+	 * @param after is the sequence number of the last change read, 0 for the oldest change kept.
+	 * @param limit is the maximum number of changes to return, at most BookController.MAX_LIMIT.
+	 * @return the changes as JSON, with the sequence number to read after next time and whether changes were missed
+	 */
+	@GetMapping(value = "/book/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> readChanges(@RequestParam(defaultValue = "0") long after,
+			@RequestParam(defaultValue = "100") int limit) {
+		try {
+			checkSequence(after);
+			if (limit < 1 || limit > BookController.MAX_LIMIT) {
+				throw new IllegalArgumentException("Limit must be between 1 and " + BookController.MAX_LIMIT);
+			}
+			return ResponseEntity.ok(library.readChanges(after, limit));
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected changes: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	@Override
+	public void close() {
+		senders.shutdownNow();
+	}
+
+	private static void checkSequence(long sequence) {
+		if (sequence < 0) {
+			throw new IllegalArgumentException("Sequence number must not be negative");
+		}
+	}
+
+	/**
+	 * The changes sent to one client, from the sequence number after which it reads next.
+	 */
+	private final class ChangeStream {
+
+		private final SseEmitter emitter;
+		private long after;
+		private volatile boolean closed;
+
+		private ChangeStream(SseEmitter emitter, long after) {
+			this.emitter = emitter;
+			this.after = after;
+		}
+
+		/**
+		 * It sends the changes that can be read, then waits for the next one. Only one sender runs at a time, the
+		 * next one is started by the change it waits for.
+		 */
+		private void send() {
+			try {
+				while (!closed) {
+					BookChangeLog.Page page = library.readChanges(after, SEND_BATCH);
+					if (page.isMissed()) {
+						emitter.send(SseEmitter.event().name("missed").data("Changes after " + after + " were dropped"));
+					}
+					for (BookChange change : page.getChanges()) {
+						emitter.send(SseEmitter.event()
+							.id(String.valueOf(change.getSequence()))
+							.name(change.getType().name())
+							.data(change, MediaType.APPLICATION_JSON));
+					}
+					after = page.getLast();
+					if (page.getChanges().size() < SEND_BATCH && !page.isMissed()) {
+						library.whenChangedAfter(after).thenRun(this::resume);
+						return;
+					}
+				}
+			} catch (IOException | IllegalStateException e) {
+				log.debug("Change stream closed: {}", e.getMessage());
+				close();
+			}
+		}
+
+		private void resume() {
+			try {
+				if (!closed) {
+					senders.execute(this::send);
+				}
+			} catch (RejectedExecutionException e) {
+				emitter.complete();
+			}
+		}
+
+		private void close() {
+			closed = true;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.identitye2e.lms.userInterface;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a token bucket per key, such as a client and an endpoint, in the form of the generic cell rate algorithm:
+ * instead of tokens every key keeps the time its bucket will be full again, and a request is admitted if that time,
+ * moved on by one request, is at most burst requests ahead of now. Admitting a request is a compare and set of that
+ * time, so clients never wait for each other.
+ *
+ * A key whose bucket is full again is the same as an unknown key, so once the map holds maxKeys keys the full ones
+ * are dropped and the map only keeps the clients that sent requests in the last burst / ratePerSecond seconds.
+ */
+class ClientRateLimiter {
+
+	private final long intervalNanos;
+	private final long toleranceNanos;
+	private final int maxKeys;
+	//This map has a key as key and the time its bucket is full again as value, in System.nanoTime
+	private final ConcurrentHashMap<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	/**
+	 * @param ratePerSecond is the number of requests a key is admitted per second in the long run.
+	 * @param burst is the number of requests a key is admitted at once after being idle.
+	 * @param maxKeys is the number of keys above which the idle keys are dropped.
+	 * @throws IllegalArgumentException if the rate or the burst is not positive.
+	 */
+	ClientRateLimiter(double ratePerSecond, int burst, int maxKeys) {
+		if (ratePerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("The rate and the burst of the rate limiter should be positive");
+		}
+		this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+		this.toleranceNanos = intervalNanos * burst;
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * It admits a request of a key if its bucket is not empty.
+	 *
+	 * @param key identifies whose bucket the request takes from.
+	 * @param now is System.nanoTime.
+	 * @return 0 if the request is admitted, otherwise the nanoseconds until the key may send a request again
+	 */
+	long tryAcquire(String key, long now) {
+		AtomicLong bucket = fullAt.get(key);
+		if (bucket == null) {
+			if (fullAt.size() >= maxKeys) {
+				sweep(now);
+			}
+			bucket = fullAt.computeIfAbsent(key, k -> new AtomicLong(now));
+		}
+		while (true) {
+			long current = bucket.get();
+			long next = (current - now > 0 ? current : now) + intervalNanos;
+			long ahead = next - now;
+			if (ahead > toleranceNanos) {
+				return ahead - toleranceNanos;
+			}
+			if (bucket.compareAndSet(current, next)) {
+				return 0;
+			}
+		}
+	}
+
+	int size() {
+		return fullAt.size();
+	}
+
+	/**
+	 * It drops the keys whose bucket is full, on one thread at a time.
+	 */
+	private void sweep(long now) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			fullAt.values().removeIf(bucket -> bucket.get() - now <= 0);
+		} finally {
+			sweeping.set(false);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator reads books one record at a time from UTF-8 CSV starting with the CsvCatalogueWriter.HEADER line.
+ * Quoted values may contain commas, doubled quotes and line breaks. A record that is not a valid book is returned as
+ * null and blank lines are skipped, a stream without the header, with a quote that is never closed or that is not
+ * UTF-8 fails with UncheckedIOException.
+ */
+class CsvCatalogueReader implements Iterator<Book> {
+
+	private static final List<String> COLUMNS = Arrays.asList(CsvCatalogueWriter.HEADER.split(","));
+
+	private final Reader reader;
+	private final char[] chars = new char[1 << 16];
+	private final List<String> fields = new ArrayList<>(COLUMNS.size());
+	private final StringBuilder field = new StringBuilder();
+	private int position;
+	private int limit;
+	//A record ended with a carriage return, a line feed right after it belongs to it
+	private boolean skipLineFeed;
+	private boolean pending;
+	private boolean ended;
+
+	CsvCatalogueReader(ReadableByteChannel channel) throws IOException {
+		this.reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1);
+		if (!readRecord() || !fields.equals(COLUMNS)) {
+			throw new IOException("A CSV catalogue starting with the header " + CsvCatalogueWriter.HEADER + " is expected");
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			while (!pending && !ended) {
+				ended = !readRecord();
+				pending = !ended && !(fields.size() == 1 && fields.get(0).isEmpty());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return pending;
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		pending = false;
+		if (fields.size() != COLUMNS.size()) {
+			return null;
+		}
+		try {
+			return Book.builder()
+				.isbn(fields.get(0))
+				.title(fields.get(1))
+				.author(fields.get(2))
+				.publicationYear(Integer.parseInt(fields.get(3)))
+				.availableCopies(Integer.parseInt(fields.get(4)))
+				.build();
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * It reads the values of the next record into fields.
+	 *
+	 * @return false if the stream has ended
+	 */
+	private boolean readRecord() throws IOException {
+		fields.clear();
+		field.setLength(0);
+		int c = read();
+		if (c < 0) {
+			return false;
+		}
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c < 0) {
+					throw new EOFException("A quoted CSV value is not closed");
+				}
+				if (c == '"') {
+					c = read();
+					if (c != '"') {
+						quoted = false;
+						continue;
+					}
+				}
+				field.append((char) c);
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n' || c < 0) {
+				skipLineFeed = c == '\r';
+				fields.add(field.toString());
+				return true;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = reader.read(chars, 0, chars.length);
+			position = 0;
+			if (limit < 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		char c = chars[position++];
+		if (skipLineFeed) {
+			skipLineFeed = false;
+			if (c == '\n') {
+				return read();
+			}
+		}
+		return c;
+	}
+}
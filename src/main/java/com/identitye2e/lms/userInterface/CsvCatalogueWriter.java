@@ -0,0 +1,61 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.domain.Book;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This writes books as UTF-8 CSV with a HEADER line, quoting the values that contain a comma, a quote or a line
+ * break as RFC 4180 does.
+ */
+class CsvCatalogueWriter implements CatalogueWriter {
+
+	static final String HEADER = "isbn,title,author,publicationYear,availableCopies";
+
+	private final Writer writer;
+
+	CsvCatalogueWriter(WritableByteChannel channel) throws IOException {
+		this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), 1 << 16);
+		writer.write(HEADER);
+		writer.write("\r\n");
+	}
+
+	@Override
+	public void write(Book book) throws IOException {
+		writeText(book.getIsbn());
+		writer.write(',');
+		writeText(book.getTitle());
+		writer.write(',');
+		writeText(book.getAuthor());
+		writer.write(',');
+		writer.write(Integer.toString(book.getPublicationYear()));
+		writer.write(',');
+		writer.write(Integer.toString(book.getAvailableCopies()));
+		writer.write("\r\n");
+	}
+
+	@Override
+	public void finish() throws IOException {
+		writer.flush();
+	}
+
+	private void writeText(String value) throws IOException {
+		boolean quoted = false;
+		for (int i = 0; i < value.length() && !quoted; i++) {
+			char c = value.charAt(i);
+			quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quoted) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -0,0 +1,143 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Hold;
+import com.identitye2e.lms.application.Library;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a rest controller for holds on books that ran out of copies. Instead of polling borrow, a client places a
+ * hold and long-polls it: the request is answered as soon as a returned copy is handed to the hold, or with the
+ * hold's place in the queue once the wait times out, after which the client polls the hold again.
+ * @author V.Pirabaharan
+ */
+@Slf4j
+@RestController
+public class HoldController {
+
+	static final long DEFAULT_WAIT_SECONDS = 30;
+	static final long MAX_WAIT_SECONDS = 120;
+
+	private final Library library;
+
+	public HoldController(Library library) {
+		this.library = library;
+	}
+
+	/**
+	 * This is an endpoint that is responsible for borrowing a book, or holding it until a copy is returned
+	 * @param isbn is the isbn of a book.
+	 * @param wait is how many seconds to wait for a copy, at most MAX_WAIT_SECONDS.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return the borrowed book as JSON, or 202 with the waiting hold as JSON and its location once the wait is over
+	 */
+	@PutMapping("/book/hold")
+	public DeferredResult<ResponseEntity<?>> placeHold(@RequestParam String isbn,
+			@RequestParam(defaultValue = "" + DEFAULT_WAIT_SECONDS) long wait, @RequestParam(required = false) String fields) {
+		try {
+			Set<String> selected = BookResponse.fields(fields);
+			checkWait(wait);
+			return await(library.placeHold(isbn), selected, wait);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected hold: {}", e.getMessage());
+			return answer(ResponseEntity.badRequest().body(e.getMessage()));
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return answer(ResponseEntity.internalServerError().body("Unexpected error occurred"));
+	}
+
+	/**
+	 * This is an endpoint that is responsible for waiting for a hold to be fulfilled
+	 * @param id is the id of a hold.
+	 * @param wait is how many seconds to wait for a copy, at most MAX_WAIT_SECONDS.
+	 * @param fields is an optional comma separated list of the attributes to return, such as isbn,availableCopies.
+	 * @return the borrowed book as JSON, or 202 with the waiting hold as JSON once the wait is over
+	 */
+	@GetMapping("/book/hold/{id}")
+	public DeferredResult<ResponseEntity<?>> findHold(@PathVariable long id,
+			@RequestParam(defaultValue = "" + DEFAULT_WAIT_SECONDS) long wait, @RequestParam(required = false) String fields) {
+		try {
+			Set<String> selected = BookResponse.fields(fields);
+			checkWait(wait);
+			Optional<Hold> hold = library.findHold(id);
+			if (!hold.isPresent()) {
+				log.debug("Hold not found");
+				return answer(ResponseEntity.badRequest().body("Hold not found"));
+			}
+			return await(hold.get(), selected, wait);
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected hold: {}", e.getMessage());
+			return answer(ResponseEntity.badRequest().body(e.getMessage()));
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return answer(ResponseEntity.internalServerError().body("Unexpected error occurred"));
+	}
+
+	/**
+	 * This is an endpoint that is responsible for cancelling a hold that is still waiting
+	 * @param id is the id of a hold.
+	 * @return ResponseEntity<String>
+	 */
+	@DeleteMapping("/book/hold/{id}")
+	public ResponseEntity<String> cancelHold(@PathVariable long id) {
+		try {
+			Optional<Hold> hold = library.cancelHold(id);
+			if (!hold.isPresent() || hold.get().getStatus() == Hold.Status.EXPIRED) {
+				log.debug("Hold not found");
+				return ResponseEntity.badRequest().body("Hold not found");
+			}
+			if (hold.get().getStatus() == Hold.Status.FULFILLED) {
+				log.debug("Hold is fulfilled");
+				return ResponseEntity.badRequest().body("Hold is fulfilled, return the book instead");
+			}
+			return ResponseEntity.ok("Hold cancelled");
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	/**
+	 * It answers with the result of the hold once it completes, or with the waiting hold after wait seconds.
+	 */
+	private DeferredResult<ResponseEntity<?>> await(Hold hold, Set<String> selected, long wait) {
+		if (hold.getResult().isDone() || wait == 0) {
+			return answer(response(hold, selected));
+		}
+		DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(TimeUnit.SECONDS.toMillis(wait),
+			() -> response(hold, selected));
+		hold.getResult().thenAccept(result -> deferred.setResult(BookController.bookResponse(result, selected, "Book does't exist")));
+		return deferred;
+	}
+
+	private ResponseEntity<?> response(Hold hold, Set<String> selected) {
+		if (hold.getResult().isDone()) {
+			return BookController.bookResponse(hold.getResult().join(), selected, "Book does't exist");
+		}
+		return ResponseEntity.status(HttpStatus.ACCEPTED)
+			.location(URI.create("/book/hold/" + hold.getId()))
+			.body(HoldResponse.of(hold, library.holdPosition(hold)));
+	}
+
+	private static void checkWait(long wait) {
+		if (wait < 0 || wait > MAX_WAIT_SECONDS) {
+			throw new IllegalArgumentException("wait must be between 0 and " + MAX_WAIT_SECONDS + " seconds");
+		}
+	}
+
+	private static DeferredResult<ResponseEntity<?>> answer(ResponseEntity<?> response) {
+		DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>();
+		deferred.setResult(response);
+		return deferred;
+	}
+}
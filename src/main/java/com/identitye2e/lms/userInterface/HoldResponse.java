@@ -0,0 +1,20 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Hold;
+import lombok.Value;
+
+/**
+ * This is the JSON representation of a hold that is still waiting for a copy, returned by HoldController.
+ */
+@Value
+public class HoldResponse {
+
+	long id;
+	String isbn;
+	//How many holds on the book are ahead, counting this one
+	int position;
+
+	static HoldResponse of(Hold hold, int position) {
+		return new HoldResponse(hold.getId(), hold.getIsbn(), position);
+	}
+}
@@ -0,0 +1,66 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Library;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a rest controller for the copies lent to borrowers, recorded when a borrow or a return names the
+ * borrower. Times are in milliseconds since the epoch.
+ * @author V.Pirabaharan
+ */
+@Slf4j
+@RestController
+public class LoanController {
+
+	private final Library library;
+
+	public LoanController(Library library) {
+		this.library = library;
+	}
+
+	/**
+	 * This is an endpoint that is responsible for finding the copies of a book lent to a borrower
+	 * @param isbn is the isbn of a book.
+	 * @param borrower identifies the borrower.
+	 * @return ResponseEntity with the loans as JSON, oldest first and empty if there is none
+	 */
+	@GetMapping("/book/loans")
+	public ResponseEntity<?> findLoans(@RequestParam String isbn, @RequestParam String borrower) {
+		try {
+			BookController.checkBorrower(borrower);
+			return ResponseEntity.ok(library.findLoans(isbn, borrower));
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected loans: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+
+	/**
+	 * This is an endpoint that is responsible for listing the loans past their due date, which are found once a
+	 * minute by default
+	 * @param limit is the maximum number of loans to return, at most BookController.MAX_LIMIT.
+	 * @return ResponseEntity with the overdue loans as JSON
+	 */
+	@GetMapping("/book/loans/overdue")
+	public ResponseEntity<?> findOverdueLoans(@RequestParam(defaultValue = "100") int limit) {
+		try {
+			if (limit < 1 || limit > BookController.MAX_LIMIT) {
+				throw new IllegalArgumentException("limit should be between 1 and " + BookController.MAX_LIMIT);
+			}
+			return ResponseEntity.ok(library.findOverdueLoans(limit));
+		}catch (IllegalArgumentException e) {
+			log.debug("Rejected loans: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}catch (Exception e) {
+			log.error("", e);
+		}
+		return ResponseEntity.internalServerError().body("Unexpected error occurred");
+	}
+}
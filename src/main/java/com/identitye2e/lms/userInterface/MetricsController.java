@@ -0,0 +1,32 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.LibraryMetrics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * This is a rest controller exposing the library metrics to a Prometheus scraper
+ */
+@RestController
+public class MetricsController {
+
+	private final LibraryMetrics metrics;
+
+	public MetricsController(LibraryMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This is an endpoint that returns the counters, latency histograms and gauges of the library
+	 * @return the metrics in the Prometheus text format
+	 */
+	@GetMapping(value = "/metrics", produces = "text/plain;version=0.0.4;charset=utf-8")
+	public String metrics() throws IOException {
+		StringWriter writer = new StringWriter();
+		metrics.writePrometheus(writer);
+		return writer.toString();
+	}
+}
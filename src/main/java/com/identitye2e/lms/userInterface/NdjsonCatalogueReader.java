@@ -0,0 +1,63 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator reads books one line at a time from newline delimited JSON. A line that is not a valid book is
+ * returned as null, a stream that is not JSON fails with UncheckedIOException.
+ */
+class NdjsonCatalogueReader implements Iterator<Book> {
+
+	private final ObjectMapper objectMapper;
+	private final JsonParser parser;
+	private boolean pending;
+	private boolean ended;
+
+	NdjsonCatalogueReader(ObjectMapper objectMapper, ReadableByteChannel channel) throws IOException {
+		this.objectMapper = objectMapper;
+		this.parser = objectMapper.getFactory().createParser(Channels.newInputStream(channel))
+			.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!pending && !ended) {
+			try {
+				ended = parser.nextToken() == null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			pending = !ended;
+		}
+		return pending;
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		pending = false;
+		try {
+			JsonNode node = parser.readValueAsTree();
+			try {
+				return objectMapper.treeToValue(node, Book.class);
+			} catch (JsonProcessingException | IllegalArgumentException e) {
+				return null;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.identitye2e.lms.domain.Book;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This writes books as newline delimited JSON, one book per line, through a single generator so nothing is flushed
+ * before its buffer is full.
+ */
+class NdjsonCatalogueWriter implements CatalogueWriter {
+
+	private final JsonGenerator generator;
+	private final ObjectWriter bookWriter;
+	private boolean written;
+
+	NdjsonCatalogueWriter(ObjectMapper objectMapper, WritableByteChannel channel) throws IOException {
+		this.generator = objectMapper.getFactory().createGenerator(Channels.newOutputStream(channel))
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		generator.setRootValueSeparator(new SerializedString("\n"));
+		this.bookWriter = objectMapper.writerFor(Book.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	@Override
+	public void write(Book book) throws IOException {
+		bookWriter.writeValue(generator, book);
+		written = true;
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (written) {
+			generator.writeRaw('\n');
+		}
+		generator.close();
+	}
+}
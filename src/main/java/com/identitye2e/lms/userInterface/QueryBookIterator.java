@@ -0,0 +1,51 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This iterator walks the books answering a query in publication year then isbn order by fetching one page at a time
+ * from the library, so a query matching any number of books is streamed with a single page in memory.
+ */
+class QueryBookIterator implements Iterator<Book> {
+
+	private final Library library;
+	private final int pageSize;
+	private BookQuery query;
+	private List<Book> page = Collections.emptyList();
+	private int position;
+	private boolean last;
+
+	QueryBookIterator(Library library, BookQuery query, int pageSize) {
+		this.library = library;
+		this.query = query;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position == page.size() && !last) {
+			page = library.findBooks(query, pageSize);
+			position = 0;
+			last = page.size() < pageSize;
+			if (!page.isEmpty()) {
+				query = query.after(page.get(page.size() - 1));
+			}
+		}
+		return position < page.size();
+	}
+
+	@Override
+	public Book next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.get(position++);
+	}
+}
@@ -0,0 +1,34 @@
+package com.identitye2e.lms.userInterface;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a rest controller telling a load balancer or an orchestrator whether the LMS should be sent traffic.
+ * Spring Boot accepts traffic once the application has started and every runner has returned, so a node loading its
+ * catalogue with CatalogueLoader is not ready until the catalogue is loaded.
+ */
+@RestController
+public class ReadinessController {
+
+	private final ApplicationAvailability availability;
+
+	public ReadinessController(ApplicationAvailability availability) {
+		this.availability = availability;
+	}
+
+	/**
+	 * This is an endpoint that is responsible for reporting the readiness of the LMS
+	 * @return ResponseEntity with ACCEPTING_TRAFFIC, or with REFUSING_TRAFFIC and HTTP status 503
+	 */
+	@GetMapping("/ready")
+	public ResponseEntity<String> ready() {
+		ReadinessState state = availability.getReadinessState();
+		HttpStatus status = state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+		return ResponseEntity.status(status).body(state.name());
+	}
+}
@@ -0,0 +1,127 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookChangeLogTest {
+
+	private final BookChangeLog changes = new BookChangeLog(4);
+
+	@Test
+	void read_should_return_changes_in_sequence_order() {
+		// given
+		borrow("123", 1);
+		borrow("456", 0);
+		// when
+		BookChangeLog.Page page = changes.read(0, 10);
+		// then
+		assertEquals(sequences(page.getChanges()), Arrays.asList(1L, 2L));
+		assertEquals(page.getChanges().get(1).getBook().getAvailableCopies(), 0);
+		assertEquals(page.getLast(), 2);
+		assertFalse(page.isMissed());
+	}
+
+	@Test
+	void read_should_skip_changes_that_did_not_happen() {
+		// given
+		borrow("123", 0);
+		changes.record("123", () -> CompletableFuture.completedFuture(BookResult.unavailable()),
+			result -> result.isOk() ? result.getBook() : null, BookChange.Type.BORROWED);
+		borrow("123", 0);
+		// when
+		BookChangeLog.Page page = changes.read(0, 10);
+		// then
+		assertEquals(sequences(page.getChanges()), Arrays.asList(1L, 3L));
+		assertEquals(page.getLast(), 3);
+	}
+
+	@Test
+	void read_should_wait_for_earlier_changes_to_be_durable() {
+		// given
+		CompletableFuture<BookResult> durable = new CompletableFuture<>();
+		changes.record("123", () -> durable, BookResult::getBook, BookChange.Type.BORROWED);
+		borrow("456", 0);
+		CompletableFuture<Void> signal = changes.whenPublishedAfter(0);
+		// when
+		BookChangeLog.Page before = changes.read(0, 10);
+		durable.complete(BookResult.ok(book("123", 0)));
+		BookChangeLog.Page after = changes.read(0, 10);
+		// then
+		assertTrue(before.getChanges().isEmpty());
+		assertTrue(signal.isDone());
+		assertEquals(sequences(after.getChanges()), Arrays.asList(1L, 2L));
+	}
+
+	@Test
+	void read_should_report_changes_dropped_from_the_ring() {
+		// given
+		for (int i = 0; i < 6; i++) {
+			borrow("123", i);
+		}
+		// when
+		BookChangeLog.Page page = changes.read(1, 10);
+		BookChangeLog.Page restarted = changes.read(100, 10);
+		// then
+		assertTrue(page.isMissed());
+		assertEquals(sequences(page.getChanges()), Arrays.asList(3L, 4L, 5L, 6L));
+		assertTrue(restarted.isMissed());
+		assertEquals(restarted.getChanges().size(), 4);
+	}
+
+	@Test
+	void recordAll_should_number_the_changes_before_the_changes_that_see_them() {
+		// given
+		Book added = book("123", 1);
+		// when
+		changes.recordAll(2, () -> {
+			borrow("123", 0);
+			return Arrays.asList(added);
+		}, books -> books, BookChange.Type.ADDED);
+		BookChangeLog.Page page = changes.read(0, 10);
+		// then
+		assertEquals(sequences(page.getChanges()), Arrays.asList(1L, 3L));
+		assertEquals(page.getChanges().get(0).getType(), BookChange.Type.ADDED);
+		assertEquals(page.getChanges().get(1).getType(), BookChange.Type.BORROWED);
+		assertEquals(page.getLast(), 3);
+	}
+
+	@Test
+	void recordAll_should_leave_the_numbers_of_a_failed_change_unused() {
+		// given
+		assertThrows(IllegalStateException.class, () -> changes.<List<Book>>recordAll(2, () -> {
+			throw new IllegalStateException("Disk full");
+		}, books -> books, BookChange.Type.ADDED));
+		// when
+		borrow("123", 0);
+		BookChangeLog.Page page = changes.read(0, 10);
+		// then
+		assertEquals(sequences(page.getChanges()), Arrays.asList(3L));
+	}
+
+	private void borrow(String isbn, int copies) {
+		changes.record(isbn, () -> CompletableFuture.completedFuture(BookResult.ok(book(isbn, copies))),
+			BookResult::getBook, BookChange.Type.BORROWED);
+	}
+
+	private static List<Long> sequences(List<BookChange> changes) {
+		return changes.stream().map(BookChange::getSequence).collect(Collectors.toList());
+	}
+
+	private static Book book(String isbn, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author("Author")
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
@@ -0,0 +1,208 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HoldQueueTest {
+
+	private final HoldQueue holds = new HoldQueue(60);
+	private final AtomicInteger copies = new AtomicInteger();
+	private final AtomicInteger putBack = new AtomicInteger();
+
+	@AfterEach
+	public void close() {
+		holds.close();
+	}
+
+	@Test
+	void place_should_borrow_when_a_copy_is_available() {
+		// given
+		copies.set(1);
+		// when
+		Hold hold = holds.place("123", this::borrow);
+		// then
+		assertEquals(hold.getStatus(), Hold.Status.FULFILLED);
+		assertTrue(hold.getResult().join().isOk());
+		assertFalse(holds.find(hold.getId()).isPresent());
+	}
+
+	@Test
+	void release_should_hand_copies_to_holds_in_arrival_order() {
+		// given
+		Hold first = holds.place("123", this::borrow);
+		Hold second = holds.place("123", this::borrow);
+		// when
+		int secondPosition = holds.position(second);
+		BookResult returned = holds.release("123", this::putBack, this::find).join();
+		// then
+		assertTrue(returned.isOk());
+		assertEquals(secondPosition, 2);
+		assertEquals(first.getStatus(), Hold.Status.FULFILLED);
+		assertTrue(first.getResult().join().isOk());
+		assertEquals(second.getStatus(), Hold.Status.WAITING);
+		assertEquals(holds.position(second), 1);
+		assertEquals(putBack.get(), 0);
+		assertEquals(holds.countWaiting(), 1);
+	}
+
+	@Test
+	void release_should_put_the_copy_back_when_nobody_waits() {
+		// given
+		Hold hold = holds.place("123", this::borrow);
+		holds.cancel(hold.getId());
+		// when
+		holds.release("123", this::putBack, this::find).join();
+		// then
+		assertEquals(hold.getStatus(), Hold.Status.CANCELLED);
+		assertEquals(hold.getResult().join().getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(putBack.get(), 1);
+		assertEquals(holds.countWaiting(), 0);
+	}
+
+	@Test
+	void cancelAll_should_complete_holds_as_not_found() {
+		// given
+		Hold hold = holds.place("123", this::borrow);
+		// when
+		holds.cancelAll("123");
+		// then
+		assertEquals(hold.getResult().join().getStatus(), BookResult.Status.NOT_FOUND);
+		assertFalse(holds.find(hold.getId()).isPresent());
+	}
+
+	@Test
+	void expired_holds_should_no_longer_wait() throws Exception {
+		// given
+		HoldQueue expiring = new HoldQueue(0);
+		try {
+			// when
+			Hold hold = expiring.place("123", this::borrow);
+			BookResult result = hold.getResult().get(10, TimeUnit.SECONDS);
+			// then
+			assertEquals(result.getStatus(), BookResult.Status.UNAVAILABLE);
+			assertEquals(hold.getStatus(), Hold.Status.EXPIRED);
+			assertEquals(expiring.countWaiting(), 0);
+		} finally {
+			expiring.close();
+		}
+	}
+
+	@Test
+	void place_should_not_hold_the_stripe_while_the_borrow_becomes_durable() throws Exception {
+		// given
+		copies.set(1);
+		CompletableFuture<BookResult> durable = new CompletableFuture<>();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Hold> placing = executor.submit(() -> holds.place("123", () -> borrow().thenCombine(durable,
+				(borrowed, ignored) -> borrowed)));
+			while (copies.get() > 0) {
+				Thread.yield();
+			}
+			// when
+			BookResult returned = holds.release("123", this::putBack, this::find).get(10, TimeUnit.SECONDS);
+			durable.complete(null);
+			Hold hold = placing.get(10, TimeUnit.SECONDS);
+			// then
+			assertTrue(returned.isOk());
+			assertEquals(hold.getStatus(), Hold.Status.FULFILLED);
+			assertEquals(copies.get(), 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void place_should_borrow_again_when_a_copy_came_back_before_the_hold_was_queued() {
+		// given
+		AtomicInteger borrows = new AtomicInteger();
+		// when
+		Hold hold = holds.place("123", () -> {
+			CompletableFuture<BookResult> borrowed = borrow();
+			if (borrows.incrementAndGet() > 1) {
+				return borrowed;
+			}
+			//The copy comes back once the stripe is released, before the borrow is durable
+			return borrowed.thenCombineAsync(CompletableFuture.runAsync(() -> holds.release("123", this::putBack,
+				this::find).join()), (borrowedBook, returned) -> borrowedBook);
+		});
+		// then
+		assertEquals(borrows.get(), 2);
+		assertEquals(hold.getStatus(), Hold.Status.FULFILLED);
+		assertEquals(copies.get(), 0);
+		assertEquals(holds.countWaiting(), 0);
+	}
+
+	@Test
+	void every_returned_copy_should_reach_a_hold_or_the_shelf_under_contention() throws Exception {
+		// given
+		int threads = 8;
+		int rounds = 2000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		List<Hold> placed = new CopyOnWriteArrayList<>();
+		// when
+		try {
+			for (int i = 0; i < threads; i++) {
+				boolean holder = i % 2 == 0;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int j = 0; j < rounds; j++) {
+						if (holder) {
+							placed.add(holds.place("123", this::borrow));
+						} else {
+							holds.release("123", this::putBack, this::find).join();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// then
+		long fulfilled = placed.stream().filter(hold -> hold.getStatus() == Hold.Status.FULFILLED).count();
+		long waiting = placed.stream().filter(hold -> hold.getStatus() == Hold.Status.WAITING).count();
+		assertEquals(fulfilled + copies.get(), (long) threads / 2 * rounds);
+		assertEquals(waiting, holds.countWaiting());
+		assertTrue(waiting == 0 || copies.get() == 0);
+	}
+
+	private CompletableFuture<BookResult> borrow() {
+		if (copies.get() < 1) {
+			return CompletableFuture.completedFuture(BookResult.unavailable());
+		}
+		copies.decrementAndGet();
+		return CompletableFuture.completedFuture(find());
+	}
+
+	private CompletableFuture<BookResult> putBack() {
+		putBack.incrementAndGet();
+		copies.incrementAndGet();
+		return CompletableFuture.completedFuture(find());
+	}
+
+	private BookResult find() {
+		return BookResult.ok(Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(copies.get())
+			.build());
+	}
+}
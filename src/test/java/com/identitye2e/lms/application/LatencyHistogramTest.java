@@ -0,0 +1,26 @@
+package com.identitye2e.lms.application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+	private LatencyHistogram histogram = new LatencyHistogram();
+
+	@Test
+	void cumulativeCounts_should_count_latencies_at_or_below_each_bound() {
+		// when
+		histogram.record(500);
+		histogram.record(1_000);
+		histogram.record(1_001);
+		histogram.record(20_000_000_000L);
+		// then
+		long[] actual = histogram.cumulativeCounts();
+		assertEquals(actual[0], 2L);
+		assertEquals(actual[1], 3L);
+		assertEquals(actual[LatencyHistogram.BOUNDS_NANOS.length - 1], 3L);
+		assertEquals(actual[LatencyHistogram.BOUNDS_NANOS.length], 4L);
+		assertEquals(histogram.sumNanos(), 20_000_002_501L);
+	}
+}
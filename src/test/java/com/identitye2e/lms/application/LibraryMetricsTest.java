@@ -0,0 +1,105 @@
+package com.identitye2e.lms.application;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookNotAvailableException;
+import com.identitye2e.lms.domain.BookNotFoundException;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryMetricsTest {
+
+	private LibraryMetrics metrics = new LibraryMetrics(true);
+
+	private Library library = new Library(new InMemoryBookRepository(), metrics);
+
+	@BeforeEach
+	public void init() {
+		library.addBook(Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(1)
+			.build());
+	}
+
+	@Test
+	void operations_should_be_counted_by_outcome() {
+		// when
+		library.borrowBook("123");
+		assertThrows(BookNotAvailableException.class, () -> library.borrowBook("123"));
+		assertThrows(BookNotFoundException.class, () -> library.borrowBook("789"));
+		// then
+		assertEquals(metrics.count(LibraryMetrics.Operation.ADD, LibraryMetrics.Outcome.OK), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.OK), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.UNAVAILABLE), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.NOT_FOUND), 1L);
+	}
+
+	@Test
+	void results_should_be_counted_by_status() {
+		// when
+		library.tryBorrowBook("123");
+		library.tryBorrowBook("123");
+		library.tryFindBookByISBN("789");
+		// then
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.OK), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.UNAVAILABLE), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.FIND_BY_ISBN, LibraryMetrics.Outcome.NOT_FOUND), 1L);
+	}
+
+	@Test
+	void async_operations_should_be_counted_when_they_complete() {
+		// when
+		library.borrowBookAsync("123").join();
+		library.borrowBookAsync("123").join();
+		library.addBookAsync(Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(1)
+			.build()).exceptionally(e -> null).join();
+		// then
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.OK), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.UNAVAILABLE), 1L);
+		assertEquals(metrics.count(LibraryMetrics.Operation.ADD, LibraryMetrics.Outcome.EXISTS), 1L);
+	}
+
+	@Test
+	void writePrometheus_should_write_counters_histograms_and_gauges() throws IOException {
+		// given
+		library.findBookByISBN("123");
+		metrics.recordAdmission(LibraryMetrics.Admission.ADMITTED, 1_000_000);
+		metrics.recordAdmission(LibraryMetrics.Admission.SHED, 0);
+		StringWriter writer = new StringWriter();
+		// when
+		metrics.writePrometheus(writer);
+		// then
+		String actual = writer.toString();
+		assertTrue(actual.contains("lms_operations_total{operation=\"find_by_isbn\",outcome=\"ok\"} 1\n"));
+		assertTrue(actual.contains("lms_operation_seconds_bucket{operation=\"find_by_isbn\",le=\"+Inf\"} 1\n"));
+		assertTrue(actual.contains("lms_operation_seconds_count{operation=\"find_by_isbn\"} 1\n"));
+		assertTrue(actual.contains("# TYPE lms_books gauge\nlms_books 1\n"));
+		assertTrue(actual.contains("lms_authors 1\n"));
+		assertTrue(actual.contains("lms_admissions_total{admission=\"shed\"} 1\n"));
+		assertTrue(actual.contains("lms_admitted_request_seconds_count 1\n"));
+	}
+
+	@Test
+	void disabled_metrics_should_record_nothing() {
+		// given
+		LibraryMetrics disabled = new LibraryMetrics(false);
+		Library uninstrumented = new Library(new InMemoryBookRepository(), disabled);
+		// when
+		assertThrows(BookNotFoundException.class, () -> uninstrumented.borrowBook("123"));
+		// then
+		assertEquals(disabled.count(LibraryMetrics.Operation.BORROW, LibraryMetrics.Outcome.NOT_FOUND), 0L);
+	}
+}
@@ -9,11 +9,16 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(classes = Library.class)
+@SpringBootTest(classes = {Library.class, LibraryMetrics.class, HoldQueue.class, BookChangeLog.class,
+	LoanLedger.class})
 @Import(LibraryTest.TestConfig.class)
 public class LibraryTest {
 
@@ -114,6 +119,107 @@ public class LibraryTest {
 		assertTrue(exception.getMessage().contains("Book already exists"));
 	}
 
+	@Test
+	void addBooks_should_add_valid_books_and_report_rejected_ones() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("2001")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		Book book2 = Book.builder()
+				.isbn("2002")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(0)
+				.build();
+		Book book3 = Book.builder()
+				.isbn("456")
+				.title("The Lord of The Ring")
+				.author("J. R. R. Tolkien")
+				.publicationYear(1954)
+				.availableCopies(1)
+				.build();
+		long after = library.lastChange();
+		// when
+		BulkAddResult actual = library.addBooks(Arrays.asList(book1, book2, null, book3).iterator(), false);
+		// then
+		List<BookChange> changes = library.readChanges(after, 100).getChanges();
+		assertEquals(changes.size(), 1);
+		assertEquals(changes.get(0).getIsbn(), "2001");
+		assertEquals(changes.get(0).getType(), BookChange.Type.ADDED);
+		assertEquals(actual.getAdded(), 1);
+		assertEquals(actual.getRejected().size(), 3);
+		assertEquals(actual.getRejected().get(0).getIsbn(), "2002");
+		assertEquals(actual.getRejected().get(1).getIndex(), 2);
+		assertEquals(actual.getRejected().get(2).getReason(), "Book already exists");
+		assertNotNull(library.findBookByISBN("2001"));
+	}
+
+	@Test
+	void addBooks_should_add_nothing_when_all_or_nothing_and_a_book_exists() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("2003")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		Book book2 = Book.builder()
+				.isbn("456")
+				.title("The Lord of The Ring")
+				.author("J. R. R. Tolkien")
+				.publicationYear(1954)
+				.availableCopies(1)
+				.build();
+		long after = library.lastChange();
+		// when
+		BulkAddResult actual = library.addBooks(Arrays.asList(book1, book2).iterator(), true);
+		// then
+		List<BookChange> changes = library.readChanges(after, 100).getChanges();
+		assertEquals(changes.size(), 2);
+		assertEquals(changes.get(0).getType(), BookChange.Type.ADDED);
+		assertEquals(changes.get(1).getType(), BookChange.Type.REMOVED);
+		assertEquals(changes.get(1).getIsbn(), "2003");
+		assertEquals(actual.getAdded(), 0);
+		assertEquals(actual.getRejected().size(), 1);
+		assertEquals(actual.getRejected().get(0).getIndex(), 1);
+		assertThrows(BookNotFoundException.class, () -> library.findBookByISBN("2003"));
+	}
+
+	@Test
+	void importBooks_should_add_books_without_available_copies() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("2004")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(0)
+				.build();
+		Book book2 = Book.builder()
+				.isbn("2005")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(-1)
+				.build();
+		// when
+		BulkAddResult actual = library.importBooks(Arrays.asList(book1, book2).iterator());
+		List<String> exported = new ArrayList<>();
+		long count = library.exportBooks(book -> exported.add(book.getIsbn()));
+		// then
+		assertEquals(actual.getAdded(), 1);
+		assertEquals(actual.getRejected().get(0).getIsbn(), "2005");
+		assertEquals(library.findBookByISBN("2004").getAvailableCopies(), 0);
+		assertTrue(exported.contains("2004"));
+		assertEquals(count, exported.size());
+	}
+
 	@Test
 	void findBookByISBN_should_return_book() {
 		// given
@@ -160,6 +266,26 @@ public class LibraryTest {
 		assertEquals(actuals.size(), 0);
 	}
 
+	@Test
+	void findBooksByAuthor_should_return_page_after_isbn() {
+		// given
+		String author = "Anthology Publisher";
+		for (String isbn : Arrays.asList("anthology-2", "anthology-1", "anthology-3")) {
+			library.addBook(Book.builder()
+				.isbn(isbn)
+				.title("Anthology")
+				.author(author)
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		// when
+		List<Book> actuals = library.findBooksByAuthor(author, "anthology-1", 1);
+		// then
+		assertEquals(actuals.size(), 1);
+		assertEquals(actuals.get(0).getIsbn(), "anthology-2");
+	}
+
 	@Test
 	void removeBook_should_remove_book() {
 		// given
@@ -249,6 +375,220 @@ public class LibraryTest {
 		assertTrue(exception.getMessage().contains("No available copies"));
 	}
 
+	@Test
+	void tryBorrowBook_should_return_status_instead_of_throwing() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("12350")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		library.addBook(book1);
+		// when
+		BookResult borrowed = library.tryBorrowBook(book1.getIsbn());
+		BookResult unavailable = library.tryBorrowBook(book1.getIsbn());
+		BookResult notFound = library.tryBorrowBook("12");
+		// then
+		assertEquals(borrowed.getStatus(), BookResult.Status.OK);
+		assertEquals(borrowed.getBook().getAvailableCopies(), 0);
+		assertEquals(unavailable.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertNull(unavailable.getBook());
+		assertEquals(notFound.getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(library.tryFindBookByISBN("12").getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(library.tryReturnBook("12").getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(library.tryRemoveBook("12").getStatus(), BookResult.Status.NOT_FOUND);
+	}
+
+	@Test
+	void tryReturnBook_should_close_the_loan_of_the_borrower() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("12356")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(2)
+				.build();
+		library.addBook(book1);
+		// when
+		BookResult borrowed = library.tryBorrowBook(book1.getIsbn(), "alice");
+		List<Loan> loans = library.findLoans(book1.getIsbn(), "alice");
+		Loan.Status lent = loans.get(0).getStatus();
+		BookResult notLent = library.tryReturnBook(book1.getIsbn(), "bob");
+		BookResult returned = library.tryReturnBook(book1.getIsbn(), "alice");
+		// then
+		assertEquals(borrowed.getStatus(), BookResult.Status.OK);
+		assertEquals(loans.size(), 1);
+		assertEquals(lent, Loan.Status.ON_LOAN);
+		assertEquals(notLent.getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(returned.getBook().getAvailableCopies(), 2);
+		assertEquals(loans.get(0).getStatus(), Loan.Status.RETURNED);
+		assertTrue(library.findLoans(book1.getIsbn(), "alice").isEmpty());
+	}
+
+	@Test
+	void borrowBookAsync_should_complete_with_status() throws Exception {
+		// given
+		Book book1 = Book.builder()
+				.isbn("12351")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		library.addBookAsync(book1).get(10, TimeUnit.SECONDS);
+		// when
+		BookResult borrowed = library.borrowBookAsync(book1.getIsbn()).get(10, TimeUnit.SECONDS);
+		BookResult unavailable = library.borrowBookAsync(book1.getIsbn()).get(10, TimeUnit.SECONDS);
+		BookResult returned = library.returnBookAsync(book1.getIsbn()).get(10, TimeUnit.SECONDS);
+		// then
+		assertEquals(borrowed.getBook().getAvailableCopies(), 0);
+		assertEquals(unavailable.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(returned.getBook().getAvailableCopies(), 1);
+		assertEquals(library.removeBookAsync("12").get(10, TimeUnit.SECONDS).getStatus(), BookResult.Status.NOT_FOUND);
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> {
+			library.addBookAsync(book1).get(10, TimeUnit.SECONDS);
+		});
+		assertTrue(exception.getCause() instanceof BookAlreadyExistException);
+	}
+
+	@Test
+	void returnBook_should_hand_the_copy_to_the_first_hold() throws Exception {
+		// given
+		Book book1 = Book.builder()
+				.isbn("12352")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		library.addBook(book1);
+		library.borrowBook(book1.getIsbn());
+		Hold hold = library.placeHold(book1.getIsbn());
+		boolean waited = !hold.getResult().isDone();
+		// when
+		Book returned = library.returnBook(book1.getIsbn());
+		BookResult held = hold.getResult().get(10, TimeUnit.SECONDS);
+		// then
+		assertTrue(waited);
+		assertEquals(held.getBook().getIsbn(), "12352");
+		assertEquals(returned.getAvailableCopies(), 0);
+		assertEquals(library.tryBorrowBook(book1.getIsbn()).getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(library.findHold(hold.getId()).get().getStatus(), Hold.Status.FULFILLED);
+	}
+
+	@Test
+	void readChanges_should_list_changes_in_the_order_they_were_applied() throws Exception {
+		// given
+		long after = library.lastChange();
+		Book book1 = Book.builder()
+				.isbn("12355")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		library.addBook(book1);
+		library.borrowBook(book1.getIsbn());
+		library.tryBorrowBook(book1.getIsbn());
+		Hold hold = library.placeHold(book1.getIsbn());
+		// when
+		library.returnBook(book1.getIsbn());
+		hold.getResult().get(10, TimeUnit.SECONDS);
+		library.removeBook(book1.getIsbn());
+		BookChangeLog.Page page = library.readChanges(after, 100);
+		// then
+		List<BookChange.Type> types = new ArrayList<>();
+		for (BookChange change : page.getChanges()) {
+			if (change.getIsbn().equals("12355")) {
+				types.add(change.getType());
+			}
+		}
+		assertEquals(types, Arrays.asList(BookChange.Type.ADDED, BookChange.Type.BORROWED, BookChange.Type.RETURNED,
+			BookChange.Type.BORROWED, BookChange.Type.REMOVED));
+		assertFalse(page.isMissed());
+		assertEquals(page.getLast(), library.lastChange());
+	}
+
+	@Test
+	void borrowBooks_should_report_every_isbn() {
+		// given
+		library.addBook(Book.builder()
+				.isbn("12353")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build());
+		// when
+		CheckoutResult actual = library.borrowBooks(Arrays.asList("12353", "12353", "unknown"), false);
+		// then
+		assertEquals(actual.getSucceeded(), 1);
+		assertEquals(actual.getItems().get(0).getStatus(), CheckoutResult.Status.OK);
+		assertEquals(actual.getItems().get(0).getAvailableCopies(), 0);
+		assertEquals(actual.getItems().get(1).getStatus(), CheckoutResult.Status.UNAVAILABLE);
+		assertEquals(actual.getItems().get(2).getStatus(), CheckoutResult.Status.NOT_FOUND);
+		assertEquals(actual.getItems().get(2).getIndex(), 2);
+	}
+
+	@Test
+	void borrowBooks_should_borrow_nothing_when_all_or_nothing_and_a_book_is_missing() {
+		// given
+		library.addBook(Book.builder()
+				.isbn("12354")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build());
+		// when
+		CheckoutResult borrowed = library.borrowBooks(Arrays.asList("12354", "unknown"), true);
+		CheckoutResult returned = library.returnBooks(Arrays.asList("12354", "unknown"), true);
+		// then
+		assertEquals(borrowed.getSucceeded(), 0);
+		assertEquals(borrowed.getItems().get(0).getStatus(), CheckoutResult.Status.CANCELLED);
+		assertEquals(borrowed.getItems().get(1).getStatus(), CheckoutResult.Status.NOT_FOUND);
+		assertEquals(returned.getItems().get(0).getStatus(), CheckoutResult.Status.CANCELLED);
+		assertEquals(library.findBookByISBN("12354").getAvailableCopies(), 1);
+	}
+
+	@Test
+	void borrowBooks_should_undo_every_borrow_when_all_or_nothing_and_a_borrow_fails() {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository() {
+			@Override
+			public CompletableFuture<BookResult> decrementAvailableCopiesAsync(String isbn) {
+				if (!"broken".equals(isbn)) {
+					return super.decrementAvailableCopiesAsync(isbn);
+				}
+				CompletableFuture<BookResult> failed = new CompletableFuture<>();
+				failed.completeExceptionally(new IllegalStateException("Book journal is unavailable"));
+				return failed;
+			}
+		};
+		Library failing = new Library(repository, new LibraryMetrics(false));
+		failing.addBook(Book.builder()
+				.isbn("12355")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build());
+		// when
+		CheckoutResult atomic = failing.borrowBooks(Arrays.asList("broken", "12355"), true);
+		CheckoutResult perItem = failing.borrowBooks(Arrays.asList("broken", "12355"), false);
+		// then
+		assertEquals(atomic.getSucceeded(), 0);
+		assertEquals(atomic.getItems().get(0).getStatus(), CheckoutResult.Status.FAILED);
+		assertEquals(atomic.getItems().get(1).getStatus(), CheckoutResult.Status.CANCELLED);
+		assertEquals(perItem.getSucceeded(), 1);
+		assertEquals(perItem.getItems().get(0).getStatus(), CheckoutResult.Status.FAILED);
+		assertEquals(perItem.getItems().get(1).getStatus(), CheckoutResult.Status.OK);
+		assertEquals(failing.findBookByISBN("12355").getAvailableCopies(), 0);
+	}
+
 	@Test
 	void returnBook_should_increase_book_count() {
 		// given
@@ -285,4 +625,49 @@ public class LibraryTest {
 		// then
 		assertTrue(exception.getMessage().contains("Book not found"));
 	}
+
+	@Test
+	void borrowBook_should_not_oversell_under_contention() throws Exception {
+		// given
+		int copies = 50;
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		Book book1 = Book.builder()
+				.isbn("12349")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(copies)
+				.build();
+		library.addBook(book1);
+		AtomicInteger borrowed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		// when
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int j = 0; j < copies; j++) {
+						try {
+							library.borrowBook(book1.getIsbn());
+							borrowed.incrementAndGet();
+						} catch (BookNotAvailableException e) {
+							// expected once every copy is taken
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// then
+		assertEquals(borrowed.get(), copies);
+		assertEquals(library.findBookByISBN(book1.getIsbn()).getAvailableCopies(), 0);
+	}
 }
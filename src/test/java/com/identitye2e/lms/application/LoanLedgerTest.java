@@ -0,0 +1,145 @@
+package com.identitye2e.lms.application;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanLedgerTest {
+
+	private static final long PERIOD = TimeUnit.DAYS.toMillis(14);
+
+	private final AtomicLong now = new AtomicLong(1_700_000_000_123L);
+	//The sweeper thread never runs during a test, the tests sweep themselves
+	private final LoanLedger ledger = new LoanLedger(PERIOD, TimeUnit.HOURS.toMillis(1), now::get);
+
+	@AfterEach
+	public void close() {
+		ledger.close();
+	}
+
+	@Test
+	void open_should_lend_a_copy_until_the_end_of_the_period() {
+		// when
+		Loan loan = ledger.open("123", "alice");
+		// then
+		assertEquals(loan.getStatus(), Loan.Status.ON_LOAN);
+		assertEquals(loan.getBorrowedAt(), now.get());
+		assertEquals(loan.getDueAt(), now.get() + PERIOD);
+		assertEquals(ledger.find("123", "alice").size(), 1);
+		assertTrue(ledger.find("123", "bob").isEmpty());
+		assertEquals(ledger.countOpen(), 1);
+	}
+
+	@Test
+	void close_should_return_the_oldest_copy_first() {
+		// given
+		Loan first = ledger.open("123", "alice");
+		now.addAndGet(1000);
+		Loan second = ledger.open("123", "alice");
+		// when
+		Optional<Loan> returned = ledger.close("123", "alice");
+		// then
+		assertSame(returned.get(), first);
+		assertEquals(first.getStatus(), Loan.Status.RETURNED);
+		List<Loan> open = ledger.find("123", "alice");
+		assertEquals(open.size(), 1);
+		assertSame(open.get(0), second);
+		assertSame(ledger.close("123", "alice").get(), second);
+		assertFalse(ledger.close("123", "alice").isPresent());
+		assertEquals(ledger.countOpen(), 0);
+	}
+
+	@Test
+	void sweep_should_mark_loans_overdue_only_once_due() {
+		// given
+		Loan loan = ledger.open("123", "alice");
+		// when
+		int early = ledger.sweep(loan.getDueAt() - 1);
+		int due = ledger.sweep(loan.getDueAt() + LoanLedger.TICK_MILLIS);
+		// then
+		assertEquals(early, 0);
+		assertEquals(due, 1);
+		assertEquals(loan.getStatus(), Loan.Status.OVERDUE);
+		assertEquals(ledger.countOverdue(), 1);
+		assertEquals(ledger.findOverdue(10).size(), 1);
+		assertEquals(ledger.sweep(loan.getDueAt() + PERIOD), 0);
+	}
+
+	@Test
+	void sweep_should_find_loans_due_at_every_level_of_the_wheel() {
+		// given
+		long[] periods = {0, 1000, 255_000, 256_000, 16_384_000, TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(400)};
+		Loan[] loans = new Loan[periods.length];
+		LoanLedger[] ledgers = new LoanLedger[periods.length];
+		for (int i = 0; i < periods.length; i++) {
+			ledgers[i] = new LoanLedger(periods[i], TimeUnit.HOURS.toMillis(1), now::get);
+			loans[i] = ledgers[i].open(String.valueOf(i), "alice");
+		}
+		// when
+		for (int i = 0; i < periods.length; i++) {
+			// then
+			assertEquals(ledgers[i].sweep(loans[i].getDueAt() - 1000), 0, "period " + periods[i]);
+			assertEquals(loans[i].getStatus(), Loan.Status.ON_LOAN);
+			assertEquals(ledgers[i].sweep(loans[i].getDueAt() + LoanLedger.TICK_MILLIS), 1, "period " + periods[i]);
+			assertEquals(loans[i].getStatus(), Loan.Status.OVERDUE);
+			ledgers[i].close();
+		}
+	}
+
+	@Test
+	void sweep_should_catch_up_on_every_tick_missed() {
+		// given
+		Loan first = ledger.open("123", "alice");
+		now.addAndGet(TimeUnit.DAYS.toMillis(3));
+		Loan second = ledger.open("456", "bob");
+		// when
+		int due = ledger.sweep(first.getDueAt() + LoanLedger.TICK_MILLIS);
+		int late = ledger.sweep(second.getDueAt() + TimeUnit.DAYS.toMillis(30));
+		// then
+		assertEquals(due, 1);
+		assertEquals(late, 1);
+		assertEquals(first.getStatus(), Loan.Status.OVERDUE);
+		assertEquals(second.getStatus(), Loan.Status.OVERDUE);
+		assertEquals(ledger.countOverdue(), 2);
+	}
+
+	@Test
+	void close_should_remove_an_overdue_loan_from_the_overdue_list() {
+		// given
+		Loan loan = ledger.open("123", "alice");
+		ledger.sweep(loan.getDueAt() + LoanLedger.TICK_MILLIS);
+		// when
+		Optional<Loan> returned = ledger.close("123", "alice");
+		// then
+		assertSame(returned.get(), loan);
+		assertEquals(loan.getStatus(), Loan.Status.RETURNED);
+		assertEquals(ledger.countOverdue(), 0);
+		assertTrue(ledger.findOverdue(10).isEmpty());
+	}
+
+	@Test
+	void sweep_should_not_touch_loans_returned_before_they_were_due() {
+		// given
+		for (int i = 0; i < 1000; i++) {
+			ledger.open(String.valueOf(i), "alice");
+			now.addAndGet(997);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			ledger.close(String.valueOf(i), "alice");
+		}
+		// when
+		int due = ledger.sweep(now.get() + PERIOD);
+		// then
+		assertEquals(due, 500);
+		assertEquals(ledger.countOpen(), 500);
+		assertEquals(ledger.findOverdue(1000).size(), 500);
+		assertTrue(ledger.find("0", "alice").isEmpty());
+		assertEquals(ledger.find("1", "alice").get(0).getStatus(), Loan.Status.OVERDUE);
+	}
+}
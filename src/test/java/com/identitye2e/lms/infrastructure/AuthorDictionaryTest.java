@@ -0,0 +1,82 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.AuthorNames;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorDictionaryTest {
+
+	private AuthorDictionary authors = new AuthorDictionary();
+
+	@Test
+	void normalize_should_ignore_case_punctuation_and_spacing() {
+		// when
+		String actual = AuthorNames.normalize("  J.K.  ROWLING ");
+		// then
+		assertEquals(actual, "j k rowling");
+		assertEquals(AuthorNames.normalize("J. K. Rowling"), actual);
+		assertNotEquals(AuthorNames.normalize("Bront\u00eb"), AuthorNames.normalize("Bronte"));
+	}
+
+	@Test
+	void acquire_should_give_every_spelling_the_same_author() {
+		// when
+		AuthorDictionary.Author first = authors.acquire("J. K. Rowling");
+		AuthorDictionary.Author second = authors.acquire("j.k. rowling");
+		AuthorDictionary.Author other = authors.acquire("J. R. R. Tolkien");
+		// then
+		assertSame(second, first);
+		assertNotEquals(other.id, first.id);
+		assertSame(authors.find("J K ROWLING"), first);
+		assertEquals(authors.size(), 2);
+	}
+
+	@Test
+	void release_should_drop_the_author_with_their_last_book_and_never_reuse_the_id() {
+		// given
+		AuthorDictionary.Author author = authors.acquire("J. K. Rowling");
+		authors.acquire("J.K. Rowling");
+		// when
+		authors.release(author);
+		AuthorDictionary.Author kept = authors.find("J. K. Rowling");
+		authors.release(author);
+		AuthorDictionary.Author dropped = authors.find("J. K. Rowling");
+		AuthorDictionary.Author again = authors.acquire("J. K. Rowling");
+		// then
+		assertSame(kept, author);
+		assertNull(dropped);
+		assertNotEquals(again.id, author.id);
+	}
+
+	@Test
+	void intern_should_return_the_first_instance_of_a_spelling() {
+		// given
+		String first = new String("J. K. Rowling");
+		String copy = new String("J. K. Rowling");
+		AuthorDictionary.Author author = authors.acquire(first);
+		// when
+		authors.acquire(copy);
+		// then
+		assertSame(author.intern(copy), first);
+		assertSame(author.intern("J.K. Rowling"), "J.K. Rowling");
+	}
+
+	@Test
+	void intern_should_keep_at_most_max_spellings() {
+		// given
+		String[] spellings = new String[AuthorDictionary.MAX_SPELLINGS + 1];
+		AuthorDictionary.Author author = null;
+		for (int i = 0; i < spellings.length; i++) {
+			spellings[i] = "J." + new String(new char[i]).replace('\0', ' ') + "K. Rowling";
+			author = authors.acquire(spellings[i]);
+		}
+		// when
+		String kept = author.intern(new String(spellings[AuthorDictionary.MAX_SPELLINGS - 1]));
+		String notKept = author.intern(new String(spellings[AuthorDictionary.MAX_SPELLINGS]));
+		// then
+		assertSame(kept, spellings[AuthorDictionary.MAX_SPELLINGS - 1]);
+		assertNotSame(notKept, spellings[AuthorDictionary.MAX_SPELLINGS]);
+		assertEquals(notKept, spellings[AuthorDictionary.MAX_SPELLINGS]);
+	}
+}
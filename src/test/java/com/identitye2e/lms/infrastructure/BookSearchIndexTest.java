@@ -0,0 +1,110 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookSearchIndexTest {
+
+	private BookSearchIndex searchIndex = new BookSearchIndex();
+
+	@BeforeEach
+	public void init() {
+		searchIndex.index(book("1", "Harry Potter and the Philosopher's Stone", "J. K. Rowling"));
+		searchIndex.index(book("2", "Harry Potter and the Chamber of Secrets", "J. K. Rowling"));
+		searchIndex.index(book("3", "The Hobbit", "J. R. R. Tolkien"));
+		searchIndex.index(book("4", "Les Mis\u00e9rables", "Victor Hugo"));
+	}
+
+	@Test
+	void search_should_match_every_word_and_the_start_of_the_last_one() {
+		// when
+		List<String> actual = searchIndex.search("harry cham", 10);
+		// then
+		assertEquals(actual, Arrays.asList("2"));
+	}
+
+	@Test
+	void search_should_match_author_words() {
+		// when
+		List<String> actual = searchIndex.search("tolkien", 10);
+		// then
+		assertEquals(actual, Arrays.asList("3"));
+	}
+
+	@Test
+	void search_should_ignore_case_accents_and_punctuation() {
+		// when
+		List<String> actual = searchIndex.search("MISERABLES,", 10);
+		// then
+		assertEquals(actual, Arrays.asList("4"));
+		assertEquals(searchIndex.search("philosopher's", 10), Arrays.asList("1"));
+	}
+
+	@Test
+	void search_should_rank_rare_words_first_and_keep_top_k() {
+		// when
+		List<String> actual = searchIndex.search("the", 2);
+		List<String> ranked = searchIndex.search("h", 10);
+		// then
+		assertEquals(actual, Arrays.asList("1", "2"));
+		assertEquals(ranked.get(0), "3");
+		assertEquals(ranked.size(), 4);
+	}
+
+	@Test
+	void search_should_match_every_completion_of_the_last_word() {
+		// given
+		for (int i = 0; i < 70; i++) {
+			searchIndex.index(book("pota" + i, String.format("Harry pota%02d", i), "Unknown"));
+		}
+		// when
+		List<String> actual = searchIndex.search("harry pot", 100);
+		List<String> alone = searchIndex.search("pot", 100);
+		// then
+		assertEquals(actual.size(), 72);
+		assertTrue(actual.containsAll(Arrays.asList("1", "2")));
+		assertEquals(alone.size(), 72);
+		assertTrue(alone.containsAll(Arrays.asList("1", "2")));
+	}
+
+	@Test
+	void search_should_not_match_unknown_words() {
+		assertTrue(searchIndex.search("harry hobbit", 10).isEmpty());
+		assertTrue(searchIndex.search("dune", 10).isEmpty());
+		assertTrue(searchIndex.search(" - ", 10).isEmpty());
+	}
+
+	@Test
+	void unindex_should_remove_book_from_results() {
+		// when
+		searchIndex.unindex(book("1", "Harry Potter and the Philosopher's Stone", "J. K. Rowling"));
+		// then
+		assertEquals(searchIndex.search("harry", 10), Arrays.asList("2"));
+		assertTrue(searchIndex.search("stone", 10).isEmpty());
+	}
+
+	@Test
+	void reindex_should_follow_title_change() {
+		// when
+		searchIndex.reindex(book("3", "The Hobbit", "J. R. R. Tolkien"), book("3", "There and Back Again", "J. R. R. Tolkien"));
+		// then
+		assertTrue(searchIndex.search("hobbit", 10).isEmpty());
+		assertEquals(searchIndex.search("back again", 10), Arrays.asList("3"));
+	}
+
+	private static Book book(String isbn, String title, String author) {
+		return Book.builder()
+			.isbn(isbn)
+			.title(title)
+			.author(author)
+			.publicationYear(2000)
+			.availableCopies(1)
+			.build();
+	}
+}
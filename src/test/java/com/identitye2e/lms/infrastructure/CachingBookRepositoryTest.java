@@ -0,0 +1,194 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingBookRepositoryTest {
+
+	private final CountingBookRepository backend = new CountingBookRepository();
+	private CachingBookRepository bookRepository = new CachingBookRepository(backend, 1000, 100);
+
+	@BeforeEach
+	public void init() {
+		bookRepository.addBook(book("123", "J. K. Rowling", 1));
+		bookRepository.addBook(book("124", "J. K. Rowling", 0));
+		bookRepository.addBook(book("456", "J. R. R. Tolkien", 1));
+	}
+
+	@Test
+	void findBookByISBN_should_read_the_backend_once() {
+		// when
+		Optional<Book> first = bookRepository.findBookByISBN("123");
+		Optional<Book> second = bookRepository.findBookByISBN("123");
+		// then
+		assertEquals(second, first);
+		assertEquals(backend.isbnReads.get(), 1);
+		assertEquals(bookRepository.stats().getHits(), 1);
+		assertEquals(bookRepository.stats().getMisses(), 1);
+		assertEquals(bookRepository.stats().hitRatio(), 0.5);
+	}
+
+	@Test
+	void findBookByISBN_should_cache_unknown_isbn_until_it_is_added() {
+		// given
+		bookRepository.findBookByISBN("789");
+		bookRepository.findBookByISBN("789");
+		// when
+		bookRepository.addBook(book("789", "George Orwell", 1));
+		Optional<Book> added = bookRepository.findBookByISBN("789");
+		// then
+		assertEquals(backend.isbnReads.get(), 2);
+		assertEquals(added.get().getAuthor(), "George Orwell");
+	}
+
+	@Test
+	void decrementAvailableCopies_should_invalidate_the_book() {
+		// given
+		bookRepository.findBookByISBN("123");
+		// when
+		BookResult borrowed = bookRepository.decrementAvailableCopies("123");
+		Optional<Book> found = bookRepository.findBookByISBN("123");
+		// then
+		assertTrue(borrowed.isOk());
+		assertEquals(found.get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_answer_cached_misses_without_the_backend() {
+		// given
+		bookRepository.findBookByISBN("124");
+		bookRepository.findBookByISBN("789");
+		// when
+		BookResult unavailable = bookRepository.decrementAvailableCopies("124");
+		BookResult notFound = bookRepository.decrementAvailableCopies("789");
+		// then
+		assertEquals(unavailable.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(notFound.getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(backend.decrements.get(), 0);
+	}
+
+	@Test
+	void findBooksByAuthor_should_follow_add_and_remove() {
+		// given
+		bookRepository.findBooksByAuthor("J. K. Rowling");
+		// when
+		bookRepository.addBook(book("125", "J. K. Rowling", 1));
+		List<Book> afterAdd = bookRepository.findBooksByAuthor("J. K. Rowling");
+		bookRepository.removeBook("123");
+		List<Book> afterRemove = bookRepository.findBooksByAuthor("J. K. Rowling");
+		// then
+		assertEquals(isbns(afterAdd), Arrays.asList("123", "124", "125"));
+		assertEquals(isbns(afterRemove), Arrays.asList("124", "125"));
+		assertEquals(backend.authorReads.get(), 3);
+	}
+
+	@Test
+	void findBooksByAuthor_should_cache_every_spelling_of_the_name_once() {
+		// given
+		bookRepository.findBooksByAuthor("J. K. Rowling");
+		// when
+		List<Book> variant = bookRepository.findBooksByAuthor("j.k. rowling");
+		bookRepository.addBook(book("125", "J.K. Rowling", 1));
+		List<Book> afterAdd = bookRepository.findBooksByAuthor("J. K. Rowling");
+		// then
+		assertEquals(isbns(variant), Arrays.asList("123", "124"));
+		assertEquals(isbns(afterAdd), Arrays.asList("123", "124", "125"));
+		assertEquals(backend.authorReads.get(), 2);
+	}
+
+	@Test
+	void findBooksByAuthor_should_page_the_cached_isbns() {
+		// when
+		List<Book> firstPage = bookRepository.findBooksByAuthor("J. K. Rowling", null, 1);
+		List<Book> secondPage = bookRepository.findBooksByAuthor("J. K. Rowling", "123", 1);
+		List<Book> lastPage = bookRepository.findBooksByAuthor("J. K. Rowling", "124", 1);
+		// then
+		assertEquals(isbns(firstPage), Arrays.asList("123"));
+		assertEquals(isbns(secondPage), Arrays.asList("124"));
+		assertTrue(lastPage.isEmpty());
+		assertEquals(backend.authorReads.get(), 1);
+	}
+
+	@Test
+	void findBooksByAuthor_should_cache_the_books_read_with_the_author() {
+		// when
+		List<Book> books = bookRepository.findBooksByAuthor("J. K. Rowling", null, 1);
+		Optional<Book> first = bookRepository.findBookByISBN("123");
+		Optional<Book> next = bookRepository.findBookByISBN("124");
+		// then
+		assertEquals(isbns(books), Arrays.asList("123"));
+		assertEquals(first.get(), books.get(0));
+		assertTrue(next.isPresent());
+		assertEquals(backend.authorReads.get(), 1);
+		assertEquals(backend.isbnReads.get(), 1);
+	}
+
+	@Test
+	void findBookByISBN_should_evict_least_recently_used_books() {
+		// given
+		bookRepository = new CachingBookRepository(backend, 2, 1);
+		bookRepository.findBookByISBN("123");
+		bookRepository.findBookByISBN("124");
+		bookRepository.findBookByISBN("123");
+		// when
+		bookRepository.findBookByISBN("456");
+		bookRepository.findBookByISBN("123");
+		bookRepository.findBookByISBN("124");
+		// then
+		assertEquals(backend.isbnReads.get(), 4);
+		assertEquals(bookRepository.stats().getEvictions(), 2);
+		assertEquals(bookRepository.stats().getSize(), 2);
+	}
+
+	private static List<String> isbns(List<Book> books) {
+		return books.stream().map(Book::getIsbn).collect(Collectors.toList());
+	}
+
+	private static Book book(String isbn, String author, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author(author)
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+
+	/**
+	 * This repository counts the reads and borrows that reach it.
+	 */
+	private static final class CountingBookRepository extends InMemoryBookRepository {
+
+		private final AtomicInteger isbnReads = new AtomicInteger();
+		private final AtomicInteger authorReads = new AtomicInteger();
+		private final AtomicInteger decrements = new AtomicInteger();
+
+		@Override
+		public Optional<Book> findBookByISBN(String isbn) {
+			isbnReads.incrementAndGet();
+			return super.findBookByISBN(isbn);
+		}
+
+		@Override
+		public List<Book> findBooksByAuthor(String author) {
+			authorReads.incrementAndGet();
+			return super.findBooksByAuthor(author);
+		}
+
+		@Override
+		public BookResult decrementAvailableCopies(String isbn) {
+			decrements.incrementAndGet();
+			return super.decrementAvailableCopies(isbn);
+		}
+	}
+}
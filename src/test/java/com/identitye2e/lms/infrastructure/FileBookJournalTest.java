@@ -0,0 +1,224 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileBookJournalTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void mutations_should_be_recovered_from_the_log() throws IOException {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		repository.addBook(book("123", "J. K. Rowling", 2));
+		repository.addBook(book("456", "J. R. R. Tolkien", 1));
+		repository.addBook(book("789", "J. R. R. Tolkien", 1));
+		repository.decrementAvailableCopies("123");
+		repository.removeBook("456");
+		journal.close();
+		// when
+		InMemoryBookRepository recovered = new InMemoryBookRepository();
+		open(recovered).close();
+		// then
+		assertEquals(recovered.books.size(), 2);
+		assertEquals(recovered.findBookByISBN("123").get().getAvailableCopies(), 1);
+		assertFalse(recovered.findBookByISBN("456").isPresent());
+		assertEquals(recovered.findBooksByAuthor("J. R. R. Tolkien").size(), 1);
+	}
+
+	@Test
+	void checkpoint_should_write_snapshot_and_keep_log_tail() throws IOException {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		repository.addBook(book("123", "J. K. Rowling", 1));
+		repository.addBook(book("456", "J. R. R. Tolkien", 1));
+		journal.checkpoint();
+		repository.incrementAvailableCopies("123");
+		repository.removeBook("456");
+		journal.close();
+		// when
+		InMemoryBookRepository recovered = new InMemoryBookRepository();
+		open(recovered).close();
+		// then
+		assertEquals(files("snapshot-").size(), 1);
+		assertEquals(recovered.books.size(), 1);
+		assertEquals(recovered.findBookByISBN("123").get().getAvailableCopies(), 2);
+	}
+
+	@Test
+	void checkpoint_should_delete_replaced_segments() throws IOException {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		repository.addBook(book("123", "J. K. Rowling", 1));
+		// when
+		journal.checkpoint();
+		journal.checkpoint();
+		journal.close();
+		// then
+		assertEquals(files("snapshot-").size(), 1);
+		assertEquals(files("journal-").size(), 1);
+	}
+
+	@Test
+	void recovery_should_ignore_torn_record_at_end_of_log() throws IOException {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		repository.addBook(book("123", "J. K. Rowling", 1));
+		journal.close();
+		Path segment = files("journal-").get(0);
+		Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+		// when
+		InMemoryBookRepository recovered = new InMemoryBookRepository();
+		FileBookJournal reopened = open(recovered);
+		recovered.addBook(book("456", "J. R. R. Tolkien", 1));
+		reopened.close();
+		InMemoryBookRepository recoveredAgain = new InMemoryBookRepository();
+		open(recoveredAgain).close();
+		// then
+		assertEquals(recovered.books.size(), 2);
+		assertEquals(recoveredAgain.books.size(), 2);
+	}
+
+	@Test
+	void async_mutations_should_complete_once_durable_and_be_recovered() throws Exception {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		List<CompletableFuture<?>> futures = new ArrayList<>();
+		// when
+		for (int i = 0; i < 100; i++) {
+			futures.add(repository.addBookAsync(book(String.valueOf(i), "J. K. Rowling", 1)));
+		}
+		for (int i = 0; i < 50; i++) {
+			futures.add(repository.decrementAvailableCopiesAsync(String.valueOf(i)));
+		}
+		futures.add(repository.removeBookAsync("99"));
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+		journal.close();
+		InMemoryBookRepository recovered = new InMemoryBookRepository();
+		open(recovered).close();
+		// then
+		assertEquals(copiesByIsbn(recovered), copiesByIsbn(repository));
+		assertEquals(recovered.books.size(), 99);
+		assertEquals(recovered.findBookByISBN("0").get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void mutations_should_be_rejected_unapplied_once_the_log_failed() throws IOException {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = open(repository);
+		repository.addBook(book("123", "J. K. Rowling", 2));
+		// when
+		journal.fail(new IOException("No space left on device"));
+		// then
+		assertThrows(UncheckedIOException.class, () -> repository.addBook(book("456", "J. K. Rowling", 1)));
+		assertThrows(ExecutionException.class, () -> repository.decrementAvailableCopiesAsync("123").get());
+		assertFalse(repository.findBookByISBN("456").isPresent());
+		assertEquals(repository.findBookByISBN("123").get().getAvailableCopies(), 2);
+		journal.close();
+	}
+
+	@Test
+	void concurrent_mutations_and_checkpoints_should_recover_to_the_same_state() throws Exception {
+		// given
+		InMemoryBookRepository repository = new InMemoryBookRepository();
+		FileBookJournal journal = FileBookJournal.open(directory, FileBookJournal.FsyncPolicy.INTERVAL, 1, 0, repository);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		List<Future<?>> futures = new ArrayList<>();
+		// when
+		try {
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 2000; i++) {
+						String isbn = String.valueOf(i % 50);
+						switch ((i + thread) % 4) {
+							case 0:
+								repository.addBook(book(isbn, "Author " + thread, 3));
+								break;
+							case 1:
+								try {
+									repository.decrementAvailableCopies(isbn);
+								} catch (RuntimeException e) {
+									// no copies left
+								}
+								break;
+							case 2:
+								repository.incrementAvailableCopies(isbn);
+								break;
+							default:
+								repository.removeBook(isbn);
+						}
+					}
+					return null;
+				}));
+			}
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 5; i++) {
+					journal.checkpoint();
+				}
+				return null;
+			}));
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		journal.close();
+		InMemoryBookRepository recovered = new InMemoryBookRepository();
+		open(recovered).close();
+		// then
+		assertEquals(copiesByIsbn(recovered), copiesByIsbn(repository));
+	}
+
+	private static Map<String, String> copiesByIsbn(InMemoryBookRepository repository) {
+		Map<String, String> result = new HashMap<>();
+		repository.books.forEach((isbn, book) -> result.put(isbn, book.getAuthor() + ":" + book.getAvailableCopies()));
+		return result;
+	}
+
+	private FileBookJournal open(InMemoryBookRepository repository) throws IOException {
+		return FileBookJournal.open(directory, FileBookJournal.FsyncPolicy.ALWAYS, 10, 0, repository);
+	}
+
+	private List<Path> files(String prefix) throws IOException {
+		try (Stream<Path> stream = Files.list(directory)) {
+			return stream.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static Book book(String isbn, String author, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author(author)
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
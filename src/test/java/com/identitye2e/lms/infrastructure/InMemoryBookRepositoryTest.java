@@ -1,13 +1,19 @@
 package com.identitye2e.lms.infrastructure;
 
 import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
 import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +48,17 @@ public class InMemoryBookRepositoryTest  {
     public void teardown() {
     }
 
+	@Test
+	void forEachBook_should_visit_every_book() {
+		// given
+		List<String> isbns = new ArrayList<>();
+		// when
+		bookRepository.forEachBook(book -> isbns.add(book.getIsbn()));
+		// then
+		isbns.sort(null);
+		assertEquals(isbns, Arrays.asList("123", "456"));
+	}
+
 	@Test
 	void addBook_should_add_book() {
 		// given
@@ -59,6 +76,32 @@ public class InMemoryBookRepositoryTest  {
 		assertEquals(actual.getTitle(), "Harry Potter");
 	}
 
+	@Test
+	void addBooks_should_add_new_books_and_return_existing_ones() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("1234")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		Book book2 = Book.builder()
+				.isbn("123")
+				.title("Duplicate")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		// when
+		List<Book> existing = bookRepository.addBooks(Arrays.asList(book1, book2));
+		// then
+		assertEquals(existing.size(), 1);
+		assertEquals(existing.get(0).getTitle(), "Duplicate");
+		assertEquals(bookRepository.findBooksByAuthor("J. K. Rowling").size(), 2);
+		assertEquals(bookRepository.findBookByISBN("123").get().getTitle(), "Harry Potter");
+	}
+
 	@Test
 	void removeBook_should_remove_book() {
 		// given
@@ -117,6 +160,191 @@ public class InMemoryBookRepositoryTest  {
 		assertEquals(actuals.size(), 0);
 	}
 
+	@Test
+	void findBooksByAuthor_should_return_pages_in_isbn_order() {
+		// given
+		for (String isbn : Arrays.asList("5", "3", "9", "1", "7")) {
+			bookRepository.addBook(Book.builder()
+				.isbn(isbn)
+				.title("Anthology " + isbn)
+				.author("Anthology Publisher")
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		// when
+		List<Book> first = bookRepository.findBooksByAuthor("Anthology Publisher", null, 2);
+		bookRepository.removeBook("5");
+		List<Book> second = bookRepository.findBooksByAuthor("Anthology Publisher", "3", 2);
+		List<Book> last = bookRepository.findBooksByAuthor("Anthology Publisher", "9", 2);
+		// then
+		assertEquals(isbns(first), Arrays.asList("1", "3"));
+		assertEquals(isbns(second), Arrays.asList("7", "9"));
+		assertEquals(last.size(), 0);
+	}
+
+	@Test
+	void findBooks_should_return_pages_of_the_years_in_year_order() {
+		// given
+		int[] years = {2005, 1990, 2000, 1995, 2000, 2010};
+		for (int i = 0; i < years.length; i++) {
+			bookRepository.addBook(Book.builder()
+				.isbn(String.valueOf(900 - i))
+				.title("Title " + i)
+				.author(i % 2 == 0 ? "J. K. Rowling" : "Robert Galbraith")
+				.publicationYear(years[i])
+				.availableCopies(i == 4 ? 0 : 1)
+				.build());
+		}
+		BookQuery query = BookQuery.builder().fromYear(1990).toYear(2005).build();
+		// when
+		List<Book> first = bookRepository.findBooks(query, 3);
+		List<Book> second = bookRepository.findBooks(query.after(first.get(2)), 3);
+		List<Book> rowling = bookRepository.findBooks(BookQuery.builder().author("J. K. Rowling").fromYear(1998).build(), 10);
+		List<Book> available = bookRepository.findBooks(BookQuery.builder().fromYear(2000).toYear(2000).availableOnly(true).build(), 10);
+		// then
+		assertEquals(isbns(first), Arrays.asList("899", "897", "123"));
+		assertEquals(isbns(second), Arrays.asList("896", "898", "900"));
+		assertEquals(isbns(rowling), Arrays.asList("896", "898", "900"));
+		assertEquals(isbns(available), Arrays.asList("898"));
+		assertEquals(isbns(bookRepository.findBooks(BookQuery.builder().build(), 2)), Arrays.asList("456", "899"));
+	}
+
+	@Test
+	void findBooks_should_follow_a_book_moved_to_another_year_and_author() {
+		// given
+		Book moved = Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("Robert Galbraith")
+			.publicationYear(2013)
+			.availableCopies(1)
+			.build();
+		// when
+		bookRepository.addBook(moved);
+		bookRepository.removeBook("456");
+		// then
+		assertEquals(isbns(bookRepository.findBooks(BookQuery.builder().build(), 10)), Arrays.asList("123"));
+		assertTrue(bookRepository.findBooks(BookQuery.builder().toYear(2000).build(), 10).isEmpty());
+		assertTrue(bookRepository.findBooks(BookQuery.builder().author("J. K. Rowling").build(), 10).isEmpty());
+		assertEquals(bookRepository.findBooks(BookQuery.builder().author("Robert Galbraith").build(), 10).get(0), moved);
+	}
+
+	@Test
+	void searchBooks_should_follow_add_and_remove() {
+		// given
+		bookRepository.addBook(Book.builder()
+			.isbn("789")
+			.title("Harry Potter and the Chamber of Secrets")
+			.author("J. K. Rowling")
+			.publicationYear(1998)
+			.availableCopies(1)
+			.build());
+		// when
+		List<Book> before = bookRepository.searchBooks("harry pot", 10);
+		bookRepository.removeBook("123");
+		List<Book> after = bookRepository.searchBooks("harry pot", 10);
+		// then
+		assertEquals(before.size(), 2);
+		assertEquals(isbns(after), Arrays.asList("789"));
+		assertTrue(bookRepository.searchBooks("tolkien", 10).get(0).getTitle().contains("Ring"));
+	}
+
+	@Test
+	void removeBook_should_remove_book_from_author_index() {
+		// given
+		String isbn = "123";
+		// when
+		bookRepository.removeBook(isbn);
+		// then
+		assertEquals(bookRepository.findBooksByAuthor("J. K. Rowling").size(), 0);
+		assertNull(((InMemoryBookRepository) bookRepository).authors.find("J. K. Rowling"));
+		assertEquals(((InMemoryBookRepository) bookRepository).booksByAuthorCache.size(), 1);
+	}
+
+	@Test
+	void findBooksByAuthor_should_find_every_spelling_of_the_name() {
+		// given
+		Book book = Book.builder()
+				.isbn("789")
+				.title("Harry Potter and the Chamber of Secrets")
+				.author("J.K. Rowling")
+				.publicationYear(1998)
+				.availableCopies(1)
+				.build();
+		bookRepository.addBook(book);
+		// when
+		List<Book> actual = bookRepository.findBooksByAuthor("j. k.  ROWLING");
+		List<Book> page = bookRepository.findBooksByAuthor("J K Rowling", "123", 10);
+		List<Book> query = bookRepository.findBooks(BookQuery.builder().author("j.k. rowling").build(), 10);
+		// then
+		assertEquals(isbns(actual), Arrays.asList("123", "789"));
+		assertEquals(isbns(page), Arrays.asList("789"));
+		assertEquals(isbns(query), Arrays.asList("123", "789"));
+		assertEquals(actual.get(1).getAuthor(), "J.K. Rowling");
+		assertEquals(bookRepository.countAuthors(), 2);
+	}
+
+	@Test
+	void addBook_should_store_one_instance_of_every_spelling() {
+		// given
+		Book book = Book.builder()
+				.isbn("789")
+				.title("Harry Potter and the Chamber of Secrets")
+				.author(new String("J. K. Rowling"))
+				.publicationYear(1998)
+				.availableCopies(1)
+				.build();
+		// when
+		bookRepository.addBook(book);
+		bookRepository.updateBookAvailabilityCopies(bookRepository.findBookByISBN("123").get(), 3);
+		// then
+		assertSame(bookRepository.findBookByISBN("789").get().getAuthor(), bookRepository.findBookByISBN("123").get().getAuthor());
+	}
+
+	@Test
+	void addBook_should_move_replaced_book_to_new_author() {
+		// given
+		Book book1 = Book.builder()
+				.isbn("123")
+				.title("Harry Potter")
+				.author("Robert Galbraith")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build();
+		// when
+		bookRepository.addBook(book1);
+		// then
+		assertEquals(bookRepository.findBooksByAuthor("J. K. Rowling").size(), 0);
+		assertEquals(bookRepository.findBooksByAuthor("Robert Galbraith").size(), 1);
+	}
+
+	@Test
+	void author_index_should_stay_consistent_under_concurrent_add_and_remove() throws Exception {
+		// given
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		int booksPerThread = 2000;
+		// when
+		runConcurrently(threads, () -> {
+			String prefix = Thread.currentThread().getName() + "-";
+			for (int i = 0; i < booksPerThread; i++) {
+				bookRepository.addBook(Book.builder()
+						.isbn(prefix + i)
+						.title("Anthology " + i)
+						.author("Prolific")
+						.publicationYear(2000)
+						.availableCopies(1)
+						.build());
+				if (i % 2 == 0) {
+					bookRepository.removeBook(prefix + i);
+				}
+			}
+		});
+		// then
+		List<Book> actuals = bookRepository.findBooksByAuthor("Prolific");
+		assertEquals(actuals.size(), threads * booksPerThread / 2);
+	}
+
 	@Test
 	void updateBookAvailabilityCopies_should_update_book_count() {
 		// given
@@ -133,4 +361,149 @@ public class InMemoryBookRepositoryTest  {
 		assertNotNull(actual);
 		assertEquals(actual.getAvailableCopies(), 5);
 	}
+
+	@Test
+	void updateBookAvailabilityCopies_should_not_change_shared_book() {
+		// given
+		Book shared = bookRepository.findBookByISBN("123").get();
+		// when
+		bookRepository.updateBookAvailabilityCopies(shared, 5);
+		bookRepository.decrementAvailableCopies("123");
+		// then
+		assertEquals(shared.getAvailableCopies(), 1);
+		assertEquals(bookRepository.findBookByISBN("123").get().getAvailableCopies(), 4);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_reduce_book_count() {
+		// given
+		String isbn = "123";
+		// when
+		Book actual = bookRepository.decrementAvailableCopies(isbn).getBook();
+		// then
+		assertEquals(actual.getAvailableCopies(), 0);
+		assertEquals(bookRepository.findBookByISBN(isbn).get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_return_unavailable() {
+		// given
+		String isbn = "123";
+		bookRepository.decrementAvailableCopies(isbn);
+		// when
+		BookResult actual = bookRepository.decrementAvailableCopies(isbn);
+		// then
+		assertEquals(actual.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(bookRepository.findBookByISBN(isbn).get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_not_return_book() {
+		// given
+		String isbn = "789";
+		// when
+		BookResult actual = bookRepository.decrementAvailableCopies(isbn);
+		// then
+		assertEquals(actual.getStatus(), BookResult.Status.NOT_FOUND);
+	}
+
+	@Test
+	void incrementAvailableCopies_should_increase_book_count() {
+		// given
+		String isbn = "456";
+		// when
+		Book actual = bookRepository.incrementAvailableCopies(isbn).get();
+		// then
+		assertEquals(actual.getAvailableCopies(), 2);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_not_oversell_under_contention() throws Exception {
+		// given
+		int copies = 1000;
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		int attemptsPerThread = 1000;
+		bookRepository.addBook(Book.builder()
+				.isbn("999")
+				.title("Popular")
+				.author("Author")
+				.publicationYear(2020)
+				.availableCopies(copies)
+				.build());
+		AtomicInteger borrowed = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		// when
+		runConcurrently(threads, () -> {
+			for (int i = 0; i < attemptsPerThread; i++) {
+				if (bookRepository.decrementAvailableCopies("999").isOk()) {
+					borrowed.incrementAndGet();
+				} else {
+					rejected.incrementAndGet();
+				}
+			}
+		});
+		// then
+		assertEquals(borrowed.get(), copies);
+		assertEquals(rejected.get(), threads * attemptsPerThread - copies);
+		assertEquals(bookRepository.findBookByISBN("999").get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void borrow_and_return_should_not_lose_updates_under_contention() throws Exception {
+		// given
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		int roundsPerThread = 10000;
+		bookRepository.addBook(Book.builder()
+				.isbn("998")
+				.title("Popular")
+				.author("Author")
+				.publicationYear(2020)
+				.availableCopies(threads)
+				.build());
+		AtomicInteger borrowed = new AtomicInteger();
+		// when
+		runConcurrently(threads, () -> {
+			for (int i = 0; i < roundsPerThread; i++) {
+				if (bookRepository.decrementAvailableCopies("998").isOk()) {
+					borrowed.incrementAndGet();
+				}
+				bookRepository.incrementAvailableCopies("998");
+			}
+		});
+		// then
+		assertEquals(borrowed.get(), threads * roundsPerThread);
+		assertEquals(bookRepository.findBookByISBN("998").get().getAvailableCopies(), threads);
+	}
+
+	private static List<String> isbns(List<Book> books) {
+		List<String> isbns = new ArrayList<>();
+		for (Book book : books) {
+			isbns.add(book.getIsbn());
+		}
+		return isbns;
+	}
+
+	/**
+	 * Starts the given task on the given number of threads at the same time and waits for all of them to finish.
+	 */
+	private static void runConcurrently(int threads, Runnable task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					task.run();
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,382 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookEntryInvalidException;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedBookRepositoryTest {
+
+	private BookRepository bookRepository = new MappedBookRepository(1000, "");
+
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	public void init() {
+		bookRepository.addBook(book("123", "Harry Potter", "J. K. Rowling", 1));
+		bookRepository.addBook(book("456", "The Lord of The Ring", "J. R. R. Tolkien", 1));
+	}
+
+	@Test
+	void findBookByISBN_should_return_book() {
+		// when
+		Book actual = bookRepository.findBookByISBN("123").get();
+		// then
+		assertEquals(actual.getTitle(), "Harry Potter");
+		assertEquals(actual.getAuthor(), "J. K. Rowling");
+		assertEquals(actual.getPublicationYear(), 1997);
+		assertEquals(actual.getAvailableCopies(), 1);
+	}
+
+	@Test
+	void findBookByISBN_should_not_return_book() {
+		assertFalse(bookRepository.findBookByISBN("789").isPresent());
+	}
+
+	@Test
+	void addBook_should_replace_book_with_same_isbn() {
+		// when
+		bookRepository.addBook(book("123", "Harry Potter", "Robert Galbraith", 3));
+		// then
+		assertEquals(bookRepository.findBookByISBN("123").get().getAvailableCopies(), 3);
+		assertEquals(bookRepository.findBooksByAuthor("J. K. Rowling").size(), 0);
+		assertEquals(bookRepository.findBooksByAuthor("Robert Galbraith").size(), 1);
+	}
+
+	@Test
+	void findBooksByAuthor_should_find_every_spelling_of_the_name() {
+		// given
+		bookRepository.addBook(book("789", "Harry Potter and the Chamber of Secrets", "J.K. Rowling", 1));
+		// when
+		List<Book> actual = bookRepository.findBooksByAuthor("j. k.  ROWLING");
+		List<Book> query = bookRepository.findBooks(BookQuery.builder().author("j.k. rowling").build(), 10);
+		bookRepository.removeBook("123");
+		List<Book> afterRemove = bookRepository.findBooksByAuthor("J. K. Rowling");
+		// then
+		assertEquals(new TreeSet<>(isbns(actual)), new TreeSet<>(Arrays.asList("123", "789")));
+		assertEquals(isbns(query), Arrays.asList("123", "789"));
+		assertEquals(isbns(afterRemove), Arrays.asList("789"));
+		assertEquals(bookRepository.countAuthors(), 2);
+	}
+
+	@Test
+	void addBook_should_throw_bookEntryInvalidException_when_title_is_too_long() {
+		// given
+		char[] title = new char[MappedBookRepository.MAX_TITLE_BYTES + 1];
+		Arrays.fill(title, 'a');
+		// when
+		assertThrows(BookEntryInvalidException.class, () -> {
+			bookRepository.addBook(book("789", new String(title), "J. K. Rowling", 1));
+		});
+		// then
+		assertFalse(bookRepository.findBookByISBN("789").isPresent());
+	}
+
+	@Test
+	void addBooks_should_add_new_books_and_return_existing_ones() {
+		// when
+		List<Book> existing = bookRepository.addBooks(Arrays.asList(
+			book("1234", "Harry Potter 2", "J. K. Rowling", 1),
+			book("123", "Duplicate", "J. K. Rowling", 1)));
+		// then
+		assertEquals(existing.size(), 1);
+		assertEquals(existing.get(0).getTitle(), "Duplicate");
+		assertEquals(bookRepository.findBooksByAuthor("J. K. Rowling").size(), 2);
+	}
+
+	@Test
+	void removeBook_should_remove_book_and_keep_author_books() {
+		// given
+		bookRepository.addBook(book("1", "First", "Author", 1));
+		bookRepository.addBook(book("2", "Second", "Author", 1));
+		bookRepository.addBook(book("3", "Third", "Author", 1));
+		// when
+		Book actual = bookRepository.removeBook("2").get();
+		// then
+		assertEquals(actual.getTitle(), "Second");
+		assertFalse(bookRepository.findBookByISBN("2").isPresent());
+		Set<String> titles = new HashSet<>();
+		for (Book book : bookRepository.findBooksByAuthor("Author")) {
+			titles.add(book.getTitle());
+		}
+		assertEquals(titles, new HashSet<>(Arrays.asList("First", "Third")));
+		assertFalse(bookRepository.removeBook("2").isPresent());
+	}
+
+
+	@Test
+	void findBooksByAuthor_should_return_pages_in_isbn_order() {
+		// given
+		for (String isbn : Arrays.asList("5", "3", "9", "1", "7")) {
+			bookRepository.addBook(Book.builder()
+				.isbn(isbn)
+				.title("Anthology " + isbn)
+				.author("Anthology Publisher")
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		// when
+		List<Book> first = bookRepository.findBooksByAuthor("Anthology Publisher", null, 2);
+		bookRepository.removeBook("5");
+		List<Book> second = bookRepository.findBooksByAuthor("Anthology Publisher", "3", 2);
+		List<Book> last = bookRepository.findBooksByAuthor("Anthology Publisher", "9", 2);
+		// then
+		assertEquals(isbns(first), Arrays.asList("1", "3"));
+		assertEquals(isbns(second), Arrays.asList("7", "9"));
+		assertEquals(last.size(), 0);
+	}
+
+	@Test
+	void findBooks_should_return_pages_of_the_years_in_year_order() {
+		// given
+		int[] years = {2005, 1990, 2000, 1995, 2000, 2010};
+		for (int i = 0; i < years.length; i++) {
+			bookRepository.addBook(Book.builder()
+				.isbn(String.valueOf(900 - i))
+				.title("Title " + i)
+				.author(i % 2 == 0 ? "Anthology Publisher" : "Robert Galbraith")
+				.publicationYear(years[i])
+				.availableCopies(i == 4 ? 0 : 1)
+				.build());
+		}
+		BookQuery query = BookQuery.builder().fromYear(1990).toYear(2005).build();
+		// when
+		List<Book> first = bookRepository.findBooks(query, 3);
+		bookRepository.removeBook("898");
+		List<Book> second = bookRepository.findBooks(query.after(first.get(2)), 3);
+		List<Book> anthology = bookRepository.findBooks(BookQuery.builder().author("Anthology Publisher").fromYear(1998).build(), 10);
+		List<Book> available = bookRepository.findBooks(BookQuery.builder().fromYear(2000).toYear(2000).availableOnly(true).build(), 10);
+		// then
+		assertEquals(isbns(first), Arrays.asList("899", "897", "123"));
+		assertEquals(isbns(second), Arrays.asList("456", "896", "900"));
+		assertEquals(isbns(anthology), Arrays.asList("896", "900"));
+		assertTrue(available.isEmpty());
+	}
+
+	@Test
+	void findBooks_should_return_pages_of_an_author_in_year_order() {
+		// given
+		int[] years = {2005, 1990, 2000, 1995, 2000};
+		for (int i = 0; i < years.length; i++) {
+			bookRepository.addBook(Book.builder()
+				.isbn(String.valueOf(900 - i))
+				.title("Title " + i)
+				.author("Anthology Publisher")
+				.publicationYear(years[i])
+				.availableCopies(i == 1 ? 0 : 1)
+				.build());
+		}
+		BookQuery query = BookQuery.builder().author("anthology publisher").availableOnly(true).build();
+		// when
+		List<Book> first = bookRepository.findBooks(query, 2);
+		List<Book> second = bookRepository.findBooks(query.after(first.get(1)), 2);
+		List<Book> last = bookRepository.findBooks(query.after(second.get(1)), 2);
+		// then
+		assertEquals(isbns(first), Arrays.asList("897", "896"));
+		assertEquals(isbns(second), Arrays.asList("898", "900"));
+		assertTrue(last.isEmpty());
+	}
+
+	@Test
+	void searchBooks_should_follow_add_and_remove() {
+		// given
+		bookRepository.addBook(Book.builder()
+			.isbn("789")
+			.title("Harry Potter and the Chamber of Secrets")
+			.author("J. K. Rowling")
+			.publicationYear(1998)
+			.availableCopies(1)
+			.build());
+		// when
+		List<Book> before = bookRepository.searchBooks("harry pot", 10);
+		bookRepository.removeBook("123");
+		List<Book> after = bookRepository.searchBooks("harry pot", 10);
+		// then
+		assertEquals(before.size(), 2);
+		assertEquals(isbns(after), Arrays.asList("789"));
+		assertTrue(bookRepository.searchBooks("tolkien", 10).get(0).getTitle().contains("Ring"));
+	}
+
+	@Test
+	void removed_slots_should_be_reused() {
+		// when
+		for (int i = 0; i < 10000; i++) {
+			bookRepository.addBook(book("tmp" + i, "Temporary", "Author", 1));
+			bookRepository.removeBook("tmp" + i);
+		}
+		// then
+		assertEquals(bookRepository.findBooksByAuthor("Author").size(), 0);
+		assertEquals(bookRepository.findBookByISBN("123").get().getTitle(), "Harry Potter");
+	}
+
+	@Test
+	void addBook_should_throw_when_store_is_full() {
+		// given
+		BookRepository small = new MappedBookRepository(10, "");
+		// when
+		assertThrows(IllegalStateException.class, () -> {
+			for (int i = 0; i < 100; i++) {
+				small.addBook(book(String.valueOf(i), "Title", "Author", 1));
+			}
+		});
+	}
+
+	@Test
+	void addBook_should_grow_the_direct_buffers_up_to_max_books() {
+		// given
+		BookRepository growing = new MappedBookRepository(5000, "");
+		// when
+		for (int i = 0; i < 5000; i++) {
+			growing.addBook(book(String.valueOf(i), "Title " + i, "Author " + i % 10, i % 3));
+		}
+		growing.removeBook("42");
+		// then
+		assertEquals(growing.countBooks(), 4999L);
+		assertEquals(growing.findBookByISBN("4999").get().getTitle(), "Title 4999");
+		assertEquals(growing.findBookByISBN("4997").get().getAvailableCopies(), 2);
+		assertFalse(growing.findBookByISBN("42").isPresent());
+		assertEquals(growing.findBooksByAuthor("Author 2").size(), 499);
+		assertEquals(growing.searchBooks("title 4321", 10).size(), 1);
+	}
+
+	@Test
+	void decrementAvailableCopies_should_return_unavailable() {
+		// given
+		bookRepository.decrementAvailableCopies("123");
+		// when
+		BookResult actual = bookRepository.decrementAvailableCopies("123");
+		// then
+		assertEquals(actual.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(bookRepository.decrementAvailableCopies("789").getStatus(), BookResult.Status.NOT_FOUND);
+		assertEquals(bookRepository.findBookByISBN("123").get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void updateBookAvailabilityCopies_should_update_book_count() {
+		// when
+		Book actual = bookRepository.updateBookAvailabilityCopies(bookRepository.findBookByISBN("456").get(), 5);
+		// then
+		assertEquals(actual.getAvailableCopies(), 5);
+		assertEquals(bookRepository.incrementAvailableCopies("456").get().getAvailableCopies(), 6);
+	}
+
+	@Test
+	void memory_mapped_store_should_behave_like_direct_buffers() {
+		// given
+		BookRepository mapped = new MappedBookRepository(1000, directory.resolve("books.bin").toString());
+		// when
+		mapped.addBook(book("123", "Harry Potter", "J. K. Rowling", 2));
+		mapped.decrementAvailableCopies("123");
+		// then
+		assertEquals(mapped.findBookByISBN("123").get().getAvailableCopies(), 1);
+		assertEquals(mapped.findBooksByAuthor("J. K. Rowling").size(), 1);
+	}
+
+	@Test
+	void memory_mapped_store_should_replace_only_empty_files_and_its_own() throws IOException {
+		// given
+		Path store = directory.resolve("books.bin");
+		new MappedBookRepository(1000, store.toString()).addBook(book("123", "Harry Potter", "J. K. Rowling", 2));
+		Path empty = Files.createFile(directory.resolve("empty.bin"));
+		Path other = Files.write(directory.resolve("catalogue.csv"), "isbn,title\n".getBytes(StandardCharsets.UTF_8));
+		// when
+		BookRepository restarted = new MappedBookRepository(1000, store.toString());
+		// then
+		assertFalse(restarted.findBookByISBN("123").isPresent());
+		BookRepository fromEmptyFile = new MappedBookRepository(1000, empty.toString());
+		fromEmptyFile.addBook(book("123", "Harry Potter", "J. K. Rowling", 2));
+		assertTrue(fromEmptyFile.findBookByISBN("123").isPresent());
+		assertThrows(IllegalArgumentException.class, () -> new MappedBookRepository(1000, other.toString()));
+		assertEquals(new String(Files.readAllBytes(other), StandardCharsets.UTF_8), "isbn,title\n");
+	}
+
+	@Test
+	void borrow_and_return_should_not_lose_updates_under_contention() throws Exception {
+		// given
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		int copies = 500;
+		bookRepository.addBook(book("999", "Popular", "Author", copies));
+		AtomicInteger borrowed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		// when
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int j = 0; j < 1000; j++) {
+						if (bookRepository.decrementAvailableCopies("999").isOk()) {
+							borrowed.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// then
+		assertEquals(borrowed.get(), copies);
+		assertEquals(bookRepository.findBookByISBN("999").get().getAvailableCopies(), 0);
+	}
+
+	@Test
+	void forEachBook_should_visit_every_book_once() {
+		// given
+		BookRepository large = new MappedBookRepository(5000, "");
+		for (int i = 0; i < 5000; i++) {
+			large.addBook(book(String.valueOf(i), "Title " + i, "Author " + i % 7, i % 3));
+		}
+		large.removeBook("42");
+		Set<String> visited = new HashSet<>();
+		AtomicInteger count = new AtomicInteger();
+		// when
+		large.forEachBook(book -> {
+			visited.add(book.getIsbn());
+			count.incrementAndGet();
+		});
+		// then
+		assertEquals(count.get(), 4999);
+		assertEquals(visited.size(), 4999);
+		assertFalse(visited.contains("42"));
+	}
+
+	private static List<String> isbns(List<Book> books) {
+		List<String> isbns = new ArrayList<>();
+		for (Book book : books) {
+			isbns.add(book.getIsbn());
+		}
+		return isbns;
+	}
+
+	private static Book book(String isbn, String title, String author, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title(title)
+			.author(author)
+			.publicationYear(1997)
+			.availableCopies(copies)
+			.build();
+	}
+}
@@ -0,0 +1,161 @@
+package com.identitye2e.lms.infrastructure;
+
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedBookRepositoryTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final List<InMemoryBookRepository> shards = new ArrayList<>();
+	private ShardedBookRepository bookRepository;
+
+	@BeforeEach
+	public void init() {
+		for (int i = 0; i < 4; i++) {
+			shards.add(new InMemoryBookRepository());
+		}
+		bookRepository = new ShardedBookRepository(shards, executor);
+		for (int i = 0; i < 100; i++) {
+			bookRepository.addBook(book(String.valueOf(1000 + i), i % 2 == 0 ? "J. K. Rowling" : "J. R. R. Tolkien", 1));
+		}
+	}
+
+	@AfterEach
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void addBook_should_store_book_on_its_shard_only() {
+		// when
+		bookRepository.addBook(book("123", "George Orwell", 1));
+		// then
+		int owner = bookRepository.shardOf("123");
+		for (int i = 0; i < shards.size(); i++) {
+			assertEquals(shards.get(i).findBookByISBN("123").isPresent(), i == owner);
+		}
+		assertEquals(bookRepository.countBooks(), 101);
+	}
+
+	@Test
+	void books_should_be_spread_over_every_shard() {
+		// then
+		for (InMemoryBookRepository shard : shards) {
+			assertTrue(shard.countBooks() > 10);
+		}
+	}
+
+	@Test
+	void decrementAvailableCopies_should_borrow_from_the_owning_shard() {
+		// when
+		BookResult borrowed = bookRepository.decrementAvailableCopies("1001");
+		BookResult unavailable = bookRepository.decrementAvailableCopies("1001");
+		bookRepository.incrementAvailableCopies("1001");
+		// then
+		assertTrue(borrowed.isOk());
+		assertEquals(unavailable.getStatus(), BookResult.Status.UNAVAILABLE);
+		assertEquals(shards.get(bookRepository.shardOf("1001")).findBookByISBN("1001").get().getAvailableCopies(), 1);
+	}
+
+	@Test
+	void findBooksByAuthor_should_merge_pages_of_every_shard_in_isbn_order() {
+		// when
+		List<Book> all = bookRepository.findBooksByAuthor("J. K. Rowling");
+		List<Book> firstPage = bookRepository.findBooksByAuthor("J. K. Rowling", null, 3);
+		List<Book> secondPage = bookRepository.findBooksByAuthor("J. K. Rowling", "1004", 3);
+		// then
+		assertEquals(all.size(), 50);
+		assertEquals(isbns(firstPage), Arrays.asList("1000", "1002", "1004"));
+		assertEquals(isbns(secondPage), Arrays.asList("1006", "1008", "1010"));
+	}
+
+	@Test
+	void findBooks_should_merge_pages_of_every_shard_in_year_order() {
+		// given
+		for (int i = 0; i < 10; i++) {
+			bookRepository.addBook(book(String.valueOf(2000 + i), "J. K. Rowling", 1).withPublicationYear(1990 + i % 5));
+		}
+		BookQuery query = BookQuery.builder().author("J. K. Rowling").toYear(1999).build();
+		// when
+		List<Book> firstPage = bookRepository.findBooks(query, 3);
+		List<Book> secondPage = bookRepository.findBooks(query.after(firstPage.get(2)), 3);
+		// then
+		assertEquals(isbns(firstPage), Arrays.asList("2000", "2005", "2001"));
+		assertEquals(isbns(secondPage), Arrays.asList("2006", "2002", "2007"));
+		assertEquals(bookRepository.findBooks(query, 100).size(), 10);
+	}
+
+	@Test
+	void addBooks_should_report_existing_books_of_every_shard() {
+		// when
+		List<Book> existing = bookRepository.addBooks(Arrays.asList(book("1001", "George Orwell", 1),
+			book("1050", "George Orwell", 1), book("2000", "George Orwell", 1)));
+		// then
+		assertEquals(isbns(existing).stream().sorted().collect(Collectors.toList()), Arrays.asList("1001", "1050"));
+		assertEquals(bookRepository.countBooks(), 101);
+	}
+
+	@Test
+	void shardOf_should_move_few_isbns_when_a_shard_is_added() {
+		// given
+		ShardedBookRepository grown = new ShardedBookRepository(Arrays.asList(new InMemoryBookRepository(),
+			new InMemoryBookRepository(), new InMemoryBookRepository(), new InMemoryBookRepository(),
+			new InMemoryBookRepository()), executor);
+		// when
+		int moved = 0;
+		for (int i = 0; i < 10000; i++) {
+			String isbn = String.valueOf(978000000 + i);
+			if (grown.shardOf(isbn) != bookRepository.shardOf(isbn)) {
+				assertEquals(grown.shardOf(isbn), 4);
+				moved++;
+			}
+		}
+		// then
+		assertTrue(moved > 1000 && moved < 3000, "moved " + moved);
+	}
+
+	@Test
+	void loopback_should_not_share_books_with_the_node() {
+		// given
+		InMemoryBookRepository node = new InMemoryBookRepository();
+		try (LoopbackBookRepository loopback = new LoopbackBookRepository("node", node, 1, 0)) {
+			Book sent = book("123", "George Orwell", 1);
+			// when
+			loopback.addBook(sent);
+			Book received = loopback.findBookByISBN("123").get();
+			// then
+			assertEquals(received, sent);
+			assertNotSame(node.findBookByISBN("123").get(), sent);
+			assertNotSame(received, node.findBookByISBN("123").get());
+			assertTrue(loopback.decrementAvailableCopies("123").isOk());
+			assertEquals(loopback.decrementAvailableCopies("123").getStatus(), BookResult.Status.UNAVAILABLE);
+		}
+	}
+
+	private static List<String> isbns(List<Book> books) {
+		return books.stream().map(Book::getIsbn).collect(Collectors.toList());
+	}
+
+	private static Book book(String isbn, String author, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title("Title " + isbn)
+			.author(author)
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
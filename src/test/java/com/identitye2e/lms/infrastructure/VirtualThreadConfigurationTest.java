@@ -0,0 +1,40 @@
+package com.identitye2e.lms.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadConfigurationTest {
+
+	@Test
+	void newVirtualThreadPerTaskExecutor_should_run_tasks_on_virtual_threads() throws Exception {
+		// given
+		boolean virtualThreads = hasVirtualThreads();
+		// when
+		if (!virtualThreads) {
+			IllegalStateException exception = assertThrows(IllegalStateException.class,
+				VirtualThreadConfiguration::newVirtualThreadPerTaskExecutor);
+			// then
+			assertTrue(exception.getMessage().startsWith("lms.threads.virtual needs Java 21 or later"));
+			return;
+		}
+		ExecutorService executor = VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+		Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+			.get(10, TimeUnit.SECONDS);
+		executor.shutdown();
+		// then
+		assertEquals(virtual, Boolean.TRUE);
+	}
+
+	private static boolean hasVirtualThreads() {
+		try {
+			Thread.class.getMethod("isVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
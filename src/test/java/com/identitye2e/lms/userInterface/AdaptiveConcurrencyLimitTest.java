@@ -0,0 +1,92 @@
+package com.identitye2e.lms.userInterface;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTest {
+
+	private static final long TARGET = 100_000_000L;
+
+	@Test
+	void tryAcquire_should_refuse_above_the_limit() {
+		// given
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(2, 1, 10, TARGET, 0.5);
+		// when
+		boolean first = concurrencyLimit.tryAcquire();
+		boolean second = concurrencyLimit.tryAcquire();
+		boolean third = concurrencyLimit.tryAcquire();
+		// then
+		assertTrue(first);
+		assertTrue(second);
+		assertFalse(third);
+		assertEquals(concurrencyLimit.getInFlight(), 2);
+	}
+
+	@Test
+	void release_should_raise_a_used_limit_when_requests_are_fast() {
+		// given
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(4, 1, 10, TARGET, 0.5);
+		long now = System.nanoTime();
+		// when
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				concurrencyLimit.tryAcquire();
+			}
+			for (int j = 0; j < 4; j++) {
+				concurrencyLimit.release(now, now + 1, false);
+			}
+		}
+		// then
+		assertEquals(concurrencyLimit.getLimit(), 5);
+		assertEquals(concurrencyLimit.getInFlight(), 0);
+	}
+
+	@Test
+	void release_should_not_raise_an_unused_limit() {
+		// given
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(4, 1, 10, TARGET, 0.5);
+		long now = System.nanoTime();
+		// when
+		for (int i = 0; i < 100; i++) {
+			concurrencyLimit.tryAcquire();
+			concurrencyLimit.release(now, now + 1, false);
+		}
+		// then
+		assertEquals(concurrencyLimit.getLimit(), 4);
+	}
+
+	@Test
+	void release_should_cut_the_limit_once_per_round_of_slow_requests() {
+		// given
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(8, 1, 10, TARGET, 0.5);
+		long started = System.nanoTime() + 1;
+		for (int i = 0; i < 3; i++) {
+			concurrencyLimit.tryAcquire();
+		}
+		// when
+		concurrencyLimit.release(started, started + 2 * TARGET, false);
+		concurrencyLimit.release(started, started + 2 * TARGET, false);
+		concurrencyLimit.release(started + 3 * TARGET, started + 3 * TARGET, true);
+		// then
+		assertEquals(concurrencyLimit.getLimit(), 2);
+	}
+
+	@Test
+	void release_should_not_cut_the_limit_below_min() {
+		// given
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(4, 3, 10, TARGET, 0.5);
+		long started = System.nanoTime() + 1;
+		concurrencyLimit.tryAcquire();
+		// when
+		concurrencyLimit.release(started, started, true);
+		// then
+		assertEquals(concurrencyLimit.getLimit(), 3);
+	}
+
+	@Test
+	void constructor_should_refuse_unordered_limits() {
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 2, 10, TARGET, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(4, 1, 10, TARGET, 1));
+	}
+}
@@ -0,0 +1,116 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.LibraryMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionFilterTest {
+
+	private final ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 1, 100);
+	private final AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(1, 1, 10,
+		TimeUnit.SECONDS.toNanos(1), 0.5);
+	private final AdmissionFilter filter = new AdmissionFilter(Arrays.asList("/book/borrow", "/book/find"), "X-Client",
+		rateLimiter, concurrencyLimit, new LibraryMetrics(true));
+	private final AtomicInteger served = new AtomicInteger();
+	private final FilterChain chain = (request, response) -> served.incrementAndGet();
+
+	@Test
+	void doFilter_should_admit_a_listed_path_and_the_paths_below_it() throws ServletException, IOException {
+		// given
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/book/borrow");
+		MockHttpServletRequest below = new MockHttpServletRequest("PUT", "/book/borrow/batch");
+		below.addHeader("X-Client", "other");
+		// when
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+		filter.doFilter(below, new MockHttpServletResponse(), chain);
+		// then
+		assertEquals(served.get(), 2);
+		assertEquals(rateLimiter.size(), 2);
+		assertEquals(concurrencyLimit.getInFlight(), 0);
+	}
+
+	@Test
+	void doFilter_should_let_through_the_paths_that_are_not_listed() throws ServletException, IOException {
+		// given
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/book/borrowed");
+		// when
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+		// then
+		assertEquals(served.get(), 1);
+		assertEquals(rateLimiter.size(), 0);
+	}
+
+	@Test
+	void doFilter_should_let_through_the_finds_that_stream_every_book_of_an_author() throws ServletException, IOException {
+		// given
+		MockHttpServletRequest unlimited = new MockHttpServletRequest("GET", "/book/find");
+		unlimited.setParameter("author", "Jane Austen");
+		MockHttpServletRequest ndjson = new MockHttpServletRequest("GET", "/book/find");
+		ndjson.setParameter("author", "Jane Austen");
+		ndjson.setParameter("limit", "10");
+		ndjson.addHeader("Accept", BookController.NDJSON_VALUE);
+		MockHttpServletRequest page = new MockHttpServletRequest("GET", "/book/find");
+		page.setParameter("author", "Jane Austen");
+		page.setParameter("limit", "10");
+		// when
+		filter.doFilter(unlimited, new MockHttpServletResponse(), chain);
+		filter.doFilter(ndjson, new MockHttpServletResponse(), chain);
+		filter.doFilter(page, new MockHttpServletResponse(), chain);
+		// then
+		assertEquals(served.get(), 3);
+		assertEquals(rateLimiter.size(), 1);
+	}
+
+	@Test
+	void doFilter_should_answer_429_with_retry_after_above_the_rate() throws ServletException, IOException {
+		// given
+		filter.doFilter(new MockHttpServletRequest("PUT", "/book/borrow"), new MockHttpServletResponse(), chain);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		// when
+		filter.doFilter(new MockHttpServletRequest("PUT", "/book/borrow"), response, chain);
+		// then
+		assertEquals(served.get(), 1);
+		assertEquals(response.getStatus(), 429);
+		assertEquals(response.getHeader("Retry-After"), "1");
+		assertEquals(response.getContentAsString(), "Too many requests, slow down");
+	}
+
+	@Test
+	void doFilter_should_answer_429_above_the_concurrency_limit() throws ServletException, IOException {
+		// given
+		concurrencyLimit.tryAcquire();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		// when
+		filter.doFilter(new MockHttpServletRequest("PUT", "/book/borrow"), response, chain);
+		// then
+		assertEquals(served.get(), 0);
+		assertEquals(response.getStatus(), 429);
+		assertEquals(response.getHeader("Retry-After"), "1");
+		assertEquals(response.getContentAsString(), "Too many requests are being served, retry later");
+	}
+
+	@Test
+	void doFilter_should_release_an_async_request_once_it_completes() throws ServletException, IOException {
+		// given
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/book/borrow");
+		request.setAsyncSupported(true);
+		// when
+		filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+		int inFlight = concurrencyLimit.getInFlight();
+		((MockAsyncContext) request.getAsyncContext()).complete();
+		// then
+		assertEquals(inFlight, 1);
+		assertEquals(concurrencyLimit.getInFlight(), 0);
+	}
+}
@@ -0,0 +1,106 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookAlreadyExistException;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureJsonTesters
+@WebMvcTest(AsyncBookController.class)
+public class AsyncBookControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Library library;
+
+    @Test
+    public void borrowBook_return_book_once_durable() throws Exception {
+		CompletableFuture<BookResult> durable = new CompletableFuture<>();
+		when(library.borrowBookAsync("123"))
+			.thenReturn(durable);
+
+		MvcResult result = mockMvc.perform(put("/async/book/borrow?isbn=123&fields=isbn,availableCopies"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		durable.complete(BookResult.ok(book(0)));
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().string("{\"isbn\":\"123\",\"availableCopies\":0}"));
+    }
+
+    @Test
+    public void borrowBook_return_422_when_book_is_unavailable() throws Exception {
+		when(library.borrowBookAsync("123"))
+			.thenReturn(CompletableFuture.completedFuture(BookResult.unavailable()));
+
+		MvcResult result = mockMvc.perform(put("/async/book/borrow?isbn=123"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(content().string("Book isn't available"));
+    }
+
+    @Test
+    public void addBook_return_400_when_book_exists() throws Exception {
+		CompletableFuture<Book> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new BookAlreadyExistException("Book already exists"));
+		when(library.addBookAsync(any()))
+			.thenReturn(failed);
+
+		MvcResult result = mockMvc.perform(post("/async/book/add")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"isbn\":\"123\",\"title\":\"Harry Potter\",\"author\":\"J. K. Rowling\",\"publicationYear\":1997,\"availableCopies\":1}"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("Book already exists"));
+    }
+
+    @Test
+    public void findBook_return_400_when_isbn_is_invalid() throws Exception {
+		when(library.tryFindBookByISBN("789"))
+			.thenReturn(BookResult.notFound());
+
+		mockMvc.perform(get("/async/book/find?isbn=789"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string(containsString("Book not found")));
+    }
+
+    private static Book book(int copies) {
+		return Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(copies)
+			.build();
+    }
+}
@@ -1,23 +1,36 @@
 package com.identitye2e.lms.userInterface;
 
+import com.identitye2e.lms.application.BulkAddResult;
+import com.identitye2e.lms.application.CheckoutResult;
 import com.identitye2e.lms.application.Library;
 import com.identitye2e.lms.domain.Book;
-import com.identitye2e.lms.domain.BookNotFoundException;
+import com.identitye2e.lms.domain.BookQuery;
+import com.identitye2e.lms.domain.BookResult;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -47,14 +60,14 @@ public class BookControllerTest {
     @Test
     public void findBook_return_200_when_isbn_is_valid() throws Exception {
 
-        when(library.findBookByISBN("123"))
-			.thenReturn(Book.builder()
+        when(library.tryFindBookByISBN("123"))
+			.thenReturn(BookResult.ok(Book.builder()
 				.isbn("123")
 				.title("Harry Potter")
 				.author("J. K. Rowling")
 				.publicationYear(1997)
 				.availableCopies(1)
-				.build());
+				.build()));
 
 		mockMvc.perform(get("/book/find?isbn=123"))
 			.andExpect(status().isOk());
@@ -62,8 +75,8 @@ public class BookControllerTest {
 
     @Test
     public void findBook_return_400_when_isbn_is_invalid() throws Exception {
-		when(library.findBookByISBN("789"))
-			.thenThrow(BookNotFoundException.class);
+		when(library.tryFindBookByISBN("789"))
+			.thenReturn(BookResult.notFound());
 
 		mockMvc.perform(get("/book/find?isbn=789"))
 			.andExpect(status().isBadRequest());
@@ -85,7 +98,170 @@ public class BookControllerTest {
 			.thenReturn(books);
 
 		mockMvc.perform(get("/book/find?author=J. K. Rowling"))
-			.andExpect(status().isOk());
+			.andExpect(status().isOk())
+			.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON_VALUE))
+			.andExpect(content().string("[{\"isbn\":\"123\",\"title\":\"Harry Potter\",\"author\":\"J. K. Rowling\",\"publicationYear\":1997,\"availableCopies\":1}]"));
+    }
+
+    @Test
+    public void findBook_return_page_and_next_cursor_when_limit_is_given() throws Exception {
+		List<Book> books = new ArrayList<>();
+		for (String isbn : new String[] {"1", "2", "3"}) {
+			books.add(Book.builder()
+				.isbn(isbn)
+				.title("Anthology " + isbn)
+				.author("Anthology Publisher")
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		when(library.findBooksByAuthor("Anthology Publisher", null, 3))
+			.thenReturn(books);
+
+		mockMvc.perform(get("/book/find?author=Anthology Publisher&limit=2&fields=isbn"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Next-Cursor", "Mg"))
+			.andExpect(content().string("[{\"isbn\":\"1\"},{\"isbn\":\"2\"}]"));
+    }
+
+    @Test
+    public void findBook_stream_ndjson_from_the_cursor() throws Exception {
+		Book book = Book.builder()
+			.isbn("3")
+			.title("Anthology 3")
+			.author("Anthology Publisher")
+			.publicationYear(2000)
+			.availableCopies(1)
+			.build();
+		List<Book> books = new ArrayList<>();
+		books.add(book);
+		when(library.findBooksByAuthor("Anthology Publisher", "2", BookController.AUTHOR_PAGE_SIZE))
+			.thenReturn(books);
+
+		mockMvc.perform(get("/book/find?author=Anthology Publisher&cursor=Mg&fields=isbn,title")
+				.accept("application/x-ndjson"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("application/x-ndjson"))
+			.andExpect(content().string("{\"isbn\":\"3\",\"title\":\"Anthology 3\"}\n"));
+    }
+
+    @Test
+    public void findBook_return_400_when_limit_is_too_large() throws Exception {
+		mockMvc.perform(get("/book/find?author=Anthology Publisher&limit=100000"))
+			.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchBooks_return_matching_books_as_json() throws Exception {
+		List<Book> books = new ArrayList<>();
+		books.add(Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(1)
+			.build());
+		when(library.searchBooks("harry pot", 5))
+			.thenReturn(books);
+
+		mockMvc.perform(get("/book/search?q=harry pot&limit=5&fields=isbn,title"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("[{\"isbn\":\"123\",\"title\":\"Harry Potter\"}]"));
+    }
+
+    @Test
+    public void findBook_return_only_selected_fields() throws Exception {
+		when(library.tryFindBookByISBN("123"))
+			.thenReturn(BookResult.ok(Book.builder()
+				.isbn("123")
+				.title("Harry Potter")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(1)
+				.build()));
+
+		mockMvc.perform(get("/book/find?isbn=123&fields=isbn,availableCopies"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("{\"isbn\":\"123\",\"availableCopies\":1}"));
+    }
+
+    @Test
+    public void findBook_return_400_when_field_is_unknown() throws Exception {
+		mockMvc.perform(get("/book/find?author=J. K. Rowling&fields=isbn,price"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string(containsString("Unknown field price")));
+    }
+
+    @Test
+    public void borrowBook_return_book_as_json() throws Exception {
+		when(library.tryBorrowBook("123"))
+			.thenReturn(BookResult.ok(Book.builder()
+				.isbn("123")
+				.title("Harry, the Boy Who Lived")
+				.author("J. K. Rowling")
+				.publicationYear(1997)
+				.availableCopies(0)
+				.build()));
+
+		mockMvc.perform(put("/book/borrow?isbn=123"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(containsString("\"title\":\"Harry, the Boy Who Lived\"")))
+			.andExpect(content().string(containsString("\"availableCopies\":0")));
+    }
+
+    @Test
+    public void borrowBook_return_422_when_book_is_unavailable() throws Exception {
+		when(library.tryBorrowBook("123"))
+			.thenReturn(BookResult.unavailable());
+
+		mockMvc.perform(put("/book/borrow?isbn=123"))
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(content().string("Book isn't available"));
+    }
+
+    @Test
+    public void returnBook_return_400_when_borrower_has_no_copy() throws Exception {
+		when(library.tryReturnBook("123", "alice"))
+			.thenReturn(BookResult.notFound());
+
+		mockMvc.perform(put("/book/return?isbn=123&borrower=alice"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("No copy of the book is lent to the borrower"));
+    }
+
+    @Test
+    public void findBooks_return_page_of_years_with_next_cursor() throws Exception {
+		List<Book> books = new ArrayList<>();
+		for (String isbn : Arrays.asList("1", "2", "3")) {
+			books.add(Book.builder()
+				.isbn(isbn)
+				.title("Anthology " + isbn)
+				.author("Anthology Publisher")
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		BookQuery query = BookQuery.builder().fromYear(1990).toYear(2005).availableOnly(true).build();
+		when(library.findBooks(query, 3))
+			.thenReturn(books);
+		when(library.findBooks(query.after(books.get(1)), 3))
+			.thenReturn(books.subList(2, 3));
+
+		mockMvc.perform(get("/book/query?fromYear=1990&toYear=2005&available=true&limit=2&fields=isbn"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Next-Cursor", "MjAwMCwy"))
+			.andExpect(content().string("[{\"isbn\":\"1\"},{\"isbn\":\"2\"}]"));
+		mockMvc.perform(get("/book/query?fromYear=1990&toYear=2005&available=true&limit=2&fields=isbn&cursor=MjAwMCwy"))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist("Next-Cursor"))
+			.andExpect(content().string("[{\"isbn\":\"3\"}]"));
+    }
+
+    @Test
+    public void findBooks_return_400_when_years_are_reversed() throws Exception {
+		mockMvc.perform(get("/book/query?fromYear=2005&toYear=1990"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("fromYear should not be after toYear"));
     }
 
     @Test
@@ -94,4 +270,64 @@ public class BookControllerTest {
 			.andExpect(status().isOk())
 			.andExpect(content().string(containsString("[]")));
     }
+
+    @Test
+    public void addBooks_return_200_with_summary() throws Exception {
+		when(library.addBooks(any(), eq(false)))
+			.thenReturn(new BulkAddResult());
+
+		mockMvc.perform(post("/book/add/bulk")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"isbn\":\"123\",\"title\":\"Harry Potter\",\"author\":\"J. K. Rowling\",\"publicationYear\":1997,\"availableCopies\":1}]"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(containsString("\"added\":0")));
+    }
+
+    @Test
+    public void addBooks_return_400_with_summary_when_payload_breaks_off() throws Exception {
+		List<Book> read = new ArrayList<>();
+		when(library.addBooks(any(), eq(false))).thenAnswer(invocation -> {
+			Iterator<Book> books = invocation.getArgument(0);
+			books.forEachRemaining(read::add);
+			return new BulkAddResult();
+		});
+
+		mockMvc.perform(post("/book/add/bulk")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"isbn\":\"123\",\"title\":\"Harry Potter\",\"author\":\"J. K. Rowling\",\"publicationYear\":1997,\"availableCopies\":1},{\"isbn\":"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().json("{\"added\":0,\"rejected\":[]}"));
+		assertEquals(read.size(), 2);
+		assertEquals(read.get(0).getIsbn(), "123");
+		assertNull(read.get(1));
+    }
+
+    @Test
+    public void addBooks_return_400_when_payload_is_not_an_array() throws Exception {
+		mockMvc.perform(post("/book/add/bulk")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"isbn\":\"123\"}"))
+			.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void borrowBooks_return_200_with_summary() throws Exception {
+		when(library.borrowBooks(Arrays.asList("123", "456"), true))
+			.thenReturn(new CheckoutResult());
+
+		mockMvc.perform(put("/book/borrow/batch?atomic=true")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[\"123\",\"456\"]"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(containsString("\"succeeded\":0")));
+    }
+
+    @Test
+    public void returnBooks_return_400_when_no_isbn_is_given() throws Exception {
+		mockMvc.perform(put("/book/return/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[]"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("Between 1 and 1000 isbns are expected"));
+    }
 }
@@ -0,0 +1,147 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookStreamWriteListenerTest {
+
+	private final ObjectWriter bookWriter = new ObjectMapper().writerFor(BookResponse.class);
+
+	private final AtomicInteger completions = new AtomicInteger();
+
+	@Test
+	void onWritePossible_should_write_json_array_and_complete() throws IOException {
+		// given
+		SlowOutputStream out = new SlowOutputStream(Integer.MAX_VALUE);
+		BookStreamWriteListener listener = listener(out, books(3).iterator(), false);
+		// when
+		listener.onWritePossible();
+		// then
+		assertEquals(out.text(), "[{\"isbn\":\"0\"},{\"isbn\":\"1\"},{\"isbn\":\"2\"}]");
+		assertEquals(completions.get(), 1);
+	}
+
+	@Test
+	void onWritePossible_should_stop_reading_books_while_the_client_is_slow() throws IOException {
+		// given
+		SlowOutputStream out = new SlowOutputStream(2);
+		AtomicInteger read = new AtomicInteger();
+		Iterator<Book> books = books(5).iterator();
+		Iterator<Book> counted = new Iterator<Book>() {
+			@Override
+			public boolean hasNext() {
+				return books.hasNext();
+			}
+
+			@Override
+			public Book next() {
+				read.incrementAndGet();
+				return books.next();
+			}
+		};
+		BookStreamWriteListener listener = listener(out, counted, true);
+		// when
+		listener.onWritePossible();
+		int readWhileBlocked = read.get();
+		out.allow(Integer.MAX_VALUE);
+		listener.onWritePossible();
+		// then
+		assertEquals(readWhileBlocked, 2);
+		assertEquals(out.text(), "{\"isbn\":\"0\"}\n{\"isbn\":\"1\"}\n{\"isbn\":\"2\"}\n{\"isbn\":\"3\"}\n{\"isbn\":\"4\"}\n");
+		assertEquals(completions.get(), 1);
+	}
+
+	@Test
+	void onWritePossible_should_write_empty_array() throws IOException {
+		// given
+		SlowOutputStream out = new SlowOutputStream(Integer.MAX_VALUE);
+		BookStreamWriteListener listener = listener(out, Collections.<Book>emptyIterator(), false);
+		// when
+		listener.onWritePossible();
+		// then
+		assertEquals(out.text(), "[]");
+		assertEquals(completions.get(), 1);
+	}
+
+	@Test
+	void onError_should_complete() {
+		// given
+		BookStreamWriteListener listener = listener(new SlowOutputStream(0), books(1).iterator(), false);
+		// when
+		listener.onError(new IOException("Broken pipe"));
+		// then
+		assertEquals(completions.get(), 1);
+	}
+
+	private BookStreamWriteListener listener(ServletOutputStream out, Iterator<Book> books, boolean ndjson) {
+		return new BookStreamWriteListener(out, books, bookWriter, Collections.singleton("isbn"), ndjson,
+			completions::incrementAndGet);
+	}
+
+	private static List<Book> books(int count) {
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			books.add(Book.builder()
+				.isbn(String.valueOf(i))
+				.title("Title " + i)
+				.author("Author")
+				.publicationYear(2000)
+				.availableCopies(1)
+				.build());
+		}
+		return books;
+	}
+
+	/**
+	 * This output stream is only ready for a given number of writes, like a socket whose buffer fills up.
+	 */
+	private static final class SlowOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private int writes;
+
+		SlowOutputStream(int writes) {
+			this.writes = writes;
+		}
+
+		void allow(int writes) {
+			this.writes = writes;
+		}
+
+		String text() {
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public boolean isReady() {
+			return writes > 0;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+		}
+
+		@Override
+		public void write(int b) {
+			bytes.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			writes--;
+			bytes.write(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.BulkAddResult;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureJsonTesters
+@WebMvcTest(CatalogueController.class)
+public class CatalogueControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Library library;
+
+    @Test
+    public void exportBooks_return_books_as_csv() throws Exception {
+		Book book = Book.builder()
+			.isbn("123")
+			.title("Harry Potter, Philosopher's Stone")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(1)
+			.build();
+		when(library.exportBooks(any())).thenAnswer(invocation -> {
+			Consumer<Book> action = invocation.getArgument(0);
+			action.accept(book);
+			return 1L;
+		});
+
+		mockMvc.perform(get("/book/export?format=csv"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("text/csv;charset=UTF-8"))
+			.andExpect(content().string(CsvCatalogueWriter.HEADER
+				+ "\r\n123,\"Harry Potter, Philosopher's Stone\",J. K. Rowling,1997,1\r\n"));
+    }
+
+    @Test
+    public void exportBooks_return_400_when_format_unknown() throws Exception {
+		mockMvc.perform(get("/book/export?format=xml"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("format should be one of binary, csv or ndjson"));
+    }
+
+    @Test
+    public void importBooks_return_added_books() throws Exception {
+		when(library.importBooks(any())).thenAnswer(invocation -> {
+			Iterator<Book> books = invocation.getArgument(0);
+			books.forEachRemaining(book -> { });
+			return new BulkAddResult();
+		});
+
+		mockMvc.perform(post("/book/import?format=ndjson")
+				.contentType(MediaType.APPLICATION_OCTET_STREAM)
+				.content("{\"isbn\":\"123\"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(content().json("{\"added\":0,\"rejected\":[]}"));
+    }
+
+    @Test
+    public void importBooks_return_400_when_payload_not_binary() throws Exception {
+		mockMvc.perform(post("/book/import")
+				.contentType(MediaType.APPLICATION_OCTET_STREAM)
+				.content("isbn,title"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("Invalid payload: Not a binary catalogue"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueFormatTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void every_format_should_read_back_the_books_it_wrote() throws IOException {
+		// given
+		List<Book> books = Arrays.asList(
+			book("123", "Harry Potter, \"the\" Philosopher's Stone", "J. K. Rowling", 1997, 1),
+			book("456", "Line\r\nbreaks\nand\rreturns", "S\u00f8ren Kierkegaard", -350, 0),
+			book("789", "", "", 2024, Integer.MAX_VALUE));
+		for (CatalogueFormat format : CatalogueFormat.values()) {
+			// when
+			List<Book> actual = read(format, write(format, books));
+			// then
+			assertEquals(actual, books, format.name());
+		}
+	}
+
+	@Test
+	void binary_should_keep_books_across_blocks_and_author_dictionary_resets() throws IOException {
+		// given
+		int count = BinaryCatalogueWriter.MAX_AUTHORS + 3 * BinaryCatalogueWriter.BLOCK_ROWS;
+		List<Book> books = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			books.add(book(String.valueOf(i), "Title " + i, "Author " + (i % 10 == 0 ? "shared" : i), 1900 + i % 200, i % 5));
+		}
+		// when
+		List<Book> actual = read(CatalogueFormat.BINARY, write(CatalogueFormat.BINARY, books));
+		// then
+		assertEquals(actual, books);
+		assertSame(actual.get(10).getAuthor(), actual.get(20).getAuthor());
+	}
+
+	@Test
+	void binary_should_be_smaller_than_csv() throws IOException {
+		// given
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			books.add(book(String.valueOf(9780000000000L + i), "Title " + i, "Author " + i % 100, 2000 + i % 20, 1));
+		}
+		// when
+		byte[] binary = write(CatalogueFormat.BINARY, books);
+		byte[] csv = write(CatalogueFormat.CSV, books);
+		// then
+		assertTrue(binary.length < csv.length * 3 / 4, binary.length + " bytes against " + csv.length);
+	}
+
+	@Test
+	void binary_should_fail_when_the_end_block_is_missing() throws IOException {
+		// given
+		byte[] written = write(CatalogueFormat.BINARY, Arrays.asList(book("123", "Harry Potter", "J. K. Rowling", 1997, 1)));
+		byte[] cut = Arrays.copyOf(written, written.length - 4);
+		// when
+		Iterator<Book> books = CatalogueFormat.BINARY.reader(objectMapper, Channels.newChannel(new ByteArrayInputStream(cut)));
+		// then
+		assertEquals(books.next().getIsbn(), "123");
+		assertThrows(UncheckedIOException.class, books::hasNext);
+	}
+
+	@Test
+	void binary_should_reject_other_payloads() {
+		assertThrows(IOException.class, () -> CatalogueFormat.BINARY.reader(objectMapper,
+			Channels.newChannel(new ByteArrayInputStream("isbn,title\n".getBytes(StandardCharsets.UTF_8)))));
+	}
+
+	@Test
+	void csv_should_return_null_for_invalid_records() throws IOException {
+		// given
+		String csv = CsvCatalogueWriter.HEADER + "\n123,Harry Potter,J. K. Rowling,1997,1\n\n456,Too,Few\n789,Title,Author,year,1\n";
+		// when
+		List<Book> actual = read(CatalogueFormat.CSV, csv.getBytes(StandardCharsets.UTF_8));
+		// then
+		assertEquals(actual.size(), 3);
+		assertEquals(actual.get(0).getIsbn(), "123");
+		assertNull(actual.get(1));
+		assertNull(actual.get(2));
+	}
+
+	@Test
+	void ndjson_should_return_null_for_invalid_lines() throws IOException {
+		// given
+		String ndjson = "{\"isbn\":\"123\",\"title\":\"Harry Potter\",\"author\":\"J. K. Rowling\",\"publicationYear\":1997,"
+			+ "\"availableCopies\":1}\n{\"isbn\":\"456\"}\n";
+		// when
+		List<Book> actual = read(CatalogueFormat.NDJSON, ndjson.getBytes(StandardCharsets.UTF_8));
+		// then
+		assertEquals(actual.size(), 2);
+		assertEquals(actual.get(0).getIsbn(), "123");
+		assertNull(actual.get(1));
+	}
+
+	@Test
+	void of_should_accept_any_case_and_reject_unknown_formats() {
+		assertEquals(CatalogueFormat.of("Csv"), CatalogueFormat.CSV);
+		assertThrows(IllegalArgumentException.class, () -> CatalogueFormat.of("xml"));
+	}
+
+	private byte[] write(CatalogueFormat format, List<Book> books) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CatalogueWriter writer = format.writer(objectMapper, Channels.newChannel(out));
+		for (Book book : books) {
+			writer.write(book);
+		}
+		writer.finish();
+		return out.toByteArray();
+	}
+
+	private List<Book> read(CatalogueFormat format, byte[] bytes) throws IOException {
+		List<Book> books = new ArrayList<>();
+		format.reader(objectMapper, Channels.newChannel(new ByteArrayInputStream(bytes))).forEachRemaining(books::add);
+		return books;
+	}
+
+	private static Book book(String isbn, String title, String author, int year, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title(title)
+			.author(author)
+			.publicationYear(year)
+			.availableCopies(copies)
+			.build();
+	}
+}
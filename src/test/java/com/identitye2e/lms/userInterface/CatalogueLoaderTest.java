@@ -0,0 +1,92 @@
+package com.identitye2e.lms.userInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.application.LibraryMetrics;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookRepository;
+import com.identitye2e.lms.infrastructure.InMemoryBookRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueLoaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final BookRepository bookRepository = new InMemoryBookRepository();
+	private final LibraryMetrics metrics = new LibraryMetrics(true);
+	private final Library library = new Library(bookRepository, metrics);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void load_should_add_every_book_of_every_chunk() throws IOException {
+		// given
+		StringBuilder catalogue = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			Book book = book(String.valueOf(i), "Title with a line\nbreak " + repeat('x', i % 37), i % 3);
+			catalogue.append(objectMapper.writeValueAsString(book)).append(i % 2 == 0 ? "\n" : "\r\n");
+		}
+		catalogue.append("\n   \nnot a book\n");
+		catalogue.append(objectMapper.writeValueAsString(book("last", "No line break at the end", 1)));
+		Path file = write(catalogue.toString());
+		// when
+		CatalogueLoader.Loaded actual = new CatalogueLoader(library, objectMapper, metrics, file.toString(), 4, 100).load(file);
+		// then
+		assertEquals(actual.getAdded(), 501);
+		assertEquals(actual.getRejected(), 1);
+		assertEquals(bookRepository.countBooks(), 501);
+		assertEquals(bookRepository.findBookByISBN("499").get().getTitle(), "Title with a line\nbreak " + repeat('x', 499 % 37));
+		assertEquals(bookRepository.findBookByISBN("last").get().getAvailableCopies(), 1);
+	}
+
+	@Test
+	void load_should_leave_out_existing_books() throws IOException {
+		// given
+		bookRepository.addBook(book("1", "Kept", 5));
+		Path file = write(objectMapper.writeValueAsString(book("1", "Replaced", 1)) + "\n"
+			+ objectMapper.writeValueAsString(book("2", "Added", 1)) + "\n");
+		// when
+		CatalogueLoader.Loaded actual = new CatalogueLoader(library, objectMapper, metrics, file.toString(), 1, 1 << 20).load(file);
+		// then
+		assertEquals(actual.getAdded(), 1);
+		assertEquals(actual.getRejected(), 1);
+		assertEquals(bookRepository.findBookByISBN("1").get().getTitle(), "Kept");
+	}
+
+	@Test
+	void load_should_fail_when_the_file_is_missing() {
+		// given
+		Path file = directory.resolve("missing.ndjson");
+		CatalogueLoader loader = new CatalogueLoader(library, objectMapper, metrics, file.toString(), 1, 1 << 20);
+		// when
+		// then
+		assertThrows(NoSuchFileException.class, () -> loader.load(file));
+	}
+
+	private Path write(String catalogue) throws IOException {
+		return Files.write(directory.resolve("catalogue.ndjson"), catalogue.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String repeat(char c, int count) {
+		return new String(new char[count]).replace('\0', c);
+	}
+
+	private static Book book(String isbn, String title, int copies) {
+		return Book.builder()
+			.isbn(isbn)
+			.title(title)
+			.author("J. K. Rowling")
+			.publicationYear(2000)
+			.availableCopies(copies)
+			.build();
+	}
+}
@@ -0,0 +1,63 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.BookChange;
+import com.identitye2e.lms.application.BookChangeLog;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureJsonTesters
+@WebMvcTest(ChangeController.class)
+public class ChangeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Library library;
+
+    @Test
+    public void readChanges_return_changes_after_sequence() throws Exception {
+		Book book = Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(0)
+			.build();
+		BookChange change = new BookChange(8, BookChange.Type.BORROWED, "123", book, 1000);
+		when(library.readChanges(7, 100))
+			.thenReturn(new BookChangeLog.Page(Collections.singletonList(change), 8, false));
+
+		mockMvc.perform(get("/book/changes?after=7").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(content().json("{\"changes\":[{\"sequence\":8,\"type\":\"BORROWED\",\"isbn\":\"123\","
+				+ "\"book\":{\"availableCopies\":0}}],\"last\":8,\"missed\":false}"));
+    }
+
+    @Test
+    public void readChanges_return_400_when_limit_too_large() throws Exception {
+		mockMvc.perform(get("/book/changes?limit=1001").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("Limit must be between 1 and 1000"));
+    }
+
+    @Test
+    public void streamChanges_return_400_when_sequence_negative() throws Exception {
+		mockMvc.perform(get("/book/changes").header("Last-Event-ID", "-1").accept(MediaType.TEXT_EVENT_STREAM))
+			.andExpect(status().isBadRequest());
+    }
+}
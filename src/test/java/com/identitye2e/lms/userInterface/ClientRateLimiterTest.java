@@ -0,0 +1,68 @@
+package com.identitye2e.lms.userInterface;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientRateLimiterTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void tryAcquire_should_admit_a_burst_then_refuse() {
+		// given
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 3, 100);
+		// when
+		for (int i = 0; i < 3; i++) {
+			assertEquals(rateLimiter.tryAcquire("client /book/find", 0), 0L);
+		}
+		long actual = rateLimiter.tryAcquire("client /book/find", 0);
+		// then
+		assertEquals(actual, SECOND / 10);
+	}
+
+	@Test
+	void tryAcquire_should_admit_again_at_the_rate() {
+		// given
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 1, 100);
+		rateLimiter.tryAcquire("client /book/find", 0);
+		// when
+		long early = rateLimiter.tryAcquire("client /book/find", SECOND / 20);
+		long onTime = rateLimiter.tryAcquire("client /book/find", SECOND / 10);
+		// then
+		assertEquals(early, SECOND / 20);
+		assertEquals(onTime, 0L);
+	}
+
+	@Test
+	void tryAcquire_should_keep_a_bucket_per_key() {
+		// given
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 1, 100);
+		rateLimiter.tryAcquire("client /book/find", 0);
+		// when
+		long actual = rateLimiter.tryAcquire("client /book/add", 0);
+		// then
+		assertEquals(actual, 0L);
+		assertTrue(rateLimiter.tryAcquire("client /book/find", 0) > 0);
+		assertEquals(rateLimiter.tryAcquire("other /book/find", 0), 0L);
+	}
+
+	@Test
+	void tryAcquire_should_drop_the_full_buckets_above_max_keys() {
+		// given
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 1, 2);
+		rateLimiter.tryAcquire("idle", 0);
+		rateLimiter.tryAcquire("busy", 10 * SECOND);
+		// when
+		rateLimiter.tryAcquire("new", 10 * SECOND);
+		// then
+		assertEquals(rateLimiter.size(), 2);
+		assertTrue(rateLimiter.tryAcquire("busy", 10 * SECOND) > 0);
+	}
+
+	@Test
+	void constructor_should_refuse_a_rate_that_is_not_positive() {
+		assertThrows(IllegalArgumentException.class, () -> new ClientRateLimiter(0, 1, 100));
+		assertThrows(IllegalArgumentException.class, () -> new ClientRateLimiter(1, 0, 100));
+	}
+}
@@ -0,0 +1,114 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Hold;
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.domain.Book;
+import com.identitye2e.lms.domain.BookResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureJsonTesters
+@WebMvcTest(HoldController.class)
+public class HoldControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Library library;
+
+    @Test
+    public void placeHold_return_book_once_a_copy_is_returned() throws Exception {
+		Hold hold = new Hold(7, "123", Long.MAX_VALUE);
+		when(library.placeHold("123"))
+			.thenReturn(hold);
+
+		MvcResult result = mockMvc.perform(put("/book/hold?isbn=123&fields=isbn,availableCopies"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		hold.getResult().complete(BookResult.ok(book(0)));
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().string("{\"isbn\":\"123\",\"availableCopies\":0}"));
+    }
+
+    @Test
+    public void placeHold_return_202_with_position_when_wait_is_over() throws Exception {
+		Hold hold = new Hold(7, "123", Long.MAX_VALUE);
+		when(library.placeHold("123"))
+			.thenReturn(hold);
+		when(library.holdPosition(any()))
+			.thenReturn(2);
+
+		MvcResult result = mockMvc.perform(put("/book/hold?isbn=123&wait=0"))
+			.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isAccepted())
+			.andExpect(header().string("Location", "/book/hold/7"))
+			.andExpect(content().string("{\"id\":7,\"isbn\":\"123\",\"position\":2}"));
+    }
+
+    @Test
+    public void placeHold_return_400_when_wait_is_too_long() throws Exception {
+		MvcResult result = mockMvc.perform(put("/book/hold?isbn=123&wait=1000"))
+			.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("wait must be between 0 and 120 seconds"));
+    }
+
+    @Test
+    public void findHold_return_400_when_hold_is_unknown() throws Exception {
+		when(library.findHold(8))
+			.thenReturn(Optional.empty());
+
+		MvcResult result = mockMvc.perform(get("/book/hold/8"))
+			.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("Hold not found"));
+    }
+
+    @Test
+    public void cancelHold_return_ok_when_hold_was_waiting() throws Exception {
+		Hold hold = new Hold(7, "123", Long.MAX_VALUE);
+		when(library.cancelHold(7))
+			.thenReturn(Optional.of(hold));
+
+		mockMvc.perform(delete("/book/hold/7"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("Hold cancelled"));
+    }
+
+    private static Book book(int copies) {
+		return Book.builder()
+			.isbn("123")
+			.title("Harry Potter")
+			.author("J. K. Rowling")
+			.publicationYear(1997)
+			.availableCopies(copies)
+			.build();
+    }
+}
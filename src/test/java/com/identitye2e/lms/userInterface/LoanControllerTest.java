@@ -0,0 +1,52 @@
+package com.identitye2e.lms.userInterface;
+
+import com.identitye2e.lms.application.Library;
+import com.identitye2e.lms.application.Loan;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureJsonTesters
+@WebMvcTest(LoanController.class)
+public class LoanControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private Library library;
+
+    @Test
+    public void findLoans_return_loans_as_json() throws Exception {
+		when(library.findLoans("123", "alice"))
+			.thenReturn(Collections.singletonList(new Loan(7, "123", "alice", 1000, 2000)));
+
+		mockMvc.perform(get("/book/loans?isbn=123&borrower=alice"))
+			.andExpect(status().isOk())
+			.andExpect(content().json("[{\"id\":7,\"isbn\":\"123\",\"borrower\":\"alice\",\"borrowedAt\":1000,"
+				+ "\"dueAt\":2000,\"status\":\"ON_LOAN\"}]"));
+    }
+
+    @Test
+    public void findLoans_return_400_when_borrower_is_empty() throws Exception {
+		mockMvc.perform(get("/book/loans?isbn=123&borrower="))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("borrower should have between 1 and 128 characters"));
+    }
+
+    @Test
+    public void findOverdueLoans_return_400_when_limit_is_too_large() throws Exception {
+		mockMvc.perform(get("/book/loans/overdue?limit=" + (BookController.MAX_LIMIT + 1)))
+			.andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,42 @@
+package com.identitye2e.lms.userInterface;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ReadinessController.class)
+public class ReadinessControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ApplicationAvailability availability;
+
+    @Test
+    public void ready_return_200_when_accepting_traffic() throws Exception {
+		when(availability.getReadinessState()).thenReturn(ReadinessState.ACCEPTING_TRAFFIC);
+
+		mockMvc.perform(get("/ready"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("ACCEPTING_TRAFFIC"));
+    }
+
+    @Test
+    public void ready_return_503_while_refusing_traffic() throws Exception {
+		when(availability.getReadinessState()).thenReturn(ReadinessState.REFUSING_TRAFFIC);
+
+		mockMvc.perform(get("/ready"))
+			.andExpect(status().isServiceUnavailable())
+			.andExpect(content().string("REFUSING_TRAFFIC"));
+    }
+}